@@ -2,8 +2,10 @@ package ec.edu.espe.chat_real_time;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class ChatRealTimeApplication {
 
 	public static void main(String[] args) {
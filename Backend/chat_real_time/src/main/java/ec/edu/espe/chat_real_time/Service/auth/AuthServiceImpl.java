@@ -19,6 +19,7 @@ import ec.edu.espe.chat_real_time.repository.RoleRepository;
 import ec.edu.espe.chat_real_time.repository.AdminProfileRepository;
 import ec.edu.espe.chat_real_time.repository.UserRepository;
 import ec.edu.espe.chat_real_time.security.jwt.JwtService;
+import ec.edu.espe.chat_real_time.security.jwt.TokenRevocationList;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -49,6 +50,7 @@ public class AuthServiceImpl implements AuthService {
   private final AdminProfileRepository adminProfileRepository;
   private final PasswordEncoder passwordEncoder;
   private final UserRepository userRepository;
+  private final TokenRevocationList tokenRevocationList;
 
   @Value("${app.guest.session-duration-hours}")
   private int guestSessionDurationHours;
@@ -235,7 +237,9 @@ public class AuthServiceImpl implements AuthService {
   @Override
   @Transactional
   public void logout(String refreshToken) {
+    User user = refreshTokenService.findByToken(refreshToken).getUser();
     refreshTokenService.revokeToken(refreshToken);
+    tokenRevocationList.revokeAll(user.getId());
   }
 
   @Override
@@ -243,6 +247,7 @@ public class AuthServiceImpl implements AuthService {
   public void logoutFromAllDevices(String refreshToken) {
     User user = refreshTokenService.findByToken(refreshToken).getUser();
     refreshTokenService.revokeAllUserTokens(user.getId());
+    tokenRevocationList.revokeAll(user.getId());
   }
 
   @Transactional
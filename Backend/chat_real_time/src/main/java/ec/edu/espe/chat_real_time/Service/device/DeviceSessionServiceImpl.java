@@ -1,5 +1,6 @@
 package ec.edu.espe.chat_real_time.Service.device;
 
+import ec.edu.espe.chat_real_time.Service.room.RoomPresenceRegistry;
 import ec.edu.espe.chat_real_time.exception.BadRequestException;
 
 import ec.edu.espe.chat_real_time.model.user.User;
@@ -24,6 +25,7 @@ import java.util.UUID;
 public class DeviceSessionServiceImpl implements DeviceSessionService {
 
   private final UserSessionRepository userSessionRepository;
+  private final RoomPresenceRegistry presenceRegistry;
 
   @Override
   @Transactional(readOnly = true)
@@ -67,7 +69,7 @@ public class DeviceSessionServiceImpl implements DeviceSessionService {
         userSessionRepository.save(session);
 
         if (session.getRoom() != null) {
-          session.getRoom().decrementCurrentUsers();
+          presenceRegistry.leave(session.getRoom().getId(), user.getId());
         }
       });
     }
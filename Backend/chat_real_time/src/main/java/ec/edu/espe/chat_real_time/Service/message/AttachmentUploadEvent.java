@@ -0,0 +1,16 @@
+package ec.edu.espe.chat_real_time.Service.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.file.Path;
+
+// Se publica junto al adjunto PENDING; la subida arranca solo cuando la transaccion hace commit
+@Getter
+@AllArgsConstructor
+public class AttachmentUploadEvent {
+  private final Long attachmentId;
+  private final Path stagedFile;
+  private final String originalFileName;
+  private final String contentType;
+}
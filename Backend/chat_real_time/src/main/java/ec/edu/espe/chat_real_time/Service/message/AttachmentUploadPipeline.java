@@ -0,0 +1,199 @@
+package ec.edu.espe.chat_real_time.Service.message;
+
+import ec.edu.espe.chat_real_time.Service.storage.AttachmentStaging;
+import ec.edu.espe.chat_real_time.Service.storage.AttachmentStorage;
+import ec.edu.espe.chat_real_time.Service.storage.ImagePreview;
+import ec.edu.espe.chat_real_time.Service.storage.StoredFile;
+import ec.edu.espe.chat_real_time.Service.storage.Thumbnail;
+import ec.edu.espe.chat_real_time.Service.storage.ThumbnailGenerator;
+import ec.edu.espe.chat_real_time.model.Attachment;
+import ec.edu.espe.chat_real_time.model.AttachmentStatus;
+import ec.edu.espe.chat_real_time.repository.AttachmentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+// Sube (y borra) los adjuntos en un pool propio, fuera de la transaccion y del hilo de la petición.
+// Un reinicio pierde las subidas en cola: al arrancar se reencolan las que tienen aquí su archivo preparado
+// y las que siguen PENDING pasado pending-timeout se marcan FAILED y sueltan ese archivo
+@Component
+@Slf4j
+public class AttachmentUploadPipeline {
+
+  private final AttachmentStorage storage;
+  private final AttachmentStaging staging;
+  private final MessageService messageService;
+  private final TaskExecutor uploadExecutor;
+  private final ThumbnailGenerator thumbnailGenerator;
+  private final TaskExecutor thumbnailExecutor;
+  private final AttachmentRepository attachmentRepository;
+  private final long pendingTimeoutMinutes;
+  // adjuntos encolados o subiéndose en este nodo: el barrido no los da por perdidos
+  private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+  public AttachmentUploadPipeline(
+          AttachmentStorage storage,
+          AttachmentStaging staging,
+          MessageService messageService,
+          @Qualifier("attachmentUploadExecutor") TaskExecutor uploadExecutor,
+          ThumbnailGenerator thumbnailGenerator,
+          @Qualifier("thumbnailExecutor") TaskExecutor thumbnailExecutor,
+          AttachmentRepository attachmentRepository,
+          @Value("${app.storage.upload.pending-timeout-minutes:30}") long pendingTimeoutMinutes) {
+    this.storage = storage;
+    this.staging = staging;
+    this.messageService = messageService;
+    this.uploadExecutor = uploadExecutor;
+    this.thumbnailGenerator = thumbnailGenerator;
+    this.thumbnailExecutor = thumbnailExecutor;
+    this.attachmentRepository = attachmentRepository;
+    this.pendingTimeoutMinutes = pendingTimeoutMinutes;
+  }
+
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onUploadRequested(AttachmentUploadEvent event) {
+    enqueue(event);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void requeuePending() {
+    int requeued = 0;
+    for (Attachment attachment : attachmentRepository.findByStatus(AttachmentStatus.PENDING)) {
+      Path staged = staging.resolve(attachment.getFileName());
+      // sin el archivo aquí puede estar subiéndolo otra réplica: lo resuelve el barrido si caduca
+      if (staged == null || !Files.isRegularFile(staged) || inFlight.contains(attachment.getId())) continue;
+      enqueue(new AttachmentUploadEvent(attachment.getId(), staged, attachment.getOriginalFileName(), attachment.getFileType()));
+      requeued++;
+    }
+    if (requeued > 0) {
+      log.info("Requeued {} pending attachment uploads after restart", requeued);
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${app.storage.upload.pending-sweep-ms:300000}",
+          initialDelayString = "${app.storage.upload.pending-sweep-ms:300000}")
+  public void failStalePending() {
+    LocalDateTime cutoff = LocalDateTime.now().minusMinutes(pendingTimeoutMinutes);
+    for (Attachment attachment : attachmentRepository.findByStatusAndUploadedAtBefore(AttachmentStatus.PENDING, cutoff)) {
+      if (inFlight.contains(attachment.getId())) continue;
+      log.warn("Attachment {} pending since {}, marking it as failed", attachment.getId(), attachment.getUploadedAt());
+      markFailed(attachment.getId());
+      staging.discard(staging.resolve(attachment.getFileName()));
+    }
+  }
+
+  private void enqueue(AttachmentUploadEvent event) {
+    inFlight.add(event.getAttachmentId());
+    try {
+      uploadExecutor.execute(() -> upload(event));
+    } catch (RejectedExecutionException e) {
+      // pool apagándose: el adjunto no puede quedar PENDING para siempre
+      log.error("Upload of attachment {} rejected", event.getAttachmentId(), e);
+      inFlight.remove(event.getAttachmentId());
+      markFailed(event.getAttachmentId());
+      staging.discard(event.getStagedFile());
+    }
+  }
+
+  // Si el mensaje no llegó a guardarse, el archivo preparado ya no sirve
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+  public void onUploadRolledBack(AttachmentUploadEvent event) {
+    staging.discard(event.getStagedFile());
+  }
+
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onStoredObjectReleased(StoredObjectReleasedEvent event) {
+    uploadExecutor.execute(() -> {
+      delete(event.getFilePath(), event.getContentType());
+      if (event.getPreviewPath() != null) {
+        delete(event.getPreviewPath(), event.getContentType());
+      }
+    });
+  }
+
+  void upload(AttachmentUploadEvent event) {
+    // la miniatura se genera mientras el original se sube
+    CompletableFuture<Optional<Thumbnail>> thumbnail = startThumbnail(event);
+    try {
+      StoredFile stored = storage.store(event.getStagedFile(), event.getOriginalFileName(), event.getContentType());
+      ImagePreview preview = storePreview(event, thumbnail.join());
+      messageService.completeAttachmentUpload(event.getAttachmentId(), stored, preview);
+      log.info("File saved successfully: {}", stored.getFilePath());
+    } catch (Exception e) {
+      log.error("Error uploading attachment {}", event.getAttachmentId(), e);
+      markFailed(event.getAttachmentId());
+    } finally {
+      // el archivo preparado no se borra mientras la miniatura lo esté leyendo
+      thumbnail.join().ifPresent(generated -> staging.discard(generated.getPath()));
+      staging.discard(event.getStagedFile());
+      inFlight.remove(event.getAttachmentId());
+    }
+  }
+
+  // La miniatura es opcional: cualquier fallo deja el adjunto sin vista previa, nunca en FAILED
+  private CompletableFuture<Optional<Thumbnail>> startThumbnail(AttachmentUploadEvent event) {
+    if (!thumbnailGenerator.supports(event.getContentType())) {
+      return CompletableFuture.completedFuture(Optional.empty());
+    }
+    try {
+      return CompletableFuture.supplyAsync(() -> {
+        try {
+          return thumbnailGenerator.generate(event.getStagedFile());
+        } catch (Exception e) {
+          log.warn("Could not generate preview for attachment {}: {}", event.getAttachmentId(), e.getMessage());
+          return Optional.<Thumbnail>empty();
+        }
+      }, thumbnailExecutor);
+    } catch (RejectedExecutionException e) {
+      log.warn("Thumbnail pool saturated, attachment {} stays without preview", event.getAttachmentId());
+      return CompletableFuture.completedFuture(Optional.empty());
+    }
+  }
+
+  private ImagePreview storePreview(AttachmentUploadEvent event, Optional<Thumbnail> thumbnail) {
+    if (thumbnail.isEmpty()) return null;
+    Thumbnail generated = thumbnail.get();
+    String extension = "image/png".equals(generated.getContentType()) ? ".png" : ".jpg";
+    try {
+      StoredFile stored = storage.store(generated.getPath(), "preview" + extension, generated.getContentType());
+      return new ImagePreview(stored.getFileUrl(), stored.getFilePath(),
+              generated.getWidth(), generated.getHeight(),
+              generated.getSourceWidth(), generated.getSourceHeight());
+    } catch (Exception e) {
+      log.warn("Could not store preview for attachment {}: {}", event.getAttachmentId(), e.getMessage());
+      return null;
+    }
+  }
+
+  private void delete(String filePath, String contentType) {
+    try {
+      storage.delete(filePath, contentType);
+    } catch (Exception e) {
+      log.warn("Could not delete stored object {}: {}", filePath, e.getMessage());
+    }
+  }
+
+  private void markFailed(Long attachmentId) {
+    try {
+      messageService.failAttachmentUpload(attachmentId);
+    } catch (RuntimeException e) {
+      log.error("Could not mark attachment {} as failed", attachmentId, e);
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package ec.edu.espe.chat_real_time.Service.message;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
+import ec.edu.espe.chat_real_time.model.message.MessageArchiveChunk;
+import ec.edu.espe.chat_real_time.repository.MessageArchiveChunkRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Almacenamiento frío del historial: cada chunk guarda los MessageResponse tal como se mostraban al archivarlos
+@Component
+@Slf4j
+public class MessageArchive {
+
+  private static final int CHUNKS_PER_QUERY = 4;
+  private static final TypeReference<List<MessageResponse>> MESSAGE_LIST = new TypeReference<>() {
+  };
+
+  private final MessageArchiveChunkRepository chunkRepository;
+  // mapper propio: el formato archivado no debe cambiar si se ajusta el ObjectMapper de la API
+  private final ObjectMapper mapper = JsonMapper.builder()
+          .findAndAddModules()
+          .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+          .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+          .build();
+  // los chunks solo cambian al eliminar un mensaje archivado, que invalida su entrada
+  private final Cache<Long, List<MessageResponse>> chunkCache;
+
+  public MessageArchive(
+          MessageArchiveChunkRepository chunkRepository,
+          @Value("${app.messages.archive.chunk-cache-size:256}") long chunkCacheSize) {
+    this.chunkRepository = chunkRepository;
+    this.chunkCache = Caffeine.newBuilder().maximumSize(chunkCacheSize).build();
+  }
+
+  // messages en orden ascendente de id, todos de la misma sala
+  public MessageArchiveChunk append(Long roomId, List<MessageResponse> messages) {
+    return chunkRepository.save(MessageArchiveChunk.builder()
+            .roomId(roomId)
+            .firstMessageId(messages.get(0).getId())
+            .lastMessageId(messages.get(messages.size() - 1).getId())
+            .messageCount(messages.size())
+            .payload(compress(messages))
+            .build());
+  }
+
+  // Hasta limit mensajes con id < beforeId (null = desde el más reciente), del más nuevo al más antiguo
+  public List<MessageResponse> readBefore(Long roomId, Long beforeId, int limit) {
+    long before = beforeId != null ? beforeId : Long.MAX_VALUE;
+    List<MessageResponse> result = new ArrayList<>(limit);
+    int page = 0;
+    while (result.size() < limit) {
+      List<MessageArchiveChunk> chunks = chunkRepository.findByRoomIdAndFirstMessageIdLessThanOrderByLastMessageIdDesc(
+              roomId, before, PageRequest.of(page++, CHUNKS_PER_QUERY));
+      for (MessageArchiveChunk chunk : chunks) {
+        List<MessageResponse> messages = chunkCache.get(chunk.getId(), id -> decompress(chunk.getPayload()));
+        messages.stream()
+                .filter(message -> message.getId() < before)
+                .sorted(Comparator.comparing(MessageResponse::getId).reversed())
+                .limit(limit - result.size())
+                .forEach(result::add);
+        if (result.size() >= limit) break;
+      }
+      if (chunks.size() < CHUNKS_PER_QUERY) break;
+    }
+    return result;
+  }
+
+  public Optional<MessageResponse> findById(Long messageId) {
+    for (MessageArchiveChunk chunk : chunkRepository.findContaining(messageId)) {
+      Optional<MessageResponse> found = chunkCache.get(chunk.getId(), id -> decompress(chunk.getPayload())).stream()
+              .filter(message -> message.getId().equals(messageId))
+              .findFirst();
+      if (found.isPresent()) return found;
+    }
+    return Optional.empty();
+  }
+
+  // Reescribe el chunk sin el mensaje (o lo borra si queda vacío). Debe llamarse dentro de una transacción
+  public boolean delete(Long messageId) {
+    for (MessageArchiveChunk chunk : chunkRepository.lockContaining(messageId)) {
+      List<MessageResponse> messages = decompress(chunk.getPayload());
+      List<MessageResponse> remaining = messages.stream()
+              .filter(message -> !message.getId().equals(messageId))
+              .collect(Collectors.toList());
+      if (remaining.size() == messages.size()) continue;
+
+      if (remaining.isEmpty()) {
+        chunkRepository.delete(chunk);
+      } else {
+        chunk.setFirstMessageId(remaining.get(0).getId());
+        chunk.setLastMessageId(remaining.get(remaining.size() - 1).getId());
+        chunk.setMessageCount(remaining.size());
+        chunk.setPayload(compress(remaining));
+        chunkRepository.save(chunk);
+      }
+      invalidate(chunk.getId());
+      return true;
+    }
+    return false;
+  }
+
+  // También tras el commit: un lector concurrente pudo volver a cachear la versión anterior mientras tanto
+  private void invalidate(Long chunkId) {
+    chunkCache.invalidate(chunkId);
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          chunkCache.invalidate(chunkId);
+        }
+      });
+    }
+  }
+
+  private byte[] compress(List<MessageResponse> messages) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (OutputStream gzip = new GZIPOutputStream(bytes)) {
+      mapper.writeValue(gzip, messages);
+    } catch (IOException e) {
+      throw new UncheckedIOException("No se pudo comprimir el bloque de mensajes", e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private List<MessageResponse> decompress(byte[] payload) {
+    try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+      return List.copyOf(mapper.readValue(gzip, MESSAGE_LIST));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Bloque de mensajes archivado ilegible", e);
+    }
+  }
+}
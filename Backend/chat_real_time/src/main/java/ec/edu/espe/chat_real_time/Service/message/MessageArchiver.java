@@ -0,0 +1,84 @@
+package ec.edu.espe.chat_real_time.Service.message;
+
+import ec.edu.espe.chat_real_time.dto.mapperDTO.MessageMapper;
+import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
+import ec.edu.espe.chat_real_time.model.message.Message;
+import ec.edu.espe.chat_real_time.repository.MessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Mueve los mensajes antiguos de la tabla caliente al archivo comprimido, un chunk por transacción.
+// Los adjuntos viajan al chunk con el mensaje y su objeto almacenado sigue referenciado (ver MessagePurger.detachArchived)
+@Component
+@Slf4j
+public class MessageArchiver {
+
+  private final MessageRepository messageRepository;
+  private final MessagePurger messagePurger;
+  private final MessageArchive messageArchive;
+  private final TransactionTemplate transactionTemplate;
+  private final boolean enabled;
+  private final int afterDays;
+  private final int chunkSize;
+
+  public MessageArchiver(
+          MessageRepository messageRepository,
+          MessagePurger messagePurger,
+          MessageArchive messageArchive,
+          TransactionTemplate transactionTemplate,
+          @Value("${app.messages.archive.enabled:false}") boolean enabled,
+          @Value("${app.messages.archive.after-days:90}") int afterDays,
+          @Value("${app.messages.archive.chunk-size:500}") int chunkSize) {
+    this.messageRepository = messageRepository;
+    this.messagePurger = messagePurger;
+    this.messageArchive = messageArchive;
+    this.transactionTemplate = transactionTemplate;
+    this.enabled = enabled;
+    this.afterDays = afterDays;
+    this.chunkSize = chunkSize;
+  }
+
+  @Scheduled(fixedDelayString = "${app.messages.archive.interval-ms:3600000}",
+          initialDelayString = "${app.messages.archive.initial-delay-ms:60000}")
+  public void archiveOldMessages() {
+    if (!enabled) return;
+    LocalDateTime cutoff = LocalDateTime.now().minusDays(afterDays);
+    long archived = 0;
+    for (Long roomId : messageRepository.findRoomIdsWithMessagesBefore(cutoff)) {
+      int moved;
+      do {
+        moved = transactionTemplate.execute(status -> archiveChunk(roomId, cutoff));
+        archived += moved;
+      } while (moved == chunkSize);
+    }
+    if (archived > 0) {
+      log.info("Archived {} messages older than {}", archived, cutoff);
+    }
+  }
+
+  // Los mensajes eliminados no se archivan: el historial nunca los muestra
+  int archiveChunk(Long roomId, LocalDateTime cutoff) {
+    List<Long> ids = messageRepository.lockIdsToArchive(roomId, cutoff, PageRequest.of(0, chunkSize));
+    if (ids.isEmpty()) return 0;
+
+    List<Message> messages = messageRepository.findByIdInOrderByIdAsc(ids);
+    List<MessageResponse> visible = messages.stream()
+            .filter(message -> !Boolean.TRUE.equals(message.getIsDeleted()))
+            .map(MessageMapper::toMessageResponse)
+            .collect(Collectors.toList());
+    if (!visible.isEmpty()) {
+      messageArchive.append(roomId, visible);
+    }
+    messagePurger.detachArchived(messages);
+    log.debug("Archived {} messages of room {} ({} visible)", ids.size(), roomId, visible.size());
+    return ids.size();
+  }
+}
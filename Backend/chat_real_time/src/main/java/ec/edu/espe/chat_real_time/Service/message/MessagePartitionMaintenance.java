@@ -0,0 +1,91 @@
+package ec.edu.espe.chat_real_time.Service.message;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Particiones mensuales de messages (RANGE COLUMNS sobre sent_at): crea por adelantado las de los próximos meses
+@Component
+@ConditionalOnProperty(name = "app.messages.partitioning.enabled", havingValue = "true")
+@Slf4j
+public class MessagePartitionMaintenance {
+
+  static final String MAX_PARTITION = "pmax";
+  private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+  private final JdbcTemplate jdbcTemplate;
+  private final int monthsAhead;
+  private final Supplier<YearMonth> currentMonth;
+
+  @Autowired
+  public MessagePartitionMaintenance(
+          JdbcTemplate jdbcTemplate,
+          @Value("${app.messages.partitioning.months-ahead:3}") int monthsAhead) {
+    this(jdbcTemplate, monthsAhead, YearMonth::now);
+  }
+
+  MessagePartitionMaintenance(JdbcTemplate jdbcTemplate, int monthsAhead, Supplier<YearMonth> currentMonth) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.monthsAhead = monthsAhead;
+    this.currentMonth = currentMonth;
+  }
+
+  // pmax debe estar vacía: separar de ella los meses que faltan es solo un cambio de metadatos
+  @Scheduled(fixedDelayString = "${app.messages.partitioning.maintenance-interval-ms:21600000}",
+          initialDelayString = "${app.messages.partitioning.initial-delay-ms:30000}")
+  public void ensureFuturePartitions() {
+    List<String> partitions = partitionNames(jdbcTemplate, "messages");
+    if (partitions.isEmpty()) {
+      log.warn("Table messages is not partitioned yet; run the partition migration first");
+      return;
+    }
+    YearMonth last = partitions.stream()
+            .filter(name -> !MAX_PARTITION.equals(name))
+            .map(name -> YearMonth.parse(name.substring(1), PARTITION_SUFFIX))
+            .max(YearMonth::compareTo)
+            .orElse(currentMonth.get().minusMonths(1));
+    YearMonth target = currentMonth.get().plusMonths(monthsAhead);
+    if (!last.isBefore(target)) return;
+
+    jdbcTemplate.execute("ALTER TABLE messages REORGANIZE PARTITION " + MAX_PARTITION + " INTO ("
+            + monthlyPartitions(last.plusMonths(1), target) + ")");
+    log.info("Added message partitions up to {}", partitionName(target));
+  }
+
+  static List<String> partitionNames(JdbcTemplate jdbcTemplate, String table) {
+    return jdbcTemplate.queryForList(
+            "SELECT PARTITION_NAME FROM information_schema.PARTITIONS "
+                    + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL "
+                    + "ORDER BY PARTITION_ORDINAL_POSITION",
+            String.class, table);
+  }
+
+  static String partitionByClause(YearMonth from, YearMonth to) {
+    return "PARTITION BY RANGE COLUMNS(sent_at) (" + monthlyPartitions(from, to) + ")";
+  }
+
+  // Una partición por mes de from a to (incluidos) y pmax para lo que llegue más allá
+  static String monthlyPartitions(YearMonth from, YearMonth to) {
+    List<String> definitions = new ArrayList<>();
+    for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+      definitions.add("PARTITION " + partitionName(month)
+              + " VALUES LESS THAN ('" + month.plusMonths(1).atDay(1) + " 00:00:00')");
+    }
+    definitions.add("PARTITION " + MAX_PARTITION + " VALUES LESS THAN (MAXVALUE)");
+    return String.join(", ", definitions);
+  }
+
+  static String partitionName(YearMonth month) {
+    return "p" + month.format(PARTITION_SUFFIX);
+  }
+}
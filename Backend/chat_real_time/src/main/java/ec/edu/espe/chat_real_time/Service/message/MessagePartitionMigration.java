@@ -0,0 +1,208 @@
+package ec.edu.espe.chat_real_time.Service.message;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// Migración en línea de messages a la tabla particionada, al estilo pt-online-schema-change:
+// tabla sombra particionada, triggers que replican las escrituras, copia por rangos de id y RENAME atómico.
+// Si se interrumpe se puede relanzar: la sombra y los triggers se reutilizan y la copia es idempotente.
+// Con varias réplicas solo la que obtiene el GET_LOCK de MySQL migra; las demás arrancan sin hacer nada.
+@Component
+@ConditionalOnProperty(name = "app.messages.partitioning.migrate", havingValue = "true")
+@Slf4j
+public class MessagePartitionMigration {
+
+  static final String SHADOW_TABLE = "messages_partitioned";
+  static final String OLD_TABLE = "messages_unpartitioned";
+  static final String LOCK_NAME = "chat_messages_partition_migration";
+  private static final String[] TRIGGERS = {"messages_partition_ins", "messages_partition_upd", "messages_partition_del"};
+
+  private final JdbcTemplate jdbcTemplate;
+  private final int batchSize;
+  private final long throttleMs;
+  private final int monthsAhead;
+  private final Supplier<YearMonth> currentMonth;
+
+  @Autowired
+  public MessagePartitionMigration(
+          JdbcTemplate jdbcTemplate,
+          @Value("${app.messages.partitioning.migration.batch-size:10000}") int batchSize,
+          @Value("${app.messages.partitioning.migration.throttle-ms:0}") long throttleMs,
+          @Value("${app.messages.partitioning.months-ahead:3}") int monthsAhead) {
+    this(jdbcTemplate, batchSize, throttleMs, monthsAhead, YearMonth::now);
+  }
+
+  MessagePartitionMigration(JdbcTemplate jdbcTemplate, int batchSize, long throttleMs, int monthsAhead,
+                            Supplier<YearMonth> currentMonth) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.batchSize = batchSize;
+    this.throttleMs = throttleMs;
+    this.monthsAhead = monthsAhead;
+    this.currentMonth = currentMonth;
+  }
+
+  // En su propio hilo para que la aplicación siga atendiendo mientras copia
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    Thread migration = new Thread(() -> {
+      try {
+        migrateExclusively();
+      } catch (RuntimeException e) {
+        log.error("Message partition migration failed; it can be restarted safely", e);
+      }
+    }, "message-partition-migration");
+    migration.setDaemon(true);
+    migration.start();
+  }
+
+  // El cerrojo de GET_LOCK pertenece a la conexión: se retiene una conexión del pool mientras dura la copia
+  public boolean migrateExclusively() {
+    Boolean migrated = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+      if (!lock(connection, "SELECT GET_LOCK(?, 0)")) {
+        log.info("Message partition migration is running on another node, skipping");
+        return false;
+      }
+      try {
+        migrate();
+        return true;
+      } finally {
+        lock(connection, "SELECT RELEASE_LOCK(?)");
+      }
+    });
+    return Boolean.TRUE.equals(migrated);
+  }
+
+  private static boolean lock(Connection connection, String sql) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      statement.setString(1, LOCK_NAME);
+      try (ResultSet result = statement.executeQuery()) {
+        return result.next() && result.getInt(1) == 1;
+      }
+    }
+  }
+
+  public void migrate() {
+    if (!MessagePartitionMaintenance.partitionNames(jdbcTemplate, "messages").isEmpty()) {
+      log.info("Table messages is already partitioned, nothing to migrate");
+      return;
+    }
+    List<String> columns = columns();
+    createShadowTable();
+    createTriggers(columns);
+    long copied = copyRows(joined(columns, ""));
+    swap();
+    log.info("Messages partitioned: {} rows copied, previous table kept as {} until verified", copied, OLD_TABLE);
+  }
+
+  private void createShadowTable() {
+    if (tableExists(SHADOW_TABLE)) {
+      log.info("Resuming partition migration with existing {}", SHADOW_TABLE);
+      return;
+    }
+    Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(sent_at) FROM messages", Timestamp.class);
+    YearMonth from = oldest != null ? YearMonth.from(oldest.toLocalDateTime()) : currentMonth.get();
+
+    // CREATE TABLE ... LIKE no copia las FK, que MySQL no admite en tablas particionadas.
+    // La clave primaria agrupa físicamente por sala y fecha; la única (id, sent_at) mantiene las búsquedas por id
+    jdbcTemplate.execute("CREATE TABLE " + SHADOW_TABLE + " LIKE messages");
+    jdbcTemplate.execute("ALTER TABLE " + SHADOW_TABLE
+            + " DROP PRIMARY KEY, ADD PRIMARY KEY (room_id, sent_at, id), ADD UNIQUE KEY uk_message_id_sent (id, sent_at)");
+    jdbcTemplate.execute("ALTER TABLE " + SHADOW_TABLE + " "
+            + MessagePartitionMaintenance.partitionByClause(from, currentMonth.get().plusMonths(monthsAhead)));
+    log.info("Created {} partitioned from {}", SHADOW_TABLE, MessagePartitionMaintenance.partitionName(from));
+  }
+
+  // A partir de aquí toda escritura en messages se replica en la sombra; la copia solo rellena el pasado
+  private void createTriggers(List<String> columns) {
+    String replace = "REPLACE INTO " + SHADOW_TABLE + " (" + joined(columns, "") + ") VALUES (" + joined(columns, "NEW.") + ")";
+    jdbcTemplate.execute("CREATE TRIGGER IF NOT EXISTS " + TRIGGERS[0] + " AFTER INSERT ON messages FOR EACH ROW " + replace);
+    jdbcTemplate.execute("CREATE TRIGGER IF NOT EXISTS " + TRIGGERS[1] + " AFTER UPDATE ON messages FOR EACH ROW " + replace);
+    jdbcTemplate.execute("CREATE TRIGGER IF NOT EXISTS " + TRIGGERS[2] + " AFTER DELETE ON messages FOR EACH ROW "
+            + "DELETE FROM " + SHADOW_TABLE + " WHERE id = OLD.id AND sent_at = OLD.sent_at");
+  }
+
+  // INSERT IGNORE: las filas que ya escribieron los triggers son más recientes y se conservan
+  private long copyRows(String columns) {
+    Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM messages", Long.class);
+    long from = 0;
+    long copied = 0;
+    int batches = 0;
+    while (maxId != null && from < maxId) {
+      Long to = jdbcTemplate.queryForObject(
+              "SELECT MAX(id) FROM (SELECT id FROM messages WHERE id > ? ORDER BY id LIMIT ?) batch",
+              Long.class, from, batchSize);
+      if (to == null) break;
+      copied += jdbcTemplate.update("INSERT IGNORE INTO " + SHADOW_TABLE + " (" + columns + ") SELECT " + columns
+              + " FROM messages WHERE id > ? AND id <= ?", from, to);
+      from = to;
+      if (++batches % 100 == 0) {
+        log.info("Partition migration copied {} rows (up to id {} of {})", copied, from, maxId);
+      }
+      pause();
+    }
+    return copied;
+  }
+
+  private void swap() {
+    // la FK de attachments apuntaría a la tabla renombrada, y una tabla particionada no puede ser referenciada
+    List<Map<String, Object>> foreignKeys = jdbcTemplate.queryForList(
+            "SELECT TABLE_NAME, CONSTRAINT_NAME FROM information_schema.REFERENTIAL_CONSTRAINTS "
+                    + "WHERE CONSTRAINT_SCHEMA = DATABASE() AND REFERENCED_TABLE_NAME = 'messages'");
+    for (Map<String, Object> foreignKey : foreignKeys) {
+      jdbcTemplate.execute("ALTER TABLE `" + foreignKey.get("TABLE_NAME") + "` DROP FOREIGN KEY `"
+              + foreignKey.get("CONSTRAINT_NAME") + "`");
+    }
+    jdbcTemplate.execute("RENAME TABLE messages TO " + OLD_TABLE + ", " + SHADOW_TABLE + " TO messages");
+    for (String trigger : TRIGGERS) {
+      jdbcTemplate.execute("DROP TRIGGER IF EXISTS " + trigger);
+    }
+  }
+
+  private List<String> columns() {
+    return jdbcTemplate.queryForList(
+            "SELECT COLUMN_NAME FROM information_schema.COLUMNS "
+                    + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'messages' ORDER BY ORDINAL_POSITION",
+            String.class);
+  }
+
+  private boolean tableExists(String table) {
+    Integer count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?",
+            Integer.class, table);
+    return count != null && count > 0;
+  }
+
+  private static String joined(List<String> columns, String prefix) {
+    return columns.stream()
+            .map(column -> prefix + "`" + column + "`")
+            .collect(Collectors.joining(", "));
+  }
+
+  private void pause() {
+    if (throttleMs <= 0) return;
+    try {
+      Thread.sleep(throttleMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Migración de particiones interrumpida", e);
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package ec.edu.espe.chat_real_time.Service.message;
+
+import ec.edu.espe.chat_real_time.model.Attachment;
+import ec.edu.espe.chat_real_time.model.StoredObject;
+import ec.edu.espe.chat_real_time.model.message.ArchivedAttachmentRef;
+import ec.edu.espe.chat_real_time.model.message.Message;
+import ec.edu.espe.chat_real_time.repository.ArchivedAttachmentRefRepository;
+import ec.edu.espe.chat_real_time.repository.AttachmentRepository;
+import ec.edu.espe.chat_real_time.repository.MessageRepository;
+import ec.edu.espe.chat_real_time.repository.StoredObjectRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Borrado físico de mensajes. Las FK de messages y attachments no existen en la base (tabla particionada),
+// así que el orden lo impone el código: objetos almacenados, adjuntos y por último los mensajes
+@Component
+@RequiredArgsConstructor
+public class MessagePurger {
+
+  private static final int BATCH_SIZE = 500;
+
+  private final MessageRepository messageRepository;
+  private final AttachmentRepository attachmentRepository;
+  private final StoredObjectRepository storedObjectRepository;
+  private final ArchivedAttachmentRefRepository archivedRefRepository;
+  private final MessageArchive messageArchive;
+  private final ApplicationEventPublisher eventPublisher;
+
+  // Todos los mensajes de los usuarios indicados, calientes y archivados, por lotes para acotar las listas IN.
+  // Del archivo solo se quitan los que tienen adjuntos: son los que retienen archivos en el almacenamiento
+  @Transactional(propagation = Propagation.MANDATORY)
+  public int purgeByUsers(List<Long> userIds) {
+    if (userIds.isEmpty()) return 0;
+    List<Long> ids = messageRepository.findIdsByUserIds(userIds);
+    for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+      purge(ids.subList(from, Math.min(from + BATCH_SIZE, ids.size())));
+    }
+    List<Long> archived = archivedRefRepository.findMessageIdsBySenderIds(userIds);
+    archived.forEach(messageArchive::delete);
+    for (int from = 0; from < archived.size(); from += BATCH_SIZE) {
+      releaseArchived(archived.subList(from, Math.min(from + BATCH_SIZE, archived.size())));
+    }
+    return ids.size() + archived.size();
+  }
+
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void purge(List<Long> messageIds) {
+    if (messageIds.isEmpty()) return;
+    List<StoredObject> referenced = attachmentRepository.findWithStoredObjectByMessageIds(messageIds).stream()
+            .map(Attachment::getStoredObject)
+            .collect(Collectors.toList());
+    referenced.forEach(object -> storedObjectRepository.release(object.getId()));
+    attachmentRepository.deleteByMessageIds(messageIds);
+    messageRepository.deleteByIds(messageIds);
+    deleteUnreferenced(referenced);
+  }
+
+  // Al archivar se borran las filas calientes pero el chunk sigue mostrando los archivos:
+  // cada referencia pasa a archived_attachment_refs en lugar de soltarse
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void detachArchived(List<Message> messages) {
+    if (messages.isEmpty()) return;
+    List<ArchivedAttachmentRef> refs = new ArrayList<>();
+    for (Message message : messages) {
+      for (Attachment attachment : message.getAttachments()) {
+        // los mensajes eliminados ya soltaron sus objetos (storedObject en null)
+        if (attachment.getStoredObject() == null) continue;
+        refs.add(ArchivedAttachmentRef.builder()
+                .messageId(message.getId())
+                .senderId(message.getUser().getId())
+                .storedObject(attachment.getStoredObject())
+                .build());
+      }
+    }
+    archivedRefRepository.saveAll(refs);
+    List<Long> ids = messages.stream().map(Message::getId).collect(Collectors.toList());
+    attachmentRepository.deleteByMessageIds(ids);
+    messageRepository.deleteByIds(ids);
+  }
+
+  // Suelta las referencias de mensajes ya quitados del archivo
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void releaseArchived(List<Long> messageIds) {
+    if (messageIds.isEmpty()) return;
+    List<StoredObject> referenced = archivedRefRepository.findWithStoredObjectByMessageIds(messageIds).stream()
+            .map(ArchivedAttachmentRef::getStoredObject)
+            .collect(Collectors.toList());
+    referenced.forEach(object -> storedObjectRepository.release(object.getId()));
+    archivedRefRepository.deleteByMessageIds(messageIds);
+    deleteUnreferenced(referenced);
+  }
+
+  // Con las filas que lo referencian ya borradas la FK queda libre; el archivo se borra del almacenamiento tras el commit
+  private void deleteUnreferenced(List<StoredObject> referenced) {
+    Map<Long, StoredObject> distinct = new LinkedHashMap<>();
+    referenced.forEach(object -> distinct.putIfAbsent(object.getId(), object));
+    for (StoredObject object : distinct.values()) {
+      if (storedObjectRepository.deleteIfUnreferenced(object.getId()) == 1) {
+        eventPublisher.publishEvent(new StoredObjectReleasedEvent(
+                object.getFilePath(), object.getFileType(), object.getPreviewPath()));
+      }
+    }
+  }
+}
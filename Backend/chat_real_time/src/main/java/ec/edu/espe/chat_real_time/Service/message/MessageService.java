@@ -1,16 +1,25 @@
 package ec.edu.espe.chat_real_time.Service.message;
 
+import ec.edu.espe.chat_real_time.Service.storage.ImagePreview;
+import ec.edu.espe.chat_real_time.Service.storage.StoredFile;
 import ec.edu.espe.chat_real_time.dto.request.SendMessageRequest;
+import ec.edu.espe.chat_real_time.dto.response.MessagePageResponse;
 import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
 import ec.edu.espe.chat_real_time.model.user.User;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.util.List;
 
 public interface MessageService {
   MessageResponse sendTextMessage(SendMessageRequest request, User user);
   MessageResponse sendFileMessage(Long roomId, String content, MultipartFile file, User user);
+  MessageResponse sendFileStream(Long roomId, String content, String originalFileName, String contentType,
+                                 long declaredSize, InputStream body, User user);
+  void completeAttachmentUpload(Long attachmentId, StoredFile storedFile, ImagePreview preview);
+  void failAttachmentUpload(Long attachmentId);
   List<MessageResponse> getRoomMessages(Long roomId, User user);
+  MessagePageResponse getRoomMessagesPage(Long roomId, String before, Integer limit, User user);
   MessageResponse getMessageById(Long messageId);
   void deleteMessage(Long messageId, User user);
 }
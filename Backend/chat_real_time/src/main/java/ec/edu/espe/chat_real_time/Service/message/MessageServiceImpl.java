@@ -1,14 +1,21 @@
 package ec.edu.espe.chat_real_time.Service.message;
 
-import com.cloudinary.Cloudinary;
-import com.cloudinary.utils.ObjectUtils;
+import ec.edu.espe.chat_real_time.Service.storage.AttachmentStaging;
+import ec.edu.espe.chat_real_time.Service.storage.StagedUpload;
+import ec.edu.espe.chat_real_time.Service.storage.ImagePreview;
+import ec.edu.espe.chat_real_time.Service.storage.StoredFile;
+import ec.edu.espe.chat_real_time.Service.websocket.MessageBroadcastEvent;
 import ec.edu.espe.chat_real_time.dto.mapperDTO.MessageMapper;
 import ec.edu.espe.chat_real_time.dto.request.SendMessageRequest;
+import ec.edu.espe.chat_real_time.dto.response.MessagePageResponse;
 import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
 import ec.edu.espe.chat_real_time.exception.BadRequestException;
+import ec.edu.espe.chat_real_time.exception.FileTooLargeException;
 import ec.edu.espe.chat_real_time.exception.ResourceNotFoundException;
 import ec.edu.espe.chat_real_time.exception.UnauthorizedException;
 import ec.edu.espe.chat_real_time.model.Attachment;
+import ec.edu.espe.chat_real_time.model.AttachmentStatus;
+import ec.edu.espe.chat_real_time.model.StoredObject;
 import ec.edu.espe.chat_real_time.model.message.Message;
 import ec.edu.espe.chat_real_time.model.message.MessageType;
 import ec.edu.espe.chat_real_time.model.room.Room;
@@ -18,17 +25,29 @@ import ec.edu.espe.chat_real_time.model.user.UserSession;
 import ec.edu.espe.chat_real_time.repository.AttachmentRepository;
 import ec.edu.espe.chat_real_time.repository.MessageRepository;
 import ec.edu.espe.chat_real_time.repository.RoomRepository;
+import ec.edu.espe.chat_real_time.repository.StoredObjectRepository;
 import ec.edu.espe.chat_real_time.repository.UserSessionRepository;
+import ec.edu.espe.chat_real_time.utils.MessageCursor;
+import ec.edu.espe.chat_real_time.utils.SnowflakeIdGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -36,50 +55,81 @@ import java.util.stream.Collectors;
 @Slf4j
 public class MessageServiceImpl implements MessageService {
 
+  private static final int DEFAULT_PAGE_SIZE = 50;
+  private static final int MAX_PAGE_SIZE = 100;
+  // Margen sobre el instante del id Snowflake: cubre la zona horaria de sent_at y el desfase de reloj entre nodos
+  private static final Duration CURSOR_SENT_AT_SLACK = Duration.ofDays(1);
+
   private final MessageRepository messageRepository;
   private final RoomRepository roomRepository;
   private final UserSessionRepository sessionRepository;
   private final AttachmentRepository attachmentRepository;
-  private final SimpMessagingTemplate messagingTemplate;
-  private final Cloudinary cloudinary;
-
-
+  private final ApplicationEventPublisher eventPublisher;
+  private final AttachmentStaging attachmentStaging;
+  private final TransactionTemplate transactionTemplate;
+  private final StoredObjectRepository storedObjectRepository;
+  // Presente solo con app.messages.write-behind.enabled=true
+  private final Optional<MessageWriteBehind> writeBehind;
+  private final MessageArchive messageArchive;
+  private final RecentMessageBuffer recentMessageBuffer;
+  private final MessagePurger messagePurger;
+
+
+  // Sin @Transactional: con write-behind el envío puede esperar al lote (BATCH_COMMIT) y no debe retener
+  // la conexión que necesita el hilo escritor; las consultas y el guardado directo van en su propia transacción
   @Override
-  @Transactional
   public MessageResponse sendTextMessage(SendMessageRequest request, User user) {
     log.info("User {} sending text message to room {}", user.getUsername(), request.getRoomId());
 
-    Room room = roomRepository.findByIdAndDeletedAtIsNull(request.getRoomId())
-            .orElseThrow(() -> new ResourceNotFoundException("Sala no encontrada"));
-
-    UserSession session = sessionRepository.findByUserAndRoomAndIsActiveTrue(user, room)
-            .orElseThrow(() -> new BadRequestException("No estás conectado a esta sala"));
-
-    Message message = Message.builder()
-            .content(request.getContent())
-            .messageType(MessageType.TEXT)
-            .user(user)
-            .room(room)
-            .session(session)
-            .isEdited(false)
-            .isDeleted(false)
-            .build();
+    Message message = transactionTemplate.execute(status -> {
+      Room room = roomRepository.findByIdAndDeletedAtIsNull(request.getRoomId())
+              .orElseThrow(() -> new ResourceNotFoundException("Sala no encontrada"));
+
+      UserSession session = sessionRepository.findByUserAndRoomAndIsActiveTrue(user, room)
+              .orElseThrow(() -> new BadRequestException("No estás conectado a esta sala"));
+
+      Message built = Message.builder()
+              .content(request.getContent())
+              .messageType(MessageType.TEXT)
+              .user(user)
+              .room(room)
+              .session(session)
+              .isEdited(false)
+              .isDeleted(false)
+              .build();
+      if (writeBehind.isPresent()) {
+        // el INSERT se hace en lote desde la cola; sentAt se fija aquí porque no pasa por Hibernate
+        built.setSentAt(LocalDateTime.now());
+        return built;
+      }
+      return messageRepository.save(built);
+    });
 
-    message = messageRepository.save(message);
+    if (writeBehind.isPresent()) {
+      message = writeBehind.get().submit(message);
+    }
     log.info("Text message sent successfully: {}", message.getId());
 
     MessageResponse response = MessageMapper.toMessageResponse(message);
-    messagingTemplate.convertAndSend( //convertAndSend envia el mensaje a todos los que estan suscritos al topic
-            "/topic/room/" + room.getId(),
-            response
-    );
+    eventPublisher.publishEvent(new MessageBroadcastEvent(message.getRoom().getId(), response)); // ya guardado (o encolado): se difunde al topic de la sala
 
     return response;
   }
 
   @Override
-  @Transactional
   public MessageResponse sendFileMessage(Long roomId, String content, MultipartFile file, User user) {
+    try (InputStream body = file.getInputStream()) {
+      return sendFileStream(roomId, content, file.getOriginalFilename(), file.getContentType(), file.getSize(), body, user);
+    } catch (IOException e) {
+      log.error("Error reading uploaded file", e);
+      throw new BadRequestException("Error al subir el archivo");
+    }
+  }
+
+  // Sin @Transactional: el cuerpo se recibe sin ocupar una conexión; solo el guardado final es transaccional
+  @Override
+  public MessageResponse sendFileStream(Long roomId, String content, String originalFileName, String contentType,
+                                        long declaredSize, InputStream body, User user) {
     log.info("User {} sending file message to room {}", user.getUsername(), roomId);
 
     Room room = roomRepository.findByIdAndDeletedAtIsNull(roomId)
@@ -92,17 +142,42 @@ public class MessageServiceImpl implements MessageService {
     UserSession session = sessionRepository.findByUserAndRoomAndIsActiveTrue(user, room)
             .orElseThrow(() -> new BadRequestException("No estás conectado a esta sala"));
 
-    if (file.isEmpty()) {
+    if (declaredSize == 0) {
       throw new BadRequestException("El archivo está vacío");
     }
 
-    long fileSizeInMb = file.getSize() / (1024 * 1024);
-    if (fileSizeInMb > room.getMaxFileSizeMb()) {
-      throw new BadRequestException(
+    // Si el cliente declara el tamaño se rechaza antes de leer un solo byte
+    long maxBytes = DataSize.ofMegabytes(room.getMaxFileSizeMb()).toBytes();
+    if (declaredSize > maxBytes) {
+      throw new FileTooLargeException(
               String.format("El archivo excede el tamaño máximo permitido de %dMB", room.getMaxFileSizeMb())
       );
     }
 
+    StagedUpload staged;
+    try {
+      staged = attachmentStaging.stage(body, maxBytes);
+    } catch (IOException e) {
+      log.error("Error staging uploaded file", e);
+      throw new BadRequestException("Error al subir el archivo");
+    }
+
+    if (staged.getSize() == 0) {
+      attachmentStaging.discard(staged.getPath());
+      throw new BadRequestException("El archivo está vacío");
+    }
+
+    try {
+      return transactionTemplate.execute(status ->
+              saveFileMessage(room, session, user, content, originalFileName, contentType, staged));
+    } catch (RuntimeException e) {
+      attachmentStaging.discard(staged.getPath());
+      throw e;
+    }
+  }
+
+  private MessageResponse saveFileMessage(Room room, UserSession session, User user, String content,
+                                          String originalFileName, String contentType, StagedUpload staged) {
     // Crear el mensaje base
     Message message = Message.builder()
             .content(content != null ? content : "Archivo adjunto")
@@ -116,106 +191,217 @@ public class MessageServiceImpl implements MessageService {
 
     message = messageRepository.save(message);
 
-    try {
-      String originalFilename = file.getOriginalFilename();
-      String mimeType = file.getContentType();
-
-      // Detectar si es image, video o raw (PDF, ZIP, DOCX...)
-      String resourceType = getResourceType(mimeType);
+    // Mismo contenido ya almacenado: se reutiliza el objeto y no hace falta subir nada
+    Optional<StoredObject> existing = storedObjectRepository
+            .findFirstByContentHashAndRefCountGreaterThanOrderByIdAsc(staged.getSha256(), 0)
+            .filter(object -> storedObjectRepository.acquire(object.getId()) == 1);
+
+    if (existing.isPresent()) {
+      StoredObject object = existing.get();
+      Attachment attachment = attachmentRepository.save(Attachment.builder()
+              .fileName(object.getFileName())
+              .originalFileName(originalFileName)
+              .fileType(contentType)
+              .fileSize(staged.getSize())
+              .filePath(object.getFilePath())
+              .fileUrl(object.getFileUrl())
+              .imageWidth(object.getImageWidth())
+              .imageHeight(object.getImageHeight())
+              .previewUrl(object.getPreviewUrl())
+              .previewWidth(object.getPreviewWidth())
+              .previewHeight(object.getPreviewHeight())
+              .contentHash(staged.getSha256())
+              .storedObject(object)
+              .status(AttachmentStatus.READY)
+              .message(message)
+              .build());
+      message.getAttachments().add(attachment);
+      attachmentStaging.discard(staged.getPath());
+      log.info("File message {} reuses stored object {}", message.getId(), object.getId());
+
+      MessageResponse response = MessageMapper.toMessageResponse(message);
+      eventPublisher.publishEvent(new MessageBroadcastEvent(room.getId(), response));
+      return response;
+    }
 
-      log.info("Detected resourceType: {} for mimeType: {}", resourceType, mimeType);
+    Attachment attachment = Attachment.builder()
+            .fileName(staged.getPath().getFileName().toString())
+            .originalFileName(originalFileName)
+            .fileType(contentType)
+            .fileSize(staged.getSize())
+            .filePath("")
+            .fileUrl("")
+            .contentHash(staged.getSha256())
+            .status(AttachmentStatus.PENDING)
+            .message(message)
+            .build();
 
-      @SuppressWarnings("unchecked")
-      var uploadResult = cloudinary.uploader().upload(
-              file.getBytes(),
-              ObjectUtils.asMap(
-                      "resource_type", resourceType,
-                      "folder", "chat_real_time"
-              )
-      );
+    attachment = attachmentRepository.save(attachment);
+    message.getAttachments().add(attachment);
+    log.info("File message {} saved, attachment {} pending upload", message.getId(), attachment.getId());
 
-      log.info("Cloudinary upload result: {}", uploadResult);
+    // La sala recibe el mensaje cuando el archivo ya está disponible (completeAttachmentUpload)
+    eventPublisher.publishEvent(new AttachmentUploadEvent(
+            attachment.getId(), staged.getPath(), originalFileName, contentType));
 
-      String secureUrl = (String) uploadResult.get("secure_url");
-      String publicId = (String) uploadResult.get("public_id");
-      String cloudinaryFormat = (String) uploadResult.get("format");
+    return MessageMapper.toMessageResponse(message);
+  }
 
-      String extension = "";
-      if (originalFilename != null && originalFilename.contains(".")) {
-        extension = originalFilename.substring(originalFilename.lastIndexOf(".")); // ej: .pdf .zip .docx
-      }
-      if (cloudinaryFormat != null && !cloudinaryFormat.isBlank()) {
-        extension = "." + cloudinaryFormat;  // ej: .png .jpg
-      }
-      String storedFileName = publicId + extension;
-
-      Attachment attachment = Attachment.builder()
-              .fileName(storedFileName)
-              .originalFileName(originalFilename)
-              .fileType(mimeType)
-              .fileSize(file.getSize())
-              .filePath(publicId)
-              .fileUrl(secureUrl)
-              .message(message)
-              .build();
+  @Override
+  @Transactional
+  public void completeAttachmentUpload(Long attachmentId, StoredFile storedFile, ImagePreview preview) {
+    Attachment attachment = attachmentRepository.findById(attachmentId)
+            .orElseThrow(() -> new ResourceNotFoundException("Archivo no encontrado"));
+
+    attachment.setFileName(storedFile.getFileName());
+    attachment.setFilePath(storedFile.getFilePath());
+    attachment.setFileUrl(storedFile.getFileUrl());
+    attachment.setStatus(AttachmentStatus.READY);
+    if (preview != null) {
+      attachment.setImageWidth(preview.getSourceWidth());
+      attachment.setImageHeight(preview.getSourceHeight());
+      attachment.setPreviewUrl(preview.getUrl());
+      attachment.setPreviewWidth(preview.getWidth());
+      attachment.setPreviewHeight(preview.getHeight());
+    }
+    String previewPath = preview != null ? preview.getPath() : null;
 
+    Message message = attachment.getMessage();
+    if (Boolean.TRUE.equals(message.getIsDeleted())) {
+      // nadie más apunta al archivo recién subido
       attachmentRepository.save(attachment);
-      log.info("File saved successfully: {}", publicId);
-
-    } catch (IOException e) {
-      log.error("Error uploading file to Cloudinary", e);
-      throw new BadRequestException("Error al subir el archivo");
+      eventPublisher.publishEvent(new StoredObjectReleasedEvent(
+              storedFile.getFilePath(), attachment.getFileType(), previewPath));
+      log.info("Message {} was deleted while its attachment was uploading", message.getId());
+      return;
     }
 
-    MessageResponse response = MessageMapper.toMessageResponse(message);
-
-    messagingTemplate.convertAndSend(
-            "/topic/room/" + room.getId(),
-            response
-    );
+    if (attachment.getContentHash() != null) {
+      StoredObject object = storedObjectRepository.save(StoredObject.builder()
+              .contentHash(attachment.getContentHash())
+              .fileName(storedFile.getFileName())
+              .filePath(storedFile.getFilePath())
+              .fileUrl(storedFile.getFileUrl())
+              .fileType(attachment.getFileType())
+              .fileSize(attachment.getFileSize())
+              .imageWidth(attachment.getImageWidth())
+              .imageHeight(attachment.getImageHeight())
+              .previewPath(previewPath)
+              .previewUrl(attachment.getPreviewUrl())
+              .previewWidth(attachment.getPreviewWidth())
+              .previewHeight(attachment.getPreviewHeight())
+              .refCount(1)
+              .build());
+      attachment.setStoredObject(object);
+    }
+    attachmentRepository.save(attachment);
 
-    return response;
+    eventPublisher.publishEvent(new MessageBroadcastEvent(
+            message.getRoom().getId(),
+            MessageMapper.toMessageResponse(message)
+    ));
   }
 
-
-  private String getResourceType(String mimeType) {
-    if (mimeType == null) return "raw";
-
-    if (mimeType.startsWith("image/")) return "image";
-    if (mimeType.startsWith("video/")) return "video";
-    return "raw";
+  @Override
+  @Transactional
+  public void failAttachmentUpload(Long attachmentId) {
+    attachmentRepository.findById(attachmentId).ifPresent(attachment -> {
+      attachment.setStatus(AttachmentStatus.FAILED);
+      attachmentRepository.save(attachment);
+    });
   }
 
 
   @Override
   @Transactional(readOnly = true)
   public List<MessageResponse> getRoomMessages(Long roomId, User user) {
+    return getRoomMessagesPage(roomId, null, DEFAULT_PAGE_SIZE, user).getMessages();
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public MessagePageResponse getRoomMessagesPage(Long roomId, String before, Integer limit, User user) {
     Room room = roomRepository.findByIdAndDeletedAtIsNull(roomId)
             .orElseThrow(() -> new ResourceNotFoundException("Sala no encontrada"));
 
     sessionRepository.findByUserAndRoomAndIsActiveTrue(user, room)
             .orElseThrow(() -> new UnauthorizedException("No estás conectado a esta sala"));
 
-    return messageRepository.findByRoomAndIsDeletedFalseOrderBySentAtDesc(room)
-            .stream()
-            .map(MessageMapper::toMessageResponse)
-            .collect(Collectors.toList());
+    int pageSize = resolvePageSize(limit);
+    Long beforeId = MessageCursor.decode(before);
+
+    // se pide un elemento extra para saber si hay mas paginas sin hacer un COUNT
+    PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+    List<MessageResponse> responses;
+    if (beforeId == null) {
+      // primera página (al entrar o reconectar): sale de memoria si la sala está en el buffer
+      responses = recentMessageBuffer.recent(room, pageSize + 1);
+    } else {
+      LocalDateTime sentBefore = sentBeforeBound(beforeId);
+      List<Message> messages = sentBefore == null
+              ? messageRepository.findByRoomAndIsDeletedFalseAndIdLessThanOrderByIdDesc(room, beforeId, pageRequest)
+              : messageRepository.findByRoomAndIsDeletedFalseAndIdLessThanAndSentAtBeforeOrderByIdDesc(
+                      room, beforeId, sentBefore, pageRequest);
+      responses = messages.stream()
+              .map(MessageMapper::toMessageResponse)
+              .collect(Collectors.toList());
+    }
+
+    // La tabla caliente se agotó antes de llenar la página: se sigue leyendo del archivo con el mismo cursor
+    if (responses.size() <= pageSize) {
+      Long archiveBefore = responses.isEmpty() ? beforeId : responses.get(responses.size() - 1).getId();
+      responses.addAll(messageArchive.readBefore(room.getId(), archiveBefore, pageSize + 1 - responses.size()));
+    }
+
+    boolean hasMore = responses.size() > pageSize;
+    if (hasMore) {
+      responses = responses.subList(0, pageSize);
+    }
+
+    return MessagePageResponse.builder()
+            .messages(responses)
+            .nextCursor(hasMore ? MessageCursor.encode(responses.get(responses.size() - 1).getId()) : null)
+            .hasMore(hasMore)
+            .build();
+  }
+
+  // Cota de sent_at deducida del cursor; null para ids autoincrementales anteriores a Snowflake
+  private LocalDateTime sentBeforeBound(Long beforeId) {
+    Instant createdAt = SnowflakeIdGenerator.timestampOf(beforeId);
+    if (createdAt.isBefore(Instant.ofEpochMilli(SnowflakeIdGenerator.EPOCH_MS).plus(CURSOR_SENT_AT_SLACK))) {
+      return null;
+    }
+    return LocalDateTime.ofInstant(createdAt.plus(CURSOR_SENT_AT_SLACK), ZoneId.systemDefault());
+  }
+
+  private int resolvePageSize(Integer limit) {
+    if (limit == null) return DEFAULT_PAGE_SIZE;
+    if (limit < 1) {
+      throw new BadRequestException("El límite debe ser mayor a 0");
+    }
+    return Math.min(limit, MAX_PAGE_SIZE);
   }
 
   @Override
   @Transactional(readOnly = true)
   public MessageResponse getMessageById(Long messageId) {
-    Message message = messageRepository.findById(messageId)
+    Optional<Message> message = messageRepository.findById(messageId);
+    if (message.isPresent()) {
+      return MessageMapper.toMessageResponse(message.get());
+    }
+    // ya archivado: el chunk conserva el mensaje con sus adjuntos
+    return messageArchive.findById(messageId)
             .orElseThrow(() -> new ResourceNotFoundException("Mensaje no encontrado"));
-
-    return MessageMapper.toMessageResponse(message);
   }
 
   @Override
   @Transactional
   public void deleteMessage(Long messageId, User user) {
-    Message message = messageRepository.findById(messageId)
-            .orElseThrow(() -> new ResourceNotFoundException("Mensaje no encontrado"));
+    Message message = messageRepository.findById(messageId).orElse(null);
+    if (message == null) {
+      deleteArchivedMessage(messageId, user);
+      return;
+    }
 
     if (!message.getUser().getId().equals(user.getId())) {
       throw new UnauthorizedException("No tienes permiso para eliminar este mensaje");
@@ -224,13 +410,64 @@ public class MessageServiceImpl implements MessageService {
     message.setIsDeleted(true);
     message.setDeletedAt(LocalDateTime.now());
     messageRepository.save(message);
+    releaseStoredObjects(message);
 
 
-    messagingTemplate.convertAndSend(
-            "/topic/room/" + message.getRoom().getId(),
+    eventPublisher.publishEvent(new MessageBroadcastEvent(
+            message.getRoom().getId(),
             MessageMapper.toMessageResponse(message)
-    );
+    ));
 
     log.info("Message {} deleted by user {}", messageId, user.getUsername());
   }
-}
\ No newline at end of file
+
+  // Ya archivado: se quita de su chunk y sus adjuntos sueltan las referencias que conservaban en el archivo
+  private void deleteArchivedMessage(Long messageId, User user) {
+    MessageResponse archived = messageArchive.findById(messageId)
+            .orElseThrow(() -> new ResourceNotFoundException("Mensaje no encontrado"));
+
+    if (!user.getId().equals(archived.getSenderId())) {
+      throw new UnauthorizedException("No tienes permiso para eliminar este mensaje");
+    }
+
+    messageArchive.delete(messageId);
+    messagePurger.releaseArchived(List.of(messageId));
+    // copia: la instancia archivada puede estar compartida en la caché de chunks
+    MessageResponse deleted = MessageResponse.builder()
+            .id(archived.getId())
+            .roomId(archived.getRoomId())
+            .senderId(archived.getSenderId())
+            .senderNickname(archived.getSenderNickname())
+            .messageType(archived.getMessageType())
+            .sentAt(archived.getSentAt())
+            .content("")
+            .attachments(List.of())
+            .isDeleted(true)
+            .build();
+    eventPublisher.publishEvent(new MessageBroadcastEvent(archived.getRoomId(), deleted));
+
+    log.info("Archived message {} deleted by user {}", messageId, user.getUsername());
+  }
+
+  // Cada adjunto suelta su referencia; el objeto se borra del almacenamiento cuando nadie más lo usa
+  private void releaseStoredObjects(Message message) {
+    List<StoredObject> released = new ArrayList<>();
+    for (Attachment attachment : message.getAttachments()) {
+      if (attachment.getStoredObject() != null) {
+        released.add(attachment.getStoredObject());
+        attachment.setStoredObject(null);
+      }
+    }
+    if (released.isEmpty()) return;
+
+    // la FK debe quedar libre antes de intentar borrar el objeto
+    attachmentRepository.saveAllAndFlush(message.getAttachments());
+    for (StoredObject object : released) {
+      storedObjectRepository.release(object.getId());
+      if (storedObjectRepository.deleteIfUnreferenced(object.getId()) == 1) {
+        eventPublisher.publishEvent(new StoredObjectReleasedEvent(
+                object.getFilePath(), object.getFileType(), object.getPreviewPath()));
+      }
+    }
+  }
+}
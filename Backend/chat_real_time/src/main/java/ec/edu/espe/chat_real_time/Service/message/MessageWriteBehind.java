@@ -0,0 +1,191 @@
+package ec.edu.espe.chat_real_time.Service.message;
+
+import ec.edu.espe.chat_real_time.model.message.Message;
+import ec.edu.espe.chat_real_time.utils.SnowflakeIdGenerator;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Escritura diferida de mensajes de texto: cola acotada y un hilo que inserta por lotes con JDBC
+@Component
+@ConditionalOnProperty(name = "app.messages.write-behind.enabled", havingValue = "true")
+@Slf4j
+public class MessageWriteBehind {
+
+  private static final String INSERT_SQL = "INSERT INTO messages "
+          + "(id, content, message_type, sent_at, is_edited, is_deleted, user_id, room_id, session_id) "
+          + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final SnowflakeIdGenerator idGenerator;
+  private final BlockingQueue<PendingMessage> queue;
+  private final int batchSize;
+  private final long flushIntervalNanos;
+  private final long enqueueTimeoutMs;
+  private final WriteBehindDurability durability;
+  private final Thread writer;
+  private volatile boolean running = true;
+
+  public MessageWriteBehind(
+          JdbcTemplate jdbcTemplate,
+          TransactionTemplate transactionTemplate,
+          SnowflakeIdGenerator idGenerator,
+          @Value("${app.messages.write-behind.queue-capacity:20000}") int queueCapacity,
+          @Value("${app.messages.write-behind.batch-size:500}") int batchSize,
+          @Value("${app.messages.write-behind.flush-interval-ms:5}") long flushIntervalMs,
+          @Value("${app.messages.write-behind.enqueue-timeout-ms:50}") long enqueueTimeoutMs,
+          @Value("${app.messages.write-behind.durability:ASYNC}") WriteBehindDurability durability) {
+    this.jdbcTemplate = jdbcTemplate;
+    // transacción propia también cuando escribe el hilo que envía (cola llena): un lote fallido
+    // no debe dejar en rollback-only una transacción del llamador
+    this.transactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+    this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.idGenerator = idGenerator;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.batchSize = batchSize;
+    this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+    this.enqueueTimeoutMs = enqueueTimeoutMs;
+    this.durability = durability;
+    this.writer = new Thread(this::run, "message-write-behind");
+    this.writer.start();
+    log.info("Message write-behind enabled: batch={}, flush={}ms, durability={}", batchSize, flushIntervalMs, durability);
+  }
+
+  // Asigna el id y encola; con BATCH_COMMIT vuelve cuando el lote ya está en la BD.
+  // El llamador no debe retener una conexión mientras espera: el hilo escritor necesita una del mismo pool
+  public Message submit(Message message) {
+    message.setId(idGenerator.nextId());
+    PendingMessage pending = new PendingMessage(message, new CompletableFuture<>());
+    if (!offer(pending)) {
+      // cola llena: escribe el propio hilo, como CallerRunsPolicy en los pools de adjuntos
+      write(List.of(pending));
+    }
+    if (durability == WriteBehindDurability.BATCH_COMMIT) {
+      await(pending.getPersisted());
+    }
+    return message;
+  }
+
+  public int pending() {
+    return queue.size();
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    running = false;
+    writer.interrupt();
+    writer.join(TimeUnit.SECONDS.toMillis(30));
+    log.info("Message write-behind stopped, {} messages left unwritten", queue.size());
+  }
+
+  private boolean offer(PendingMessage pending) {
+    try {
+      return running && queue.offer(pending, enqueueTimeoutMs, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private void await(CompletableFuture<Void> persisted) {
+    try {
+      persisted.get(30, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("No se pudo guardar el mensaje", e);
+    } catch (ExecutionException | TimeoutException e) {
+      throw new IllegalStateException("No se pudo guardar el mensaje", e);
+    }
+  }
+
+  private void run() {
+    List<PendingMessage> batch = new ArrayList<>(batchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) continue;
+        batch.add(first);
+        // se espera como mucho flush-interval-ms a que el lote se llene
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize && running) {
+          queue.drainTo(batch, batchSize - batch.size());
+          long remaining = deadline - System.nanoTime();
+          if (batch.size() >= batchSize || remaining <= 0) break;
+          PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+          if (next == null) break;
+          batch.add(next);
+        }
+      } catch (InterruptedException e) {
+        // al apagar se sigue vaciando la cola sin esperas
+        queue.drainTo(batch, batchSize - batch.size());
+      }
+      if (!batch.isEmpty()) {
+        write(batch);
+        batch.clear();
+      }
+    }
+  }
+
+  private void write(List<PendingMessage> batch) {
+    try {
+      transactionTemplate.executeWithoutResult(status ->
+              jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), this::bind));
+      batch.forEach(pending -> pending.getPersisted().complete(null));
+    } catch (DataAccessException e) {
+      log.warn("Batch insert of {} messages failed, retrying one by one: {}", batch.size(), e.getMessage());
+      batch.forEach(this::writeOne);
+    }
+  }
+
+  // Un mensaje inválido (sala o sesión ya borradas) no debe arrastrar al resto del lote
+  private void writeOne(PendingMessage pending) {
+    try {
+      transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, pending)));
+      pending.getPersisted().complete(null);
+    } catch (DataAccessException e) {
+      log.error("Dropping message {} from write-behind queue: {}", pending.getMessage().getId(), e.getMessage());
+      pending.getPersisted().completeExceptionally(e);
+    }
+  }
+
+  private void bind(PreparedStatement ps, PendingMessage pending) throws SQLException {
+    Message message = pending.getMessage();
+    ps.setLong(1, message.getId());
+    ps.setString(2, message.getContent());
+    ps.setString(3, message.getMessageType().name());
+    ps.setTimestamp(4, Timestamp.valueOf(message.getSentAt()));
+    ps.setBoolean(5, Boolean.TRUE.equals(message.getIsEdited()));
+    ps.setBoolean(6, Boolean.TRUE.equals(message.getIsDeleted()));
+    ps.setLong(7, message.getUser().getId());
+    ps.setLong(8, message.getRoom().getId());
+    ps.setLong(9, message.getSession().getId());
+  }
+
+  @Getter
+  @AllArgsConstructor
+  private static class PendingMessage {
+    private final Message message;
+    private final CompletableFuture<Void> persisted;
+  }
+}
@@ -0,0 +1,130 @@
+package ec.edu.espe.chat_real_time.Service.message;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import ec.edu.espe.chat_real_time.Service.websocket.MessageBroadcastEvent;
+import ec.edu.espe.chat_real_time.dto.mapperDTO.MessageMapper;
+import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
+import ec.edu.espe.chat_real_time.model.room.Room;
+import ec.edu.espe.chat_real_time.repository.MessageRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Últimos mensajes de cada sala en memoria para unirse y reconectar sin ir a la BD.
+// Se alimenta de los mensajes confirmados (mismo evento que la difusión) y se descarta por inactividad o por presupuesto de heap.
+// Con broker relay (varias réplicas) queda desactivado salvo que se active explícitamente: cada nodo solo ve
+// los mensajes que se envían a través de él.
+@Component
+public class RecentMessageBuffer {
+
+  private final MessageRepository messageRepository;
+  private final boolean enabled;
+  private final int capacity;
+  private final Cache<Long, RecentMessageRing> rings;
+
+  @Autowired
+  public RecentMessageBuffer(
+          MessageRepository messageRepository,
+          @Value("${app.messages.recent-buffer.enabled:}") Boolean enabled,
+          @Value("${app.websocket.broker.mode:simple}") String brokerMode,
+          @Value("${app.messages.recent-buffer.capacity:100}") int capacity,
+          @Value("${app.messages.recent-buffer.idle-minutes:10}") long idleMinutes,
+          @Value("${app.messages.recent-buffer.max-heap:64MB}") DataSize maxHeap) {
+    this(messageRepository, enabled != null ? enabled : !"relay".equalsIgnoreCase(brokerMode),
+            capacity, idleMinutes, maxHeap);
+  }
+
+  public RecentMessageBuffer(MessageRepository messageRepository, boolean enabled, int capacity,
+                             long idleMinutes, DataSize maxHeap) {
+    this.messageRepository = messageRepository;
+    this.enabled = enabled;
+    this.capacity = capacity;
+    this.rings = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+            .maximumWeight(maxHeap.toBytes())
+            .weigher((Long roomId, RecentMessageRing ring) -> ring.weight())
+            .build();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  // Hasta limit mensajes visibles, del más nuevo al más antiguo. Debe llamarse dentro de una transacción (carga adjuntos)
+  public List<MessageResponse> recent(Room room, int limit) {
+    if (!enabled || limit > capacity) {
+      return load(room, limit);
+    }
+    RecentMessageRing ring = rings.get(room.getId(), id -> new RecentMessageRing(capacity));
+    List<MessageResponse> cached = ring.newest(limit);
+    if (cached != null) {
+      return cached;
+    }
+    if (ring.isLoaded()) {
+      // los borrados lo dejaron con menos mensajes de los pedidos: se recarga entero
+      rings.asMap().remove(room.getId(), ring);
+      ring = rings.get(room.getId(), id -> new RecentMessageRing(capacity));
+    }
+    if (!ring.startLoading()) {
+      return load(room, limit);
+    }
+    List<MessageResponse> loaded;
+    try {
+      loaded = load(room, capacity);
+    } catch (RuntimeException e) {
+      // que el siguiente lector vuelva a intentarlo en lugar de quedar para siempre "cargando"
+      rings.asMap().remove(room.getId(), ring);
+      throw e;
+    }
+    ring.fill(loaded, loaded.size() < capacity);
+    reweigh(room.getId(), ring);
+    List<MessageResponse> filled = ring.newest(limit);
+    return filled != null ? filled : new ArrayList<>(loaded.subList(0, Math.min(limit, loaded.size())));
+  }
+
+  // Solo se actualizan las salas ya en memoria; las demás se cargan de la BD cuando alguien las lea
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onMessageBroadcast(MessageBroadcastEvent event) {
+    if (!enabled) return;
+    RecentMessageRing ring = rings.asMap().get(event.getRoomId());
+    if (ring == null) return;
+    MessageResponse message = event.getMessage();
+    if (message.isDeleted()) {
+      ring.remove(message.getId());
+    } else {
+      ring.upsert(message);
+    }
+    reweigh(event.getRoomId(), ring);
+  }
+
+  public long estimatedBytes() {
+    rings.cleanUp();
+    return rings.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+  }
+
+  public long size() {
+    return rings.estimatedSize();
+  }
+
+  // Caffeine solo pesa al insertar: se vuelve a poner el mismo anillo, salvo que ya lo hayan desalojado
+  private void reweigh(Long roomId, RecentMessageRing ring) {
+    rings.asMap().replace(roomId, ring, ring);
+  }
+
+  private List<MessageResponse> load(Room room, int limit) {
+    return messageRepository.findByRoomAndIsDeletedFalseOrderByIdDesc(room, PageRequest.of(0, limit))
+            .stream()
+            .map(MessageMapper::toMessageResponse)
+            .collect(Collectors.toList());
+  }
+}
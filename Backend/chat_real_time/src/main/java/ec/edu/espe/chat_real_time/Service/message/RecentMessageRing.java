@@ -0,0 +1,147 @@
+package ec.edu.espe.chat_real_time.Service.message;
+
+import ec.edu.espe.chat_real_time.dto.response.AttachmentResponse;
+import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Últimos mensajes visibles de una sala en un array circular ordenado por id (el más antiguo en head)
+class RecentMessageRing {
+
+  // Estimaciones conservadoras de la huella en heap (cabeceras, referencias y String a 2 bytes por carácter)
+  private static final long RING_OVERHEAD = 96;
+  private static final long MESSAGE_OVERHEAD = 176;
+  private static final long ATTACHMENT_OVERHEAD = 208;
+  private static final long STRING_OVERHEAD = 40;
+
+  private final MessageResponse[] slots;
+  private int head;
+  private int size;
+  private long bytes;
+  private boolean loading;
+  private boolean loaded;
+  // true si contiene todos los mensajes visibles de la sala
+  private boolean complete;
+  // borrados confirmados mientras se cargaba desde la BD: la carga podría traerlos de vuelta
+  private final Set<Long> removedWhileLoading = new HashSet<>();
+
+  RecentMessageRing(int capacity) {
+    this.slots = new MessageResponse[capacity];
+    this.bytes = RING_OVERHEAD + 8L * capacity;
+  }
+
+  // Solo el primer lector carga la sala; el resto consulta la BD mientras tanto
+  synchronized boolean startLoading() {
+    if (loading || loaded) return false;
+    loading = true;
+    return true;
+  }
+
+  // newestFirst viene de la BD; lo que llegó por eventos durante la carga es más reciente y se conserva
+  synchronized void fill(List<MessageResponse> newestFirst, boolean wholeRoom) {
+    complete = wholeRoom;
+    for (int i = newestFirst.size() - 1; i >= 0; i--) {
+      MessageResponse message = newestFirst.get(i);
+      if (!removedWhileLoading.contains(message.getId()) && indexOf(message.getId()) < 0) {
+        insert(message);
+      }
+    }
+    removedWhileLoading.clear();
+    loading = false;
+    loaded = true;
+  }
+
+  synchronized void upsert(MessageResponse message) {
+    int index = indexOf(message.getId());
+    if (index >= 0) {
+      bytes += estimateBytes(message) - estimateBytes(get(index));
+      set(index, message);
+    } else {
+      insert(message);
+    }
+  }
+
+  synchronized void remove(Long messageId) {
+    if (!loaded) removedWhileLoading.add(messageId);
+    int index = indexOf(messageId);
+    if (index < 0) return;
+    bytes -= estimateBytes(get(index));
+    for (int i = index; i < size - 1; i++) {
+      set(i, get(i + 1));
+    }
+    set(size - 1, null);
+    size--;
+  }
+
+  // null si no puede responder: sin cargar, o con menos mensajes de los pedidos sin tener la sala completa
+  synchronized List<MessageResponse> newest(int limit) {
+    if (!loaded || (size < limit && !complete)) return null;
+    int count = Math.min(limit, size);
+    List<MessageResponse> result = new ArrayList<>(count);
+    for (int i = size - 1; i >= size - count; i--) {
+      result.add(get(i));
+    }
+    return result;
+  }
+
+  synchronized boolean isLoaded() {
+    return loaded;
+  }
+
+  synchronized int weight() {
+    return (int) Math.min(bytes, Integer.MAX_VALUE);
+  }
+
+  // Inserta manteniendo el orden por id: los commits concurrentes pueden llegar desordenados
+  private void insert(MessageResponse message) {
+    if (size == slots.length) {
+      if (message.getId() < get(0).getId()) return;
+      bytes -= estimateBytes(get(0));
+      set(0, null);
+      head = (head + 1) % slots.length;
+      size--;
+      complete = false;
+    }
+    int position = size;
+    while (position > 0 && get(position - 1).getId() > message.getId()) {
+      set(position, get(position - 1));
+      position--;
+    }
+    set(position, message);
+    size++;
+    bytes += estimateBytes(message);
+  }
+
+  private int indexOf(Long messageId) {
+    for (int i = size - 1; i >= 0; i--) {
+      if (get(i).getId().equals(messageId)) return i;
+    }
+    return -1;
+  }
+
+  private MessageResponse get(int index) {
+    return slots[(head + index) % slots.length];
+  }
+
+  private void set(int index, MessageResponse message) {
+    slots[(head + index) % slots.length] = message;
+  }
+
+  static long estimateBytes(MessageResponse message) {
+    long bytes = MESSAGE_OVERHEAD + chars(message.getContent()) + chars(message.getSenderNickname());
+    if (message.getAttachments() != null) {
+      for (AttachmentResponse attachment : message.getAttachments()) {
+        bytes += ATTACHMENT_OVERHEAD + chars(attachment.getFileName()) + chars(attachment.getOriginalFileName())
+                + chars(attachment.getFileType()) + chars(attachment.getFileUrl()) + chars(attachment.getPreviewUrl());
+      }
+    }
+    return bytes;
+  }
+
+  private static long chars(String value) {
+    return value == null ? 0 : STRING_OVERHEAD + 2L * value.length();
+  }
+}
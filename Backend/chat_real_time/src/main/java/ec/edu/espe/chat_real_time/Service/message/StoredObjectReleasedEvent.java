@@ -0,0 +1,14 @@
+package ec.edu.espe.chat_real_time.Service.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// El último adjunto que usaba el objeto se eliminó: se borra del almacenamiento tras el commit
+@Getter
+@AllArgsConstructor
+public class StoredObjectReleasedEvent {
+  private final String filePath;
+  private final String contentType;
+  // null si el objeto no tiene miniatura
+  private final String previewPath;
+}
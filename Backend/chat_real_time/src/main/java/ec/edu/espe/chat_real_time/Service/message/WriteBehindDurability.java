@@ -0,0 +1,8 @@
+package ec.edu.espe.chat_real_time.Service.message;
+
+public enum WriteBehindDurability {
+  // se responde y se difunde al encolar; lo encolado se pierde si el proceso muere antes del flush
+  ASYNC,
+  // se espera al commit del lote que contiene el mensaje (group commit)
+  BATCH_COMMIT
+}
@@ -0,0 +1,131 @@
+package ec.edu.espe.chat_real_time.Service.room;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class RoomPresenceRegistry {
+
+  // Contador de una sala vacía ya entregada a drainDirty y sacada del mapa: quien aún la tenga reintenta con una nueva
+  private static final int RETIRED = -1;
+
+  private final ConcurrentHashMap<Long, RoomPresence> rooms = new ConcurrentHashMap<>();
+  private final Set<Long> dirtyRooms = ConcurrentHashMap.newKeySet();
+
+  public enum Admission { ADMITTED, ALREADY_PRESENT, FULL }
+
+  // Admisión sin bloqueos: el CAS sobre el contador reserva la plaza antes de publicar al miembro,
+  // así el contador nunca es menor que el set y un leave concurrente no puede dejarlo por debajo de 0
+  public Admission admit(Long roomId, Long userId, int maxUsers) {
+    if (roomId == null || userId == null) {
+      throw new IllegalArgumentException("roomId y userId son obligatorios");
+    }
+    while (true) {
+      RoomPresence presence = rooms.computeIfAbsent(roomId, id -> new RoomPresence());
+      if (presence.members.contains(userId)) return Admission.ALREADY_PRESENT;
+
+      int current;
+      do {
+        current = presence.count.get();
+        if (current == RETIRED || current >= maxUsers) break;
+      } while (!presence.count.compareAndSet(current, current + 1));
+
+      if (current == RETIRED) {
+        rooms.remove(roomId, presence);
+        continue;
+      }
+      if (current >= maxUsers) {
+        return presence.members.contains(userId) ? Admission.ALREADY_PRESENT : Admission.FULL;
+      }
+      if (!presence.members.add(userId)) {
+        // otro ingreso del mismo usuario ganó: se devuelve la plaza reservada
+        presence.count.decrementAndGet();
+        return Admission.ALREADY_PRESENT;
+      }
+      dirtyRooms.add(roomId);
+      return Admission.ADMITTED;
+    }
+  }
+
+  public boolean leave(Long roomId, Long userId) {
+    if (roomId == null || userId == null) return false;
+    RoomPresence presence = rooms.get(roomId);
+    if (presence == null || !presence.members.remove(userId)) return false;
+    // cada miembro tiene su plaza reservada, así que nunca baja de 0; el límite es solo una red de seguridad
+    presence.count.getAndUpdate(current -> current > 0 ? current - 1 : current);
+    dirtyRooms.add(roomId);
+    return true;
+  }
+
+  // Carga inicial desde las sesiones activas, sin aplicar el límite de la sala
+  public void restore(Long roomId, Long userId) {
+    if (roomId == null || userId == null) return;
+    while (true) {
+      RoomPresence presence = rooms.computeIfAbsent(roomId, id -> new RoomPresence());
+      if (presence.members.contains(userId)) return;
+      if (presence.count.getAndUpdate(current -> current == RETIRED ? RETIRED : current + 1) == RETIRED) {
+        rooms.remove(roomId, presence);
+        continue;
+      }
+      if (presence.members.add(userId)) {
+        dirtyRooms.add(roomId);
+      } else {
+        presence.count.decrementAndGet();
+      }
+      return;
+    }
+  }
+
+  public int count(Long roomId) {
+    if (roomId == null) return 0;
+    RoomPresence presence = rooms.get(roomId);
+    return presence == null ? 0 : Math.max(0, presence.count.get());
+  }
+
+  public boolean isPresent(Long roomId, Long userId) {
+    if (roomId == null || userId == null) return false;
+    RoomPresence presence = rooms.get(roomId);
+    return presence != null && presence.members.contains(userId);
+  }
+
+  // Devuelve los contadores modificados desde la última llamada; si cambian mientras tanto vuelven a quedar pendientes.
+  // Una sala que queda en 0 sale del mapa: su 0 ya va en esta entrega y una sala ausente también cuenta 0
+  public Map<Long, Integer> drainDirty() {
+    Map<Long, Integer> snapshot = new HashMap<>();
+    for (Long roomId : dirtyRooms) {
+      dirtyRooms.remove(roomId);
+      int count = count(roomId);
+      snapshot.put(roomId, count);
+      if (count == 0) {
+        retireIfEmpty(roomId);
+      }
+    }
+    return snapshot;
+  }
+
+  public int size() {
+    return rooms.size();
+  }
+
+  private void retireIfEmpty(Long roomId) {
+    RoomPresence presence = rooms.get(roomId);
+    if (presence != null && presence.members.isEmpty() && presence.count.compareAndSet(0, RETIRED)) {
+      rooms.remove(roomId, presence);
+    }
+  }
+
+  public void markDirty(Collection<Long> roomIds) {
+    dirtyRooms.addAll(roomIds);
+  }
+
+  private static final class RoomPresence {
+    private final AtomicInteger count = new AtomicInteger();
+    private final Set<Long> members = ConcurrentHashMap.newKeySet();
+  }
+}
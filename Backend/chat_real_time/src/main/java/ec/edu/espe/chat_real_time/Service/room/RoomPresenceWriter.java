@@ -0,0 +1,52 @@
+package ec.edu.espe.chat_real_time.Service.room;
+
+import ec.edu.espe.chat_real_time.repository.RoomRepository;
+import ec.edu.espe.chat_real_time.repository.UserSessionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+
+// Persiste en segundo plano el contador current_users de las salas
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RoomPresenceWriter {
+
+  private final RoomPresenceRegistry presenceRegistry;
+  private final RoomRepository roomRepository;
+  private final UserSessionRepository sessionRepository;
+
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional
+  public void restoreFromActiveSessions() {
+    roomRepository.resetCurrentUsers();
+    List<Object[]> memberships = sessionRepository.findActiveRoomMemberships();
+    for (Object[] membership : memberships) {
+      presenceRegistry.restore((Long) membership[0], (Long) membership[1]);
+    }
+    log.info("Restored room presence from {} active sessions", memberships.size());
+    flush();
+  }
+
+  @Scheduled(fixedDelayString = "${app.rooms.presence-flush-ms:5000}")
+  @Transactional
+  public void flush() {
+    Map<Long, Integer> counts = presenceRegistry.drainDirty();
+    if (counts.isEmpty()) return;
+    try {
+      counts.forEach(roomRepository::updateCurrentUsers);
+    } catch (RuntimeException e) {
+      presenceRegistry.markDirty(counts.keySet());
+      log.warn("Could not flush presence counters, retrying on next run: {}", e.getMessage());
+      throw e;
+    }
+    log.debug("Flushed presence counters for {} rooms", counts.size());
+  }
+}
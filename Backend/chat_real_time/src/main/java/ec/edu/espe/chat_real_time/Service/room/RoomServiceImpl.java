@@ -3,6 +3,8 @@ package ec.edu.espe.chat_real_time.Service.room;
 
 import ec.edu.espe.chat_real_time.Service.HttpRequestService;
 import ec.edu.espe.chat_real_time.Service.device.DeviceSessionService;
+import ec.edu.espe.chat_real_time.Service.message.RecentMessageBuffer;
+import ec.edu.espe.chat_real_time.Service.room.RoomPresenceRegistry.Admission;
 import ec.edu.espe.chat_real_time.Service.websocket.WebSocketService;
 import ec.edu.espe.chat_real_time.dto.mapperDTO.RoomMapper;
 import ec.edu.espe.chat_real_time.dto.request.CreateRoomRequest;
@@ -17,7 +19,6 @@ import ec.edu.espe.chat_real_time.exception.RoomFullException;
 import ec.edu.espe.chat_real_time.model.room.Room;
 import ec.edu.espe.chat_real_time.model.user.User;
 import ec.edu.espe.chat_real_time.model.user.UserSession;
-import ec.edu.espe.chat_real_time.repository.MessageRepository;
 import ec.edu.espe.chat_real_time.repository.RoomRepository;
 import ec.edu.espe.chat_real_time.repository.UserSessionRepository;
 import ec.edu.espe.chat_real_time.utils.PinGenerator;
@@ -38,14 +39,17 @@ import java.util.stream.Collectors;
 @Slf4j
 public class RoomServiceImpl implements RoomService {
 
+    private static final int RECENT_MESSAGES_LIMIT = 50;
+
     private final RoomRepository roomRepository;
     private final UserSessionRepository sessionRepository;
-    private final MessageRepository messageRepository;
     private final PasswordEncoder passwordEncoder;
     private final PinGenerator pinGeneratorService;
     private final DeviceSessionService deviceSessionService;
     private final HttpRequestService httpRequestService;
     private final WebSocketService webSocketService;
+    private final RoomPresenceRegistry presenceRegistry;
+    private final RecentMessageBuffer recentMessageBuffer;
 
     @Override
     @Transactional
@@ -98,10 +102,6 @@ public class RoomServiceImpl implements RoomService {
             throw new BadRequestException("PIN incorrecto");
         }
 
-        if (room.isFull()) {
-            throw new RoomFullException("La sala está llena");
-        }
-
         String deviceId = request.getDeviceId();
         if (deviceId == null || deviceId.isBlank()) {
             deviceId = deviceSessionService.generateDeviceFingerprint(
@@ -114,27 +114,38 @@ public class RoomServiceImpl implements RoomService {
         String clientIp = httpRequestService.getClientIpAddress(httpRequest);
         deviceSessionService.validateUniqueSession(user, deviceId, clientIp);
 
+        // La admisión es atómica: dos uniones simultáneas no pueden superar maxUsers ni duplicar al usuario
+        Admission admission = presenceRegistry.admit(room.getId(), user.getId(), room.getMaxUsers());
+        if (admission == Admission.FULL) {
+            throw new RoomFullException("La sala está llena");
+        }
+        if (admission == Admission.ALREADY_PRESENT) {
+            throw new BadRequestException("Ya estás conectado a esta sala");
+        }
 
-        UserSession session = UserSession.builder()
-                .user(user)
-                .room(room)
-                .deviceId(deviceId)
-                .ipAddress(clientIp)
-                .userAgent(httpRequest.getHeader("User-Agent"))
-                .isActive(true)
-                .build();
+        try {
+            UserSession session = UserSession.builder()
+                    .user(user)
+                    .room(room)
+                    .deviceId(deviceId)
+                    .ipAddress(clientIp)
+                    .userAgent(httpRequest.getHeader("User-Agent"))
+                    .isActive(true)
+                    .build();
 
-        sessionRepository.save(session);
+            sessionRepository.save(session);
 
-        room.incrementCurrentUsers();
-        roomRepository.save(room);
-
-        webSocketService.notifyUserJoinedRoom(room.getId(), user);
+            webSocketService.notifyUserJoinedRoom(room.getId(), user);
 
-        log.info("User {} joined room {} successfully from device {} (IP: {})",
-                user.getUsername(), room.getRoomCode(), deviceId, clientIp);
+            log.info("User {} joined room {} successfully from device {} (IP: {})",
+                    user.getUsername(), room.getRoomCode(), deviceId, clientIp);
 
-        return getRoomDetails(room.getId());
+            return getRoomDetails(room.getId());
+        } catch (RuntimeException e) {
+            // libera el cupo reservado si la unión no llega a completarse
+            presenceRegistry.leave(room.getId(), user.getId());
+            throw e;
+        }
     }
 
     @Override
@@ -152,8 +163,7 @@ public class RoomServiceImpl implements RoomService {
         session.setLeftAt(LocalDateTime.now());
         sessionRepository.save(session);
 
-        room.decrementCurrentUsers();
-        roomRepository.save(room);
+        presenceRegistry.leave(roomId, user.getId());
         webSocketService.notifyUserLeftRoom(roomId, user);
         log.info("User {} left room {} successfully", user.getUsername(), room.getRoomCode());
     }
@@ -164,7 +174,7 @@ public class RoomServiceImpl implements RoomService {
         Room room = roomRepository.findByRoomCodeAndDeletedAtIsNull(roomCode)
                 .orElseThrow(() -> new ResourceNotFoundException("Sala no encontrada"));
 
-        return RoomMapper.toRoomResponse(room);
+        return toRoomResponse(room);
     }
 
     @Override
@@ -179,28 +189,10 @@ public class RoomServiceImpl implements RoomService {
                 .map(this::mapToSessionResponse)
                 .collect(Collectors.toList());
 
-        List<MessageResponse> recentMessages = messageRepository
-                .findByRoomAndIsDeletedFalseOrderBySentAtDesc(room)
-                .stream()
-                .limit(50)
-                .map(message -> MessageResponse.builder()
-                        .id(message.getId())
-                        .content(message.getContent())
-                        .messageType(message.getMessageType())
-                        .sentAt(message.getSentAt())
-                        .isEdited(message.getIsEdited())
-                        .editedAt(message.getEditedAt())
-                        .senderNickname(message.getSession().getUser().getUsername().startsWith("Guest_") ?
-                                message.getSession().getUser().getGuestProfile().getNickname() :
-                                message.getSession().getUser().getAdminProfile().getFirstName() + " " + message.getSession().getUser().getAdminProfile().getLastName() + " (Admin) "
-                        )
-                        .senderId(message.getUser().getId())
-                        .roomId(message.getRoom().getId())
-                        .build())
-                .collect(Collectors.toList());
+        List<MessageResponse> recentMessages = recentMessageBuffer.recent(room, RECENT_MESSAGES_LIMIT);
 
         return RoomDetailResponse.builder()
-                .room(RoomMapper.toRoomResponse(room))
+                .room(toRoomResponse(room))
                 .activeSessions(sessionResponses)
                 .recentMessages(recentMessages)
                 .activeUsersCount(activeSessions.size())
@@ -212,7 +204,7 @@ public class RoomServiceImpl implements RoomService {
     public List<RoomResponse> getAllActiveRooms() {
         return roomRepository.findAllActiveRooms()
                 .stream()
-                .map(RoomMapper::toRoomResponse)
+                .map(this::toRoomResponse)
                 .collect(Collectors.toList());
     }
 
@@ -221,7 +213,7 @@ public class RoomServiceImpl implements RoomService {
     public List<RoomResponse> getUserCreatedRooms(User user) {
         return roomRepository.findByCreatorAndDeletedAtIsNull(user)
                 .stream()
-                .map(RoomMapper::toRoomResponse)
+                .map(this::toRoomResponse)
                 .collect(Collectors.toList());
     }
 
@@ -247,11 +239,16 @@ public class RoomServiceImpl implements RoomService {
         room.setPinHash(passwordEncoder.encode(plainPin));
         roomRepository.save(room);
 
-        RoomResponse response = RoomMapper.toRoomResponse(room);
+        RoomResponse response = toRoomResponse(room);
         response.setPlainPin(plainPin);
         return response;
     }
 
+    // El aforo vigente vive en memoria; la columna current_users se actualiza en diferido
+    private RoomResponse toRoomResponse(Room room) {
+        return RoomMapper.toRoomResponse(room, presenceRegistry.count(room.getId()));
+    }
+
     private String generateUniqueRoomCode() {
         String roomCode;
         do {
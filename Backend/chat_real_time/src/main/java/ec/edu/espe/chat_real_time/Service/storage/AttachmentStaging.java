@@ -0,0 +1,80 @@
+package ec.edu.espe.chat_real_time.Service.storage;
+
+import ec.edu.espe.chat_real_time.exception.FileTooLargeException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// Vuelca el cuerpo de la subida a un archivo propio con un buffer fijo: el heap no crece con el tamaño del archivo
+@Component
+@Slf4j
+public class AttachmentStaging {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Path stagingDir;
+
+  public AttachmentStaging(@Value("${app.storage.staging-dir:${java.io.tmpdir}/chat_real_time-uploads}") String stagingDir) {
+    this.stagingDir = Paths.get(stagingDir).toAbsolutePath().normalize();
+  }
+
+  // Corta la lectura en cuanto se supera maxBytes, sin esperar a que llegue el resto del cuerpo
+  public StagedUpload stage(InputStream body, long maxBytes) throws IOException {
+    Files.createDirectories(stagingDir);
+    Path staged = Files.createTempFile(stagingDir, "upload-", ".tmp");
+    try (OutputStream out = Files.newOutputStream(staged)) {
+      MessageDigest digest = sha256();
+      byte[] buffer = new byte[BUFFER_SIZE];
+      long total = 0;
+      int read;
+      while ((read = body.read(buffer)) != -1) {
+        total += read;
+        if (total > maxBytes) {
+          throw new FileTooLargeException(String.format(
+                  "El archivo excede el tamaño máximo permitido de %dMB", DataSize.ofBytes(maxBytes).toMegabytes()));
+        }
+        digest.update(buffer, 0, read);
+        out.write(buffer, 0, read);
+      }
+      return new StagedUpload(staged, total, HexFormat.of().formatHex(digest.digest()));
+    } catch (IOException | RuntimeException e) {
+      discard(staged);
+      throw e;
+    }
+  }
+
+  // Archivo preparado a partir del nombre guardado en el adjunto PENDING; null si el nombre sale del directorio
+  public Path resolve(String fileName) {
+    if (fileName == null || fileName.isBlank()) return null;
+    Path staged = stagingDir.resolve(fileName).normalize();
+    return staged.getParent() != null && staged.getParent().equals(stagingDir) ? staged : null;
+  }
+
+  public void discard(Path staged) {
+    if (staged == null) return;
+    try {
+      Files.deleteIfExists(staged);
+    } catch (IOException e) {
+      log.warn("Could not delete staged upload {}: {}", staged, e.getMessage());
+    }
+  }
+
+  private MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 no disponible", e);
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package ec.edu.espe.chat_real_time.Service.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+// Backend donde quedan guardados los adjuntos; se elige con app.storage.type
+public interface AttachmentStorage {
+
+  StoredFile store(Path source, String originalFileName, String contentType) throws IOException;
+
+  void delete(String filePath, String contentType) throws IOException;
+
+  // Archivo en disco del adjunto si el backend es local; si no, la descarga sale de fileUrl
+  default Optional<Path> localFile(String filePath) {
+    return Optional.empty();
+  }
+}
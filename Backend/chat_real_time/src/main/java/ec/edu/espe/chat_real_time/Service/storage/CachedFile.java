@@ -0,0 +1,15 @@
+package ec.edu.espe.chat_real_time.Service.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.file.Path;
+
+// Copia en disco de un adjunto remoto
+@Getter
+@AllArgsConstructor
+public class CachedFile {
+  private final Path path;
+  private final long size;
+  private final String contentType;
+}
@@ -0,0 +1,69 @@
+package ec.edu.espe.chat_real_time.Service.storage;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.utils.ObjectUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+@Component
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "cloudinary", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class CloudinaryAttachmentStorage implements AttachmentStorage {
+
+  private final Cloudinary cloudinary;
+
+  @Override
+  public StoredFile store(Path source, String originalFileName, String contentType) throws IOException {
+    // Detectar si es image, video o raw (PDF, ZIP, DOCX...)
+    String resourceType = getResourceType(contentType);
+    log.info("Detected resourceType: {} for mimeType: {}", resourceType, contentType);
+
+    // Se sube desde el archivo en disco: el SDK lo envía por streaming sin cargarlo en memoria
+    @SuppressWarnings("unchecked")
+    Map<String, Object> uploadResult = cloudinary.uploader().upload(
+            source.toFile(),
+            ObjectUtils.asMap(
+                    "resource_type", resourceType,
+                    "folder", "chat_real_time"
+            )
+    );
+
+    log.info("Cloudinary upload result: {}", uploadResult);
+
+    String secureUrl = (String) uploadResult.get("secure_url");
+    String publicId = (String) uploadResult.get("public_id");
+    String cloudinaryFormat = (String) uploadResult.get("format");
+
+    String extension = "";
+    if (originalFileName != null && originalFileName.contains(".")) {
+      extension = originalFileName.substring(originalFileName.lastIndexOf(".")); // ej: .pdf .zip .docx
+    }
+    if (cloudinaryFormat != null && !cloudinaryFormat.isBlank()) {
+      extension = "." + cloudinaryFormat;  // ej: .png .jpg
+    }
+
+    return new StoredFile(publicId + extension, publicId, secureUrl);
+  }
+
+  @Override
+  public void delete(String filePath, String contentType) throws IOException {
+    // destroy necesita el mismo resource_type con el que se subió
+    cloudinary.uploader().destroy(filePath, ObjectUtils.asMap("resource_type", getResourceType(contentType)));
+    log.info("Deleted Cloudinary object {}", filePath);
+  }
+
+  private String getResourceType(String mimeType) {
+    if (mimeType == null) return "raw";
+
+    if (mimeType.startsWith("image/")) return "image";
+    if (mimeType.startsWith("video/")) return "video";
+    return "raw";
+  }
+}
@@ -0,0 +1,16 @@
+package ec.edu.espe.chat_real_time.Service.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Miniatura ya guardada en el almacenamiento
+@Getter
+@AllArgsConstructor
+public class ImagePreview {
+  private final String url;
+  private final String path;
+  private final int width;
+  private final int height;
+  private final int sourceWidth;
+  private final int sourceHeight;
+}
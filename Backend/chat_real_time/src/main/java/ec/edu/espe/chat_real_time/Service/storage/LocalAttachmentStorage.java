@@ -0,0 +1,105 @@
+package ec.edu.espe.chat_real_time.Service.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.UUID;
+
+// Guarda los adjuntos en disco local; sirve para despliegues propios y para probar sin conexión
+@Component
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "local")
+@Slf4j
+public class LocalAttachmentStorage implements AttachmentStorage {
+
+  private final Path rootDir;
+  private final String publicUrl;
+
+  public LocalAttachmentStorage(
+          @Value("${app.storage.local.root-dir:${file.upload-dir}}") String rootDir,
+          @Value("${app.storage.local.public-url:/api/files/}") String publicUrl) {
+    this.rootDir = Paths.get(rootDir).toAbsolutePath().normalize();
+    this.publicUrl = publicUrl.endsWith("/") ? publicUrl : publicUrl + "/";
+  }
+
+  @Override
+  public StoredFile store(Path source, String originalFileName, String contentType) throws IOException {
+    String key = UUID.randomUUID().toString();
+    String storedName = key + extensionOf(originalFileName);
+    // dos niveles de subdirectorios por hash (ab/cd/) para no acumular miles de archivos en una carpeta
+    String relativePath = shardOf(key) + "/" + storedName;
+
+    Path target = rootDir.resolve(relativePath);
+    Files.createDirectories(target.getParent());
+
+    // Se escribe en un temporal del mismo directorio y se renombra: nunca queda un archivo a medias visible
+    Path partial = target.resolveSibling(storedName + ".part");
+    try {
+      long size = copy(source, partial);
+      Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+      log.info("Stored attachment {} ({} bytes) in {}", relativePath, size, rootDir);
+    } catch (IOException e) {
+      Files.deleteIfExists(partial);
+      throw e;
+    }
+
+    return new StoredFile(storedName, relativePath, publicUrl + storedName);
+  }
+
+  @Override
+  public Optional<Path> localFile(String filePath) {
+    if (filePath == null || filePath.isBlank()) return Optional.empty();
+    Path file = rootDir.resolve(filePath).normalize();
+    if (!file.startsWith(rootDir) || !Files.isRegularFile(file)) {
+      return Optional.empty();
+    }
+    return Optional.of(file);
+  }
+
+  @Override
+  public void delete(String filePath, String contentType) throws IOException {
+    Optional<Path> file = localFile(filePath);
+    if (file.isPresent()) {
+      Files.deleteIfExists(file.get());
+      log.info("Deleted attachment {} from {}", filePath, rootDir);
+    }
+  }
+
+  // transferTo entre canales de archivo: el kernel copia los datos sin pasarlos por el heap
+  private long copy(Path source, Path target) throws IOException {
+    try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+         FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      long size = in.size();
+      long position = 0;
+      while (position < size) {
+        position += in.transferTo(position, size - position, out);
+      }
+      out.force(false);
+      return size;
+    }
+  }
+
+  private String shardOf(String key) {
+    String hash = DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8));
+    return hash.substring(0, 2) + "/" + hash.substring(2, 4);
+  }
+
+  private String extensionOf(String originalFileName) {
+    if (originalFileName == null || !originalFileName.contains(".")) return "";
+    String extension = originalFileName.substring(originalFileName.lastIndexOf("."));
+    // solo extensiones simples, para que el nombre guardado no pueda salir del directorio
+    return extension.matches("\\.[A-Za-z0-9]{1,10}") ? extension : "";
+  }
+}
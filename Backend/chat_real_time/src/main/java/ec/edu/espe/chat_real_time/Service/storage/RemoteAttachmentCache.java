@@ -0,0 +1,174 @@
+package ec.edu.espe.chat_real_time.Service.storage;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import ec.edu.espe.chat_real_time.exception.ResourceNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Caché en disco de adjuntos remotos (Cloudinary) por id, limitada por tamaño total
+@Component
+@Slf4j
+public class RemoteAttachmentCache {
+
+  // <id>-<aleatorio>.part mientras se descarga, <id>-<uuid>.bin una vez completo
+  private static final Pattern OWN_FILE = Pattern.compile("\\d+-[^/]+\\.(bin|part)");
+
+  private final Path cacheDir;
+  private final long deleteGraceMs;
+  private final Duration readTimeout;
+  private final HttpClient httpClient;
+  private final AsyncCache<Long, CachedFile> cache;
+
+  public RemoteAttachmentCache(
+          @Value("${app.storage.cache.dir:${java.io.tmpdir}/chat_real_time-cache}") String cacheDir,
+          @Value("${app.storage.cache.max-size:1GB}") DataSize maxSize,
+          @Value("${app.storage.cache.connect-timeout-ms:5000}") long connectTimeoutMs,
+          @Value("${app.storage.cache.read-timeout-ms:30000}") long readTimeoutMs,
+          @Value("${app.storage.cache.delete-grace-ms:60000}") long deleteGraceMs) throws IOException {
+    this.cacheDir = Paths.get(cacheDir).toAbsolutePath().normalize();
+    this.deleteGraceMs = deleteGraceMs;
+    this.readTimeout = Duration.ofMillis(readTimeoutMs);
+    // Un solo cliente para toda la app: reutiliza las conexiones keep-alive con el origen
+    this.httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    this.cache = Caffeine.newBuilder()
+            .maximumWeight(maxSize.toBytes())
+            .weigher((Long id, CachedFile file) -> (int) Math.min(Integer.MAX_VALUE, file.getSize()))
+            .removalListener((Long id, CachedFile file, RemovalCause cause) -> {
+              if (file != null) scheduleDelete(file.getPath());
+            })
+            // el listener solo agenda el borrado: puede correr en el hilo que provocó la expulsión
+            .executor(Runnable::run)
+            .recordStats()
+            .buildAsync();
+
+    // El índice vive en memoria: lo que quedó de una ejecución anterior no se puede reutilizar.
+    // Solo se borran los archivos con el formato que crea la caché: el directorio puede ser compartido
+    Files.createDirectories(this.cacheDir);
+    try (Stream<Path> entries = Files.list(this.cacheDir)) {
+      for (Path leftover : entries.filter(RemoteAttachmentCache::isOwnFile).toList()) {
+        Files.deleteIfExists(leftover);
+      }
+    }
+  }
+
+  // Peticiones simultáneas por el mismo adjunto esperan a una sola descarga del origen
+  public CachedFile get(Long attachmentId, String url) {
+    while (true) {
+      CompletableFuture<CachedFile> created = new CompletableFuture<>();
+      CompletableFuture<CachedFile> existing = cache.asMap().putIfAbsent(attachmentId, created);
+      if (existing == null) {
+        try {
+          created.complete(download(attachmentId, url));
+        } catch (RuntimeException e) {
+          created.completeExceptionally(e);
+          cache.asMap().remove(attachmentId, created);
+        }
+        existing = created;
+      }
+
+      CachedFile file = join(existing);
+      if (Files.isRegularFile(file.getPath())) {
+        return file;
+      }
+      // alguien borró la copia del disco: se descarta y se vuelve a pedir al origen
+      cache.asMap().remove(attachmentId, existing);
+    }
+  }
+
+  public long size() {
+    cache.synchronous().cleanUp();
+    return cache.synchronous().estimatedSize();
+  }
+
+  public long weightedSize() {
+    cache.synchronous().cleanUp();
+    return cache.synchronous().policy().eviction()
+            .map(eviction -> eviction.weightedSize().orElse(0L))
+            .orElse(0L);
+  }
+
+  private CachedFile download(Long attachmentId, String url) {
+    Path partial = null;
+    try {
+      partial = Files.createTempFile(cacheDir, attachmentId + "-", ".part");
+      HttpRequest request = HttpRequest.newBuilder(URI.create(url)).timeout(readTimeout).GET().build();
+      HttpResponse<Path> response = httpClient.send(request, HttpResponse.BodyHandlers.ofFile(partial));
+
+      if (response.statusCode() >= 400) {
+        log.error("Fallo al obtener archivo desde origen (status {}): {}", response.statusCode(), url);
+        throw new ResourceNotFoundException("Archivo no disponible para descarga");
+      }
+
+      Path target = cacheDir.resolve(attachmentId + "-" + UUID.randomUUID() + ".bin");
+      Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+      partial = null;
+
+      String contentType = response.headers().firstValue("Content-Type").orElse(null);
+      log.debug("Cached attachment {} from origin ({} bytes)", attachmentId, Files.size(target));
+      return new CachedFile(target, Files.size(target), contentType);
+    } catch (IOException | IllegalArgumentException e) {
+      log.error("Error al descargar archivo desde origen: {}", url, e);
+      throw new ResourceNotFoundException("Error al descargar el archivo");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ResourceNotFoundException("Error al descargar el archivo");
+    } finally {
+      if (partial != null) deleteQuietly(partial);
+    }
+  }
+
+  private CachedFile join(CompletableFuture<CachedFile> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) throw cause;
+      throw e;
+    }
+  }
+
+  // Se borra con retraso: una descarga que acaba de recibir la ruta todavía puede abrir el archivo
+  private void scheduleDelete(Path path) {
+    if (deleteGraceMs <= 0) {
+      deleteQuietly(path);
+      return;
+    }
+    CompletableFuture.runAsync(() -> deleteQuietly(path),
+            CompletableFuture.delayedExecutor(deleteGraceMs, TimeUnit.MILLISECONDS));
+  }
+
+  private static boolean isOwnFile(Path path) {
+    return Files.isRegularFile(path) && OWN_FILE.matcher(path.getFileName().toString()).matches();
+  }
+
+  private void deleteQuietly(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      log.warn("Could not delete cached attachment {}: {}", path, e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,15 @@
+package ec.edu.espe.chat_real_time.Service.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.file.Path;
+
+// Archivo recibido en disco, con el tamaño y el SHA-256 calculados mientras llegaban los bytes
+@Getter
+@AllArgsConstructor
+public class StagedUpload {
+  private final Path path;
+  private final long size;
+  private final String sha256;
+}
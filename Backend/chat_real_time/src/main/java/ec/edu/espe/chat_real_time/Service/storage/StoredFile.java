@@ -0,0 +1,13 @@
+package ec.edu.espe.chat_real_time.Service.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Resultado de guardar un adjunto: nombre almacenado, clave en el backend y URL pública
+@Getter
+@AllArgsConstructor
+public class StoredFile {
+  private final String fileName;
+  private final String filePath;
+  private final String fileUrl;
+}
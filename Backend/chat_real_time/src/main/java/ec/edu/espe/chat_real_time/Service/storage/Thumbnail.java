@@ -0,0 +1,18 @@
+package ec.edu.espe.chat_real_time.Service.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.file.Path;
+
+// Miniatura generada en un archivo temporal, con sus dimensiones y las de la imagen original
+@Getter
+@AllArgsConstructor
+public class Thumbnail {
+  private final Path path;
+  private final String contentType;
+  private final int width;
+  private final int height;
+  private final int sourceWidth;
+  private final int sourceHeight;
+}
@@ -0,0 +1,94 @@
+package ec.edu.espe.chat_real_time.Service.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Optional;
+
+// Miniaturas con ImageIO (sin librerías nativas); se decodifica submuestreando para no cargar la imagen completa
+@Component
+@Slf4j
+public class ThumbnailGenerator {
+
+  private final int maxSize;
+  private final long maxSourcePixels;
+
+  public ThumbnailGenerator(
+          @Value("${app.storage.preview.max-size:320}") int maxSize,
+          @Value("${app.storage.preview.max-source-pixels:50000000}") long maxSourcePixels) {
+    this.maxSize = maxSize;
+    this.maxSourcePixels = maxSourcePixels;
+  }
+
+  public boolean supports(String contentType) {
+    return contentType != null
+            && contentType.startsWith("image/")
+            && ImageIO.getImageReadersByMIMEType(contentType).hasNext();
+  }
+
+  public Optional<Thumbnail> generate(Path source) throws IOException {
+    try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+      Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+      if (readers == null || !readers.hasNext()) {
+        return Optional.empty();
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(in, true, true);
+        int sourceWidth = reader.getWidth(0);
+        int sourceHeight = reader.getHeight(0);
+        // las dimensiones salen de la cabecera: se descartan bombas de descompresión antes de decodificar
+        if ((long) sourceWidth * sourceHeight > maxSourcePixels) {
+          log.info("Skipping preview for {}x{} image (over {} pixels)", sourceWidth, sourceHeight, maxSourcePixels);
+          return Optional.empty();
+        }
+
+        // se decodifica a ~2x el tamaño final y el resto lo hace el escalado bilineal
+        ImageReadParam param = reader.getDefaultReadParam();
+        int step = Math.max(1, Math.max(sourceWidth, sourceHeight) / (maxSize * 2));
+        param.setSourceSubsampling(step, step, 0, 0);
+        BufferedImage decoded = reader.read(0, param);
+
+        double scale = Math.min(1.0, (double) maxSize / Math.max(decoded.getWidth(), decoded.getHeight()));
+        int width = Math.max(1, (int) Math.round(decoded.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(decoded.getHeight() * scale));
+        boolean alpha = decoded.getColorModel().hasAlpha();
+
+        BufferedImage thumbnail = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = thumbnail.createGraphics();
+        try {
+          graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+          graphics.drawImage(decoded, 0, 0, width, height, null);
+        } finally {
+          graphics.dispose();
+        }
+
+        String format = alpha ? "png" : "jpg";
+        Path target = Files.createTempFile(source.toAbsolutePath().getParent(), "preview-", "." + format);
+        try {
+          ImageIO.write(thumbnail, format, target.toFile());
+        } catch (IOException | RuntimeException e) {
+          Files.deleteIfExists(target);
+          throw e;
+        }
+        return Optional.of(new Thumbnail(target, alpha ? "image/png" : "image/jpeg",
+                width, height, sourceWidth, sourceHeight));
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+}
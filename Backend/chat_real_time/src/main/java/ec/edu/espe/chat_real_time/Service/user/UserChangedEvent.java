@@ -0,0 +1,25 @@
+package ec.edu.espe.chat_real_time.Service.user;
+
+import ec.edu.espe.chat_real_time.model.user.User;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Avisa a las cachés de usuarios que un usuario cambió o se eliminó; sin id ni username significa "todos"
+@Getter
+@AllArgsConstructor
+public class UserChangedEvent {
+  private final Long userId;
+  private final String username;
+
+  public static UserChangedEvent of(User user) {
+    return new UserChangedEvent(user.getId(), user.getUsername());
+  }
+
+  public static UserChangedEvent all() {
+    return new UserChangedEvent(null, null);
+  }
+
+  public boolean affectsAll() {
+    return userId == null && username == null;
+  }
+}
@@ -1,8 +1,14 @@
 package ec.edu.espe.chat_real_time.Service.user;
 
+import ec.edu.espe.chat_real_time.Service.message.MessagePurger;
 import ec.edu.espe.chat_real_time.model.user.User;
+import ec.edu.espe.chat_real_time.repository.RefreshTokenRepository;
 import ec.edu.espe.chat_real_time.repository.UserRepository;
+import ec.edu.espe.chat_real_time.repository.UserSessionRepository;
+import ec.edu.espe.chat_real_time.security.jwt.TokenRevocationList;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -10,14 +16,21 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 @Transactional(readOnly = true)
 public class UserServiceImpl implements  UserService{
 
   private final UserRepository userRepository;
+  private final ApplicationEventPublisher eventPublisher;
+  private final TokenRevocationList tokenRevocationList;
+  private final MessagePurger messagePurger;
+  private final UserSessionRepository userSessionRepository;
+  private final RefreshTokenRepository refreshTokenRepository;
 
   @Transactional(propagation = Propagation.REQUIRES_NEW)
   public void recordFailedLoginAttempt(String username) {
@@ -31,6 +44,7 @@ public class UserServiceImpl implements  UserService{
     }
 
     userRepository.save(user);
+    eventPublisher.publishEvent(UserChangedEvent.of(user));
   }
 
   @Transactional
@@ -40,22 +54,38 @@ public class UserServiceImpl implements  UserService{
     user.setLockedUntil(LocalDateTime.now().plusMinutes(durationMinutes));
     user.setAccountNonLocked(false);
     userRepository.save(user);
+    tokenRevocationList.revokeAll(user.getId());
+    eventPublisher.publishEvent(UserChangedEvent.of(user));
   }
 
   @Transactional
   public void saveUser(User user){
     userRepository.save(user);
+    eventPublisher.publishEvent(UserChangedEvent.of(user));
   }
 
   @Transactional
   public Optional<User> saveUserDB(User user) {
-    return Optional.of(userRepository.save(user));
+    User saved = userRepository.save(user);
+    eventPublisher.publishEvent(UserChangedEvent.of(saved));
+    return Optional.of(saved);
   }
 
   @Scheduled(fixedRate = 3600000)
   @Transactional
   public void cleanExpiredGuests() {
-    userRepository.deleteAllExpiredGuests(LocalDateTime.now());
+    LocalDateTime now = LocalDateTime.now();
+    List<Long> expired = userRepository.findExpiredGuestIds(now);
+    if (!expired.isEmpty()) {
+      // messages.user_id no tiene FK en la base: sin purgar antes quedarían mensajes huérfanos del invitado
+      int purged = messagePurger.purgeByUsers(expired);
+      userSessionRepository.deleteByUserIds(expired);
+      refreshTokenRepository.deleteAllByUserIds(expired);
+      log.info("Purged {} messages of {} expired guests", purged, expired.size());
+    }
+    userRepository.deleteAllExpiredGuests(now);
+    // el borrado masivo no informa qué usuarios eliminó
+    eventPublisher.publishEvent(UserChangedEvent.all());
   }
 
 
@@ -69,12 +99,17 @@ public class UserServiceImpl implements  UserService{
     user.setAccountNonLocked(true);
 
     userRepository.save(user);
+    eventPublisher.publishEvent(UserChangedEvent.of(user));
   }
 
   @Transactional
   @Override
   public void delete(User user) {
+    // la cascada de JPA borraría los mensajes sin soltar los objetos almacenados de sus adjuntos
+    messagePurger.purgeByUsers(List.of(user.getId()));
     userRepository.delete(user);
+    tokenRevocationList.revokeAll(user.getId());
+    eventPublisher.publishEvent(UserChangedEvent.of(user));
   }
 
 
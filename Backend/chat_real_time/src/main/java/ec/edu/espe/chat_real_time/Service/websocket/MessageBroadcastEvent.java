@@ -0,0 +1,13 @@
+package ec.edu.espe.chat_real_time.Service.websocket;
+
+import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Se publica dentro de la transaccion y se difunde a la sala solo cuando esta hace commit
+@Getter
+@AllArgsConstructor
+public class MessageBroadcastEvent {
+  private final Long roomId;
+  private final MessageResponse message;
+}
@@ -0,0 +1,22 @@
+package ec.edu.espe.chat_real_time.Service.websocket;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MessageBroadcastListener {
+
+  private final RoomMessagePublisher roomMessagePublisher;
+
+  // Unico punto de difusion de mensajes de sala: si la transaccion hace rollback no se envia nada
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onMessageBroadcast(MessageBroadcastEvent event) {
+    log.debug("Broadcasting message {} to room {}", event.getMessage().getId(), event.getRoomId());
+    roomMessagePublisher.publish(event.getRoomId(), event.getMessage());
+  }
+}
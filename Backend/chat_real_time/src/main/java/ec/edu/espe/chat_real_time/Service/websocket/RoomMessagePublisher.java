@@ -0,0 +1,65 @@
+package ec.edu.espe.chat_real_time.Service.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+@Component
+@Slf4j
+public class RoomMessagePublisher {
+
+  // Cabeceras STOMP de cada frame de sala; el cliente las devuelve en /app/chat.resume/{roomId} al reconectar
+  public static final String SEQ_HEADER = "seq";
+  public static final String EPOCH_HEADER = "seq-epoch";
+
+  private final SimpMessagingTemplate messagingTemplate;
+  private final ObjectWriter messageWriter; // ObjectWriter es inmutable y thread-safe, se construye una sola vez
+  private final RoomReplayLog replayLog;
+
+  public RoomMessagePublisher(SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper, RoomReplayLog replayLog) {
+    this.messagingTemplate = messagingTemplate;
+    this.messageWriter = objectMapper.writerFor(MessageResponse.class);
+    this.replayLog = replayLog;
+  }
+
+  // Serializa el mensaje una sola vez; el broker reparte el mismo byte[] a todos los suscriptores de la sala
+  public void publish(Long roomId, MessageResponse message) {
+    byte[] payload = encode(message);
+    if (!replayLog.isEnabled()) {
+      send(roomId, payload, null, 0);
+      return;
+    }
+    replayLog.append(roomId, message, (epoch, seq) -> send(roomId, payload, epoch, seq));
+  }
+
+  private void send(Long roomId, byte[] payload, String epoch, long seq) {
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+    accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+    if (epoch != null) {
+      accessor.setNativeHeader(EPOCH_HEADER, epoch);
+      accessor.setNativeHeader(SEQ_HEADER, Long.toString(seq));
+    }
+    accessor.setLeaveMutable(true);
+
+    messagingTemplate.send(
+            "/topic/room/" + roomId,
+            MessageBuilder.createMessage(payload, accessor.getMessageHeaders())
+    );
+  }
+
+  public byte[] encode(MessageResponse message) {
+    try {
+      return messageWriter.writeValueAsBytes(message);
+    } catch (JsonProcessingException e) {
+      log.error("Error serializing message {}", message.getId(), e);
+      throw new IllegalStateException("No se pudo serializar el mensaje", e);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package ec.edu.espe.chat_real_time.Service.websocket;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
+import ec.edu.espe.chat_real_time.dto.websocket.ReplayedMessage;
+import ec.edu.espe.chat_real_time.dto.websocket.ResumeResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Últimos frames difundidos en cada sala, numerados con una secuencia monótona por sala, para que un cliente
+// que se reconecta reciba solo lo que se perdió. La secuencia es local al nodo: cada registro tiene su propia época
+// y si el cliente trae otra (reinicio, desalojo por inactividad, otra réplica) tiene que recargar por REST.
+// Con broker relay queda desactivado salvo que se active explícitamente: los frames de una sala llegarían
+// numerados por nodos distintos.
+@Component
+public class RoomReplayLog {
+
+  private final boolean enabled;
+  private final int capacity;
+  private final Cache<Long, RoomLog> logs;
+
+  @Autowired
+  public RoomReplayLog(
+          @Value("${app.websocket.replay.enabled:}") Boolean enabled,
+          @Value("${app.websocket.broker.mode:simple}") String brokerMode,
+          @Value("${app.websocket.replay.capacity:256}") int capacity,
+          @Value("${app.websocket.replay.idle-minutes:30}") long idleMinutes,
+          @Value("${app.websocket.replay.max-rooms:10000}") long maxRooms) {
+    this(enabled != null ? enabled : !"relay".equalsIgnoreCase(brokerMode), capacity, idleMinutes, maxRooms);
+  }
+
+  public RoomReplayLog(boolean enabled, int capacity, long idleMinutes, long maxRooms) {
+    this.enabled = enabled;
+    this.capacity = capacity;
+    this.logs = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+            .maximumSize(maxRooms)
+            .build();
+  }
+
+  @FunctionalInterface
+  public interface SequencedSender {
+    void send(String epoch, long seq);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  // Numera el mensaje y lo envía con el cerrojo de la sala tomado: los frames salen en el orden de su secuencia
+  public void append(Long roomId, MessageResponse message, SequencedSender sender) {
+    logs.get(roomId, id -> new RoomLog(capacity)).append(message, sender);
+  }
+
+  // Frames posteriores a lastSeq. Sin época conocida solo devuelve la posición actual para empezar a seguirla
+  public ResumeResponse replay(Long roomId, String epoch, Long lastSeq) {
+    if (!enabled) {
+      return ResumeResponse.builder().roomId(roomId).complete(false).messages(List.of()).build();
+    }
+    ResumeResponse response = logs.get(roomId, id -> new RoomLog(capacity)).since(epoch, lastSeq);
+    response.setRoomId(roomId);
+    return response;
+  }
+
+  private static final class RoomLog {
+
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private final int capacity;
+    private final ArrayDeque<ReplayedMessage> entries;
+    private long lastSeq;
+
+    RoomLog(int capacity) {
+      this.capacity = capacity;
+      this.entries = new ArrayDeque<>(capacity);
+    }
+
+    synchronized void append(MessageResponse message, SequencedSender sender) {
+      long seq = ++lastSeq;
+      if (entries.size() == capacity) {
+        entries.pollFirst();
+      }
+      entries.addLast(new ReplayedMessage(seq, message));
+      sender.send(epoch, seq);
+    }
+
+    synchronized ResumeResponse since(String clientEpoch, Long clientSeq) {
+      ResumeResponse response = ResumeResponse.builder()
+              .epoch(epoch)
+              .lastSeq(lastSeq)
+              .complete(false)
+              .messages(List.of())
+              .build();
+      long oldest = entries.isEmpty() ? lastSeq + 1 : entries.peekFirst().getSeq();
+      // el cliente debe venir de esta época y el primer frame que le falta tiene que seguir en el registro
+      if (!epoch.equals(clientEpoch) || clientSeq == null || clientSeq > lastSeq || clientSeq + 1 < oldest) {
+        return response;
+      }
+      List<ReplayedMessage> missed = new ArrayList<>((int) (lastSeq - clientSeq));
+      for (ReplayedMessage entry : entries) {
+        if (entry.getSeq() > clientSeq) missed.add(entry);
+      }
+      response.setMessages(missed);
+      response.setComplete(true);
+      return response;
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package ec.edu.espe.chat_real_time.Service.websocket;
+
+import ec.edu.espe.chat_real_time.dto.websocket.TypingSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+// Agrupa los avisos de "escribiendo" por sala: las pulsaciones solo renuevan la caducidad del usuario
+// y cada intervalo sale como mucho una instantánea por sala, y solo si cambió quién escribe.
+// Es local al nodo: con broker relay cada réplica publica únicamente a los usuarios conectados a ella.
+@Component
+@Slf4j
+public class TypingAggregator {
+
+  private final SimpMessagingTemplate messagingTemplate;
+  private final long expiryMs;
+  private final int maxNames;
+  private final LongSupplier clock;
+  private final Map<Long, RoomTypists> rooms = new ConcurrentHashMap<>();
+
+  @Autowired
+  public TypingAggregator(
+          SimpMessagingTemplate messagingTemplate,
+          @Value("${app.websocket.typing.expiry-ms:6000}") long expiryMs,
+          @Value("${app.websocket.typing.max-names:3}") int maxNames) {
+    this(messagingTemplate, expiryMs, maxNames, System::currentTimeMillis);
+  }
+
+  TypingAggregator(SimpMessagingTemplate messagingTemplate, long expiryMs, int maxNames, LongSupplier clock) {
+    this.messagingTemplate = messagingTemplate;
+    this.expiryMs = expiryMs;
+    this.maxNames = maxNames;
+    this.clock = clock;
+  }
+
+  public void update(Long roomId, Long userId, String username, boolean typing) {
+    if (typing) {
+      long expiresAt = clock.getAsLong() + expiryMs;
+      // dentro de compute para no tocar una sala que flush acaba de descartar
+      rooms.compute(roomId, (id, typists) -> {
+        RoomTypists room = typists != null ? typists : new RoomTypists();
+        room.touch(userId, username, expiresAt);
+        return room;
+      });
+    } else {
+      RoomTypists typists = rooms.get(roomId);
+      if (typists != null) typists.remove(userId);
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${app.websocket.typing.interval-ms:500}")
+  public void flush() {
+    long now = clock.getAsLong();
+    for (Map.Entry<Long, RoomTypists> entry : rooms.entrySet()) {
+      RoomTypists typists = entry.getValue();
+      List<String> changed = typists.changedSnapshot(now);
+      if (changed != null) {
+        send(entry.getKey(), changed);
+      }
+      // la sala sin nadie escribiendo y ya anunciada vacía deja de ocupar memoria
+      rooms.computeIfPresent(entry.getKey(), (id, room) -> room.isIdle() ? null : room);
+    }
+  }
+
+  private void send(Long roomId, List<String> usernames) {
+    TypingSnapshot snapshot = TypingSnapshot.builder()
+            .roomId(roomId)
+            .usernames(new ArrayList<>(usernames.subList(0, Math.min(maxNames, usernames.size()))))
+            .count(usernames.size())
+            .build();
+    log.debug("WebSocket: {} users typing in room {}", usernames.size(), roomId);
+    messagingTemplate.convertAndSend("/topic/room/" + roomId + "/typing", snapshot);
+  }
+
+  private static final class RoomTypists {
+
+    // userId -> (nombre, caduca en), en orden de llegada
+    private final Map<Long, Typist> typists = new LinkedHashMap<>();
+    private List<String> published = List.of();
+    private boolean dirty;
+
+    synchronized void touch(Long userId, String username, long expiresAt) {
+      Typist previous = typists.put(userId, new Typist(username, expiresAt));
+      if (previous == null) dirty = true;
+    }
+
+    synchronized void remove(Long userId) {
+      if (typists.remove(userId) != null) dirty = true;
+    }
+
+    // null si lo que hay que anunciar es lo mismo que se anunció la última vez
+    synchronized List<String> changedSnapshot(long now) {
+      if (typists.values().removeIf(typist -> typist.expiresAt <= now)) dirty = true;
+      if (!dirty) return null;
+      dirty = false;
+      List<String> usernames = new ArrayList<>(typists.size());
+      typists.values().forEach(typist -> usernames.add(typist.username));
+      if (usernames.equals(published)) return null;
+      published = usernames;
+      return usernames;
+    }
+
+    synchronized boolean isIdle() {
+      return typists.isEmpty() && published.isEmpty() && !dirty;
+    }
+  }
+
+  private static final class Typist {
+    private final String username;
+    private final long expiresAt;
+
+    Typist(String username, long expiresAt) {
+      this.username = username;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
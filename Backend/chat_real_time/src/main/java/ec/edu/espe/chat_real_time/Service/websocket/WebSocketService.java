@@ -3,6 +3,7 @@ package ec.edu.espe.chat_real_time.Service.websocket;
 
 import ec.edu.espe.chat_real_time.dto.request.SendMessageRequest;
 import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
+import ec.edu.espe.chat_real_time.dto.websocket.ResumeRequest;
 import ec.edu.espe.chat_real_time.dto.websocket.TypingIndicator;
 import ec.edu.espe.chat_real_time.model.user.User;
 
@@ -16,6 +17,8 @@ public interface WebSocketService {
 
   void notifyUserLeftRoom(Long roomId, User user);
 
+  void resumeRoom(Long roomId, ResumeRequest request, User user, String sessionId);
+
   void notifyUserStatusChange(User user, String status);
 
   void notifyMessageDeleted(Long roomId, Long messageId);
@@ -9,6 +9,8 @@ import ec.edu.espe.chat_real_time.model.user.User;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -22,6 +24,8 @@ public class WebSocketServiceImpl implements WebSocketService {
 
   private final SimpMessagingTemplate messagingTemplate;
   private final MessageService messageService;
+  private final RoomReplayLog replayLog;
+  private final TypingAggregator typingAggregator;
 
   @Override
   @Transactional
@@ -29,11 +33,8 @@ public class WebSocketServiceImpl implements WebSocketService {
     log.info("WebSocket: User {} sending message to room {}", user.getUsername(), request.getRoomId());
 
     try {
+      // sendTextMessage ya publica el mensaje a la sala despues del commit
       MessageResponse message = messageService.sendTextMessage(request, user);
-      messagingTemplate.convertAndSend(
-              "/topic/room/" + request.getRoomId(),
-              message
-      );
 
       log.info("WebSocket: Message sent successfully to room {}", request.getRoomId());
       return message;
@@ -53,10 +54,8 @@ public class WebSocketServiceImpl implements WebSocketService {
     typingIndicator.setUsername(user.getUsername());
     typingIndicator.setRoomId(roomId);
 
-    messagingTemplate.convertAndSend(
-            "/topic/room/" + roomId + "/typing",
-            typingIndicator
-    );
+    // No se reenvía cada pulsación: el agregador publica periódicamente quién escribe en la sala
+    typingAggregator.update(roomId, user.getId(), user.getUsername(), typingIndicator.isTyping());
   }
 
   @Override
@@ -99,6 +98,25 @@ public class WebSocketServiceImpl implements WebSocketService {
     sendSystemMessageToRoom(roomId, user.getUsername() + " ha salido de la sala");
   }
 
+  @Override
+  public void resumeRoom(Long roomId, ResumeRequest request, User user, String sessionId) {
+    ResumeResponse response = replayLog.replay(roomId, request.getEpoch(), request.getLastSeq());
+    log.debug("WebSocket: Resuming room {} for user {} from seq {}: {} frames replayed, complete={}",
+            roomId, user.getUsername(), request.getLastSeq(), response.getMessages().size(), response.isComplete());
+
+    // Solo a la sesión que se reconectó, no a todas las del usuario
+    SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+    headers.setSessionId(sessionId);
+    headers.setLeaveMutable(true);
+
+    messagingTemplate.convertAndSendToUser(
+            user.getUsername(),
+            "/queue/resume",
+            response,
+            headers.getMessageHeaders()
+    );
+  }
+
   @Override
   public void notifyUserStatusChange(User user, String status) {
     log.info("WebSocket: User {} status changed to {}", user.getUsername(), status);
@@ -0,0 +1,55 @@
+package ec.edu.espe.chat_real_time.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class AttachmentUploadConfig {
+
+  @Value("${app.storage.upload.core-pool-size:4}")
+  private int corePoolSize;
+
+  @Value("${app.storage.upload.max-pool-size:8}")
+  private int maxPoolSize;
+
+  @Value("${app.storage.upload.queue-capacity:100}")
+  private int queueCapacity;
+
+  @Value("${app.storage.preview.pool-size:2}")
+  private int previewPoolSize;
+
+  @Value("${app.storage.preview.queue-capacity:50}")
+  private int previewQueueCapacity;
+
+  @Bean(name = "attachmentUploadExecutor")
+  public ThreadPoolTaskExecutor attachmentUploadExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(corePoolSize);
+    executor.setMaxPoolSize(maxPoolSize);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("attachment-upload-");
+    // Con la cola llena sube el hilo que hizo commit: frena a los clientes sin perder archivos
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    executor.setAwaitTerminationSeconds(30);
+    return executor;
+  }
+
+  // Decodificar imágenes es CPU y memoria: pocos hilos y, con la cola llena, el adjunto queda sin miniatura
+  @Bean(name = "thumbnailExecutor")
+  public ThreadPoolTaskExecutor thumbnailExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(previewPoolSize);
+    executor.setMaxPoolSize(previewPoolSize);
+    executor.setQueueCapacity(previewQueueCapacity);
+    executor.setThreadNamePrefix("thumbnail-");
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    executor.setAwaitTerminationSeconds(30);
+    return executor;
+  }
+}
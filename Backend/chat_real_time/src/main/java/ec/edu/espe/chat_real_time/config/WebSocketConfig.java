@@ -2,6 +2,7 @@ package ec.edu.espe.chat_real_time.config;
 
 import ec.edu.espe.chat_real_time.websocket.WebSocketAuthInterceptor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
@@ -16,11 +17,39 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
   private final WebSocketAuthInterceptor webSocketAuthInterceptor;
 
+  @Value("${app.websocket.broker.mode:simple}")
+  private String brokerMode;
+
+  @Value("${app.websocket.broker.relay-host:localhost}")
+  private String relayHost;
+
+  @Value("${app.websocket.broker.relay-port:61613}")
+  private int relayPort;
+
+  @Value("${app.websocket.broker.login:guest}")
+  private String relayLogin;
+
+  @Value("${app.websocket.broker.passcode:guest}")
+  private String relayPasscode;
+
   @Override
   public void configureMessageBroker(MessageBrokerRegistry config) {
-    config.enableSimpleBroker("/topic", "/queue");
+    if ("relay".equalsIgnoreCase(brokerMode)) {
+      // Broker STOMP externo compartido: los topics de sala llegan a todas las replicas
+      config.enableStompBrokerRelay("/topic", "/queue")
+              .setRelayHost(relayHost)
+              .setRelayPort(relayPort)
+              .setClientLogin(relayLogin)
+              .setClientPasscode(relayPasscode)
+              .setSystemLogin(relayLogin)
+              .setSystemPasscode(relayPasscode);
+    } else {
+      config.enableSimpleBroker("/topic", "/queue");
+    }
     config.setApplicationDestinationPrefixes("/app");
     config.setUserDestinationPrefix("/user");
+    // Cada sesión recibe los frames en el orden en que se publicaron (las secuencias de sala llegan crecientes)
+    config.setPreservePublishOrder(true);
   }
 
   @Override
@@ -1,62 +1,75 @@
 package ec.edu.espe.chat_real_time.controller;
 
+import ec.edu.espe.chat_real_time.Service.storage.AttachmentStorage;
+import ec.edu.espe.chat_real_time.Service.storage.CachedFile;
+import ec.edu.espe.chat_real_time.Service.storage.RemoteAttachmentCache;
 import ec.edu.espe.chat_real_time.exception.ResourceNotFoundException;
 import ec.edu.espe.chat_real_time.model.Attachment;
+import ec.edu.espe.chat_real_time.model.AttachmentStatus;
 import ec.edu.espe.chat_real_time.repository.AttachmentRepository;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.Optional;
-import java.net.HttpURLConnection;
-import java.net.URL;
 
 @RestController
 @RequiredArgsConstructor
 @Slf4j
 public class FileController {
 
+  // Atributos con los que Tomcat envía el archivo con sendfile (zero-copy) al terminar la petición
+  private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+  private static final String ATTACHMENT_CACHE_CONTROL = "private, max-age=604800";
+
   @Value("${file.upload-dir}")
   private String uploadDir;
 
   private final AttachmentRepository attachmentRepository;
+  private final AttachmentStorage attachmentStorage;
+  private final RemoteAttachmentCache remoteAttachmentCache;
 
   @GetMapping("/api/files/{fileName:.+}")
-  public ResponseEntity<Resource> downloadFile(@PathVariable String fileName) {
+  public ResponseEntity<Resource> downloadFile(@PathVariable String fileName, HttpServletRequest request) {
     try {
-      Path filePath = Paths.get(uploadDir).resolve(fileName).normalize();
-      if (!Files.exists(filePath) || !Files.isRegularFile(filePath)) {
-        throw new ResourceNotFoundException("Archivo no encontrado");
-      }
+      Optional<Attachment> attachmentOpt = attachmentRepository.findFirstByFileNameOrderByIdAsc(fileName);
+      String downloadName = attachmentOpt.map(Attachment::getOriginalFileName).orElse(fileName);
 
-      String contentType = Files.probeContentType(filePath);
-      if (contentType == null) {
-        contentType = MediaType.APPLICATION_OCTET_STREAM_VALUE;
+      // Adjuntos del almacenamiento local (guardados por hash en subdirectorios)
+      Optional<Path> storedFile = attachmentOpt.flatMap(att -> attachmentStorage.localFile(att.getFilePath()));
+      if (storedFile.isPresent()) {
+        return serveLocalFile(storedFile.get(), attachmentOpt.get().getFileType(), downloadName, new HttpHeaders(), request);
       }
 
-      Optional<Attachment> attachmentOpt = attachmentRepository.findByFileName(fileName);
-      String downloadName = attachmentOpt.map(Attachment::getOriginalFileName).orElse(fileName);
-
-      Resource resource = new FileSystemResource(filePath);
+      Path root = Paths.get(uploadDir).toAbsolutePath().normalize();
+      Path filePath = root.resolve(fileName).normalize();
+      if (!filePath.startsWith(root) || !Files.exists(filePath) || !Files.isRegularFile(filePath)) {
+        throw new ResourceNotFoundException("Archivo no encontrado");
+      }
 
-      return ResponseEntity.ok()
-              .contentType(MediaType.parseMediaType(contentType))
-              .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + downloadName + "\"")
-              .body(resource);
+      return serveLocalFile(filePath, null, downloadName, new HttpHeaders(), request);
     } catch (IOException ex) {
       log.error("Error al servir archivo {}", fileName, ex);
       throw new ResourceNotFoundException("Archivo no disponible");
@@ -64,58 +77,125 @@ public class FileController {
   }
 
   @GetMapping("/api/v1/public/files/{attachmentId}/download")
-  public ResponseEntity<Resource> downloadAttachment(@PathVariable Long attachmentId) {
+  public ResponseEntity<Resource> downloadAttachment(@PathVariable Long attachmentId, HttpServletRequest request) {
     Attachment att = attachmentRepository.findById(attachmentId)
             .orElseThrow(() -> new ResourceNotFoundException("Archivo no encontrado"));
 
-    String originalName = att.getOriginalFileName();
-    String storedName = att.getFileName();
-    String urlStr = att.getFileUrl();
-    if (urlStr == null || urlStr.isBlank()) {
-      throw new ResourceNotFoundException("URL de archivo no disponible");
+    if (att.getStatus() == AttachmentStatus.PENDING || att.getStatus() == AttachmentStatus.FAILED) {
+      throw new ResourceNotFoundException("Archivo no disponible para descarga");
     }
 
+    String originalName = att.getOriginalFileName();
+    String storedName = att.getFileName();
     String filename = (originalName != null && !originalName.isBlank()) ? originalName :
             (storedName != null && !storedName.isBlank() ? storedName : "file");
 
-    try {
-      URL url = new URL(urlStr);
-      HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-      conn.setInstanceFollowRedirects(true);
-      conn.setRequestMethod("GET");
-      conn.connect();
-
-      int status = conn.getResponseCode();
-      if (status >= 400) {
-        log.error("Fallo al obtener archivo desde origen (status {}): {}", status, urlStr);
-        throw new ResourceNotFoundException("Archivo no disponible para descarga");
-      }
+    // El contenido de un adjunto no cambia una vez subido: el ETag sale de sus metadatos
+    String etag = etagOf(att);
+    if (isNotModified(request, etag)) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+              .eTag(etag)
+              .header(HttpHeaders.CACHE_CONTROL, ATTACHMENT_CACHE_CONTROL)
+              .build();
+    }
 
-      String contentType = att.getFileType();
-      if (contentType == null || contentType.isBlank()) {
-        contentType = conn.getContentType();
+    Optional<Path> storedFile = attachmentStorage.localFile(att.getFilePath());
+    Path file;
+    String contentType = att.getFileType();
+    if (storedFile.isPresent()) {
+      file = storedFile.get();
+    } else {
+      String urlStr = att.getFileUrl();
+      if (urlStr == null || urlStr.isBlank()) {
+        throw new ResourceNotFoundException("URL de archivo no disponible");
       }
+      // Adjuntos remotos: se sirven desde la copia en disco, descargada una sola vez del origen
+      CachedFile cached = remoteAttachmentCache.get(att.getId(), urlStr);
+      file = cached.getPath();
       if (contentType == null || contentType.isBlank()) {
-        contentType = MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        contentType = cached.getContentType();
       }
+    }
 
-      long contentLength = conn.getContentLengthLong();
-      InputStream inputStream = conn.getInputStream();
-      InputStreamResource resource = new InputStreamResource(inputStream);
+    HttpHeaders headers = new HttpHeaders();
+    headers.setETag(etag);
+    headers.setCacheControl(ATTACHMENT_CACHE_CONTROL);
+    try {
+      return serveLocalFile(file, contentType, filename, headers, request);
+    } catch (IOException e) {
+      log.error("Error al servir archivo {}", file, e);
+      throw new ResourceNotFoundException("Archivo no disponible");
+    }
+  }
 
-      ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
-              .contentType(MediaType.parseMediaType(contentType))
-              .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-              .header(HttpHeaders.CACHE_CONTROL, "private, max-age=604800");
+  private String etagOf(Attachment att) {
+    String source = att.getFilePath() + "|" + att.getFileUrl() + "|" + att.getFileSize();
+    return "\"" + att.getId() + "-" + DigestUtils.md5DigestAsHex(source.getBytes(StandardCharsets.UTF_8)) + "\"";
+  }
 
-      if (contentLength > 0) {
-        builder = builder.contentLength(contentLength);
-      }
+  private boolean isNotModified(HttpServletRequest request, String etag) {
+    String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+    if (ifNoneMatch == null || ifNoneMatch.isBlank()) return false;
+    for (String candidate : ifNoneMatch.split(",")) {
+      String tag = candidate.trim();
+      if (tag.startsWith("W/")) tag = tag.substring(2);
+      if (tag.equals("*") || tag.equals(etag)) return true;
+    }
+    return false;
+  }
 
-      return builder.body(resource);
-    } catch (IOException e) {
-      log.error("Error al descargar archivo desde origen: {}", urlStr, e);
-      throw new ResourceNotFoundException("Error al descargar el archivo");
+  // Con Tomcat y un único rango se delega en sendfile; si no, Spring sirve el recurso y resuelve los rangos
+  private ResponseEntity<Resource> serveLocalFile(Path file, String contentType, String downloadName,
+                                                  HttpHeaders headers, HttpServletRequest request) throws IOException {
+    if (contentType == null || contentType.isBlank()) {
+      contentType = Files.probeContentType(file);
     }
+    if (contentType == null) {
+      contentType = MediaType.APPLICATION_OCTET_STREAM_VALUE;
+    }
+
+    headers.setContentType(MediaType.parseMediaType(contentType));
+    headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + downloadName + "\"");
+    headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+    if (!Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+      return ResponseEntity.ok().headers(headers).body(new FileSystemResource(file));
+    }
+
+    long length = Files.size(file);
+    List<HttpRange> ranges;
+    try {
+      ranges = HttpRange.parseRanges(request.getHeader(HttpHeaders.RANGE));
+    } catch (IllegalArgumentException e) {
+      return rangeNotSatisfiable(length);
+    }
+    if (ranges.size() > 1) {
+      return ResponseEntity.ok().headers(headers).body(new FileSystemResource(file));
+    }
+
+    long start = 0;
+    long end = length - 1;
+    if (ranges.size() == 1) {
+      start = ranges.get(0).getRangeStart(length);
+      end = ranges.get(0).getRangeEnd(length);
+      if (start >= length || start > end) {
+        return rangeNotSatisfiable(length);
+      }
+      headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+    }
+    headers.setContentLength(end - start + 1);
+
+    request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+    request.setAttribute(SENDFILE_START, start);
+    request.setAttribute(SENDFILE_END, end + 1);
+
+    HttpStatus status = ranges.isEmpty() ? HttpStatus.OK : HttpStatus.PARTIAL_CONTENT;
+    return ResponseEntity.status(status).headers(headers).build();
+  }
+
+  private ResponseEntity<Resource> rangeNotSatisfiable(long length) {
+    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+            .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+            .build();
   }
 }
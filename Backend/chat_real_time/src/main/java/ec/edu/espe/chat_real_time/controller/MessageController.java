@@ -4,9 +4,12 @@ package ec.edu.espe.chat_real_time.controller;
 import ec.edu.espe.chat_real_time.Service.message.MessageService;
 import ec.edu.espe.chat_real_time.dto.request.SendMessageRequest;
 import ec.edu.espe.chat_real_time.dto.response.ApiResponse;
+import ec.edu.espe.chat_real_time.dto.response.MessagePageResponse;
 import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
 import ec.edu.espe.chat_real_time.model.user.User;
 import ec.edu.espe.chat_real_time.repository.UserRepository;
+import ec.edu.espe.chat_real_time.security.jwt.JwtPrincipal;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -15,6 +18,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -49,6 +54,22 @@ public class MessageController {
             .body(ApiResponse.success("Archivo enviado exitosamente", response));
   }
 
+  // Cuerpo crudo (no multipart): el límite de la sala se aplica mientras llegan los bytes
+  @PostMapping(value = "/file/stream", consumes = {"!" + MediaType.MULTIPART_FORM_DATA_VALUE, "!" + MediaType.APPLICATION_FORM_URLENCODED_VALUE})
+  public ResponseEntity<ApiResponse<MessageResponse>> sendFileStream(
+          @RequestParam Long roomId,
+          @RequestParam String fileName,
+          @RequestParam(required = false) String content,
+          HttpServletRequest request,
+          Authentication authentication
+  ) throws IOException {
+    User user = getUserFromAuthentication(authentication);
+    MessageResponse response = messageService.sendFileStream(
+            roomId, content, fileName, request.getContentType(), request.getContentLengthLong(), request.getInputStream(), user);
+    return ResponseEntity.status(HttpStatus.CREATED)
+            .body(ApiResponse.success("Archivo enviado exitosamente", response));
+  }
+
   @GetMapping("/room/{roomId}")
   public ResponseEntity<ApiResponse<List<MessageResponse>>> getRoomMessages(
           @PathVariable Long roomId,
@@ -59,6 +80,18 @@ public class MessageController {
     return ResponseEntity.ok(ApiResponse.success("Mensajes obtenidos exitosamente", messages));
   }
 
+  @GetMapping("/room/{roomId}/history")
+  public ResponseEntity<ApiResponse<MessagePageResponse>> getRoomMessagesPage(
+          @PathVariable Long roomId,
+          @RequestParam(required = false) String before,
+          @RequestParam(required = false) Integer limit,
+          Authentication authentication
+  ) {
+    User user = getUserFromAuthentication(authentication);
+    MessagePageResponse page = messageService.getRoomMessagesPage(roomId, before, limit, user);
+    return ResponseEntity.ok(ApiResponse.success("Mensajes obtenidos exitosamente", page));
+  }
+
   @GetMapping("/{messageId}")
   public ResponseEntity<ApiResponse<MessageResponse>> getMessageById(
           @PathVariable Long messageId
@@ -78,6 +111,10 @@ public class MessageController {
   }
 
   private User getUserFromAuthentication(Authentication authentication) {
+    // modo sin estado: el id viene en el token, la referencia solo se carga si el servicio lee algo más que el id
+    if (authentication.getPrincipal() instanceof JwtPrincipal principal) {
+      return userRepository.getReferenceById(principal.getUserId());
+    }
     String username = authentication.getName();
     return userRepository.findByUsernameAndDeletedAtIsNull(username)
             .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
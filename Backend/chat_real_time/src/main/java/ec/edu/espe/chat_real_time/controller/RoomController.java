@@ -8,6 +8,7 @@ import ec.edu.espe.chat_real_time.dto.response.RoomDetailResponse;
 import ec.edu.espe.chat_real_time.dto.response.RoomResponse;
 import ec.edu.espe.chat_real_time.model.user.User;
 import ec.edu.espe.chat_real_time.repository.UserRepository;
+import ec.edu.espe.chat_real_time.security.jwt.JwtPrincipal;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.*;
@@ -102,6 +103,10 @@ public class RoomController {
     }
 
     private User getUserFromAuthentication(Authentication authentication) {
+        // modo sin estado: el id viene en el token, la referencia solo se carga si el servicio lee algo más que el id
+        if (authentication.getPrincipal() instanceof JwtPrincipal principal) {
+            return userRepository.getReferenceById(principal.getUserId());
+        }
         String username = authentication.getName();
         return userRepository.findByUsernameAndDeletedAtIsNull(username)
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
@@ -2,14 +2,17 @@ package ec.edu.espe.chat_real_time.controller;
 
 import ec.edu.espe.chat_real_time.Service.websocket.WebSocketService;
 import ec.edu.espe.chat_real_time.dto.request.SendMessageRequest;
+import ec.edu.espe.chat_real_time.dto.websocket.ResumeRequest;
 import ec.edu.espe.chat_real_time.dto.websocket.TypingIndicator;
 import ec.edu.espe.chat_real_time.model.user.User;
-import ec.edu.espe.chat_real_time.repository.UserRepository;
+import ec.edu.espe.chat_real_time.websocket.StompSessionUserCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 
@@ -19,15 +22,16 @@ import org.springframework.stereotype.Controller;
 public class WebSocketChatController {
 
   private final WebSocketService webSocketService;
-  private final UserRepository userRepository;
+  private final StompSessionUserCache sessionUserCache;
 
   @MessageMapping("/chat.sendMessage/{roomId}")
   public void sendMessage(
           @DestinationVariable Long roomId,
           @Payload SendMessageRequest request,
-          Authentication authentication
+          Authentication authentication,
+          @Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId
   ) {
-    User user = getUserFromAuthentication(authentication);
+    User user = getUserFromAuthentication(authentication, sessionId);
     request.setRoomId(roomId);
     webSocketService.sendMessageToRoom(request, user);
   }
@@ -36,33 +40,46 @@ public class WebSocketChatController {
   public void handleTypingIndicator(
           @DestinationVariable Long roomId,
           @Payload TypingIndicator typingIndicator,
-          Authentication authentication
+          Authentication authentication,
+          @Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId
   ) {
-    User user = getUserFromAuthentication(authentication);
+    User user = getUserFromAuthentication(authentication, sessionId);
     webSocketService.sendTypingIndicator(roomId, typingIndicator, user);
   }
 
   @MessageMapping("/chat.joinRoom/{roomId}")
   public void handleJoinRoom(
           @DestinationVariable Long roomId,
-          Authentication authentication
+          Authentication authentication,
+          @Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId
   ) {
-    User user = getUserFromAuthentication(authentication);
+    User user = getUserFromAuthentication(authentication, sessionId);
     webSocketService.notifyUserJoinedRoom(roomId, user);
   }
 
   @MessageMapping("/chat.leaveRoom/{roomId}")
   public void handleLeaveRoom(
           @DestinationVariable Long roomId,
-          Authentication authentication
+          Authentication authentication,
+          @Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId
   ) {
-    User user = getUserFromAuthentication(authentication);
+    User user = getUserFromAuthentication(authentication, sessionId);
     webSocketService.notifyUserLeftRoom(roomId, user);
   }
 
-  private User getUserFromAuthentication(Authentication authentication) {
-    String username = authentication.getName();
-    return userRepository.findByUsernameAndDeletedAtIsNull(username)
-            .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+  // Al reconectar: reenvía a esta sesión solo los frames de la sala posteriores al último que recibió
+  @MessageMapping("/chat.resume/{roomId}")
+  public void handleResume(
+          @DestinationVariable Long roomId,
+          @Payload ResumeRequest request,
+          Authentication authentication,
+          @Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId
+  ) {
+    User user = getUserFromAuthentication(authentication, sessionId);
+    webSocketService.resumeRoom(roomId, request, user, sessionId);
+  }
+
+  private User getUserFromAuthentication(Authentication authentication, String sessionId) {
+    return sessionUserCache.resolve(sessionId, authentication.getName());
   }
 }
\ No newline at end of file
@@ -1,7 +1,9 @@
 package ec.edu.espe.chat_real_time.dto.mapperDTO;
 
+import ec.edu.espe.chat_real_time.dto.projection.RecentMessageView;
 import ec.edu.espe.chat_real_time.dto.response.AttachmentResponse;
 import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
+import ec.edu.espe.chat_real_time.model.AttachmentStatus;
 import ec.edu.espe.chat_real_time.model.message.Message;
 import ec.edu.espe.chat_real_time.model.user.User;
 
@@ -31,6 +33,12 @@ public class MessageMapper {
                     .fileType(att.getFileType())
                     .fileSize(att.getFileSize())
                     .fileUrl(att.getFileUrl())
+                    .status(att.getStatus() != null ? att.getStatus() : AttachmentStatus.READY)
+                    .width(att.getImageWidth())
+                    .height(att.getImageHeight())
+                    .previewUrl(att.getPreviewUrl())
+                    .previewWidth(att.getPreviewWidth())
+                    .previewHeight(att.getPreviewHeight())
                     .uploadedAt(att.getUploadedAt())
                     .build())
             .collect(Collectors.toList());
@@ -48,4 +56,18 @@ public class MessageMapper {
             .attachments(isDeleted ? List.of() : attachments)
             .build();
   }
+
+  public static MessageResponse toMessageResponse(RecentMessageView view) {
+    return MessageResponse.builder()
+            .id(view.getId())
+            .content(view.getContent())
+            .messageType(view.getMessageType())
+            .sentAt(view.getSentAt())
+            .isEdited(view.getIsEdited())
+            .editedAt(view.getEditedAt())
+            .senderNickname(view.getSenderNickname())
+            .senderId(view.getSenderId())
+            .roomId(view.getRoomId())
+            .build();
+  }
 }
@@ -7,6 +7,10 @@ import ec.edu.espe.chat_real_time.model.user.User;
 public class RoomMapper {
 
   public static RoomResponse toRoomResponse(Room room) {
+    return toRoomResponse(room, room.getCurrentUsers());
+  }
+
+  public static RoomResponse toRoomResponse(Room room, int currentUsers) {
     User creator = room.getCreator();
     return RoomResponse.builder()
             .id(room.getId())
@@ -15,10 +19,10 @@ public class RoomMapper {
             .description(room.getDescription())
             .type(room.getType())
             .maxUsers(room.getMaxUsers())
-            .currentUsers(room.getCurrentUsers())
+            .currentUsers(currentUsers)
             .maxFileSizeMb(room.getMaxFileSizeMb())
             .isActive(room.getIsActive())
-            .isFull(room.isFull())
+            .isFull(currentUsers >= room.getMaxUsers())
             .createdAt(room.getCreatedAt())
             .creator(UserMapper.toUserAdminResponse(creator.getAdminProfile())) // el creador de l
             .build();
@@ -0,0 +1,22 @@
+package ec.edu.espe.chat_real_time.dto.projection;
+
+import ec.edu.espe.chat_real_time.model.message.MessageType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+// Proyeccion de solo lectura para el historial reciente; el nombre del remitente ya viene resuelto desde la consulta
+@Getter
+@AllArgsConstructor
+public class RecentMessageView {
+  private Long id;
+  private String content;
+  private MessageType messageType;
+  private LocalDateTime sentAt;
+  private Boolean isEdited;
+  private LocalDateTime editedAt;
+  private Long senderId;
+  private Long roomId;
+  private String senderNickname;
+}
@@ -1,5 +1,6 @@
 package ec.edu.espe.chat_real_time.dto.response;
 
+import ec.edu.espe.chat_real_time.model.AttachmentStatus;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -18,5 +19,11 @@ public class AttachmentResponse {
   private String fileType;
   private Long fileSize;
   private String fileUrl;
+  private AttachmentStatus status;
+  private Integer width;
+  private Integer height;
+  private String previewUrl;
+  private Integer previewWidth;
+  private Integer previewHeight;
   private LocalDateTime uploadedAt;
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package ec.edu.espe.chat_real_time.dto.websocket;
+
+import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplayedMessage {
+  private long seq;
+  private MessageResponse message;
+}
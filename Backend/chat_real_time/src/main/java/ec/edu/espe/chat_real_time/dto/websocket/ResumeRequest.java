@@ -0,0 +1,16 @@
+package ec.edu.espe.chat_real_time.dto.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Último frame de la sala que recibió el cliente antes de perder la conexión (cabeceras seq-epoch y seq)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumeRequest {
+  private String epoch;
+  private Long lastSeq;
+}
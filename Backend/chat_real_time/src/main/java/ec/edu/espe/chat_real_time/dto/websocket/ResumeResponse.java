@@ -0,0 +1,22 @@
+package ec.edu.espe.chat_real_time.dto.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// complete=false: no se puede garantizar la continuidad (otra época o hueco más antiguo que el registro)
+// y el cliente debe recargar el historial por REST
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumeResponse {
+  private Long roomId;
+  private String epoch;
+  private long lastSeq;
+  private boolean complete;
+  private List<ReplayedMessage> messages;
+}
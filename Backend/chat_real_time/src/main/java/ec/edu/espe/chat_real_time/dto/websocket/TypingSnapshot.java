@@ -0,0 +1,19 @@
+package ec.edu.espe.chat_real_time.dto.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Quién está escribiendo en la sala: como mucho unos pocos nombres y el total
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TypingSnapshot {
+  private Long roomId;
+  private List<String> usernames;
+  private int count;
+}
@@ -0,0 +1,7 @@
+package ec.edu.espe.chat_real_time.exception;
+
+public class FileTooLargeException extends RuntimeException {
+  public FileTooLargeException(String message) {
+    super(message);
+  }
+}
@@ -182,6 +182,23 @@ public class GlobalExceptionHandler {
     return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
   }
 
+  @ExceptionHandler(FileTooLargeException.class)
+  public ResponseEntity<ErrorResponse> handleFileTooLargeException(
+          FileTooLargeException ex,
+          WebRequest request
+  ) {
+    ErrorResponse error = ErrorResponse.builder()
+            .success(false)
+            .message(ex.getMessage())
+            .error("File Too Large")
+            .status(HttpStatus.PAYLOAD_TOO_LARGE.value())
+            .path(request.getDescription(false).replace("uri=", ""))
+            .timestamp(LocalDateTime.now())
+            .build();
+
+    return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(error);
+  }
+
   @ExceptionHandler(MaxUploadSizeExceededException.class)
   public ResponseEntity<ErrorResponse> handleMaxUploadSizeExceededException(
           MaxUploadSizeExceededException ex,
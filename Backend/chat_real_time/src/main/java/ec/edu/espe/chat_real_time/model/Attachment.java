@@ -9,7 +9,8 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "attachments", indexes = {
-        @Index(name = "idx_attachment_message", columnList = "message_id")
+        @Index(name = "idx_attachment_message", columnList = "message_id"),
+        @Index(name = "idx_attachment_content_hash", columnList = "content_hash")
 })
 @Getter
 @Setter
@@ -18,7 +19,7 @@ import java.time.LocalDateTime;
 @Builder
 public class Attachment {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @SnowflakeId
   private Long id;
 
   @Column(name = "file_name", nullable = false, length = 255)
@@ -39,13 +40,45 @@ public class Attachment {
   @Column(name = "file_url", nullable = false, length = 500)
   private String fileUrl;
 
+  // PENDING mientras el archivo se sube al almacenamiento; las filas anteriores (null) se tratan como READY
+  @Enumerated(EnumType.STRING)
+  @Column(name = "upload_status", length = 20)
+  @Builder.Default
+  private AttachmentStatus status = AttachmentStatus.READY;
+
+  // SHA-256 del contenido; las filas anteriores a la deduplicación lo tienen en null
+  @Column(name = "content_hash", length = 64)
+  private String contentHash;
+
+  // Dimensiones y miniatura de las imágenes; null en otros tipos o si no se pudo generar
+  @Column(name = "image_width")
+  private Integer imageWidth;
+
+  @Column(name = "image_height")
+  private Integer imageHeight;
+
+  @Column(name = "preview_url", length = 500)
+  private String previewUrl;
+
+  @Column(name = "preview_width")
+  private Integer previewWidth;
+
+  @Column(name = "preview_height")
+  private Integer previewHeight;
+
   @CreationTimestamp
   @Column(name = "uploaded_at", nullable = false, updatable = false)
   private LocalDateTime uploadedAt;
 
   // Relaciones
 
+  // messages puede estar particionada y entonces no admite FK que la referencien
   @ManyToOne(fetch = FetchType.LAZY)
-  @JoinColumn(name = "message_id", nullable = false)
+  @JoinColumn(name = "message_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
   private Message message;
+
+  // Objeto almacenado compartido; null en adjuntos antiguos o de mensajes ya eliminados
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "stored_object_id")
+  private StoredObject storedObject;
 }
\ No newline at end of file
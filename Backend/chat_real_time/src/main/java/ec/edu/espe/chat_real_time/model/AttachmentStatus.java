@@ -0,0 +1,5 @@
+package ec.edu.espe.chat_real_time.model;
+
+public enum AttachmentStatus {
+  PENDING, READY, FAILED
+}
@@ -0,0 +1,29 @@
+package ec.edu.espe.chat_real_time.model;
+
+import ec.edu.espe.chat_real_time.utils.SnowflakeIdGenerator;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.util.EnumSet;
+
+// Con Spring Boot, Hibernate pide el generador al contenedor de Spring: el SnowflakeIdGenerator llega por constructor
+public class SnowflakeHibernateGenerator implements BeforeExecutionGenerator {
+
+  private final transient SnowflakeIdGenerator idGenerator;
+
+  public SnowflakeHibernateGenerator(SnowflakeIdGenerator idGenerator) {
+    this.idGenerator = idGenerator;
+  }
+
+  @Override
+  public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+    return idGenerator.nextId();
+  }
+
+  @Override
+  public EnumSet<EventType> getEventTypes() {
+    return EventTypeSets.INSERT_ONLY;
+  }
+}
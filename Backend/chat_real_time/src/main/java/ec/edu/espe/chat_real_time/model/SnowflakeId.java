@@ -0,0 +1,15 @@
+package ec.edu.espe.chat_real_time.model;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Id generado en la aplicación antes del INSERT (a diferencia de IDENTITY, permite batching y ordena por tiempo)
+@IdGeneratorType(SnowflakeHibernateGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface SnowflakeId {
+}
@@ -0,0 +1,67 @@
+package ec.edu.espe.chat_real_time.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+// Archivo guardado una sola vez por contenido; los adjuntos idénticos lo comparten con un contador de referencias
+@Entity
+@Table(name = "stored_objects", indexes = {
+        @Index(name = "idx_stored_object_content_hash", columnList = "content_hash")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StoredObject {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(name = "content_hash", nullable = false, length = 64)
+  private String contentHash;
+
+  @Column(name = "file_name", nullable = false, length = 255)
+  private String fileName;
+
+  @Column(name = "file_path", nullable = false, length = 500)
+  private String filePath;
+
+  @Column(name = "file_url", nullable = false, length = 500)
+  private String fileUrl;
+
+  @Column(name = "file_type", length = 50)
+  private String fileType;
+
+  @Column(name = "file_size")
+  private Long fileSize;
+
+  @Column(name = "image_width")
+  private Integer imageWidth;
+
+  @Column(name = "image_height")
+  private Integer imageHeight;
+
+  // La miniatura vive y se borra junto al objeto
+  @Column(name = "preview_path", length = 500)
+  private String previewPath;
+
+  @Column(name = "preview_url", length = 500)
+  private String previewUrl;
+
+  @Column(name = "preview_width")
+  private Integer previewWidth;
+
+  @Column(name = "preview_height")
+  private Integer previewHeight;
+
+  @Column(name = "ref_count", nullable = false)
+  private Integer refCount;
+
+  @CreationTimestamp
+  @Column(name = "created_at", nullable = false, updatable = false)
+  private LocalDateTime createdAt;
+}
@@ -0,0 +1,34 @@
+package ec.edu.espe.chat_real_time.model.message;
+
+import ec.edu.espe.chat_real_time.model.StoredObject;
+import jakarta.persistence.*;
+import lombok.*;
+
+// Referencia de un adjunto archivado a su objeto almacenado: el chunk sigue mostrando el archivo,
+// así que la referencia se conserva hasta eliminar el mensaje archivado o purgar a su autor
+@Entity
+@Table(name = "archived_attachment_refs", indexes = {
+        @Index(name = "idx_archived_ref_message", columnList = "message_id"),
+        @Index(name = "idx_archived_ref_sender", columnList = "sender_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ArchivedAttachmentRef {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  // sin FK, igual que los chunks: el mensaje ya no existe en la tabla caliente
+  @Column(name = "message_id", nullable = false)
+  private Long messageId;
+
+  @Column(name = "sender_id", nullable = false)
+  private Long senderId;
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "stored_object_id", nullable = false)
+  private StoredObject storedObject;
+}
@@ -2,11 +2,13 @@ package ec.edu.espe.chat_real_time.model.message;
 
 
 import ec.edu.espe.chat_real_time.model.Attachment;
+import ec.edu.espe.chat_real_time.model.SnowflakeId;
 import ec.edu.espe.chat_real_time.model.room.Room;
 import ec.edu.espe.chat_real_time.model.user.User;
 import ec.edu.espe.chat_real_time.model.user.UserSession;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -17,7 +19,8 @@ import java.util.List;
         @Index(name = "idx_message_room", columnList = "room_id"),
         @Index(name = "idx_message_user", columnList = "user_id"),
         @Index(name = "idx_message_sent_at", columnList = "sentAt"),
-        @Index(name = "idx_message_session", columnList = "session_id")
+        @Index(name = "idx_message_session", columnList = "session_id"),
+        @Index(name = "idx_message_room_deleted_id", columnList = "room_id, is_deleted, id")
 })
 @Getter
 @Setter
@@ -25,8 +28,9 @@ import java.util.List;
 @AllArgsConstructor
 @Builder
 public class Message {
+  // Snowflake: creciente en el tiempo, sirve de cursor y de orden estable dentro del mismo milisegundo
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @SnowflakeId
   private Long id;
 
   @Column(nullable = false, columnDefinition = "TEXT")
@@ -55,19 +59,21 @@ public class Message {
   @Column(name = "deleted_at")
   private LocalDateTime deletedAt;
 
+  // Sin FK en la BD: MySQL no las admite en tablas particionadas (ver MessagePartitionMigration)
   @ManyToOne(fetch = FetchType.LAZY)
-  @JoinColumn(name = "user_id", nullable = false)
+  @JoinColumn(name = "user_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
   private User user;
 
   @ManyToOne(fetch = FetchType.LAZY)
-  @JoinColumn(name = "room_id", nullable = false)
+  @JoinColumn(name = "room_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
   private Room room;
 
   @ManyToOne(fetch = FetchType.LAZY)
-  @JoinColumn(name = "session_id", nullable = false)
+  @JoinColumn(name = "session_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
   private UserSession session;
 
   @OneToMany(mappedBy = "message", cascade = CascadeType.ALL, orphanRemoval = true)
+  @BatchSize(size = 100)
   @Builder.Default
   private List<Attachment> attachments = new ArrayList<>();
 }
\ No newline at end of file
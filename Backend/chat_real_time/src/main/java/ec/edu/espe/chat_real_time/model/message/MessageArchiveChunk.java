@@ -0,0 +1,44 @@
+package ec.edu.espe.chat_real_time.model.message;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+// Bloque de mensajes archivados de una sala (solo se reescribe al eliminar uno de ellos): JSON comprimido con gzip, una fila por chunk-size mensajes
+@Entity
+@Table(name = "message_archive_chunks", indexes = {
+        @Index(name = "idx_archive_room_last_message", columnList = "room_id, last_message_id"),
+        @Index(name = "idx_archive_last_message", columnList = "last_message_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MessageArchiveChunk {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  // sin FK: el archivo no debe impedir borrar salas ni frenar los INSERT de la tabla caliente
+  @Column(name = "room_id", nullable = false)
+  private Long roomId;
+
+  @Column(name = "first_message_id", nullable = false)
+  private Long firstMessageId;
+
+  @Column(name = "last_message_id", nullable = false)
+  private Long lastMessageId;
+
+  @Column(name = "message_count", nullable = false)
+  private Integer messageCount;
+
+  @Column(name = "payload", nullable = false, columnDefinition = "LONGBLOB")
+  private byte[] payload;
+
+  @CreationTimestamp
+  @Column(name = "archived_at", nullable = false, updatable = false)
+  private LocalDateTime archivedAt;
+}
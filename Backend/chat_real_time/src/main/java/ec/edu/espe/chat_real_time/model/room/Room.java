@@ -50,7 +50,8 @@ public class Room {
   @Builder.Default
   private Integer maxUsers = 50;
 
-  @Column(name = "current_users")
+  // Solo lo escribe RoomPresenceWriter; los save() de la entidad no lo pisan
+  @Column(name = "current_users", updatable = false)
   @Builder.Default
   private Integer currentUsers = 0;
 
@@ -6,6 +6,7 @@ import ec.edu.espe.chat_real_time.model.message.Message;
 import ec.edu.espe.chat_real_time.model.room.Room;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.security.core.GrantedAuthority;
@@ -84,6 +85,7 @@ public class User implements UserDetails {
   private Boolean enabled = true;
 
   @ManyToMany(fetch = FetchType.EAGER)
+  @BatchSize(size = 100)
   @JoinTable(
           name = "user_roles",
           joinColumns = @JoinColumn(name = "user_id"),
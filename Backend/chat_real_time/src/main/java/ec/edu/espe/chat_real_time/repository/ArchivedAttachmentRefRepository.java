@@ -0,0 +1,24 @@
+package ec.edu.espe.chat_real_time.repository;
+
+import ec.edu.espe.chat_real_time.model.message.ArchivedAttachmentRef;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ArchivedAttachmentRefRepository extends JpaRepository<ArchivedAttachmentRef, Long> {
+  // Se devuelven las referencias y no los objetos: Hibernate deduplica las entidades seleccionadas
+  // y un objeto compartido por dos adjuntos debe soltarse dos veces
+  @Query("SELECT r FROM ArchivedAttachmentRef r JOIN FETCH r.storedObject WHERE r.messageId IN :messageIds")
+  List<ArchivedAttachmentRef> findWithStoredObjectByMessageIds(List<Long> messageIds);
+
+  @Query("SELECT DISTINCT r.messageId FROM ArchivedAttachmentRef r WHERE r.senderId IN :senderIds")
+  List<Long> findMessageIdsBySenderIds(List<Long> senderIds);
+
+  @Modifying
+  @Query("DELETE FROM ArchivedAttachmentRef r WHERE r.messageId IN :messageIds")
+  int deleteByMessageIds(List<Long> messageIds);
+}
@@ -1,10 +1,14 @@
 package ec.edu.espe.chat_real_time.repository;
 
 import ec.edu.espe.chat_real_time.model.Attachment;
+import ec.edu.espe.chat_real_time.model.AttachmentStatus;
 import ec.edu.espe.chat_real_time.model.message.Message;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,5 +16,20 @@ import java.util.Optional;
 public interface AttachmentRepository extends JpaRepository<Attachment, Long> {
   List<Attachment> findByMessage(Message message);
   List<Attachment> findByMessageId(Long messageId);
-  Optional<Attachment> findByFileName(String fileName);
+  // Varios adjuntos pueden compartir el mismo archivo almacenado (deduplicación por contenido)
+  Optional<Attachment> findFirstByFileNameOrderByIdAsc(String fileName);
+
+  // Subidas pendientes: al arrancar se reencolan y las que caducan se marcan FAILED
+  List<Attachment> findByStatus(AttachmentStatus status);
+  List<Attachment> findByStatusAndUploadedAtBefore(AttachmentStatus status, LocalDateTime before);
+
+  // Se devuelven los adjuntos y no los objetos: Hibernate deduplica las entidades seleccionadas
+  // y si dos adjuntos comparten objeto hay que soltar dos referencias
+  @Query("SELECT a FROM Attachment a JOIN FETCH a.storedObject WHERE a.message.id IN :messageIds")
+  List<Attachment> findWithStoredObjectByMessageIds(List<Long> messageIds);
+
+  // Borrado masivo al archivar o purgar; antes cada referencia de findWithStoredObjectByMessageIds se suelta o se pasa al archivo
+  @Modifying
+  @Query("DELETE FROM Attachment a WHERE a.message.id IN :messageIds")
+  int deleteByMessageIds(List<Long> messageIds);
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package ec.edu.espe.chat_real_time.repository;
+
+import ec.edu.espe.chat_real_time.model.message.MessageArchiveChunk;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface MessageArchiveChunkRepository extends JpaRepository<MessageArchiveChunk, Long> {
+  // Chunks con algún mensaje anterior al cursor, del más reciente al más antiguo (idx_archive_room_last_message)
+  List<MessageArchiveChunk> findByRoomIdAndFirstMessageIdLessThanOrderByLastMessageIdDesc(
+          Long roomId, Long beforeId, Pageable pageable);
+
+  // Chunks cuyo rango de ids incluye el mensaje; los de salas distintas pueden solaparse (idx_archive_last_message)
+  @Query("SELECT c FROM MessageArchiveChunk c WHERE c.lastMessageId >= :messageId AND c.firstMessageId <= :messageId")
+  List<MessageArchiveChunk> findContaining(Long messageId);
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT c FROM MessageArchiveChunk c WHERE c.lastMessageId >= :messageId AND c.firstMessageId <= :messageId")
+  List<MessageArchiveChunk> lockContaining(Long messageId);
+}
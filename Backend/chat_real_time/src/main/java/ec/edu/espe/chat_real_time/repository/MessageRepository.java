@@ -1,13 +1,18 @@
 package ec.edu.espe.chat_real_time.repository;
 
+import ec.edu.espe.chat_real_time.dto.projection.RecentMessageView;
 import ec.edu.espe.chat_real_time.model.message.Message;
 import ec.edu.espe.chat_real_time.model.message.MessageType;
 import ec.edu.espe.chat_real_time.model.room.Room;
 import ec.edu.espe.chat_real_time.model.user.User;
 import ec.edu.espe.chat_real_time.model.user.UserSession;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
@@ -21,6 +26,29 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
   List<Message> findByRoomAndIsDeletedFalseOrderBySentAtDesc(Room room);
   Page<Message> findByRoomAndIsDeletedFalseOrderBySentAtDesc(Room room, Pageable pageable);
 
+  // Paginacion por cursor (keyset) sobre idx_message_room_deleted_id.
+  // El remitente y sus perfiles se traen en el mismo JOIN; adjuntos y roles se cargan por lotes (@BatchSize)
+  @EntityGraph(attributePaths = {"user", "user.guestProfile", "user.adminProfile", "room"})
+  List<Message> findByRoomAndIsDeletedFalseOrderByIdDesc(Room room, Pageable pageable);
+
+  @EntityGraph(attributePaths = {"user", "user.guestProfile", "user.adminProfile", "room"})
+  List<Message> findByRoomAndIsDeletedFalseAndIdLessThanOrderByIdDesc(Room room, Long id, Pageable pageable);
+
+  // Igual que la anterior con una cota de sent_at, para que MySQL descarte las particiones más recientes
+  @EntityGraph(attributePaths = {"user", "user.guestProfile", "user.adminProfile", "room"})
+  List<Message> findByRoomAndIsDeletedFalseAndIdLessThanAndSentAtBeforeOrderByIdDesc(
+          Room room, Long id, LocalDateTime sentBefore, Pageable pageable);
+
+  @Query("SELECT new ec.edu.espe.chat_real_time.dto.projection.RecentMessageView(" +
+          "m.id, m.content, m.messageType, m.sentAt, m.isEdited, m.editedAt, u.id, m.room.id, " +
+          "CASE WHEN gp.id IS NOT NULL THEN gp.nickname " +
+          "WHEN ap.id IS NOT NULL THEN CONCAT(ap.firstName, ' ', ap.lastName, ' (Admin)') " +
+          "ELSE u.username END) " +
+          "FROM Message m JOIN m.user u " +
+          "LEFT JOIN u.guestProfile gp LEFT JOIN u.adminProfile ap " +
+          "WHERE m.room = :room AND m.isDeleted = false ORDER BY m.id DESC")
+  List<RecentMessageView> findRecentMessageViews(Room room, Pageable pageable);
+
   List<Message> findByUserAndIsDeletedFalse(User user);
   List<Message> findBySessionAndIsDeletedFalse(UserSession session);
 
@@ -31,4 +59,22 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
   long countByRoomAndType(Room room, MessageType type);
 
   long countByRoom(Room room);
+
+  // Archivado: salas con mensajes antiguos y lotes a mover, bloqueados para que dos nodos no archiven lo mismo
+  @Query("SELECT DISTINCT m.room.id FROM Message m WHERE m.sentAt < :cutoff")
+  List<Long> findRoomIdsWithMessagesBefore(LocalDateTime cutoff);
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT m.id FROM Message m WHERE m.room.id = :roomId AND m.sentAt < :cutoff ORDER BY m.id")
+  List<Long> lockIdsToArchive(Long roomId, LocalDateTime cutoff, Pageable pageable);
+
+  @EntityGraph(attributePaths = {"user", "user.guestProfile", "user.adminProfile", "room"})
+  List<Message> findByIdInOrderByIdAsc(List<Long> ids);
+
+  @Query("SELECT m.id FROM Message m WHERE m.user.id IN :userIds ORDER BY m.id")
+  List<Long> findIdsByUserIds(List<Long> userIds);
+
+  @Modifying
+  @Query("DELETE FROM Message m WHERE m.id IN :ids")
+  int deleteByIds(List<Long> ids);
 }
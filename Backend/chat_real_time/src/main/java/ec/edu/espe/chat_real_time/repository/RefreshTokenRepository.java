@@ -42,6 +42,10 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long
   @Query("DELETE FROM RefreshToken rt WHERE rt.user.id = :userId")
   void deleteAllByUserId(@Param("userId") Long userId);
 
+  @Modifying
+  @Query("DELETE FROM RefreshToken rt WHERE rt.user.id IN :userIds")
+  void deleteAllByUserIds(@Param("userIds") List<Long> userIds);
+
 
   @Query("SELECT rt FROM RefreshToken rt " +
           "WHERE rt.user.id = :userId " +
@@ -4,6 +4,7 @@ import ec.edu.espe.chat_real_time.model.room.Room;
 import ec.edu.espe.chat_real_time.model.room.RoomType;
 import ec.edu.espe.chat_real_time.model.user.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
@@ -26,4 +27,12 @@ public interface RoomRepository extends JpaRepository<Room, Long> {
 
   @Query("SELECT COUNT(r) FROM Room r WHERE r.creator = :creator AND r.deletedAt IS NULL")
   long countByCreator(User creator);
-}
\ No newline at end of file
+
+  @Modifying
+  @Query("UPDATE Room r SET r.currentUsers = :currentUsers WHERE r.id = :roomId")
+  int updateCurrentUsers(Long roomId, Integer currentUsers);
+
+  @Modifying
+  @Query("UPDATE Room r SET r.currentUsers = 0 WHERE r.currentUsers <> 0")
+  int resetCurrentUsers();
+}
@@ -0,0 +1,27 @@
+package ec.edu.espe.chat_real_time.repository;
+
+import ec.edu.espe.chat_real_time.model.StoredObject;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface StoredObjectRepository extends JpaRepository<StoredObject, Long> {
+  Optional<StoredObject> findFirstByContentHashAndRefCountGreaterThanOrderByIdAsc(String contentHash, Integer refCount);
+
+  // Solo suma si el objeto sigue vivo: uno que llegó a 0 está por borrarse y no se reutiliza
+  @Modifying
+  @Query("UPDATE StoredObject o SET o.refCount = o.refCount + 1 WHERE o.id = :id AND o.refCount > 0")
+  int acquire(Long id);
+
+  @Modifying
+  @Query("UPDATE StoredObject o SET o.refCount = o.refCount - 1 WHERE o.id = :id AND o.refCount > 0")
+  int release(Long id);
+
+  @Modifying
+  @Query("DELETE FROM StoredObject o WHERE o.id = :id AND o.refCount = 0")
+  int deleteIfUnreferenced(Long id);
+}
@@ -36,6 +36,9 @@ public interface UserRepository extends JpaRepository<User, Long> {
           "WHERE u.id = :userId AND r.name = :roleName")
   boolean userHasRole(@Param("userId") Long userId, @Param("roleName") String roleName);
 
+  @Query(value = "SELECT gp.id FROM guest_profiles gp WHERE gp.expires_at < :now", nativeQuery = true)
+  List<Long> findExpiredGuestIds(@Param("now") LocalDateTime now);
+
   // Primero elimina las relaciones en user_roles para usuarios con guest profiles expirados
   @Modifying
   @Transactional
@@ -5,6 +5,7 @@ import ec.edu.espe.chat_real_time.model.room.Room;
 import ec.edu.espe.chat_real_time.model.user.User;
 import ec.edu.espe.chat_real_time.model.user.UserSession;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import java.util.List;
@@ -18,6 +19,13 @@ public interface UserSessionRepository extends JpaRepository<UserSession, Long>
   List<UserSession> findByRoomAndIsActiveTrue(Room room);
   List<UserSession> findByUserAndIsActiveTrue(User user);
 
+  @Query("SELECT s.room.id, s.user.id FROM UserSession s WHERE s.isActive = true")
+  List<Object[]> findActiveRoomMemberships();
+
+  @Modifying
+  @Query("DELETE FROM UserSession s WHERE s.user.id IN :userIds")
+  int deleteByUserIds(List<Long> userIds);
+
 
 
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package ec.edu.espe.chat_real_time.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import ec.edu.espe.chat_real_time.Service.UserDetailsServiceImpl;
+import ec.edu.espe.chat_real_time.Service.user.UserChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+
+// Usuarios autenticados por id, para que el filtro JWT no consulte la BD en cada petición
+@Component
+@Slf4j
+public class UserDetailsCache {
+
+  private final UserDetailsServiceImpl userDetailsService;
+  private final Cache<Long, UserDetails> cache;
+
+  public UserDetailsCache(
+          UserDetailsServiceImpl userDetailsService,
+          @Value("${app.security.user-cache.ttl-seconds:300}") long ttlSeconds,
+          @Value("${app.security.user-cache.max-size:10000}") long maxSize) {
+    this.userDetailsService = userDetailsService;
+    this.cache = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .maximumSize(maxSize)
+            .recordStats()
+            .build();
+  }
+
+  // Las excepciones del loader (usuario inexistente) se propagan y no se cachean
+  public UserDetails getById(Long userId) {
+    return cache.get(userId, userDetailsService::loadUserById);
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  public long size() {
+    return cache.estimatedSize();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUserChanged(UserChangedEvent event) {
+    if (event.affectsAll()) {
+      cache.invalidateAll();
+    } else if (event.getUserId() != null) {
+      cache.invalidate(event.getUserId());
+    }
+  }
+
+  @Scheduled(fixedRateString = "${app.security.user-cache.stats-log-ms:300000}")
+  public void logStats() {
+    CacheStats stats = cache.stats();
+    if (stats.requestCount() == 0) return;
+    log.info("User details cache: size={}, hits={}, misses={}, hitRate={}, evictions={}",
+            cache.estimatedSize(), stats.hitCount(), stats.missCount(),
+            String.format("%.2f", stats.hitRate()), stats.evictionCount());
+  }
+}
@@ -1,13 +1,15 @@
 package ec.edu.espe.chat_real_time.security.jwt;
 
-import ec.edu.espe.chat_real_time.Service.UserDetailsServiceImpl;
+import ec.edu.espe.chat_real_time.security.UserDetailsCache;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -23,10 +25,16 @@ import java.util.List;
 
 @RequiredArgsConstructor
 @Component
+@Slf4j
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
   private final JwtService jwtService;
-  private final UserDetailsServiceImpl userDetailsServiceImpl;
+  private final UserDetailsCache userDetailsCache;
+  private final TokenRevocationList tokenRevocationList;
+
+  // Modo sin estado: el principal sale de los claims verificados, sin consultar la BD
+  @Value("${app.security.stateless-principal:false}")
+  private boolean statelessPrincipal;
 
   private static final String AUTHORIZATION_HEADER = "Authorization";
   private static final String BEARER_PREFIX = "Bearer ";
@@ -103,10 +111,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
   }
 
   private void authenticateUser(String token, HttpServletRequest request) {
-    Long usernameId = jwtService.extractUserIdSub(token);
-    if (usernameId != null ) {
-      UserDetails userDetails = userDetailsServiceImpl.loadUserById(usernameId);
-      if (jwtService.isTokenValid(token, userDetails)) {
+    VerifiedToken verifiedToken = jwtService.verify(token);
+    if (statelessPrincipal) {
+      authenticateFromClaims(verifiedToken, request);
+      return;
+    }
+    if (verifiedToken.getUserId() != null) {
+      UserDetails userDetails = userDetailsCache.getById(verifiedToken.getUserId());
+      if (jwtService.isTokenValid(verifiedToken, userDetails)) {
         UsernamePasswordAuthenticationToken authenticationToken =
                 new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
         authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -115,6 +127,24 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     }
   }
 
+  private void authenticateFromClaims(VerifiedToken verifiedToken, HttpServletRequest request) {
+    if (verifiedToken.getUserId() == null || verifiedToken.getUsername() == null || verifiedToken.isExpired()) {
+      return;
+    }
+    if (tokenRevocationList.isRevoked(verifiedToken)) {
+      log.debug("Rejected revoked access token for user {}", verifiedToken.getUserId());
+      return;
+    }
+    JwtPrincipal principal = new JwtPrincipal(verifiedToken.getUserId(), verifiedToken.getUsername());
+    List<SimpleGrantedAuthority> authorities = verifiedToken.getAuthorities().stream()
+            .map(SimpleGrantedAuthority::new)
+            .toList();
+    UsernamePasswordAuthenticationToken authenticationToken =
+            new UsernamePasswordAuthenticationToken(principal, null, authorities);
+    authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+    SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+  }
+
   private void setErrorResponse(HttpServletResponse response, int statusCode, String message) throws IOException {
     response.setStatus(statusCode);
     response.setContentType("application/json");
@@ -0,0 +1,19 @@
+package ec.edu.espe.chat_real_time.security.jwt;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.security.Principal;
+
+// Principal ligero construido solo con los claims del access token (modo sin estado)
+@Getter
+@AllArgsConstructor
+public final class JwtPrincipal implements Principal {
+  private final Long userId;
+  private final String username;
+
+  @Override
+  public String getName() {
+    return username;
+  }
+}
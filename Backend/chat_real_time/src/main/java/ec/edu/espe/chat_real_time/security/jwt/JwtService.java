@@ -8,8 +8,12 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 import io.jsonwebtoken.security.Keys;
 import javax.crypto.SecretKey;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import io.jsonwebtoken.Jwts;
@@ -18,27 +22,38 @@ import io.jsonwebtoken.*;
 @Service
 public class JwtService {
 
-  @Value("${jwt.secret}")
-  private String jwtSecret;
+  // "iat" solo tiene precisión de segundos; la lista de revocación compara con este instante en milisegundos
+  static final String ISSUED_AT_MS_CLAIM = "issuedAtMs";
 
   @Getter
-  @Value("${jwt.access-token.expiration}")
-  private long accessTokenExpiration;
+  private final long accessTokenExpiration;
 
   @Getter
-  @Value("${jwt.refresh-token.expiration}")
-  private long refreshTokenExpiration;
-
-  private SecretKey getSingninKey() {
-    return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+  private final long refreshTokenExpiration;
+
+  // Clave y parser se construyen una sola vez; JwtParser es inmutable y seguro entre hilos
+  private final SecretKey signingKey;
+  private final JwtParser parser;
+
+  public JwtService(
+          @Value("${jwt.secret}") String jwtSecret,
+          @Value("${jwt.access-token.expiration}") long accessTokenExpiration,
+          @Value("${jwt.refresh-token.expiration}") long refreshTokenExpiration) {
+    this.accessTokenExpiration = accessTokenExpiration;
+    this.refreshTokenExpiration = refreshTokenExpiration;
+    this.signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+    this.parser = Jwts.parser().verifyWith(signingKey).build();
   }
+
   public String buildAccessToken(
           Map<String, Object> extraClaims,
           UserDetails userDetails,
           Long expiration
   ) {
     User user = (User) userDetails;
+    long now = System.currentTimeMillis();
     Map<String, Object> claims = new HashMap<>(extraClaims);
+    claims.put(ISSUED_AT_MS_CLAIM, now);
     claims.put("userId", user.getId());
     claims.put("username", user.getUsername());
     claims.put("authorities", user.getAuthorities()); // esto devuel
@@ -56,9 +71,9 @@ public class JwtService {
     return Jwts.builder()
             .setClaims(claims)
             .setSubject(user.getId().toString())
-            .setIssuedAt(new Date(System.currentTimeMillis()))
-            .setExpiration(new Date(System.currentTimeMillis() + expiration))
-            .signWith(getSingninKey(), SignatureAlgorithm.HS256)
+            .setIssuedAt(new Date(now))
+            .setExpiration(new Date(now + expiration))
+            .signWith(signingKey, SignatureAlgorithm.HS256)
             .compact();
   }
 
@@ -70,13 +85,53 @@ public class JwtService {
     return claimsResolver.apply(claims);
   }
 
+  // Parsea y verifica el token una sola vez
+  public VerifiedToken verify(String token) {
+    Claims claims = extractAllClaims(token);
+    return new VerifiedToken(
+            Long.valueOf(claims.getSubject()),
+            claims.get("username", String.class),
+            claims.get("type", String.class),
+            issuedAt(claims),
+            claims.getExpiration() != null ? claims.getExpiration().toInstant() : null,
+            extractAuthorities(claims)
+    );
+  }
+
+  // Los tokens emitidos antes de agregar el claim en milisegundos usan "iat"
+  private Instant issuedAt(Claims claims) {
+    Long issuedAtMs = claims.get(ISSUED_AT_MS_CLAIM, Long.class);
+    if (issuedAtMs != null) return Instant.ofEpochMilli(issuedAtMs);
+    return claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null;
+  }
+
+  // "authorities" se serializa como [{"authority": "ROLE_X"}]; se aceptan también cadenas simples
+  private List<String> extractAuthorities(Claims claims) {
+    Object raw = claims.get("authorities");
+    if (!(raw instanceof Collection<?> values)) {
+      return List.of();
+    }
+    List<String> authorities = new ArrayList<>();
+    for (Object value : values) {
+      if (value instanceof Map<?, ?> map && map.get("authority") != null) {
+        authorities.add(map.get("authority").toString());
+      } else if (value instanceof String authority) {
+        authorities.add(authority);
+      }
+    }
+    return List.copyOf(authorities);
+  }
+
+  public boolean isTokenValid(VerifiedToken token, UserDetails userDetails) {
+    User user = (User) userDetails;
+    return token.getUserId().equals(user.getId()) && !token.isExpired();
+  }
+
   private Claims extractAllClaims(String token) {
     try {
-      return Jwts.parser()
-              .setSigningKey(getSingninKey())
-              .build()
-              .parseClaimsJws(token)
-              .getBody();
+      return parser
+              .parseSignedClaims(token)
+              .getPayload();
     } catch (ExpiredJwtException e) {
       log.warn("JWT token has expired: {}", e.getMessage());
       throw e;
@@ -105,9 +160,7 @@ public class JwtService {
 
   public boolean isTokenValid(String token, UserDetails userDetails) {
     try {
-      final Long userId = extractUserIdSub(token);
-      User user = (User) userDetails;
-      return userId.equals(user.getId()) && !isTokenExpired(token);
+      return isTokenValid(verify(token), userDetails);
     } catch (Exception e) {
       log.debug("Token validation failed: {}", e.getMessage());
       return false;
@@ -0,0 +1,48 @@
+package ec.edu.espe.chat_real_time.security.jwt;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Lista de denegación en memoria: por usuario, los access tokens emitidos antes de este instante dejan de ser válidos
+@Component
+@Slf4j
+public class TokenRevocationList {
+
+  private final ConcurrentHashMap<Long, Instant> revokedBefore = new ConcurrentHashMap<>();
+  private final long accessTokenExpirationMs;
+
+  public TokenRevocationList(@Value("${jwt.access-token.expiration}") long accessTokenExpirationMs) {
+    this.accessTokenExpirationMs = accessTokenExpirationMs;
+  }
+
+  public void revokeAll(Long userId) {
+    if (userId == null) return;
+    // misma precisión que el claim issuedAtMs: solo un token emitido en el mismo milisegundo queda del lado revocado
+    Instant cutoff = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    revokedBefore.merge(userId, cutoff, (current, next) -> next.isAfter(current) ? next : current);
+    log.info("Revoked access tokens issued before {} for user {}", cutoff, userId);
+  }
+
+  public boolean isRevoked(VerifiedToken token) {
+    Instant cutoff = revokedBefore.get(token.getUserId());
+    if (cutoff == null) return false;
+    return token.getIssuedAt() == null || !token.getIssuedAt().isAfter(cutoff);
+  }
+
+  public int size() {
+    return revokedBefore.size();
+  }
+
+  // Pasada la vida de un access token, todos los tokens afectados ya expiraron por sí solos
+  @Scheduled(fixedDelayString = "${app.security.revocation-purge-ms:60000}")
+  public void purgeExpired() {
+    Instant limit = Instant.now().minusMillis(accessTokenExpirationMs);
+    revokedBefore.values().removeIf(cutoff -> cutoff.isBefore(limit));
+  }
+}
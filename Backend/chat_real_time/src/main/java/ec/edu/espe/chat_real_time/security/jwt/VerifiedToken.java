@@ -0,0 +1,23 @@
+package ec.edu.espe.chat_real_time.security.jwt;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.List;
+
+// Claims de un token ya verificado (firma y expiración), para no volver a parsearlo en la misma petición
+@Getter
+@AllArgsConstructor
+public final class VerifiedToken {
+  private final Long userId;
+  private final String username;
+  private final String type;
+  private final Instant issuedAt;
+  private final Instant expiresAt;
+  private final List<String> authorities;
+
+  public boolean isExpired() {
+    return expiresAt != null && expiresAt.isBefore(Instant.now());
+  }
+}
@@ -0,0 +1,34 @@
+package ec.edu.espe.chat_real_time.utils;
+
+import ec.edu.espe.chat_real_time.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// El cursor es opaco para el cliente: solo debe devolverlo tal cual en la siguiente pagina
+public final class MessageCursor {
+
+  private static final String PREFIX = "m:";
+
+  private MessageCursor() {
+  }
+
+  public static String encode(Long messageId) {
+    if (messageId == null) return null;
+    return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString((PREFIX + messageId).getBytes(StandardCharsets.UTF_8));
+  }
+
+  public static Long decode(String cursor) {
+    if (cursor == null || cursor.isBlank()) return null;
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      if (!raw.startsWith(PREFIX)) {
+        throw new BadRequestException("Cursor inválido");
+      }
+      return Long.valueOf(raw.substring(PREFIX.length()));
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException("Cursor inválido");
+    }
+  }
+}
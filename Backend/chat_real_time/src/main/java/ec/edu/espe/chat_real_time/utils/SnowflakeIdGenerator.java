@@ -0,0 +1,67 @@
+package ec.edu.espe.chat_real_time.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Ids ordenados por tiempo: milisegundos desde EPOCH | nodo | secuencia.
+// Caben en 53 bits para que el frontend (números de JavaScript) los reciba sin perder precisión.
+@Component
+@Slf4j
+public class SnowflakeIdGenerator {
+
+  // 2025-01-01T00:00:00Z
+  public static final long EPOCH_MS = 1735689600000L;
+
+  static final int TIMESTAMP_BITS = 41;
+  static final int NODE_BITS = 5;
+  static final int SEQUENCE_BITS = 7;
+
+  public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+  private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+  private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+
+  private final long nodeId;
+  private final LongSupplier clock;
+  // último (timestamp << SEQUENCE_BITS | secuencia) entregado; una secuencia agotada pasa al milisegundo siguiente
+  private final AtomicLong last = new AtomicLong();
+
+  @Autowired
+  public SnowflakeIdGenerator(@Value("${app.ids.node-id:0}") int nodeId) {
+    this(nodeId, System::currentTimeMillis);
+  }
+
+  public SnowflakeIdGenerator(int nodeId, LongSupplier clock) {
+    if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+      throw new IllegalArgumentException("app.ids.node-id debe estar entre 0 y " + MAX_NODE_ID);
+    }
+    this.nodeId = nodeId;
+    this.clock = clock;
+  }
+
+  // Sin bloqueos: un CAS por id. Si el reloj retrocede se sigue desde el último valor, nunca se repite ni decrece
+  public long nextId() {
+    while (true) {
+      long previous = last.get();
+      long now = clock.getAsLong() - EPOCH_MS;
+      long next = now > (previous >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : previous + 1;
+      if (last.compareAndSet(previous, next)) {
+        long timestamp = next >>> SEQUENCE_BITS;
+        return (timestamp << TIMESTAMP_SHIFT) | (nodeId << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+      }
+    }
+  }
+
+  public static Instant timestampOf(long id) {
+    return Instant.ofEpochMilli((id >>> TIMESTAMP_SHIFT) + EPOCH_MS);
+  }
+
+  public static int nodeOf(long id) {
+    return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE_ID);
+  }
+}
@@ -0,0 +1,76 @@
+package ec.edu.espe.chat_real_time.websocket;
+
+import ec.edu.espe.chat_real_time.Service.user.UserChangedEvent;
+import ec.edu.espe.chat_real_time.model.user.User;
+import ec.edu.espe.chat_real_time.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// Usuario autenticado de cada sesión STOMP, para no consultar la BD en cada frame entrante
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StompSessionUserCache {
+
+  private final UserRepository userRepository;
+  private final ConcurrentHashMap<String, User> usersBySession = new ConcurrentHashMap<>();
+
+  public User resolve(String sessionId, String username) {
+    if (sessionId == null) {
+      return load(username);
+    }
+    User cached = usersBySession.get(sessionId);
+    if (cached != null && cached.getUsername().equals(username)) {
+      return cached;
+    }
+    User user = load(username);
+    usersBySession.put(sessionId, user);
+    return user;
+  }
+
+  public int size() {
+    return usersBySession.size();
+  }
+
+  // El interceptor ya cargó el usuario en el CONNECT: se reutiliza sin otra consulta
+  @EventListener
+  public void onSessionConnected(SessionConnectedEvent event) {
+    String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+    if (sessionId != null
+            && event.getUser() instanceof Authentication authentication
+            && authentication.getPrincipal() instanceof User user) {
+      usersBySession.put(sessionId, user);
+    }
+  }
+
+  @EventListener
+  public void onSessionDisconnect(SessionDisconnectEvent event) {
+    if (event.getSessionId() != null) {
+      usersBySession.remove(event.getSessionId());
+    }
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUserChanged(UserChangedEvent event) {
+    if (event.affectsAll()) {
+      usersBySession.clear();
+      return;
+    }
+    usersBySession.values().removeIf(user -> event.getUsername().equals(user.getUsername()));
+    log.debug("Evicted cached STOMP sessions for user {}", event.getUsername());
+  }
+
+  private User load(String username) {
+    return userRepository.findByUsernameAndDeletedAtIsNull(username)
+            .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+  }
+}
@@ -1,6 +1,7 @@
 package ec.edu.espe.chat_real_time.websocket;
 
 import ec.edu.espe.chat_real_time.security.jwt.JwtService;
+import ec.edu.espe.chat_real_time.security.jwt.VerifiedToken;
 import lombok.RequiredArgsConstructor;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.util.AntPathMatcher;
@@ -37,10 +38,11 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
         token = token.substring(7);
 
         try {
-          String username = jwtService.extractUsername(token);
+          VerifiedToken verifiedToken = jwtService.verify(token);
+          String username = verifiedToken.getUsername();
           UserDetails userDetails = userDetailsService.loadUserByUsername(username);
 
-          if (username != null && jwtService.isTokenValid(token, userDetails)) {
+          if (username != null && jwtService.isTokenValid(verifiedToken, userDetails)) {
             UsernamePasswordAuthenticationToken authentication =
                     new UsernamePasswordAuthenticationToken(
                             userDetails, null, userDetails.getAuthorities()
@@ -1,5 +1,6 @@
 package ec.edu.espe.chat_real_time.websocket;
 
+import ec.edu.espe.chat_real_time.Service.room.RoomPresenceRegistry;
 import ec.edu.espe.chat_real_time.Service.websocket.WebSocketService;
 import ec.edu.espe.chat_real_time.model.room.Room;
 import ec.edu.espe.chat_real_time.model.user.User;
@@ -29,6 +30,7 @@ public class WebSocketEventListener {
   private final RoomSubscriptionTracker subscriptionTracker;
   private final UserSessionRepository userSessionRepository;
   private final RoomRepository roomRepository;
+  private final RoomPresenceRegistry presenceRegistry;
 
   @EventListener
   public void handleWebSocketConnectListener(SessionConnectedEvent event) {
@@ -73,8 +75,7 @@ public class WebSocketEventListener {
               activeSession.setLeftAt(LocalDateTime.now());
               userSessionRepository.save(activeSession);
 
-              room.decrementCurrentUsers();
-              roomRepository.save(room);
+              presenceRegistry.leave(room.getId(), user.getId());
 
               webSocketService.notifyUserLeftRoom(room.getId(), user);
             }
@@ -0,0 +1,188 @@
+package ec.edu.espe.chat_real_time.Service;
+
+import ec.edu.espe.chat_real_time.Service.storage.AttachmentStaging;
+import ec.edu.espe.chat_real_time.Service.storage.StagedUpload;
+import ec.edu.espe.chat_real_time.exception.FileTooLargeException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AttachmentStagingTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private AttachmentStaging staging;
+
+    @BeforeEach
+    void setUp() {
+        staging = new AttachmentStaging(tempDir.toString());
+    }
+
+    @Test
+    void stage_WritesBodyAndComputesSha256() throws Exception {
+        byte[] body = "hola mundo".getBytes();
+
+        StagedUpload staged = staging.stage(new ByteArrayInputStream(body), MB);
+
+        assertThat(staged.getSize()).isEqualTo(body.length);
+        assertThat(Files.readAllBytes(staged.getPath())).isEqualTo(body);
+        assertThat(staged.getSha256())
+                .isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body)));
+    }
+
+    @Test
+    void stage_AbortsAsSoonAsTheLimitIsExceeded() throws IOException {
+        PatternStream endless = new PatternStream(Long.MAX_VALUE);
+
+        assertThatThrownBy(() -> staging.stage(endless, 10 * MB))
+                .isInstanceOf(FileTooLargeException.class)
+                .hasMessageContaining("10MB");
+
+        // no se sigue leyendo más allá de un buffer por encima del límite
+        assertThat(endless.consumed()).isLessThanOrEqualTo(10 * MB + 64 * 1024);
+        try (Stream<Path> leftovers = Files.list(tempDir)) {
+            assertThat(leftovers).isEmpty();
+        }
+    }
+
+    @Test
+    void stage_AcceptsBodyExactlyAtTheLimit() throws IOException {
+        StagedUpload staged = staging.stage(new PatternStream(MB), MB);
+
+        assertThat(staged.getSize()).isEqualTo(MB);
+    }
+
+    @Test
+    void resolve_RejectsNamesOutsideTheStagingDirectory() {
+        assertThat(staging.resolve("../storage/secreto.txt")).isNull();
+        assertThat(staging.resolve("")).isNull();
+        assertThat(staging.resolve("upload-1.tmp")).isEqualTo(tempDir.resolve("upload-1.tmp").toAbsolutePath());
+    }
+
+    // La memoria por subida queda acotada por el buffer de copia, sin importar el tamaño del cuerpo
+    @Test
+    void stage_ReadsLargeBodiesThroughABoundedBuffer() throws IOException {
+        PatternStream body = new PatternStream(20 * MB);
+
+        StagedUpload staged = staging.stage(body, 20 * MB);
+
+        assertThat(staged.getSize()).isEqualTo(20 * MB);
+        assertThat(body.largestRead()).isPositive().isLessThanOrEqualTo(64 * 1024);
+    }
+
+    // 50 subidas simultáneas de 50MB: el heap usado no debe acercarse al volumen recibido (2.5GB).
+    // Pesada y sensible al GC: solo con -Dbench.load=true
+    @Test
+    @EnabledIfSystemProperty(named = "bench.load", matches = "true")
+    void stage_ConcurrentLargeUploadsKeepHeapFlat() throws Exception {
+        int uploads = 50;
+        long size = 50 * MB;
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long baseline = memory.getHeapMemoryUsage().getUsed();
+
+        AtomicLong peak = new AtomicLong(baseline);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread sampler = new Thread(() -> {
+            while (running.get()) {
+                peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.start();
+
+        ExecutorService pool = Executors.newFixedThreadPool(uploads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<StagedUpload>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < uploads; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    StagedUpload staged = staging.stage(new PatternStream(size), size);
+                    staging.discard(staged.getPath());
+                    return staged;
+                }));
+            }
+            start.countDown();
+            for (Future<StagedUpload> result : results) {
+                assertThat(result.get(5, TimeUnit.MINUTES).getSize()).isEqualTo(size);
+            }
+        } finally {
+            running.set(false);
+            sampler.join();
+            pool.shutdownNow();
+        }
+
+        long growthMb = (peak.get() - baseline) / MB;
+        assertThat(growthMb).isLessThan(128);
+        assertThat(results.get(0).get().getSha256()).isEqualTo(results.get(uploads - 1).get().getSha256());
+    }
+
+    // Genera bytes sin reservarlos en memoria, como un cliente que sube un archivo grande
+    private static class PatternStream extends InputStream {
+        private final long length;
+        private long position;
+        private int largestRead;
+
+        PatternStream(long length) {
+            this.length = length;
+        }
+
+        long consumed() {
+            return position;
+        }
+
+        int largestRead() {
+            return largestRead;
+        }
+
+        @Override
+        public int read() {
+            if (position >= length) return -1;
+            return (int) (position++ & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= length) return -1;
+            largestRead = Math.max(largestRead, len);
+            int n = (int) Math.min(len, length - position);
+            for (int i = 0; i < n; i++) {
+                b[off + i] = (byte) (position + i);
+            }
+            position += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package ec.edu.espe.chat_real_time.Service;
+
+import ec.edu.espe.chat_real_time.Service.message.AttachmentUploadEvent;
+import ec.edu.espe.chat_real_time.Service.message.AttachmentUploadPipeline;
+import ec.edu.espe.chat_real_time.Service.message.MessageService;
+import ec.edu.espe.chat_real_time.Service.message.StoredObjectReleasedEvent;
+import ec.edu.espe.chat_real_time.Service.storage.AttachmentStaging;
+import ec.edu.espe.chat_real_time.Service.storage.AttachmentStorage;
+import ec.edu.espe.chat_real_time.Service.storage.ImagePreview;
+import ec.edu.espe.chat_real_time.Service.storage.LocalAttachmentStorage;
+import ec.edu.espe.chat_real_time.Service.storage.StoredFile;
+import ec.edu.espe.chat_real_time.Service.storage.ThumbnailGenerator;
+import ec.edu.espe.chat_real_time.model.Attachment;
+import ec.edu.espe.chat_real_time.model.AttachmentStatus;
+import ec.edu.espe.chat_real_time.repository.AttachmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.SyncTaskExecutor;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+// Subida completa contra el almacenamiento local, sin red ni base de datos
+class AttachmentUploadPipelineTest {
+
+    @TempDir
+    Path tempDir;
+
+    private MessageService messageService;
+    private AttachmentRepository attachmentRepository;
+    private AttachmentStaging staging;
+    private Path storageDir;
+
+    @BeforeEach
+    void setUp() {
+        messageService = mock(MessageService.class);
+        attachmentRepository = mock(AttachmentRepository.class);
+        staging = new AttachmentStaging(tempDir.resolve("staging").toString());
+        storageDir = tempDir.resolve("storage");
+    }
+
+    @Test
+    void upload_StoresFileCompletesAttachmentAndRemovesStagedCopy() throws IOException {
+        byte[] content = "contenido del archivo".getBytes();
+        Path staged = staging.stage(new ByteArrayInputStream(content), 1024).getPath();
+        AttachmentUploadPipeline pipeline = pipeline(new LocalAttachmentStorage(storageDir.toString(), "/api/files/"));
+
+        pipeline.onUploadRequested(new AttachmentUploadEvent(5L, staged, "notas.txt", "text/plain"));
+
+        ArgumentCaptor<StoredFile> stored = ArgumentCaptor.forClass(StoredFile.class);
+        verify(messageService).completeAttachmentUpload(eq(5L), stored.capture(), isNull());
+        assertThat(stored.getValue().getFileName()).endsWith(".txt");
+        assertThat(stored.getValue().getFileUrl()).isEqualTo("/api/files/" + stored.getValue().getFileName());
+        assertThat(Files.readAllBytes(storageDir.resolve(stored.getValue().getFilePath()))).isEqualTo(content);
+        assertThat(staged).doesNotExist();
+        verify(messageService, never()).failAttachmentUpload(any());
+    }
+
+    @Test
+    void upload_StorageFailureMarksAttachmentFailed() throws IOException {
+        Path staged = staging.stage(new ByteArrayInputStream(new byte[]{1}), 1024).getPath();
+        AttachmentStorage storage = mock(AttachmentStorage.class);
+        when(storage.store(any(), any(), any())).thenThrow(new IOException("storage offline"));
+
+        pipeline(storage).onUploadRequested(new AttachmentUploadEvent(5L, staged, "notas.txt", "text/plain"));
+
+        verify(messageService).failAttachmentUpload(5L);
+        verify(messageService, never()).completeAttachmentUpload(any(), any(), any());
+        assertThat(staged).doesNotExist();
+    }
+
+    @Test
+    void upload_ImageGetsPreviewStoredNextToOriginal() throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB), "png", png);
+        Path staged = staging.stage(new ByteArrayInputStream(png.toByteArray()), 10_000_000).getPath();
+        LocalAttachmentStorage storage = new LocalAttachmentStorage(storageDir.toString(), "/api/files/");
+
+        pipeline(storage).onUploadRequested(new AttachmentUploadEvent(5L, staged, "foto.png", "image/png"));
+
+        ArgumentCaptor<ImagePreview> preview = ArgumentCaptor.forClass(ImagePreview.class);
+        verify(messageService).completeAttachmentUpload(eq(5L), any(), preview.capture());
+        assertThat(preview.getValue().getWidth()).isEqualTo(320);
+        assertThat(preview.getValue().getHeight()).isEqualTo(240);
+        assertThat(preview.getValue().getSourceWidth()).isEqualTo(1600);
+        assertThat(preview.getValue().getUrl()).endsWith(".jpg");
+        assertThat(storage.localFile(preview.getValue().getPath())).isPresent();
+        try (Stream<Path> leftovers = Files.list(tempDir.resolve("staging"))) {
+            assertThat(leftovers).isEmpty();
+        }
+    }
+
+    @Test
+    void upload_UnreadableImageIsStoredWithoutPreview() throws IOException {
+        Path staged = staging.stage(new ByteArrayInputStream("no es una imagen".getBytes()), 1024).getPath();
+
+        pipeline(new LocalAttachmentStorage(storageDir.toString(), "/api/files/"))
+                .onUploadRequested(new AttachmentUploadEvent(5L, staged, "foto.png", "image/png"));
+
+        verify(messageService).completeAttachmentUpload(eq(5L), any(), isNull());
+        verify(messageService, never()).failAttachmentUpload(any());
+    }
+
+    @Test
+    void storedObjectReleased_DeletesPreviewToo() throws IOException {
+        LocalAttachmentStorage storage = new LocalAttachmentStorage(storageDir.toString(), "/api/files/");
+        StoredFile original = storage.store(staging.stage(new ByteArrayInputStream(new byte[]{1}), 1024).getPath(), "a.png", "image/png");
+        StoredFile preview = storage.store(staging.stage(new ByteArrayInputStream(new byte[]{2}), 1024).getPath(), "preview.jpg", "image/jpeg");
+
+        pipeline(storage).onStoredObjectReleased(
+                new StoredObjectReleasedEvent(original.getFilePath(), "image/png", preview.getFilePath()));
+
+        assertThat(storage.localFile(original.getFilePath())).isEmpty();
+        assertThat(storage.localFile(preview.getFilePath())).isEmpty();
+    }
+
+    @Test
+    void rollback_DiscardsStagedFile() throws IOException {
+        Path staged = staging.stage(new ByteArrayInputStream(new byte[]{1}), 1024).getPath();
+
+        pipeline(mock(AttachmentStorage.class)).onUploadRolledBack(new AttachmentUploadEvent(5L, staged, "notas.txt", "text/plain"));
+
+        assertThat(staged).doesNotExist();
+        verifyNoInteractions(messageService);
+    }
+
+    @Test
+    void storedObjectReleased_DeletesFromStorage() throws IOException {
+        LocalAttachmentStorage storage = new LocalAttachmentStorage(storageDir.toString(), "/api/files/");
+        Path source = staging.stage(new ByteArrayInputStream(new byte[]{1, 2}), 1024).getPath();
+        StoredFile stored = storage.store(source, "a.bin", "application/octet-stream");
+
+        pipeline(storage).onStoredObjectReleased(
+                new StoredObjectReleasedEvent(stored.getFilePath(), "application/octet-stream", null));
+
+        assertThat(storage.localFile(stored.getFilePath())).isEmpty();
+    }
+
+    @Test
+    void requeuePending_UploadsOnlyAttachmentsStagedOnThisNode() throws IOException {
+        Path staged = staging.stage(new ByteArrayInputStream("tras reinicio".getBytes()), 1024).getPath();
+        when(attachmentRepository.findByStatus(AttachmentStatus.PENDING)).thenReturn(List.of(
+                pending(5L, staged.getFileName().toString()),
+                pending(6L, "upload-de-otra-replica.tmp")));
+
+        pipeline(new LocalAttachmentStorage(storageDir.toString(), "/api/files/")).requeuePending();
+
+        verify(messageService).completeAttachmentUpload(eq(5L), any(StoredFile.class), isNull());
+        verify(messageService, never()).completeAttachmentUpload(eq(6L), any(), any());
+        verify(messageService, never()).failAttachmentUpload(any());
+        assertThat(staged).doesNotExist();
+    }
+
+    @Test
+    void failStalePending_MarksFailedAndDiscardsStagedFile() throws IOException {
+        Path staged = staging.stage(new ByteArrayInputStream(new byte[]{1}), 1024).getPath();
+        when(attachmentRepository.findByStatusAndUploadedAtBefore(eq(AttachmentStatus.PENDING), any(LocalDateTime.class)))
+                .thenReturn(List.of(pending(5L, staged.getFileName().toString())));
+
+        pipeline(mock(AttachmentStorage.class)).failStalePending();
+
+        verify(messageService).failAttachmentUpload(5L);
+        assertThat(staged).doesNotExist();
+    }
+
+    @Test
+    void uploadRequested_RejectedByPoolMarksFailed() throws IOException {
+        Path staged = staging.stage(new ByteArrayInputStream(new byte[]{1}), 1024).getPath();
+        AttachmentUploadPipeline pipeline = new AttachmentUploadPipeline(mock(AttachmentStorage.class), staging,
+                messageService, task -> {
+                    throw new RejectedExecutionException("pool apagado");
+                }, new ThumbnailGenerator(320, 50_000_000), new SimpleAsyncTaskExecutor(), attachmentRepository, 30);
+
+        pipeline.onUploadRequested(new AttachmentUploadEvent(5L, staged, "notas.txt", "text/plain"));
+
+        verify(messageService).failAttachmentUpload(5L);
+        assertThat(staged).doesNotExist();
+    }
+
+    private static Attachment pending(Long id, String stagedName) {
+        return Attachment.builder()
+                .id(id)
+                .fileName(stagedName)
+                .originalFileName("notas.txt")
+                .fileType("text/plain")
+                .status(AttachmentStatus.PENDING)
+                .build();
+    }
+
+    private AttachmentUploadPipeline pipeline(AttachmentStorage storage) {
+        return new AttachmentUploadPipeline(storage, staging, messageService, new SyncTaskExecutor(),
+                new ThumbnailGenerator(320, 50_000_000), new SimpleAsyncTaskExecutor(), attachmentRepository, 30);
+    }
+}
@@ -11,6 +11,7 @@ import ec.edu.espe.chat_real_time.repository.RoleRepository;
 import ec.edu.espe.chat_real_time.repository.UserRepository;
 import ec.edu.espe.chat_real_time.repository.AdminProfileRepository;
 import ec.edu.espe.chat_real_time.security.jwt.JwtService;
+import ec.edu.espe.chat_real_time.security.jwt.TokenRevocationList;
 import jakarta.servlet.http.HttpServletRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -34,6 +35,7 @@ class AuthServiceImplTest {
     private AdminProfileRepository adminProfileRepository;
     private PasswordEncoder passwordEncoder;
     private UserRepository userRepository;
+    private TokenRevocationList tokenRevocationList;
 
     private AuthServiceImpl authService;
 
@@ -49,6 +51,7 @@ class AuthServiceImplTest {
         adminProfileRepository = mock(AdminProfileRepository.class);
         passwordEncoder = mock(PasswordEncoder.class);
         userRepository = mock(UserRepository.class);
+        tokenRevocationList = mock(TokenRevocationList.class);
 
         authService = new AuthServiceImpl(
                 authenticationManager,
@@ -60,7 +63,8 @@ class AuthServiceImplTest {
                 guestProfileRepository,
                 adminProfileRepository,
                 passwordEncoder,
-                userRepository
+                userRepository,
+                tokenRevocationList
         );
     }
 
@@ -119,4 +123,19 @@ class AuthServiceImplTest {
         verify(userService, times(1)).saveUserDB(any(User.class));
         verify(jwtService, times(1)).generateAccessToken(savedUser);
     }
+
+    @Test
+    void logout_ShouldRevokeAccessTokensOfUser() {
+        User user = new User();
+        user.setId(5L);
+        ec.edu.espe.chat_real_time.model.RefreshToken refreshToken = new ec.edu.espe.chat_real_time.model.RefreshToken();
+        refreshToken.setToken("refresh-1");
+        refreshToken.setUser(user);
+        when(refreshTokenService.findByToken("refresh-1")).thenReturn(refreshToken);
+
+        authService.logout("refresh-1");
+
+        verify(refreshTokenService).revokeToken("refresh-1");
+        verify(tokenRevocationList).revokeAll(5L);
+    }
 }
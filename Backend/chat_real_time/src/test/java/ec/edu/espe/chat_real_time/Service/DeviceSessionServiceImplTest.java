@@ -1,6 +1,7 @@
 package ec.edu.espe.chat_real_time.Service;
 
 import ec.edu.espe.chat_real_time.Service.device.DeviceSessionServiceImpl;
+import ec.edu.espe.chat_real_time.Service.room.RoomPresenceRegistry;
 import ec.edu.espe.chat_real_time.exception.BadRequestException;
 import ec.edu.espe.chat_real_time.model.room.Room;
 import ec.edu.espe.chat_real_time.model.user.User;
@@ -19,12 +20,14 @@ import static org.mockito.Mockito.*;
 class DeviceSessionServiceImplTest {
 
     private UserSessionRepository userSessionRepository;
+    private RoomPresenceRegistry presenceRegistry;
     private DeviceSessionServiceImpl deviceSessionService;
 
     @BeforeEach
     void setUp() {
         userSessionRepository = mock(UserSessionRepository.class);
-        deviceSessionService = new DeviceSessionServiceImpl(userSessionRepository);
+        presenceRegistry = mock(RoomPresenceRegistry.class);
+        deviceSessionService = new DeviceSessionServiceImpl(userSessionRepository, presenceRegistry);
     }
 
 
@@ -83,8 +86,10 @@ class DeviceSessionServiceImplTest {
     @Test
     void closeExistingSession_ShouldCloseActiveSessions() {
         User user = new User();
+        user.setId(7L);
 
         Room room = mock(Room.class);
+        when(room.getId()).thenReturn(1L);
 
         UserSession session = new UserSession();
         session.setIsActive(true);
@@ -104,7 +109,7 @@ class DeviceSessionServiceImplTest {
         assertThat(saved.getLeftAt()).isNotNull();
 
 
-        verify(room, times(1)).decrementCurrentUsers();
+        verify(presenceRegistry, times(1)).leave(1L, 7L);
     }
 
 
@@ -0,0 +1,69 @@
+package ec.edu.espe.chat_real_time.Service;
+
+import ec.edu.espe.chat_real_time.Service.storage.LocalAttachmentStorage;
+import ec.edu.espe.chat_real_time.Service.storage.StoredFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalAttachmentStorageTest {
+
+    @TempDir
+    Path tempDir;
+
+    private LocalAttachmentStorage storage;
+    private Path source;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        storage = new LocalAttachmentStorage(tempDir.resolve("store").toString(), "/api/files");
+        source = tempDir.resolve("source.bin");
+        Files.write(source, new byte[]{1, 2, 3, 4});
+    }
+
+    @Test
+    void store_WritesIntoHashShardedDirectories() throws IOException {
+        StoredFile stored = storage.store(source, "foto.PNG", "image/png");
+
+        assertThat(stored.getFileName()).endsWith(".PNG");
+        assertThat(stored.getFilePath()).matches("[0-9a-f]{2}/[0-9a-f]{2}/" + stored.getFileName());
+        assertThat(stored.getFileUrl()).isEqualTo("/api/files/" + stored.getFileName());
+        assertThat(Files.readAllBytes(storage.localFile(stored.getFilePath()).orElseThrow()))
+                .containsExactly(1, 2, 3, 4);
+    }
+
+    @Test
+    void store_LeavesNoPartialFilesBehind() throws IOException {
+        storage.store(source, "a.txt", "text/plain");
+        storage.store(source, "b.txt", "text/plain");
+
+        try (Stream<Path> files = Files.walk(tempDir.resolve("store"))) {
+            assertThat(files.filter(Files::isRegularFile).map(Path::toString))
+                    .hasSize(2)
+                    .noneMatch(name -> name.endsWith(".part"));
+        }
+    }
+
+    @Test
+    void store_DropsUnsafeExtensions() throws IOException {
+        StoredFile stored = storage.store(source, "evil./../../x", "text/plain");
+
+        assertThat(stored.getFileName()).doesNotContain("/").doesNotContain("..");
+    }
+
+    @Test
+    void localFile_RejectsPathsOutsideRoot() throws IOException {
+        Files.writeString(tempDir.resolve("secret.txt"), "x");
+
+        assertThat(storage.localFile("../secret.txt")).isEmpty();
+        assertThat(storage.localFile("missing/file.txt")).isEmpty();
+        assertThat(storage.localFile(null)).isEmpty();
+    }
+}
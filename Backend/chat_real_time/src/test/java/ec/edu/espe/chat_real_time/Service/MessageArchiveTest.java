@@ -0,0 +1,165 @@
+package ec.edu.espe.chat_real_time.Service;
+
+import ec.edu.espe.chat_real_time.Service.message.MessageArchive;
+import ec.edu.espe.chat_real_time.dto.response.AttachmentResponse;
+import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
+import ec.edu.espe.chat_real_time.model.message.MessageArchiveChunk;
+import ec.edu.espe.chat_real_time.model.message.MessageType;
+import ec.edu.espe.chat_real_time.repository.MessageArchiveChunkRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MessageArchiveTest {
+
+    private final List<MessageArchiveChunk> chunks = new ArrayList<>();
+    private MessageArchiveChunkRepository chunkRepository;
+    private MessageArchive archive;
+
+    @BeforeEach
+    void setUp() {
+        chunkRepository = mock(MessageArchiveChunkRepository.class);
+        AtomicLong ids = new AtomicLong();
+        // repositorio en memoria con la misma semántica que la consulta derivada
+        when(chunkRepository.save(any(MessageArchiveChunk.class))).thenAnswer(inv -> {
+            MessageArchiveChunk chunk = inv.getArgument(0);
+            if (chunk.getId() == null) {
+                chunk.setId(ids.incrementAndGet());
+                chunks.add(chunk);
+            }
+            return chunk;
+        });
+        when(chunkRepository.lockContaining(anyLong())).thenAnswer(inv -> containing(inv.getArgument(0)));
+        when(chunkRepository.findContaining(anyLong())).thenAnswer(inv -> containing(inv.getArgument(0)));
+        doAnswer(inv -> chunks.remove(inv.<MessageArchiveChunk>getArgument(0)))
+                .when(chunkRepository).delete(any(MessageArchiveChunk.class));
+        when(chunkRepository.findByRoomIdAndFirstMessageIdLessThanOrderByLastMessageIdDesc(anyLong(), anyLong(), any(Pageable.class)))
+                .thenAnswer(inv -> {
+                    Long roomId = inv.getArgument(0);
+                    Long before = inv.getArgument(1);
+                    Pageable pageable = inv.getArgument(2);
+                    return chunks.stream()
+                            .filter(c -> c.getRoomId().equals(roomId) && c.getFirstMessageId() < before)
+                            .sorted(Comparator.comparing(MessageArchiveChunk::getLastMessageId).reversed())
+                            .skip(pageable.getOffset())
+                            .limit(pageable.getPageSize())
+                            .toList();
+                });
+        archive = new MessageArchive(chunkRepository, 16);
+    }
+
+    @Test
+    void append_CompressesAndKeepsIdRange() {
+        MessageArchiveChunk chunk = archive.append(1L, messages(1, 200));
+
+        assertThat(chunk.getFirstMessageId()).isEqualTo(1L);
+        assertThat(chunk.getLastMessageId()).isEqualTo(200L);
+        assertThat(chunk.getMessageCount()).isEqualTo(200);
+        // el texto repetitivo del chat comprime bien
+        assertThat(chunk.getPayload().length).isLessThan(200 * 60);
+    }
+
+    @Test
+    void readBefore_RoundTripsMessagesNewestFirst() {
+        archive.append(1L, messages(1, 10));
+
+        List<MessageResponse> read = archive.readBefore(1L, null, 3);
+
+        assertThat(read).extracting(MessageResponse::getId).containsExactly(10L, 9L, 8L);
+        MessageResponse first = read.get(0);
+        assertThat(first.getContent()).isEqualTo("mensaje número 10 de la sala");
+        assertThat(first.getSentAt()).isEqualTo(LocalDateTime.of(2024, 1, 1, 10, 0).plusMinutes(10));
+        assertThat(first.getMessageType()).isEqualTo(MessageType.FILE);
+        assertThat(first.getAttachments()).extracting(AttachmentResponse::getPreviewUrl).containsExactly("https://cdn/p10.jpg");
+    }
+
+    @Test
+    void readBefore_PagesAcrossChunksAndRooms() {
+        for (int start = 1; start <= 50; start += 10) {
+            archive.append(1L, messages(start, start + 9));
+        }
+        archive.append(2L, messages(51, 60));
+
+        List<MessageResponse> page = archive.readBefore(1L, 46L, 20);
+
+        assertThat(page).extracting(MessageResponse::getId)
+                .containsExactlyElementsOf(LongStream.iterate(45, id -> id - 1).limit(20).boxed().toList());
+        assertThat(archive.readBefore(1L, 3L, 20)).extracting(MessageResponse::getId).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void readBefore_DecompressesEachChunkOnce() {
+        archive.append(1L, messages(1, 10));
+        MessageArchiveChunk chunk = spy(chunks.get(0));
+        chunks.set(0, chunk);
+
+        archive.readBefore(1L, null, 5);
+        archive.readBefore(1L, 6L, 5);
+
+        verify(chunk, times(1)).getPayload();
+        verify(chunkRepository, times(2))
+                .findByRoomIdAndFirstMessageIdLessThanOrderByLastMessageIdDesc(eq(1L), anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    void delete_RemovesMessageFromChunkAndInvalidatesCache() {
+        archive.append(1L, messages(1, 10));
+        archive.readBefore(1L, null, 10);
+
+        assertThat(archive.findById(10L)).map(MessageResponse::getContent).contains("mensaje número 10 de la sala");
+        assertThat(archive.delete(10L)).isTrue();
+
+        assertThat(archive.findById(10L)).isEmpty();
+        assertThat(archive.readBefore(1L, null, 3)).extracting(MessageResponse::getId).containsExactly(9L, 8L, 7L);
+        assertThat(chunks.get(0).getLastMessageId()).isEqualTo(9L);
+        assertThat(chunks.get(0).getMessageCount()).isEqualTo(9);
+    }
+
+    @Test
+    void delete_LastMessageDropsTheChunkAndUnknownIdIsIgnored() {
+        archive.append(1L, messages(1, 1));
+
+        assertThat(archive.delete(2L)).isFalse();
+        assertThat(archive.delete(1L)).isTrue();
+
+        assertThat(chunks).isEmpty();
+        assertThat(archive.readBefore(1L, null, 5)).isEmpty();
+    }
+
+    private List<MessageArchiveChunk> containing(Long messageId) {
+        return chunks.stream()
+                .filter(c -> c.getFirstMessageId() <= messageId && c.getLastMessageId() >= messageId)
+                .toList();
+    }
+
+    private List<MessageResponse> messages(long from, long to) {
+        List<MessageResponse> messages = new ArrayList<>();
+        for (long id = from; id <= to; id++) {
+            messages.add(MessageResponse.builder()
+                    .id(id)
+                    .content("mensaje número " + id + " de la sala")
+                    .messageType(MessageType.FILE)
+                    .sentAt(LocalDateTime.of(2024, 1, 1, 10, 0).plusMinutes(id))
+                    .isEdited(false)
+                    .senderNickname("nick")
+                    .senderId(7L)
+                    .roomId(1L)
+                    .attachments(List.of(AttachmentResponse.builder().id(id).previewUrl("https://cdn/p" + id + ".jpg").build()))
+                    .build());
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,190 @@
+package ec.edu.espe.chat_real_time.Service;
+
+import ec.edu.espe.chat_real_time.Service.message.MessageArchive;
+import ec.edu.espe.chat_real_time.Service.message.MessageArchiver;
+import ec.edu.espe.chat_real_time.Service.message.MessagePurger;
+import ec.edu.espe.chat_real_time.Service.message.StoredObjectReleasedEvent;
+import ec.edu.espe.chat_real_time.dto.response.AttachmentResponse;
+import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
+import ec.edu.espe.chat_real_time.model.Attachment;
+import ec.edu.espe.chat_real_time.model.StoredObject;
+import ec.edu.espe.chat_real_time.model.message.ArchivedAttachmentRef;
+import ec.edu.espe.chat_real_time.model.message.Message;
+import ec.edu.espe.chat_real_time.model.room.Room;
+import ec.edu.espe.chat_real_time.model.user.GuestProfile;
+import ec.edu.espe.chat_real_time.model.user.User;
+import ec.edu.espe.chat_real_time.repository.ArchivedAttachmentRefRepository;
+import ec.edu.espe.chat_real_time.repository.AttachmentRepository;
+import ec.edu.espe.chat_real_time.repository.MessageRepository;
+import ec.edu.espe.chat_real_time.repository.StoredObjectRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MessageArchiverTest {
+
+    private MessageRepository messageRepository;
+    private AttachmentRepository attachmentRepository;
+    private StoredObjectRepository storedObjectRepository;
+    private ArchivedAttachmentRefRepository archivedRefRepository;
+    private MessageArchive messageArchive;
+    private TransactionTemplate transactionTemplate;
+    private ApplicationEventPublisher eventPublisher;
+
+    @BeforeEach
+    void setUp() {
+        messageRepository = mock(MessageRepository.class);
+        attachmentRepository = mock(AttachmentRepository.class);
+        storedObjectRepository = mock(StoredObjectRepository.class);
+        archivedRefRepository = mock(ArchivedAttachmentRefRepository.class);
+        messageArchive = mock(MessageArchive.class);
+        transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+        eventPublisher = mock(ApplicationEventPublisher.class);
+    }
+
+    @Test
+    void archive_MovesVisibleMessagesAndDropsDeletedOnes() {
+        Room room = Room.builder().id(1L).build();
+        User user = User.builder().id(7L).username("g").build();
+        user.setGuestProfile(GuestProfile.builder().nickname("nick").user(user).build());
+        Message kept = Message.builder().id(10L).content("hola").user(user).room(room).isDeleted(false).build();
+        Message deleted = Message.builder().id(11L).content("x").user(user).room(room).isDeleted(true).build();
+        when(messageRepository.findRoomIdsWithMessagesBefore(any())).thenReturn(List.of(1L));
+        when(messageRepository.lockIdsToArchive(eq(1L), any(), any(Pageable.class)))
+                .thenReturn(List.of(10L, 11L), List.of());
+        when(messageRepository.findByIdInOrderByIdAsc(List.of(10L, 11L))).thenReturn(List.of(kept, deleted));
+
+        archiver(true, 2).archiveOldMessages();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<MessageResponse>> archived = ArgumentCaptor.forClass(List.class);
+        verify(messageArchive).append(eq(1L), archived.capture());
+        assertThat(archived.getValue()).extracting(MessageResponse::getId).containsExactly(10L);
+        verify(attachmentRepository).deleteByMessageIds(List.of(10L, 11L));
+        verify(messageRepository).deleteByIds(List.of(10L, 11L));
+        // el lote estaba lleno: se pidió otro hasta vaciar la sala
+        verify(messageRepository, times(2)).lockIdsToArchive(eq(1L), any(), any(Pageable.class));
+    }
+
+    @Test
+    void archive_KeepsAttachmentsAndTheirStoredObjects() {
+        Room room = Room.builder().id(1L).build();
+        User user = User.builder().id(7L).username("g").build();
+        user.setGuestProfile(GuestProfile.builder().nickname("nick").user(user).build());
+        Message message = Message.builder().id(10L).content("foto").user(user).room(room).isDeleted(false).build();
+        StoredObject object = StoredObject.builder().id(3L).filePath("chat/foto").fileType("image/png").build();
+        message.getAttachments().add(Attachment.builder().id(20L).fileName("foto.png").originalFileName("foto.png")
+                .fileUrl("https://cdn/foto.png").storedObject(object).message(message).build());
+        when(messageRepository.findRoomIdsWithMessagesBefore(any())).thenReturn(List.of(1L));
+        when(messageRepository.lockIdsToArchive(eq(1L), any(), any(Pageable.class))).thenReturn(List.of(10L));
+        when(messageRepository.findByIdInOrderByIdAsc(List.of(10L))).thenReturn(List.of(message));
+
+        archiver(true, 500).archiveOldMessages();
+
+        // el chunk sigue mostrando el adjunto
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<MessageResponse>> archived = ArgumentCaptor.forClass(List.class);
+        verify(messageArchive).append(eq(1L), archived.capture());
+        assertThat(archived.getValue().get(0).getAttachments())
+                .extracting(AttachmentResponse::getFileUrl).containsExactly("https://cdn/foto.png");
+
+        // la referencia pasa al archivo: el objeto no se suelta ni se borra
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ArchivedAttachmentRef>> refs = ArgumentCaptor.forClass(List.class);
+        verify(archivedRefRepository).saveAll(refs.capture());
+        assertThat(refs.getValue()).singleElement().satisfies(ref -> {
+            assertThat(ref.getMessageId()).isEqualTo(10L);
+            assertThat(ref.getSenderId()).isEqualTo(7L);
+            assertThat(ref.getStoredObject()).isSameAs(object);
+        });
+        verify(storedObjectRepository, never()).release(anyLong());
+        verify(storedObjectRepository, never()).deleteIfUnreferenced(anyLong());
+        verify(eventPublisher, never()).publishEvent(any());
+        verify(attachmentRepository).deleteByMessageIds(List.of(10L));
+        verify(messageRepository).deleteByIds(List.of(10L));
+    }
+
+    @Test
+    void purgeByUsers_RemovesArchivedMessagesAndReleasesTheirObjects() {
+        StoredObject shared = StoredObject.builder().id(3L).filePath("chat/compartido").fileType("image/png").build();
+        StoredObject unique = StoredObject.builder().id(4L).filePath("chat/unico").fileType("image/png")
+                .previewPath("chat/unico-preview").build();
+        when(messageRepository.findIdsByUserIds(List.of(7L))).thenReturn(List.of());
+        when(archivedRefRepository.findMessageIdsBySenderIds(List.of(7L))).thenReturn(List.of(10L));
+        // dos adjuntos del mensaje comparten el objeto 3: son dos referencias
+        when(archivedRefRepository.findWithStoredObjectByMessageIds(List.of(10L))).thenReturn(List.of(
+                ArchivedAttachmentRef.builder().messageId(10L).storedObject(shared).build(),
+                ArchivedAttachmentRef.builder().messageId(10L).storedObject(shared).build(),
+                ArchivedAttachmentRef.builder().messageId(10L).storedObject(unique).build()));
+        when(storedObjectRepository.deleteIfUnreferenced(3L)).thenReturn(0);
+        when(storedObjectRepository.deleteIfUnreferenced(4L)).thenReturn(1);
+
+        int purged = purger().purgeByUsers(List.of(7L));
+
+        assertThat(purged).isEqualTo(1);
+        verify(messageArchive).delete(10L);
+        InOrder order = inOrder(storedObjectRepository, archivedRefRepository);
+        order.verify(storedObjectRepository, times(2)).release(3L);
+        order.verify(archivedRefRepository).deleteByMessageIds(List.of(10L));
+        order.verify(storedObjectRepository).deleteIfUnreferenced(3L);
+        verify(storedObjectRepository).release(4L);
+
+        ArgumentCaptor<StoredObjectReleasedEvent> released = ArgumentCaptor.forClass(StoredObjectReleasedEvent.class);
+        verify(eventPublisher).publishEvent(released.capture());
+        assertThat(released.getValue().getFilePath()).isEqualTo("chat/unico");
+        assertThat(released.getValue().getPreviewPath()).isEqualTo("chat/unico-preview");
+    }
+
+    @Test
+    void archive_UsesConfiguredAge() {
+        archiver(true, 500).archiveOldMessages();
+
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(messageRepository).findRoomIdsWithMessagesBefore(cutoff.capture());
+        assertThat(cutoff.getValue()).isBetween(LocalDateTime.now().minusDays(30).minusMinutes(1), LocalDateTime.now().minusDays(30));
+    }
+
+    @Test
+    void archive_DisabledDoesNothing() {
+        archiver(false, 500).archiveOldMessages();
+
+        verifyNoInteractions(messageRepository, attachmentRepository, storedObjectRepository, messageArchive);
+    }
+
+    @Test
+    void archive_RoomWithOnlyDeletedMessagesWritesNoChunk() {
+        Message deleted = Message.builder().id(11L).isDeleted(true).build();
+        when(messageRepository.findRoomIdsWithMessagesBefore(any())).thenReturn(List.of(1L));
+        when(messageRepository.lockIdsToArchive(eq(1L), any(), any(Pageable.class))).thenReturn(List.of(11L));
+        when(messageRepository.findByIdInOrderByIdAsc(List.of(11L))).thenReturn(List.of(deleted));
+
+        archiver(true, 500).archiveOldMessages();
+
+        verify(messageArchive, never()).append(any(), anyList());
+        verify(messageRepository).deleteByIds(List.of(11L));
+    }
+
+    private MessageArchiver archiver(boolean enabled, int chunkSize) {
+        return new MessageArchiver(messageRepository, purger(), messageArchive, transactionTemplate, enabled, 30, chunkSize);
+    }
+
+    private MessagePurger purger() {
+        return new MessagePurger(messageRepository, attachmentRepository, storedObjectRepository,
+                archivedRefRepository, messageArchive, eventPublisher);
+    }
+}
@@ -1,15 +1,28 @@
 package ec.edu.espe.chat_real_time.Service;
 
-import com.cloudinary.Cloudinary;
-import com.cloudinary.Cloudinary;
-
-
+import ec.edu.espe.chat_real_time.Service.message.AttachmentUploadEvent;
+import ec.edu.espe.chat_real_time.Service.message.MessageArchive;
+import ec.edu.espe.chat_real_time.Service.message.MessagePurger;
+import ec.edu.espe.chat_real_time.Service.message.RecentMessageBuffer;
 import ec.edu.espe.chat_real_time.Service.message.MessageServiceImpl;
+import ec.edu.espe.chat_real_time.Service.message.MessageWriteBehind;
+import ec.edu.espe.chat_real_time.Service.message.StoredObjectReleasedEvent;
+import ec.edu.espe.chat_real_time.Service.storage.AttachmentStaging;
+import ec.edu.espe.chat_real_time.Service.storage.ImagePreview;
+import ec.edu.espe.chat_real_time.Service.storage.StagedUpload;
+import ec.edu.espe.chat_real_time.Service.storage.StoredFile;
+import ec.edu.espe.chat_real_time.Service.websocket.MessageBroadcastEvent;
 import ec.edu.espe.chat_real_time.dto.request.SendMessageRequest;
+import ec.edu.espe.chat_real_time.dto.response.AttachmentResponse;
+import ec.edu.espe.chat_real_time.dto.response.MessagePageResponse;
 import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
 import ec.edu.espe.chat_real_time.exception.BadRequestException;
+import ec.edu.espe.chat_real_time.exception.FileTooLargeException;
 import ec.edu.espe.chat_real_time.exception.ResourceNotFoundException;
 import ec.edu.espe.chat_real_time.exception.UnauthorizedException;
+import ec.edu.espe.chat_real_time.model.Attachment;
+import ec.edu.espe.chat_real_time.model.AttachmentStatus;
+import ec.edu.espe.chat_real_time.model.StoredObject;
 import ec.edu.espe.chat_real_time.model.message.Message;
 import ec.edu.espe.chat_real_time.model.message.MessageType;
 import ec.edu.espe.chat_real_time.model.room.Room;
@@ -20,13 +33,30 @@ import ec.edu.espe.chat_real_time.model.user.UserSession;
 import ec.edu.espe.chat_real_time.repository.AttachmentRepository;
 import ec.edu.espe.chat_real_time.repository.MessageRepository;
 import ec.edu.espe.chat_real_time.repository.RoomRepository;
+import ec.edu.espe.chat_real_time.repository.StoredObjectRepository;
 import ec.edu.espe.chat_real_time.repository.UserSessionRepository;
+import ec.edu.espe.chat_real_time.utils.MessageCursor;
+import ec.edu.espe.chat_real_time.utils.SnowflakeIdGenerator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.web.multipart.MultipartFile;
-
+import org.mockito.InOrder;
+import org.springframework.data.domain.Pageable;
+import org.springframework.util.unit.DataSize;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -41,8 +71,11 @@ class MessageServiceImplTest {
     private RoomRepository roomRepository;
     private UserSessionRepository sessionRepository;
     private AttachmentRepository attachmentRepository;
-    private SimpMessagingTemplate messagingTemplate;
-    private Cloudinary cloudinary;
+    private ApplicationEventPublisher eventPublisher;
+    private AttachmentStaging attachmentStaging;
+    private StoredObjectRepository storedObjectRepository;
+    private MessageArchive messageArchive;
+    private MessagePurger messagePurger;
 
     private MessageServiceImpl messageService;
 
@@ -52,12 +85,19 @@ class MessageServiceImplTest {
         roomRepository = mock(RoomRepository.class);
         sessionRepository = mock(UserSessionRepository.class);
         attachmentRepository = mock(AttachmentRepository.class);
-        messagingTemplate = mock(SimpMessagingTemplate.class);
-        cloudinary = mock(Cloudinary.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        attachmentStaging = mock(AttachmentStaging.class);
+        storedObjectRepository = mock(StoredObjectRepository.class);
+        messageArchive = mock(MessageArchive.class);
+        messagePurger = mock(MessagePurger.class);
 
         messageService = new MessageServiceImpl(
                 messageRepository, roomRepository, sessionRepository,
-                attachmentRepository, messagingTemplate, cloudinary
+                attachmentRepository, eventPublisher, attachmentStaging,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                storedObjectRepository, Optional.empty(), messageArchive,
+                new RecentMessageBuffer(messageRepository, false, 100, 10, DataSize.ofMegabytes(1)),
+                messagePurger
         );
     }
 
@@ -102,7 +142,47 @@ class MessageServiceImplTest {
         assertThat(response.getContent()).isEqualTo("Hello world");
         assertThat(response.getSenderNickname()).isEqualTo("TestNickname"); // Opcional: verificar nickname
 
-        verify(messagingTemplate).convertAndSend(eq("/topic/room/1"), any(MessageResponse.class));
+        ArgumentCaptor<MessageBroadcastEvent> event = ArgumentCaptor.forClass(MessageBroadcastEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertThat(event.getValue().getRoomId()).isEqualTo(1L);
+        assertThat(event.getValue().getMessage()).isSameAs(response);
+    }
+
+    @Test
+    void sendTextMessage_WriteBehindSkipsRepositoryAndBroadcastsAssignedId() {
+        MessageWriteBehind writeBehind = mock(MessageWriteBehind.class);
+        when(writeBehind.submit(any(Message.class))).thenAnswer(inv -> {
+            Message message = inv.getArgument(0);
+            message.setId(555L);
+            return message;
+        });
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        MessageServiceImpl service = new MessageServiceImpl(
+                messageRepository, roomRepository, sessionRepository,
+                attachmentRepository, eventPublisher, attachmentStaging,
+                new TransactionTemplate(transactionManager),
+                storedObjectRepository, Optional.of(writeBehind), messageArchive,
+                new RecentMessageBuffer(messageRepository, false, 100, 10, DataSize.ofMegabytes(1)),
+                messagePurger
+        );
+        User user = guestUser();
+        Room room = Room.builder().id(1L).build();
+        when(roomRepository.findByIdAndDeletedAtIsNull(1L)).thenReturn(Optional.of(room));
+        when(sessionRepository.findByUserAndRoomAndIsActiveTrue(user, room)).thenReturn(Optional.of(new UserSession()));
+        SendMessageRequest request = new SendMessageRequest();
+        request.setRoomId(1L);
+        request.setContent("Hola");
+
+        MessageResponse response = service.sendTextMessage(request, user);
+
+        assertThat(response.getId()).isEqualTo(555L);
+        assertThat(response.getSentAt()).isNotNull();
+        verify(messageRepository, never()).save(any());
+        verify(eventPublisher).publishEvent(any(MessageBroadcastEvent.class));
+        // la espera del lote ocurre con la transacción de las consultas ya cerrada
+        InOrder order = inOrder(transactionManager, writeBehind);
+        order.verify(transactionManager).commit(any());
+        order.verify(writeBehind).submit(any(Message.class));
     }
 
 
@@ -131,6 +211,377 @@ class MessageServiceImplTest {
 
 
 
+    private User guestUser() {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("testUser");
+        user.setRoles(new HashSet<>());
+        GuestProfile guestProfile = new GuestProfile();
+        guestProfile.setNickname("Guest#1234");
+        user.setGuestProfile(guestProfile);
+        return user;
+    }
+
+    private List<Message> messagesDesc(User user, Room room, long fromId, int count) {
+        List<Message> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            list.add(Message.builder().id(fromId - i).content("m" + (fromId - i)).user(user).room(room).build());
+        }
+        return list;
+    }
+
+    @Test
+    void getRoomMessagesPage_firstPage_returnsCursorWhenMoreAvailable() {
+        User user = guestUser();
+        Room room = new Room();
+        room.setId(1L);
+        when(roomRepository.findByIdAndDeletedAtIsNull(1L)).thenReturn(Optional.of(room));
+        when(sessionRepository.findByUserAndRoomAndIsActiveTrue(user, room)).thenReturn(Optional.of(new UserSession()));
+        when(messageRepository.findByRoomAndIsDeletedFalseOrderByIdDesc(eq(room), any(Pageable.class)))
+                .thenReturn(messagesDesc(user, room, 100L, 4));
+
+        MessagePageResponse page = messageService.getRoomMessagesPage(1L, null, 3, user);
+
+        assertThat(page.getMessages()).extracting(MessageResponse::getId).containsExactly(100L, 99L, 98L);
+        assertThat(page.isHasMore()).isTrue();
+        assertThat(MessageCursor.decode(page.getNextCursor())).isEqualTo(98L);
+
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(messageRepository).findByRoomAndIsDeletedFalseOrderByIdDesc(eq(room), pageable.capture());
+        assertThat(pageable.getValue().getPageSize()).isEqualTo(4);
+        verify(messageRepository, never()).findByRoomAndIsDeletedFalseOrderBySentAtDesc(any(Room.class));
+    }
+
+    @Test
+    void getRoomMessagesPage_withCursor_usesKeysetQuery_andLastPageHasNoCursor() {
+        User user = guestUser();
+        Room room = new Room();
+        room.setId(1L);
+        when(roomRepository.findByIdAndDeletedAtIsNull(1L)).thenReturn(Optional.of(room));
+        when(sessionRepository.findByUserAndRoomAndIsActiveTrue(user, room)).thenReturn(Optional.of(new UserSession()));
+        when(messageRepository.findByRoomAndIsDeletedFalseAndIdLessThanOrderByIdDesc(eq(room), eq(98L), any(Pageable.class)))
+                .thenReturn(messagesDesc(user, room, 97L, 2));
+
+        MessagePageResponse page = messageService.getRoomMessagesPage(1L, MessageCursor.encode(98L), 3, user);
+
+        assertThat(page.getMessages()).extracting(MessageResponse::getId).containsExactly(97L, 96L);
+        assertThat(page.isHasMore()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void getRoomMessagesPage_snowflakeCursorBoundsSentAtForPartitionPruning() {
+        User user = guestUser();
+        Room room = new Room();
+        room.setId(1L);
+        Instant createdAt = Instant.parse("2026-03-10T12:00:00Z");
+        long cursorId = new SnowflakeIdGenerator(0, createdAt::toEpochMilli).nextId();
+        when(roomRepository.findByIdAndDeletedAtIsNull(1L)).thenReturn(Optional.of(room));
+        when(sessionRepository.findByUserAndRoomAndIsActiveTrue(user, room)).thenReturn(Optional.of(new UserSession()));
+
+        messageService.getRoomMessagesPage(1L, MessageCursor.encode(cursorId), 3, user);
+
+        ArgumentCaptor<LocalDateTime> sentBefore = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(messageRepository).findByRoomAndIsDeletedFalseAndIdLessThanAndSentAtBeforeOrderByIdDesc(
+                eq(room), eq(cursorId), sentBefore.capture(), any(Pageable.class));
+        assertThat(sentBefore.getValue())
+                .isEqualTo(LocalDateTime.ofInstant(createdAt.plus(Duration.ofDays(1)), ZoneId.systemDefault()));
+        verify(messageRepository, never()).findByRoomAndIsDeletedFalseAndIdLessThanOrderByIdDesc(any(), any(), any());
+    }
+
+    @Test
+    void getRoomMessagesPage_continuesIntoArchiveWhenHotWindowRunsOut() {
+        User user = guestUser();
+        Room room = new Room();
+        room.setId(1L);
+        when(roomRepository.findByIdAndDeletedAtIsNull(1L)).thenReturn(Optional.of(room));
+        when(sessionRepository.findByUserAndRoomAndIsActiveTrue(user, room)).thenReturn(Optional.of(new UserSession()));
+        when(messageRepository.findByRoomAndIsDeletedFalseOrderByIdDesc(eq(room), any(Pageable.class)))
+                .thenReturn(messagesDesc(user, room, 11L, 2));
+        when(messageArchive.readBefore(1L, 10L, 2)).thenReturn(List.of(
+                MessageResponse.builder().id(7L).roomId(1L).build(),
+                MessageResponse.builder().id(5L).roomId(1L).build()));
+
+        MessagePageResponse page = messageService.getRoomMessagesPage(1L, null, 3, user);
+
+        assertThat(page.getMessages()).extracting(MessageResponse::getId).containsExactly(11L, 10L, 7L);
+        assertThat(page.isHasMore()).isTrue();
+        assertThat(MessageCursor.decode(page.getNextCursor())).isEqualTo(7L);
+    }
+
+    @Test
+    void getRoomMessagesPage_cursorInsideArchiveReadsOnlyArchive() {
+        User user = guestUser();
+        Room room = new Room();
+        room.setId(1L);
+        when(roomRepository.findByIdAndDeletedAtIsNull(1L)).thenReturn(Optional.of(room));
+        when(sessionRepository.findByUserAndRoomAndIsActiveTrue(user, room)).thenReturn(Optional.of(new UserSession()));
+        when(messageArchive.readBefore(1L, 7L, 4)).thenReturn(List.of(
+                MessageResponse.builder().id(5L).roomId(1L).build()));
+
+        MessagePageResponse page = messageService.getRoomMessagesPage(1L, MessageCursor.encode(7L), 3, user);
+
+        assertThat(page.getMessages()).extracting(MessageResponse::getId).containsExactly(5L);
+        assertThat(page.isHasMore()).isFalse();
+    }
+
+    @Test
+    void getRoomMessagesPage_clampsLimit_andRejectsNonPositive() {
+        User user = guestUser();
+        Room room = new Room();
+        room.setId(1L);
+        when(roomRepository.findByIdAndDeletedAtIsNull(1L)).thenReturn(Optional.of(room));
+        when(sessionRepository.findByUserAndRoomAndIsActiveTrue(user, room)).thenReturn(Optional.of(new UserSession()));
+        when(messageRepository.findByRoomAndIsDeletedFalseOrderByIdDesc(eq(room), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        messageService.getRoomMessagesPage(1L, null, 10_000, user);
+
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(messageRepository).findByRoomAndIsDeletedFalseOrderByIdDesc(eq(room), pageable.capture());
+        assertThat(pageable.getValue().getPageSize()).isEqualTo(101);
+
+        assertThatThrownBy(() -> messageService.getRoomMessagesPage(1L, null, 0, user))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    void sendFileMessage_ShouldPersistPendingAttachmentAndDeferBroadcast() throws IOException {
+        User user = guestUser();
+        Room room = Room.builder().id(1L).type(RoomType.MULTIMEDIA).maxFileSizeMb(10).build();
+        MockMultipartFile file = new MockMultipartFile("file", "foto.png", "image/png", new byte[]{1, 2, 3});
+        Path staged = Path.of("/tmp/upload-1.tmp");
+
+        when(roomRepository.findByIdAndDeletedAtIsNull(1L)).thenReturn(Optional.of(room));
+        when(sessionRepository.findByUserAndRoomAndIsActiveTrue(user, room)).thenReturn(Optional.of(new UserSession()));
+        when(attachmentStaging.stage(any(InputStream.class), eq(10L * 1024 * 1024)))
+                .thenReturn(new StagedUpload(staged, 3, "abc"));
+        when(messageRepository.save(any(Message.class))).thenAnswer(inv -> {
+            Message m = inv.getArgument(0);
+            m.setId(100L);
+            return m;
+        });
+        when(attachmentRepository.save(any(Attachment.class))).thenAnswer(inv -> {
+            Attachment a = inv.getArgument(0);
+            a.setId(5L);
+            return a;
+        });
+
+        MessageResponse response = messageService.sendFileMessage(1L, null, file, user);
+
+        assertThat(response.getAttachments()).hasSize(1);
+        assertThat(response.getAttachments().get(0).getStatus()).isEqualTo(AttachmentStatus.PENDING);
+        assertThat(response.getAttachments().get(0).getOriginalFileName()).isEqualTo("foto.png");
+
+        ArgumentCaptor<Object> event = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        AttachmentUploadEvent upload = (AttachmentUploadEvent) event.getValue();
+        assertThat(upload.getAttachmentId()).isEqualTo(5L);
+        assertThat(upload.getStagedFile()).isEqualTo(staged);
+        assertThat(upload.getContentType()).isEqualTo("image/png");
+    }
+
+    @Test
+    void sendFileMessage_ShouldDiscardStagedFileIfSaveFails() throws IOException {
+        User user = guestUser();
+        Room room = Room.builder().id(1L).type(RoomType.MULTIMEDIA).maxFileSizeMb(10).build();
+        MockMultipartFile file = new MockMultipartFile("file", "doc.pdf", "application/pdf", new byte[]{1});
+        Path staged = Path.of("/tmp/upload-2.tmp");
+
+        when(roomRepository.findByIdAndDeletedAtIsNull(1L)).thenReturn(Optional.of(room));
+        when(sessionRepository.findByUserAndRoomAndIsActiveTrue(user, room)).thenReturn(Optional.of(new UserSession()));
+        when(attachmentStaging.stage(any(InputStream.class), anyLong())).thenReturn(new StagedUpload(staged, 1, "abc"));
+        when(messageRepository.save(any(Message.class))).thenThrow(new IllegalStateException("db down"));
+
+        assertThatThrownBy(() -> messageService.sendFileMessage(1L, null, file, user))
+                .isInstanceOf(IllegalStateException.class);
+
+        verify(attachmentStaging).discard(staged);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void sendFileStream_ShouldRejectDeclaredOversizeBeforeReading() throws IOException {
+        User user = guestUser();
+        Room room = Room.builder().id(1L).type(RoomType.MULTIMEDIA).maxFileSizeMb(10).build();
+        when(roomRepository.findByIdAndDeletedAtIsNull(1L)).thenReturn(Optional.of(room));
+        when(sessionRepository.findByUserAndRoomAndIsActiveTrue(user, room)).thenReturn(Optional.of(new UserSession()));
+        InputStream body = mock(InputStream.class);
+
+        assertThatThrownBy(() -> messageService.sendFileStream(1L, null, "video.mp4", "video/mp4",
+                11L * 1024 * 1024, body, user))
+                .isInstanceOf(FileTooLargeException.class)
+                .hasMessageContaining("10MB");
+
+        verifyNoInteractions(body, attachmentStaging, messageRepository);
+    }
+
+    @Test
+    void sendFileStream_ShouldRejectEmptyBody() throws IOException {
+        User user = guestUser();
+        Room room = Room.builder().id(1L).type(RoomType.MULTIMEDIA).maxFileSizeMb(10).build();
+        Path staged = Path.of("/tmp/upload-3.tmp");
+        when(roomRepository.findByIdAndDeletedAtIsNull(1L)).thenReturn(Optional.of(room));
+        when(sessionRepository.findByUserAndRoomAndIsActiveTrue(user, room)).thenReturn(Optional.of(new UserSession()));
+        when(attachmentStaging.stage(any(InputStream.class), anyLong())).thenReturn(new StagedUpload(staged, 0, "e3b0"));
+
+        assertThatThrownBy(() -> messageService.sendFileStream(1L, null, "a.txt", "text/plain",
+                -1, new ByteArrayInputStream(new byte[0]), user))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("El archivo está vacío");
+
+        verify(attachmentStaging).discard(staged);
+        verifyNoInteractions(messageRepository);
+    }
+
+    @Test
+    void completeAttachmentUpload_ShouldMarkReadyAndBroadcast() {
+        User user = guestUser();
+        Room room = Room.builder().id(1L).build();
+        Message message = Message.builder().id(100L).content("Archivo adjunto").user(user).room(room).build();
+        Attachment attachment = Attachment.builder().id(5L).fileName("upload-1.tmp").originalFileName("foto.png")
+                .filePath("").fileUrl("").contentHash("abc").status(AttachmentStatus.PENDING).message(message).build();
+        when(storedObjectRepository.save(any(StoredObject.class))).thenAnswer(inv -> inv.getArgument(0));
+        message.getAttachments().add(attachment);
+        when(attachmentRepository.findById(5L)).thenReturn(Optional.of(attachment));
+
+        messageService.completeAttachmentUpload(5L, new StoredFile("abc.png", "abc", "https://cdn/abc.png"), null);
+
+        assertThat(attachment.getStatus()).isEqualTo(AttachmentStatus.READY);
+        assertThat(attachment.getFileUrl()).isEqualTo("https://cdn/abc.png");
+        assertThat(attachment.getStoredObject().getContentHash()).isEqualTo("abc");
+        assertThat(attachment.getStoredObject().getRefCount()).isEqualTo(1);
+        verify(attachmentRepository).save(attachment);
+
+        ArgumentCaptor<MessageBroadcastEvent> event = ArgumentCaptor.forClass(MessageBroadcastEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getRoomId()).isEqualTo(1L);
+        assertThat(event.getValue().getMessage().getAttachments().get(0).getStatus()).isEqualTo(AttachmentStatus.READY);
+    }
+
+    @Test
+    void completeAttachmentUpload_ShouldKeepPreviewOnAttachmentAndStoredObject() {
+        User user = guestUser();
+        Message message = Message.builder().id(100L).content("Archivo adjunto").user(user).room(Room.builder().id(1L).build()).build();
+        Attachment attachment = Attachment.builder().id(5L).fileName("upload-1.tmp").originalFileName("foto.png")
+                .filePath("").fileUrl("").contentHash("abc").status(AttachmentStatus.PENDING).message(message).build();
+        when(storedObjectRepository.save(any(StoredObject.class))).thenAnswer(inv -> inv.getArgument(0));
+        message.getAttachments().add(attachment);
+        when(attachmentRepository.findById(5L)).thenReturn(Optional.of(attachment));
+
+        messageService.completeAttachmentUpload(5L, new StoredFile("abc.png", "abc", "https://cdn/abc.png"),
+                new ImagePreview("https://cdn/prev.jpg", "prev", 320, 240, 4000, 3000));
+
+        assertThat(attachment.getPreviewUrl()).isEqualTo("https://cdn/prev.jpg");
+        assertThat(attachment.getImageWidth()).isEqualTo(4000);
+        assertThat(attachment.getStoredObject().getPreviewPath()).isEqualTo("prev");
+        assertThat(attachment.getStoredObject().getPreviewHeight()).isEqualTo(240);
+
+        ArgumentCaptor<MessageBroadcastEvent> event = ArgumentCaptor.forClass(MessageBroadcastEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        AttachmentResponse response = event.getValue().getMessage().getAttachments().get(0);
+        assertThat(response.getPreviewUrl()).isEqualTo("https://cdn/prev.jpg");
+        assertThat(response.getPreviewWidth()).isEqualTo(320);
+        assertThat(response.getWidth()).isEqualTo(4000);
+        assertThat(response.getHeight()).isEqualTo(3000);
+    }
+
+    @Test
+    void completeAttachmentUpload_ShouldNotBroadcastDeletedMessage() {
+        User user = guestUser();
+        Message message = Message.builder().id(100L).user(user).room(Room.builder().id(1L).build()).isDeleted(true).build();
+        Attachment attachment = Attachment.builder().id(5L).status(AttachmentStatus.PENDING).message(message).build();
+        when(attachmentRepository.findById(5L)).thenReturn(Optional.of(attachment));
+
+        messageService.completeAttachmentUpload(5L, new StoredFile("abc.png", "abc", "https://cdn/abc.png"), null);
+
+        assertThat(attachment.getStatus()).isEqualTo(AttachmentStatus.READY);
+        ArgumentCaptor<Object> event = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue()).isInstanceOf(StoredObjectReleasedEvent.class);
+        assertThat(((StoredObjectReleasedEvent) event.getValue()).getFilePath()).isEqualTo("abc");
+        verify(storedObjectRepository, never()).save(any());
+    }
+
+    @Test
+    void sendFileStream_DuplicateContentReusesStoredObjectWithoutUploading() throws IOException {
+        User user = guestUser();
+        Room room = Room.builder().id(1L).type(RoomType.MULTIMEDIA).maxFileSizeMb(10).build();
+        Path staged = Path.of("/tmp/upload-4.tmp");
+        StoredObject object = StoredObject.builder().id(9L).contentHash("abc").fileName("obj.png")
+                .filePath("chat_real_time/obj").fileUrl("https://cdn/obj.png").refCount(3).build();
+
+        when(roomRepository.findByIdAndDeletedAtIsNull(1L)).thenReturn(Optional.of(room));
+        when(sessionRepository.findByUserAndRoomAndIsActiveTrue(user, room)).thenReturn(Optional.of(new UserSession()));
+        when(attachmentStaging.stage(any(InputStream.class), anyLong())).thenReturn(new StagedUpload(staged, 3, "abc"));
+        when(storedObjectRepository.findFirstByContentHashAndRefCountGreaterThanOrderByIdAsc("abc", 0))
+                .thenReturn(Optional.of(object));
+        when(storedObjectRepository.acquire(9L)).thenReturn(1);
+        when(messageRepository.save(any(Message.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(attachmentRepository.save(any(Attachment.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        MessageResponse response = messageService.sendFileStream(1L, null, "copia.png", "image/png", 3,
+                new ByteArrayInputStream(new byte[]{1, 2, 3}), user);
+
+        assertThat(response.getAttachments().get(0).getStatus()).isEqualTo(AttachmentStatus.READY);
+        assertThat(response.getAttachments().get(0).getFileUrl()).isEqualTo("https://cdn/obj.png");
+        assertThat(response.getAttachments().get(0).getOriginalFileName()).isEqualTo("copia.png");
+        verify(attachmentStaging).discard(staged);
+
+        ArgumentCaptor<Object> event = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue()).isInstanceOf(MessageBroadcastEvent.class);
+    }
+
+    @Test
+    void sendFileStream_ObjectBeingReleasedIsNotReused() throws IOException {
+        User user = guestUser();
+        Room room = Room.builder().id(1L).type(RoomType.MULTIMEDIA).maxFileSizeMb(10).build();
+        StoredObject object = StoredObject.builder().id(9L).contentHash("abc").refCount(1).build();
+
+        when(roomRepository.findByIdAndDeletedAtIsNull(1L)).thenReturn(Optional.of(room));
+        when(sessionRepository.findByUserAndRoomAndIsActiveTrue(user, room)).thenReturn(Optional.of(new UserSession()));
+        when(attachmentStaging.stage(any(InputStream.class), anyLong()))
+                .thenReturn(new StagedUpload(Path.of("/tmp/upload-5.tmp"), 3, "abc"));
+        when(storedObjectRepository.findFirstByContentHashAndRefCountGreaterThanOrderByIdAsc("abc", 0))
+                .thenReturn(Optional.of(object));
+        when(storedObjectRepository.acquire(9L)).thenReturn(0);
+        when(messageRepository.save(any(Message.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(attachmentRepository.save(any(Attachment.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        MessageResponse response = messageService.sendFileStream(1L, null, "copia.png", "image/png", 3,
+                new ByteArrayInputStream(new byte[]{1, 2, 3}), user);
+
+        assertThat(response.getAttachments().get(0).getStatus()).isEqualTo(AttachmentStatus.PENDING);
+        verify(eventPublisher).publishEvent(any(AttachmentUploadEvent.class));
+    }
+
+    @Test
+    void deleteMessage_ReleasesStoredObjectAndDeletesItWhenUnreferenced() {
+        User user = guestUser();
+        StoredObject shared = StoredObject.builder().id(9L).filePath("chat_real_time/obj").fileType("image/png").build();
+        StoredObject unique = StoredObject.builder().id(10L).filePath("chat_real_time/solo").fileType("application/pdf").build();
+        Message message = Message.builder().id(10L).user(user).room(Room.builder().id(1L).build()).build();
+        message.getAttachments().add(Attachment.builder().id(1L).storedObject(shared).message(message).build());
+        message.getAttachments().add(Attachment.builder().id(2L).storedObject(unique).message(message).build());
+        when(messageRepository.findById(10L)).thenReturn(Optional.of(message));
+        when(storedObjectRepository.deleteIfUnreferenced(9L)).thenReturn(0);
+        when(storedObjectRepository.deleteIfUnreferenced(10L)).thenReturn(1);
+
+        messageService.deleteMessage(10L, user);
+
+        verify(storedObjectRepository).release(9L);
+        verify(storedObjectRepository).release(10L);
+        assertThat(message.getAttachments()).allMatch(a -> a.getStoredObject() == null);
+
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        assertThat(events.getAllValues())
+                .filteredOn(StoredObjectReleasedEvent.class::isInstance)
+                .extracting(e -> ((StoredObjectReleasedEvent) e).getFilePath())
+                .containsExactly("chat_real_time/solo");
+    }
+
     @Test
     void getMessageById_ShouldReturnMessage() {
 
@@ -168,6 +619,56 @@ class MessageServiceImplTest {
     }
 
 
+    @Test
+    void getMessageById_ArchivedMessage_IsReadFromArchive() {
+        MessageResponse archived = MessageResponse.builder().id(10L).roomId(3L).content("antiguo").build();
+        when(messageRepository.findById(10L)).thenReturn(Optional.empty());
+        when(messageArchive.findById(10L)).thenReturn(Optional.of(archived));
+
+        assertThat(messageService.getMessageById(10L)).isSameAs(archived);
+    }
+
+    @Test
+    void getMessageById_Unknown_Throws() {
+        when(messageRepository.findById(10L)).thenReturn(Optional.empty());
+        when(messageArchive.findById(10L)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> messageService.getMessageById(10L)).isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void deleteMessage_ArchivedMessage_RemovesItFromArchiveAndBroadcasts() {
+        User user = guestUser();
+        MessageResponse archived = MessageResponse.builder()
+                .id(10L).roomId(3L).senderId(1L).content("antiguo").messageType(MessageType.TEXT).build();
+        when(messageRepository.findById(10L)).thenReturn(Optional.empty());
+        when(messageArchive.findById(10L)).thenReturn(Optional.of(archived));
+
+        messageService.deleteMessage(10L, user);
+
+        verify(messageArchive).delete(10L);
+        verify(messagePurger).releaseArchived(List.of(10L));
+        ArgumentCaptor<MessageBroadcastEvent> event = ArgumentCaptor.forClass(MessageBroadcastEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getRoomId()).isEqualTo(3L);
+        assertThat(event.getValue().getMessage().isDeleted()).isTrue();
+        assertThat(event.getValue().getMessage().getContent()).isEmpty();
+        // la instancia archivada (compartida en caché) no se modifica
+        assertThat(archived.getContent()).isEqualTo("antiguo");
+    }
+
+    @Test
+    void deleteMessage_ArchivedMessageOfOtherUser_IsRejected() {
+        User user = guestUser();
+        when(messageRepository.findById(10L)).thenReturn(Optional.empty());
+        when(messageArchive.findById(10L)).thenReturn(Optional.of(
+                MessageResponse.builder().id(10L).roomId(3L).senderId(99L).build()));
+
+        assertThatThrownBy(() -> messageService.deleteMessage(10L, user)).isInstanceOf(UnauthorizedException.class);
+        verify(messageArchive, never()).delete(anyLong());
+        verifyNoInteractions(messagePurger);
+    }
+
     @Test
     void deleteMessage_ShouldMarkDeleted() {
         GuestProfile guestProfile = new GuestProfile();
@@ -194,10 +695,7 @@ class MessageServiceImplTest {
         assertThat(message.getDeletedAt()).isNotNull();
 
         verify(messageRepository).save(message);
-        verify(messagingTemplate).convertAndSend(
-                eq("/topic/room/" + room.getId()),
-                any(MessageResponse.class)
-        );
+        verify(eventPublisher).publishEvent(any(MessageBroadcastEvent.class));
     }
 
 
@@ -0,0 +1,201 @@
+package ec.edu.espe.chat_real_time.Service;
+
+import ec.edu.espe.chat_real_time.Service.message.MessageWriteBehind;
+import ec.edu.espe.chat_real_time.Service.message.WriteBehindDurability;
+import ec.edu.espe.chat_real_time.model.message.Message;
+import ec.edu.espe.chat_real_time.model.message.MessageType;
+import ec.edu.espe.chat_real_time.model.room.Room;
+import ec.edu.espe.chat_real_time.model.user.User;
+import ec.edu.espe.chat_real_time.model.user.UserSession;
+import ec.edu.espe.chat_real_time.utils.SnowflakeIdGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Cola de escritura diferida contra H2 en memoria. La medición de 10k mensajes/s solo corre con -Dbench.load=true
+class MessageWriteBehindTest {
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private MessageWriteBehind writeBehind;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:wb" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        jdbcTemplate.execute("CREATE TABLE rooms (id BIGINT PRIMARY KEY)");
+        jdbcTemplate.execute("CREATE TABLE messages (id BIGINT PRIMARY KEY, content VARCHAR(2000) NOT NULL, "
+                + "message_type VARCHAR(20) NOT NULL, sent_at TIMESTAMP NOT NULL, is_edited BOOLEAN, is_deleted BOOLEAN, "
+                + "user_id BIGINT NOT NULL, room_id BIGINT NOT NULL REFERENCES rooms(id), session_id BIGINT NOT NULL)");
+        jdbcTemplate.update("INSERT INTO rooms (id) VALUES (1)");
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (writeBehind != null) {
+            writeBehind.shutdown();
+        }
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void submit_AssignsIdBeforePersistingAndFlushesInBatches() throws InterruptedException {
+        writeBehind = writeBehind(WriteBehindDurability.ASYNC, 20_000);
+
+        Message message = writeBehind.submit(message(1L, "hola"));
+
+        assertThat(message.getId()).isNotNull();
+        awaitRows(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT content FROM messages WHERE id = ?", String.class, message.getId()))
+                .isEqualTo("hola");
+    }
+
+    @Test
+    void submit_BatchCommitReturnsOnlyOncePersisted() {
+        writeBehind = writeBehind(WriteBehindDurability.BATCH_COMMIT, 20_000);
+
+        Message message = writeBehind.submit(message(1L, "hola"));
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM messages WHERE id = ?", Long.class, message.getId()))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void submit_InvalidRowIsDroppedWithoutLosingTheRestOfTheBatch() {
+        writeBehind = writeBehind(WriteBehindDurability.BATCH_COMMIT, 20_000);
+
+        assertThatThrownBy(() -> writeBehind.submit(message(99L, "sala borrada")))
+                .isInstanceOf(IllegalStateException.class);
+        writeBehind.submit(message(1L, "hola"));
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM messages", Long.class)).isEqualTo(1);
+    }
+
+    @Test
+    void submit_CallerWriteDoesNotJoinCallerTransaction() throws InterruptedException {
+        writeBehind = writeBehind(WriteBehindDurability.ASYNC, 20_000);
+        // sin hilo escritor la cola rechaza y escribe el propio llamador, como con la cola llena
+        writeBehind.shutdown();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            writeBehind.submit(message(99L, "sala borrada"));
+            writeBehind.submit(message(1L, "hola"));
+            jdbcTemplate.update("INSERT INTO rooms (id) VALUES (2)");
+        });
+
+        // el fallo de la sala borrada no dejó la transacción del llamador en rollback-only
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM rooms WHERE id = 2", Long.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM messages", Long.class)).isEqualTo(1);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            writeBehind.submit(message(1L, "otro"));
+            status.setRollbackOnly();
+        });
+
+        // el mensaje se confirmó en su propia transacción
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM messages", Long.class)).isEqualTo(2);
+        writeBehind = null;
+    }
+
+    @Test
+    void shutdown_FlushesEverythingQueued() throws InterruptedException {
+        writeBehind = writeBehind(WriteBehindDurability.ASYNC, 20_000);
+        for (int i = 0; i < 2_000; i++) {
+            writeBehind.submit(message(1L, "m" + i));
+        }
+
+        writeBehind.shutdown();
+        writeBehind = null;
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM messages", Long.class)).isEqualTo(2_000);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "bench.load", matches = "true")
+    void sustains10kMessagesPerSecond() throws Exception {
+        int producers = 4;
+        int perProducer = 7_500;
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) * producers / 10_000;
+        writeBehind = writeBehind(WriteBehindDurability.ASYNC, 20_000);
+        writeBehind.submit(message(1L, "calentamiento"));
+        awaitRows(1);
+
+        // carga sostenida de 10k mensajes/s repartida entre varios productores, como hilos de petición
+        AtomicInteger maxPending = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    long due = start + i * intervalNanos;
+                    while (System.nanoTime() < due) {
+                        LockSupport.parkNanos(due - System.nanoTime());
+                    }
+                    writeBehind.submit(message(1L, "mensaje " + i));
+                    maxPending.accumulateAndGet(writeBehind.pending(), Math::max);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        double offeredSeconds = (System.nanoTime() - start) / 1e9;
+        long drainStart = System.nanoTime();
+        awaitRows(producers * perProducer + 1);
+        long drainMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - drainStart);
+        double rate = producers * perProducer / offeredSeconds;
+
+        // los productores no se frenaron (sin contrapresión) y la cola se vacía enseguida
+        assertThat(rate).isGreaterThan(9_000);
+        assertThat(maxPending.get()).isLessThan(20_000);
+        assertThat(drainMs).isLessThan(2_000);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT id) FROM messages", Long.class))
+                .isEqualTo(producers * perProducer + 1);
+    }
+
+    private MessageWriteBehind writeBehind(WriteBehindDurability durability, int capacity) {
+        return new MessageWriteBehind(jdbcTemplate, transactionTemplate,
+                new SnowflakeIdGenerator(0), capacity, 500, 5, 50, durability);
+    }
+
+    private Message message(Long roomId, String content) {
+        return Message.builder()
+                .content(content)
+                .messageType(MessageType.TEXT)
+                .sentAt(LocalDateTime.now())
+                .user(User.builder().id(7L).build())
+                .room(Room.builder().id(roomId).build())
+                .session(UserSession.builder().id(3L).build())
+                .build();
+    }
+
+    private void awaitRows(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM messages", Long.class) < expected
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package ec.edu.espe.chat_real_time.Service;
+
+import ec.edu.espe.chat_real_time.Service.message.RecentMessageBuffer;
+import ec.edu.espe.chat_real_time.Service.websocket.MessageBroadcastEvent;
+import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
+import ec.edu.espe.chat_real_time.model.message.Message;
+import ec.edu.espe.chat_real_time.model.room.Room;
+import ec.edu.espe.chat_real_time.model.user.GuestProfile;
+import ec.edu.espe.chat_real_time.model.user.User;
+import ec.edu.espe.chat_real_time.repository.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RecentMessageBufferTest {
+
+    private MessageRepository messageRepository;
+    private User user;
+    private Room room;
+
+    @BeforeEach
+    void setUp() {
+        messageRepository = mock(MessageRepository.class);
+        user = new User();
+        user.setId(1L);
+        user.setRoles(new HashSet<>());
+        GuestProfile guestProfile = new GuestProfile();
+        guestProfile.setNickname("Guest#1234");
+        user.setGuestProfile(guestProfile);
+        room = Room.builder().id(10L).build();
+    }
+
+    @Test
+    void enabled_DefaultsToOnWithSimpleBrokerAndOffWithRelay() {
+        DataSize heap = DataSize.ofMegabytes(1);
+
+        assertThat(new RecentMessageBuffer(messageRepository, null, "simple", 100, 10, heap).isEnabled()).isTrue();
+        assertThat(new RecentMessageBuffer(messageRepository, null, "relay", 100, 10, heap).isEnabled()).isFalse();
+        // un valor explícito manda sobre el modo del broker
+        assertThat(new RecentMessageBuffer(messageRepository, true, "relay", 100, 10, heap).isEnabled()).isTrue();
+    }
+
+    @Test
+    void recent_LoadsRoomOnceThenServesFromMemory() {
+        RecentMessageBuffer buffer = buffer(100);
+        when(messageRepository.findByRoomAndIsDeletedFalseOrderByIdDesc(eq(room), any(Pageable.class)))
+                .thenReturn(messagesDesc(room, 3, 3));
+
+        assertThat(buffer.recent(room, 2)).extracting(MessageResponse::getId).containsExactly(3L, 2L);
+        // la sala tiene menos mensajes que la capacidad: el buffer la contiene entera
+        assertThat(buffer.recent(room, 51)).extracting(MessageResponse::getId).containsExactly(3L, 2L, 1L);
+
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(messageRepository, times(1)).findByRoomAndIsDeletedFalseOrderByIdDesc(eq(room), pageable.capture());
+        assertThat(pageable.getValue().getPageSize()).isEqualTo(100);
+    }
+
+    @Test
+    void committedMessages_AppendInIdOrderAndEvictOldest() {
+        RecentMessageBuffer buffer = buffer(3);
+        when(messageRepository.findByRoomAndIsDeletedFalseOrderByIdDesc(eq(room), any(Pageable.class)))
+                .thenReturn(messagesDesc(room, 3, 3));
+        buffer.recent(room, 3);
+
+        buffer.onMessageBroadcast(committed(4L));
+        assertThat(buffer.recent(room, 3)).extracting(MessageResponse::getId).containsExactly(4L, 3L, 2L);
+
+        // dos transacciones concurrentes pueden confirmar en orden distinto al de sus ids
+        buffer.onMessageBroadcast(committed(6L));
+        buffer.onMessageBroadcast(committed(5L));
+        assertThat(buffer.recent(room, 3)).extracting(MessageResponse::getId).containsExactly(6L, 5L, 4L);
+        verify(messageRepository, times(1)).findByRoomAndIsDeletedFalseOrderByIdDesc(eq(room), any(Pageable.class));
+    }
+
+    @Test
+    void deletedMessage_IsDroppedAndShortRingReloads() {
+        RecentMessageBuffer buffer = buffer(3);
+        when(messageRepository.findByRoomAndIsDeletedFalseOrderByIdDesc(eq(room), any(Pageable.class)))
+                .thenReturn(messagesDesc(room, 3, 3));
+        buffer.recent(room, 3);
+
+        buffer.onMessageBroadcast(deleted(2L));
+
+        assertThat(buffer.recent(room, 2)).extracting(MessageResponse::getId).containsExactly(3L, 1L);
+        verify(messageRepository, times(1)).findByRoomAndIsDeletedFalseOrderByIdDesc(eq(room), any(Pageable.class));
+        // quedan 2 y la sala tiene más mensajes en la BD: pedir 3 obliga a recargar
+        buffer.recent(room, 3);
+        verify(messageRepository, times(2)).findByRoomAndIsDeletedFalseOrderByIdDesc(eq(room), any(Pageable.class));
+    }
+
+    @Test
+    void editedMessage_ReplacesCachedCopy() {
+        RecentMessageBuffer buffer = buffer(3);
+        when(messageRepository.findByRoomAndIsDeletedFalseOrderByIdDesc(eq(room), any(Pageable.class)))
+                .thenReturn(messagesDesc(room, 2, 2));
+        buffer.recent(room, 2);
+
+        MessageResponse edited = MessageResponse.builder().id(2L).roomId(10L).content("editado").isEdited(true).build();
+        buffer.onMessageBroadcast(new MessageBroadcastEvent(10L, edited));
+
+        assertThat(buffer.recent(room, 2).get(0).getContent()).isEqualTo("editado");
+    }
+
+    @Test
+    void commitsDuringLoad_AreMergedWithLoadedHistory() {
+        RecentMessageBuffer buffer = buffer(3);
+        when(messageRepository.findByRoomAndIsDeletedFalseOrderByIdDesc(eq(room), any(Pageable.class))).thenAnswer(inv -> {
+            // mientras la consulta está en curso se confirma un mensaje nuevo y se borra uno que la consulta ya leyó
+            buffer.onMessageBroadcast(committed(4L));
+            buffer.onMessageBroadcast(deleted(2L));
+            return messagesDesc(room, 3, 3);
+        });
+
+        assertThat(buffer.recent(room, 3)).extracting(MessageResponse::getId).containsExactly(4L, 3L, 1L);
+    }
+
+    @Test
+    void roomsNotInMemory_IgnoreCommits() {
+        RecentMessageBuffer buffer = buffer(3);
+
+        buffer.onMessageBroadcast(committed(4L));
+
+        assertThat(buffer.size()).isZero();
+        verifyNoInteractions(messageRepository);
+    }
+
+    @Test
+    void heapBudget_EvictsRoomsToStayUnderLimit() {
+        long budget = DataSize.ofKilobytes(64).toBytes();
+        RecentMessageBuffer buffer = new RecentMessageBuffer(messageRepository, true, 50, 10, DataSize.ofBytes(budget));
+        for (long roomId = 1; roomId <= 40; roomId++) {
+            Room other = Room.builder().id(roomId).build();
+            when(messageRepository.findByRoomAndIsDeletedFalseOrderByIdDesc(eq(other), any(Pageable.class)))
+                    .thenReturn(messagesDesc(other, 50, 50));
+            buffer.recent(other, 50);
+        }
+
+        assertThat(buffer.estimatedBytes()).isPositive().isLessThanOrEqualTo(budget);
+        assertThat(buffer.size()).isBetween(1L, 39L);
+    }
+
+    @Test
+    void heapBudget_CountsGrowthFromCommits() {
+        RecentMessageBuffer buffer = buffer(50);
+        when(messageRepository.findByRoomAndIsDeletedFalseOrderByIdDesc(eq(room), any(Pageable.class)))
+                .thenReturn(messagesDesc(room, 1, 1));
+        buffer.recent(room, 1);
+        long before = buffer.estimatedBytes();
+
+        for (long id = 2; id <= 20; id++) {
+            buffer.onMessageBroadcast(committed(id));
+        }
+
+        assertThat(buffer.estimatedBytes()).isGreaterThan(before + 19 * 176);
+    }
+
+    @Test
+    void disabled_AlwaysReadsDatabase() {
+        RecentMessageBuffer buffer = new RecentMessageBuffer(messageRepository, false, 100, 10, DataSize.ofMegabytes(1));
+        when(messageRepository.findByRoomAndIsDeletedFalseOrderByIdDesc(eq(room), any(Pageable.class)))
+                .thenReturn(messagesDesc(room, 3, 3));
+
+        buffer.recent(room, 2);
+        buffer.recent(room, 2);
+
+        verify(messageRepository, times(2)).findByRoomAndIsDeletedFalseOrderByIdDesc(eq(room), any(Pageable.class));
+        assertThat(buffer.size()).isZero();
+    }
+
+    @Test
+    void recent_ServedFromMemoryInMicroseconds() {
+        RecentMessageBuffer buffer = buffer(100);
+        when(messageRepository.findByRoomAndIsDeletedFalseOrderByIdDesc(eq(room), any(Pageable.class)))
+                .thenReturn(messagesDesc(room, 100, 100));
+        buffer.recent(room, 51);
+
+        int reads = 200_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < reads; i++) {
+            buffer.recent(room, 51);
+        }
+        long averageNanos = (System.nanoTime() - start) / reads;
+
+        // margen amplio para máquinas lentas; en la práctica ronda el microsegundo
+        assertThat(TimeUnit.NANOSECONDS.toMicros(averageNanos)).isLessThan(50);
+        verify(messageRepository, times(1)).findByRoomAndIsDeletedFalseOrderByIdDesc(eq(room), any(Pageable.class));
+    }
+
+    private RecentMessageBuffer buffer(int capacity) {
+        return new RecentMessageBuffer(messageRepository, true, capacity, 10, DataSize.ofMegabytes(16));
+    }
+
+    private MessageBroadcastEvent committed(long id) {
+        return new MessageBroadcastEvent(10L, MessageResponse.builder().id(id).roomId(10L).content("m" + id).build());
+    }
+
+    private MessageBroadcastEvent deleted(long id) {
+        return new MessageBroadcastEvent(10L, MessageResponse.builder().id(id).roomId(10L).content("").isDeleted(true).build());
+    }
+
+    private List<Message> messagesDesc(Room target, long fromId, int count) {
+        List<Message> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            list.add(Message.builder().id(fromId - i).content("mensaje " + (fromId - i)).user(user).room(target).build());
+        }
+        return list;
+    }
+}
@@ -0,0 +1,174 @@
+package ec.edu.espe.chat_real_time.Service;
+
+import com.sun.net.httpserver.HttpServer;
+import ec.edu.espe.chat_real_time.Service.storage.CachedFile;
+import ec.edu.espe.chat_real_time.Service.storage.RemoteAttachmentCache;
+import ec.edu.espe.chat_real_time.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Caché de adjuntos contra un origen HTTP local
+class RemoteAttachmentCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer origin;
+    private final AtomicInteger originHits = new AtomicInteger();
+    private final CountDownLatch releaseOrigin = new CountDownLatch(1);
+    private volatile boolean holdResponses;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        origin = HttpServer.create(new InetSocketAddress(0), 0);
+        origin.setExecutor(Executors.newCachedThreadPool());
+        origin.createContext("/files/", exchange -> {
+            originHits.incrementAndGet();
+            if (holdResponses) {
+                try {
+                    releaseOrigin.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (exchange.getRequestURI().getPath().endsWith("missing")) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = new byte[100];
+            exchange.getResponseHeaders().add("Content-Type", "application/pdf");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        origin.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        origin.stop(0);
+    }
+
+    private String url(String name) {
+        return "http://localhost:" + origin.getAddress().getPort() + "/files/" + name;
+    }
+
+    private RemoteAttachmentCache cache(long maxBytes) throws IOException {
+        return new RemoteAttachmentCache(tempDir.toString(), DataSize.ofBytes(maxBytes), 1000, 5000, 0);
+    }
+
+    @Test
+    void get_ConcurrentMissesShareOneOriginRequest() throws Exception {
+        RemoteAttachmentCache cache = cache(10_000);
+        holdResponses = true;
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<CachedFile>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(pool.submit(() -> cache.get(1L, url("a.pdf"))));
+            }
+            Thread.sleep(200);
+            releaseOrigin.countDown();
+
+            Path first = results.get(0).get(10, TimeUnit.SECONDS).getPath();
+            for (Future<CachedFile> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS).getPath()).isEqualTo(first);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(originHits.get()).isEqualTo(1);
+    }
+
+    @Test
+    void get_HitServesFromDiskWithOriginContentType() throws IOException {
+        RemoteAttachmentCache cache = cache(10_000);
+
+        CachedFile first = cache.get(1L, url("a.pdf"));
+        CachedFile second = cache.get(1L, url("a.pdf"));
+
+        assertThat(second.getPath()).isEqualTo(first.getPath());
+        assertThat(second.getSize()).isEqualTo(100);
+        assertThat(second.getContentType()).isEqualTo("application/pdf");
+        assertThat(originHits.get()).isEqualTo(1);
+    }
+
+    @Test
+    void get_EvictsAndDeletesFilesOverTheSizeCap() throws IOException {
+        RemoteAttachmentCache cache = cache(250);
+
+        List<Path> paths = new ArrayList<>();
+        for (long id = 1; id <= 6; id++) {
+            paths.add(cache.get(id, url(id + ".pdf")).getPath());
+        }
+
+        assertThat(cache.weightedSize()).isLessThanOrEqualTo(250);
+        assertThat(paths.stream().filter(Files::exists).count()).isEqualTo(cache.size());
+    }
+
+    @Test
+    void get_OriginErrorIsNotCached() throws IOException {
+        RemoteAttachmentCache cache = cache(10_000);
+
+        assertThatThrownBy(() -> cache.get(9L, url("missing")))
+                .isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> cache.get(9L, url("missing")))
+                .isInstanceOf(ResourceNotFoundException.class);
+
+        assertThat(originHits.get()).isEqualTo(2);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void get_RefetchesWhenCachedFileWasRemoved() throws IOException {
+        RemoteAttachmentCache cache = cache(10_000);
+        Files.delete(cache.get(1L, url("a.pdf")).getPath());
+
+        CachedFile refetched = cache.get(1L, url("a.pdf"));
+
+        assertThat(refetched.getPath()).exists();
+        assertThat(originHits.get()).isEqualTo(2);
+    }
+
+    @Test
+    void constructor_DeletesOnlyItsOwnLeftovers() throws IOException {
+        Path staleCopy = Files.write(tempDir.resolve("42-" + UUID.randomUUID() + ".bin"), new byte[10]);
+        Path stalePart = Files.write(tempDir.resolve("42-123456.part"), new byte[10]);
+        // el directorio configurado puede ser compartido (tmpdir, uploads): lo ajeno no se toca
+        Path foreign = Files.write(tempDir.resolve("report.bin"), new byte[10]);
+        Path nested = Files.createDirectories(tempDir.resolve("uploads"));
+        Path nestedFile = Files.write(nested.resolve("7-foto.bin"), new byte[10]);
+
+        cache(10_000);
+
+        assertThat(staleCopy).doesNotExist();
+        assertThat(stalePart).doesNotExist();
+        assertThat(foreign).exists();
+        assertThat(nestedFile).exists();
+    }
+}
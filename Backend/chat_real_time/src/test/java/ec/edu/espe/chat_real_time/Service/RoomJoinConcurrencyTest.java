@@ -0,0 +1,156 @@
+package ec.edu.espe.chat_real_time.Service;
+
+import ec.edu.espe.chat_real_time.Service.device.DeviceSessionService;
+import ec.edu.espe.chat_real_time.Service.message.RecentMessageBuffer;
+import ec.edu.espe.chat_real_time.Service.room.RoomPresenceRegistry;
+import ec.edu.espe.chat_real_time.Service.room.RoomServiceImpl;
+import ec.edu.espe.chat_real_time.Service.websocket.WebSocketService;
+import ec.edu.espe.chat_real_time.dto.request.JoinRoomRequest;
+import ec.edu.espe.chat_real_time.exception.BadRequestException;
+import ec.edu.espe.chat_real_time.exception.RoomFullException;
+import ec.edu.espe.chat_real_time.model.room.Room;
+import ec.edu.espe.chat_real_time.model.user.AdminProfile;
+import ec.edu.espe.chat_real_time.model.user.User;
+import ec.edu.espe.chat_real_time.model.user.UserSession;
+import ec.edu.espe.chat_real_time.repository.RoomRepository;
+import ec.edu.espe.chat_real_time.repository.UserSessionRepository;
+import ec.edu.espe.chat_real_time.utils.PinGenerator;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Ráfagas de uniones simultáneas contra RoomServiceImpl con el registro de presencia real
+class RoomJoinConcurrencyTest {
+
+    private static final int MAX_USERS = 200;
+    private static final int JOIN_ATTEMPTS = 5000;
+
+    private final AtomicInteger savedSessions = new AtomicInteger();
+    private RoomPresenceRegistry presenceRegistry;
+    private RoomServiceImpl roomService;
+    private HttpServletRequest httpRequest;
+
+    @BeforeEach
+    void setUp() {
+        RoomRepository roomRepository = mock(RoomRepository.class);
+        UserSessionRepository sessionRepository = mock(UserSessionRepository.class);
+        PinGenerator pinGenerator = mock(PinGenerator.class);
+        httpRequest = mock(HttpServletRequest.class);
+        presenceRegistry = new RoomPresenceRegistry();
+
+        User creator = User.builder().id(1L).username("admin").build();
+        creator.setAdminProfile(AdminProfile.builder().id(1L).firstName("A").lastName("B").email("a@b.com").user(creator).build());
+        Room room = Room.builder().id(10L).roomCode("ROOM123").isActive(true).maxUsers(MAX_USERS).creator(creator).build();
+
+        when(roomRepository.findByRoomCodeAndDeletedAtIsNull("ROOM123")).thenReturn(Optional.of(room));
+        when(roomRepository.findByIdAndDeletedAtIsNull(10L)).thenReturn(Optional.of(room));
+        when(pinGenerator.validatePin(anyString(), any())).thenReturn(true);
+        when(sessionRepository.save(any(UserSession.class))).thenAnswer(invocation -> {
+            savedSessions.incrementAndGet();
+            return invocation.getArgument(0);
+        });
+
+        roomService = new RoomServiceImpl(
+                roomRepository,
+                sessionRepository,
+                mock(PasswordEncoder.class),
+                pinGenerator,
+                mock(DeviceSessionService.class),
+                mock(HttpRequestService.class),
+                mock(WebSocketService.class),
+                presenceRegistry,
+                mock(RecentMessageBuffer.class)
+        );
+    }
+
+    @Test
+    void joinStorm_ShouldAdmitExactlyMaxUsers() throws Exception {
+        List<Callable<Class<?>>> joins = new ArrayList<>();
+        for (long userId = 1; userId <= JOIN_ATTEMPTS; userId++) {
+            User user = User.builder().id(1000 + userId).username("Guest_User_" + userId).build();
+            joins.add(() -> join(user));
+        }
+
+        long start = System.nanoTime();
+        List<Class<?>> outcomes = runConcurrently(joins);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(outcomes.stream().filter(Void.class::equals).count()).isEqualTo(MAX_USERS);
+        assertThat(outcomes.stream().filter(RoomFullException.class::equals).count())
+                .isEqualTo(JOIN_ATTEMPTS - MAX_USERS);
+        assertThat(savedSessions.get()).isEqualTo(MAX_USERS);
+        assertThat(presenceRegistry.count(10L)).isEqualTo(MAX_USERS);
+        // margen amplio: la admisión no bloquea, solo comprueba que no se serializa
+        assertThat(elapsedMs).isLessThan(10_000);
+    }
+
+    @Test
+    void joinStorm_SameUserShouldGetOneSession() throws Exception {
+        User user = User.builder().id(77L).username("Guest_User_77").build();
+        List<Callable<Class<?>>> joins = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            joins.add(() -> join(user));
+        }
+
+        List<Class<?>> outcomes = runConcurrently(joins);
+
+        assertThat(outcomes.stream().filter(Void.class::equals).count()).isEqualTo(1);
+        assertThat(outcomes.stream().filter(BadRequestException.class::equals).count()).isEqualTo(499);
+        assertThat(savedSessions.get()).isEqualTo(1);
+        assertThat(presenceRegistry.count(10L)).isEqualTo(1);
+    }
+
+    private Class<?> join(User user) {
+        JoinRoomRequest request = new JoinRoomRequest();
+        request.setRoomCode("ROOM123");
+        request.setPin("1234");
+        request.setDeviceId("device-" + user.getId());
+        try {
+            roomService.joinRoom(request, user, httpRequest);
+            return Void.class;
+        } catch (RuntimeException e) {
+            return e.getClass();
+        }
+    }
+
+    private List<Class<?>> runConcurrently(List<Callable<Class<?>>> tasks) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Class<?>>> futures = new ArrayList<>();
+        try {
+            for (Callable<Class<?>> task : tasks) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+
+            List<Class<?>> outcomes = new ArrayList<>();
+            for (Future<Class<?>> future : futures) {
+                outcomes.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return outcomes;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package ec.edu.espe.chat_real_time.Service;
+
+import ec.edu.espe.chat_real_time.Service.room.RoomPresenceRegistry;
+import ec.edu.espe.chat_real_time.Service.room.RoomPresenceRegistry.Admission;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RoomPresenceRegistryTest {
+
+    private RoomPresenceRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new RoomPresenceRegistry();
+    }
+
+    @Test
+    void admit_ShouldRejectWhenRoomIsFull() {
+        assertThat(registry.admit(1L, 10L, 2)).isEqualTo(Admission.ADMITTED);
+        assertThat(registry.admit(1L, 11L, 2)).isEqualTo(Admission.ADMITTED);
+        assertThat(registry.admit(1L, 12L, 2)).isEqualTo(Admission.FULL);
+        assertThat(registry.count(1L)).isEqualTo(2);
+        assertThat(registry.isPresent(1L, 12L)).isFalse();
+    }
+
+    @Test
+    void admit_ShouldNotCountSameUserTwice() {
+        assertThat(registry.admit(1L, 10L, 5)).isEqualTo(Admission.ADMITTED);
+        assertThat(registry.admit(1L, 10L, 5)).isEqualTo(Admission.ALREADY_PRESENT);
+        assertThat(registry.count(1L)).isEqualTo(1);
+    }
+
+    @Test
+    void leave_ShouldFreeSeatOnlyForMembers() {
+        registry.admit(1L, 10L, 1);
+
+        assertThat(registry.leave(1L, 99L)).isFalse();
+        assertThat(registry.leave(1L, 10L)).isTrue();
+        assertThat(registry.leave(1L, 10L)).isFalse();
+        assertThat(registry.count(1L)).isZero();
+        assertThat(registry.admit(1L, 11L, 1)).isEqualTo(Admission.ADMITTED);
+    }
+
+    @Test
+    void drainDirty_ShouldReturnChangedRoomsOnce() {
+        registry.admit(1L, 10L, 5);
+        registry.admit(2L, 20L, 5);
+        registry.leave(2L, 20L);
+
+        assertThat(registry.drainDirty()).isEqualTo(Map.of(1L, 1, 2L, 0));
+        assertThat(registry.drainDirty()).isEmpty();
+
+        registry.admit(1L, 11L, 5);
+        assertThat(registry.drainDirty()).isEqualTo(Map.of(1L, 2));
+    }
+
+    @Test
+    void restore_ShouldIgnoreCapacityAndDuplicates() {
+        registry.restore(1L, 10L);
+        registry.restore(1L, 10L);
+        registry.restore(1L, 11L);
+
+        assertThat(registry.count(1L)).isEqualTo(2);
+        assertThat(registry.isPresent(1L, 11L)).isTrue();
+        assertThat(registry.admit(1L, 12L, 2)).isEqualTo(Admission.FULL);
+    }
+
+    @Test
+    void admit_ConcurrentJoinsNeverExceedMaxUsers() throws Exception {
+        int maxUsers = 10;
+        int threads = 64;
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Admission>> results = new ArrayList<>();
+        try {
+            for (long userId = 0; userId < threads; userId++) {
+                long id = userId;
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return registry.admit(1L, id, maxUsers);
+                }));
+            }
+            start.countDown();
+
+            int admitted = 0;
+            for (Future<Admission> result : results) {
+                if (result.get(5, TimeUnit.SECONDS) == Admission.ADMITTED) admitted++;
+            }
+
+            assertThat(admitted).isEqualTo(maxUsers);
+            assertThat(registry.count(1L)).isEqualTo(maxUsers);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void admit_ConcurrentJoinsOfSameUserAdmitOnce() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Admission>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < 64; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return registry.admit(1L, 10L, 5);
+                }));
+            }
+            start.countDown();
+
+            int admitted = 0;
+            for (Future<Admission> result : results) {
+                if (result.get(5, TimeUnit.SECONDS) == Admission.ADMITTED) admitted++;
+            }
+
+            assertThat(admitted).isEqualTo(1);
+            assertThat(registry.count(1L)).isEqualTo(1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void drainDirty_DropsRoomsThatBecameEmpty() {
+        registry.admit(1L, 10L, 5);
+        registry.admit(2L, 20L, 5);
+        registry.leave(1L, 10L);
+
+        assertThat(registry.drainDirty()).containsEntry(1L, 0).containsEntry(2L, 1);
+
+        assertThat(registry.size()).isEqualTo(1);
+        assertThat(registry.count(1L)).isZero();
+        // la sala se vuelve a crear al siguiente ingreso
+        assertThat(registry.admit(1L, 11L, 5)).isEqualTo(Admission.ADMITTED);
+        assertThat(registry.count(1L)).isEqualTo(1);
+    }
+
+    @Test
+    void drainDirty_ConcurrentWithChurnKeepsCountsExact() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(9);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        try {
+            for (long user = 1; user <= 8; user++) {
+                long userId = user;
+                workers.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 20_000; i++) {
+                        assertThat(registry.admit(1L, userId, 100)).isEqualTo(Admission.ADMITTED);
+                        assertThat(registry.leave(1L, userId)).isTrue();
+                    }
+                    registry.admit(1L, userId, 100);
+                    return null;
+                }));
+            }
+            Future<?> drainer = pool.submit(() -> {
+                start.await();
+                while (!workers.stream().allMatch(Future::isDone)) {
+                    registry.drainDirty();
+                }
+                return null;
+            });
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(30, TimeUnit.SECONDS);
+            }
+            drainer.get(30, TimeUnit.SECONDS);
+
+            // ningún ingreso se perdió en una sala retirada a la vez
+            assertThat(registry.count(1L)).isEqualTo(8);
+            assertThat(registry.size()).isEqualTo(1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void leave_RacingAdmitOfSameUserNeverLeavesRoomUnjoinable() throws Exception {
+        // ingreso REST y desconexión WS del mismo usuario a la vez, con el flush vaciando salas en paralelo
+        ExecutorService pool = Executors.newFixedThreadPool(9);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                workers.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 100_000; i++) {
+                        registry.admit(1L, 10L, 5);
+                    }
+                    return null;
+                }));
+                workers.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 100_000; i++) {
+                        registry.leave(1L, 10L);
+                    }
+                    return null;
+                }));
+            }
+            Future<?> drainer = pool.submit(() -> {
+                start.await();
+                while (!workers.stream().allMatch(Future::isDone)) {
+                    registry.drainDirty();
+                }
+                return null;
+            });
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(30, TimeUnit.SECONDS);
+            }
+            drainer.get(30, TimeUnit.SECONDS);
+
+            assertThat(registry.count(1L)).isEqualTo(registry.isPresent(1L, 10L) ? 1 : 0);
+            registry.leave(1L, 10L);
+            registry.drainDirty();
+            assertThat(registry.size()).isZero();
+            assertThat(registry.admit(1L, 11L, 1)).isEqualTo(Admission.ADMITTED);
+            assertThat(registry.count(1L)).isEqualTo(1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void admit_AlreadyPresentInFullRoomIsNotReportedFull() {
+        registry.admit(1L, 10L, 1);
+
+        assertThat(registry.admit(1L, 10L, 1)).isEqualTo(Admission.ALREADY_PRESENT);
+        assertThat(registry.count(1L)).isEqualTo(1);
+    }
+}
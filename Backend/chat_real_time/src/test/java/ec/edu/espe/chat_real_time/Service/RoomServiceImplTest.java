@@ -1,15 +1,22 @@
 package ec.edu.espe.chat_real_time.Service;
 import ec.edu.espe.chat_real_time.Service.device.DeviceSessionService;
+import ec.edu.espe.chat_real_time.Service.message.RecentMessageBuffer;
+import ec.edu.espe.chat_real_time.Service.room.RoomPresenceRegistry;
 import ec.edu.espe.chat_real_time.Service.room.RoomServiceImpl;
 import ec.edu.espe.chat_real_time.Service.websocket.WebSocketService;
 import ec.edu.espe.chat_real_time.dto.request.JoinRoomRequest;
+import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
+import ec.edu.espe.chat_real_time.dto.response.RoomDetailResponse;
 import ec.edu.espe.chat_real_time.exception.BadRequestException;
 import ec.edu.espe.chat_real_time.exception.ResourceNotFoundException;
 import ec.edu.espe.chat_real_time.exception.RoomFullException;
+import ec.edu.espe.chat_real_time.model.message.MessageType;
 import ec.edu.espe.chat_real_time.model.room.Room;
+import ec.edu.espe.chat_real_time.model.user.AdminProfile;
 import ec.edu.espe.chat_real_time.model.user.User;
+import ec.edu.espe.chat_real_time.model.user.UserSession;
+import java.util.List;
 import java.util.Optional;
-import ec.edu.espe.chat_real_time.repository.MessageRepository;
 import ec.edu.espe.chat_real_time.repository.RoomRepository;
 import ec.edu.espe.chat_real_time.repository.UserRepository;
 import ec.edu.espe.chat_real_time.repository.UserSessionRepository;
@@ -19,6 +26,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import static org.mockito.Mockito.*;
@@ -29,12 +37,13 @@ class RoomServiceImplTest {
 
     private RoomRepository roomRepository;
     private UserSessionRepository sessionRepository;
-    private MessageRepository messageRepository;
     private PasswordEncoder passwordEncoder;
     private PinGenerator pinGeneratorService;
     private DeviceSessionService deviceSessionService;
     private HttpRequestService httpRequestService;
     private WebSocketService webSocketService;
+    private RoomPresenceRegistry presenceRegistry;
+    private RecentMessageBuffer recentMessageBuffer;
 
     private RoomServiceImpl roomService;
     private User user;
@@ -43,24 +52,26 @@ class RoomServiceImplTest {
     void setUp() {
         roomRepository = mock(RoomRepository.class);
         sessionRepository = mock(UserSessionRepository.class);
-        messageRepository = mock(MessageRepository.class);
         passwordEncoder = mock(PasswordEncoder.class);
         pinGeneratorService = mock(PinGenerator.class);
         deviceSessionService = mock(DeviceSessionService.class);
         httpRequestService = mock(HttpRequestService.class);
         webSocketService = mock(WebSocketService.class);
+        presenceRegistry = new RoomPresenceRegistry();
+        recentMessageBuffer = mock(RecentMessageBuffer.class);
 
         user = mock(User.class);
 
         roomService = new RoomServiceImpl(
                 roomRepository,
                 sessionRepository,
-                messageRepository,
                 passwordEncoder,
                 pinGeneratorService,
                 deviceSessionService,
                 httpRequestService,
-                webSocketService
+                webSocketService,
+                presenceRegistry,
+                recentMessageBuffer
         );
     }
     @Test
@@ -110,12 +121,16 @@ class RoomServiceImplTest {
         request.setPin("1234");
 
         Room room = Room.builder()
+                .id(1L)
                 .roomCode("ROOM123")
                 .isActive(true)
-                .currentUsers(5)
                 .maxUsers(5)
                 .build();
+        for (long id = 100; id < 105; id++) {
+            presenceRegistry.admit(1L, id, 5);
+        }
 
+        when(user.getId()).thenReturn(7L);
         when(roomRepository.findByRoomCodeAndDeletedAtIsNull("ROOM123")).thenReturn(Optional.of(room));
         when(pinGeneratorService.validatePin("1234", room.getPinHash())).thenReturn(true);
 
@@ -124,5 +139,66 @@ class RoomServiceImplTest {
         assertThatThrownBy(() -> roomService.joinRoom(request, user, httpRequest))
                 .isInstanceOf(RoomFullException.class)
                 .hasMessageContaining("La sala está llena");
+        verify(sessionRepository, never()).save(any());
+        verify(roomRepository, never()).save(any());
+    }
+
+    @Test
+    void joinRoom_ShouldReleaseSeatIfSessionCannotBeSaved() {
+        JoinRoomRequest request = new JoinRoomRequest();
+        request.setRoomCode("ROOM123");
+        request.setPin("1234");
+        request.setDeviceId("device-1");
+
+        Room room = Room.builder().id(1L).roomCode("ROOM123").isActive(true).maxUsers(5).build();
+
+        when(user.getId()).thenReturn(7L);
+        when(roomRepository.findByRoomCodeAndDeletedAtIsNull("ROOM123")).thenReturn(Optional.of(room));
+        when(pinGeneratorService.validatePin("1234", room.getPinHash())).thenReturn(true);
+        when(sessionRepository.save(any(UserSession.class))).thenThrow(new IllegalStateException("db down"));
+
+        HttpServletRequest httpRequest = mock(HttpServletRequest.class);
+
+        assertThatThrownBy(() -> roomService.joinRoom(request, user, httpRequest))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(presenceRegistry.count(1L)).isZero();
+    }
+
+    @Test
+    void leaveRoom_ShouldReleaseSeatWithoutWritingRoom() {
+        Room room = Room.builder().id(1L).roomCode("ROOM123").maxUsers(5).build();
+        UserSession session = UserSession.builder().isActive(true).room(room).build();
+        presenceRegistry.admit(1L, 7L, 5);
+
+        when(user.getId()).thenReturn(7L);
+        when(roomRepository.findByIdAndDeletedAtIsNull(1L)).thenReturn(Optional.of(room));
+        when(sessionRepository.findByUserAndRoomAndIsActiveTrue(user, room)).thenReturn(Optional.of(session));
+
+        roomService.leaveRoom(1L, user);
+
+        assertThat(presenceRegistry.count(1L)).isZero();
+        assertThat(session.getIsActive()).isFalse();
+        verify(roomRepository, never()).save(any());
+        verify(webSocketService).notifyUserLeftRoom(1L, user);
+    }
+
+    @Test
+    void getRoomDetails_ShouldServeBoundedRecentMessagesFromBuffer() {
+        User creator = User.builder().id(1L).username("admin").build();
+        creator.setAdminProfile(AdminProfile.builder().id(1L).firstName("A").lastName("B").email("a@b.com").user(creator).build());
+        Room room = Room.builder().id(10L).roomCode("ROOM123").creator(creator).build();
+
+        when(roomRepository.findByIdAndDeletedAtIsNull(10L)).thenReturn(Optional.of(room));
+        when(sessionRepository.findByRoomAndIsActiveTrue(room)).thenReturn(List.of());
+        when(recentMessageBuffer.recent(room, 50)).thenReturn(List.of(
+                MessageResponse.builder().id(2L).content("b").messageType(MessageType.TEXT).senderNickname("A B (Admin)").build(),
+                MessageResponse.builder().id(1L).content("a").messageType(MessageType.TEXT).senderNickname("A B (Admin)").build()
+        ));
+
+        RoomDetailResponse details = roomService.getRoomDetails(10L);
+
+        assertThat(details.getRecentMessages()).hasSize(2);
+        assertThat(details.getRecentMessages().get(0).getSenderNickname()).isEqualTo("A B (Admin)");
+        verify(recentMessageBuffer).recent(room, 50);
     }
 }
@@ -0,0 +1,84 @@
+package ec.edu.espe.chat_real_time.Service;
+
+import ec.edu.espe.chat_real_time.Service.storage.Thumbnail;
+import ec.edu.espe.chat_real_time.Service.storage.ThumbnailGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ThumbnailGeneratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ThumbnailGenerator generator = new ThumbnailGenerator(320, 10_000_000);
+
+    @Test
+    void supports_OnlyDecodableImages() {
+        assertThat(generator.supports("image/png")).isTrue();
+        assertThat(generator.supports("image/jpeg")).isTrue();
+        assertThat(generator.supports("application/pdf")).isFalse();
+        assertThat(generator.supports(null)).isFalse();
+    }
+
+    @Test
+    void generate_ScalesLargeImageKeepingAspectRatio() throws IOException {
+        Path source = write(new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_RGB), "jpg");
+
+        Thumbnail thumbnail = generator.generate(source).orElseThrow();
+
+        assertThat(thumbnail.getWidth()).isEqualTo(320);
+        assertThat(thumbnail.getHeight()).isEqualTo(160);
+        assertThat(thumbnail.getSourceWidth()).isEqualTo(2000);
+        assertThat(thumbnail.getSourceHeight()).isEqualTo(1000);
+        assertThat(thumbnail.getContentType()).isEqualTo("image/jpeg");
+        assertThat(thumbnail.getPath().getParent()).isEqualTo(tempDir);
+        BufferedImage written = ImageIO.read(thumbnail.getPath().toFile());
+        assertThat(written.getWidth()).isEqualTo(320);
+    }
+
+    @Test
+    void generate_KeepsTransparencyAsPng() throws IOException {
+        Path source = write(new BufferedImage(64, 48, BufferedImage.TYPE_INT_ARGB), "png");
+
+        Thumbnail thumbnail = generator.generate(source).orElseThrow();
+
+        // las imágenes pequeñas no se agrandan
+        assertThat(thumbnail.getWidth()).isEqualTo(64);
+        assertThat(thumbnail.getHeight()).isEqualTo(48);
+        assertThat(thumbnail.getContentType()).isEqualTo("image/png");
+    }
+
+    @Test
+    void generate_SkipsImagesOverPixelLimitWithoutDecoding() throws IOException {
+        Path source = write(new BufferedImage(4000, 3000, BufferedImage.TYPE_BYTE_BINARY), "png");
+
+        Optional<Thumbnail> thumbnail = generator.generate(source);
+
+        assertThat(thumbnail).isEmpty();
+        try (var files = Files.list(tempDir)) {
+            assertThat(files).containsExactly(source);
+        }
+    }
+
+    @Test
+    void generate_NonImageReturnsEmpty() throws IOException {
+        Path source = Files.write(tempDir.resolve("a.png"), "no es una imagen".getBytes());
+
+        assertThat(generator.generate(source)).isEmpty();
+    }
+
+    private Path write(BufferedImage image, String format) throws IOException {
+        Path file = tempDir.resolve("source." + format);
+        ImageIO.write(image, format, file.toFile());
+        return file;
+    }
+}
@@ -1,15 +1,22 @@
 package ec.edu.espe.chat_real_time.Service;
 
+import ec.edu.espe.chat_real_time.Service.message.MessagePurger;
+import ec.edu.espe.chat_real_time.Service.user.UserChangedEvent;
 import ec.edu.espe.chat_real_time.Service.user.UserServiceImpl;
 import ec.edu.espe.chat_real_time.model.user.User;
+import ec.edu.espe.chat_real_time.repository.RefreshTokenRepository;
 import ec.edu.espe.chat_real_time.repository.UserRepository;
+import ec.edu.espe.chat_real_time.repository.UserSessionRepository;
+import ec.edu.espe.chat_real_time.security.jwt.TokenRevocationList;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -20,6 +27,21 @@ class UserServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TokenRevocationList tokenRevocationList;
+
+    @Mock
+    private MessagePurger messagePurger;
+
+    @Mock
+    private UserSessionRepository userSessionRepository;
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
     @InjectMocks
     private UserServiceImpl userService;
 
@@ -90,6 +112,9 @@ class UserServiceImplTest {
         assertFalse(user.isAccountNonLocked());
         assertNotNull(user.getLockedUntil());
         verify(userRepository).save(user);
+        verify(tokenRevocationList).revokeAll(1L);
+        verify(eventPublisher).publishEvent(argThat((Object e) ->
+                e instanceof UserChangedEvent changed && "testUser".equals(changed.getUsername())));
     }
 
     @Test
@@ -146,16 +171,37 @@ class UserServiceImplTest {
     }
     @Test
     void testCleanExpiredGuests() {
-        LocalDateTime now = LocalDateTime.now();
+        when(userRepository.findExpiredGuestIds(any(LocalDateTime.class))).thenReturn(List.of());
 
         userService.cleanExpiredGuests();
 
         verify(userRepository).deleteAllExpiredGuests(any(LocalDateTime.class));
+        verifyNoInteractions(messagePurger, userSessionRepository, refreshTokenRepository);
+        verify(eventPublisher).publishEvent(argThat((Object e) ->
+                e instanceof UserChangedEvent changed && changed.affectsAll()));
+    }
+
+    @Test
+    void testCleanExpiredGuests_PurgesTheirMessagesBeforeDeletingUsers() {
+        when(userRepository.findExpiredGuestIds(any(LocalDateTime.class))).thenReturn(List.of(5L, 6L));
+
+        userService.cleanExpiredGuests();
+
+        InOrder order = inOrder(messagePurger, userSessionRepository, refreshTokenRepository, userRepository);
+        order.verify(messagePurger).purgeByUsers(List.of(5L, 6L));
+        order.verify(userSessionRepository).deleteByUserIds(List.of(5L, 6L));
+        order.verify(refreshTokenRepository).deleteAllByUserIds(List.of(5L, 6L));
+        order.verify(userRepository).deleteAllExpiredGuests(any(LocalDateTime.class));
     }
 
    @Test
     void testDeleteUser() {
         userService.delete(user);
-        verify(userRepository).delete(user);
+        InOrder order = inOrder(messagePurger, userRepository);
+        order.verify(messagePurger).purgeByUsers(List.of(1L));
+        order.verify(userRepository).delete(user);
+        verify(tokenRevocationList).revokeAll(1L);
+        verify(eventPublisher).publishEvent(argThat((Object e) ->
+                e instanceof UserChangedEvent changed && "testUser".equals(changed.getUsername())));
     }
 }
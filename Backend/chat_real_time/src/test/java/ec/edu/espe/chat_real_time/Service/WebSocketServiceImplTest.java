@@ -6,6 +6,8 @@ import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.verify;
 
 import ec.edu.espe.chat_real_time.Service.message.MessageService;
+import ec.edu.espe.chat_real_time.Service.websocket.RoomReplayLog;
+import ec.edu.espe.chat_real_time.Service.websocket.TypingAggregator;
 import ec.edu.espe.chat_real_time.Service.websocket.WebSocketServiceImpl;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Tag;
@@ -27,6 +29,12 @@ class WebSocketServiceImplTest {
     @MockitoBean
     private MessageService messageService;
 
+    @MockitoBean
+    private RoomReplayLog roomReplayLog;
+
+    @MockitoBean
+    private TypingAggregator typingAggregator;
+
     @MockitoBean
     private SimpMessagingTemplate simpMessagingTemplate;
 
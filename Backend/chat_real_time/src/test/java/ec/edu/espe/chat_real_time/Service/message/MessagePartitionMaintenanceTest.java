@@ -0,0 +1,68 @@
+package ec.edu.espe.chat_real_time.Service.message;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MessagePartitionMaintenanceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private MessagePartitionMaintenance maintenance;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        maintenance = new MessagePartitionMaintenance(jdbcTemplate, 2, () -> YearMonth.of(2026, 11));
+    }
+
+    @Test
+    void partitionByClause_OnePartitionPerMonthPlusCatchAll() {
+        assertThat(MessagePartitionMaintenance.partitionByClause(YearMonth.of(2025, 12), YearMonth.of(2026, 1)))
+                .isEqualTo("PARTITION BY RANGE COLUMNS(sent_at) ("
+                        + "PARTITION p202512 VALUES LESS THAN ('2026-01-01 00:00:00'), "
+                        + "PARTITION p202601 VALUES LESS THAN ('2026-02-01 00:00:00'), "
+                        + "PARTITION pmax VALUES LESS THAN (MAXVALUE))");
+    }
+
+    @Test
+    void ensureFuturePartitions_SplitsMissingMonthsOutOfCatchAll() {
+        partitions("p202610", "p202611", "pmax");
+
+        maintenance.ensureFuturePartitions();
+
+        verify(jdbcTemplate).execute("ALTER TABLE messages REORGANIZE PARTITION pmax INTO ("
+                + "PARTITION p202612 VALUES LESS THAN ('2027-01-01 00:00:00'), "
+                + "PARTITION p202701 VALUES LESS THAN ('2027-02-01 00:00:00'), "
+                + "PARTITION pmax VALUES LESS THAN (MAXVALUE))");
+    }
+
+    @Test
+    void ensureFuturePartitions_NothingToDoWhenAlreadyAhead() {
+        partitions("p202612", "p202701", "pmax");
+
+        maintenance.ensureFuturePartitions();
+
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    void ensureFuturePartitions_SkipsUnpartitionedTable() {
+        partitions();
+
+        maintenance.ensureFuturePartitions();
+
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    private void partitions(String... names) {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("messages"))).thenReturn(List.of(names));
+    }
+}
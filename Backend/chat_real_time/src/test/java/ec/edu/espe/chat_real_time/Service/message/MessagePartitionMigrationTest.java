@@ -0,0 +1,146 @@
+package ec.edu.espe.chat_real_time.Service.message;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MessagePartitionMigrationTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private MessagePartitionMigration migration;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        migration = new MessagePartitionMigration(jdbcTemplate, 2, 0, 1, () -> YearMonth.of(2026, 11));
+
+        when(jdbcTemplate.queryForList(contains("information_schema.PARTITIONS"), eq(String.class), eq("messages")))
+                .thenReturn(List.of());
+        when(jdbcTemplate.queryForList(contains("information_schema.COLUMNS"), eq(String.class)))
+                .thenReturn(List.of("id", "content", "sent_at", "room_id"));
+        when(jdbcTemplate.queryForObject(contains("information_schema.TABLES"), eq(Integer.class), eq("messages_partitioned")))
+                .thenReturn(0);
+        when(jdbcTemplate.queryForObject("SELECT MIN(sent_at) FROM messages", Timestamp.class))
+                .thenReturn(Timestamp.valueOf(LocalDateTime.of(2026, 9, 14, 8, 0)));
+        when(jdbcTemplate.queryForObject("SELECT MAX(id) FROM messages", Long.class)).thenReturn(50L);
+        when(jdbcTemplate.queryForObject(contains("LIMIT ?"), eq(Long.class), anyLong(), eq(2)))
+                .thenReturn(20L, 50L);
+        when(jdbcTemplate.update(startsWith("INSERT IGNORE"), anyLong(), anyLong())).thenReturn(2);
+        when(jdbcTemplate.queryForList(contains("REFERENTIAL_CONSTRAINTS")))
+                .thenReturn(List.of(Map.of("TABLE_NAME", "attachments", "CONSTRAINT_NAME", "FK_att_msg")));
+    }
+
+    @Test
+    void migrate_BuildsShadowCopiesAndSwaps() {
+        migration.migrate();
+
+        InOrder order = inOrder(jdbcTemplate);
+        order.verify(jdbcTemplate).execute("CREATE TABLE messages_partitioned LIKE messages");
+        order.verify(jdbcTemplate).execute(
+                "ALTER TABLE messages_partitioned DROP PRIMARY KEY, ADD PRIMARY KEY (room_id, sent_at, id), "
+                        + "ADD UNIQUE KEY uk_message_id_sent (id, sent_at)");
+        order.verify(jdbcTemplate).execute(startsWith(
+                "ALTER TABLE messages_partitioned PARTITION BY RANGE COLUMNS(sent_at) (PARTITION p202609 "));
+        order.verify(jdbcTemplate).execute(startsWith("CREATE TRIGGER IF NOT EXISTS messages_partition_ins"));
+        order.verify(jdbcTemplate).update(startsWith("INSERT IGNORE"), eq(0L), eq(20L));
+        order.verify(jdbcTemplate).update(startsWith("INSERT IGNORE"), eq(20L), eq(50L));
+        order.verify(jdbcTemplate).execute("ALTER TABLE `attachments` DROP FOREIGN KEY `FK_att_msg`");
+        order.verify(jdbcTemplate).execute(
+                "RENAME TABLE messages TO messages_unpartitioned, messages_partitioned TO messages");
+        order.verify(jdbcTemplate).execute("DROP TRIGGER IF EXISTS messages_partition_ins");
+    }
+
+    @Test
+    void migrate_PartitionsCoverOldestMonthThroughMonthsAhead() {
+        migration.migrate();
+
+        ArgumentCaptor<String> ddl = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate, atLeastOnce()).execute(ddl.capture());
+        String partitionBy = ddl.getAllValues().stream().filter(sql -> sql.contains("PARTITION BY")).findFirst().orElseThrow();
+        assertThat(partitionBy).contains("p202609", "p202610", "p202611", "p202612", "pmax").doesNotContain("p202701");
+    }
+
+    @Test
+    void migrate_TriggersReplicateEveryColumn() {
+        migration.migrate();
+
+        verify(jdbcTemplate).execute("CREATE TRIGGER IF NOT EXISTS messages_partition_upd AFTER UPDATE ON messages FOR EACH ROW "
+                + "REPLACE INTO messages_partitioned (`id`, `content`, `sent_at`, `room_id`) "
+                + "VALUES (NEW.`id`, NEW.`content`, NEW.`sent_at`, NEW.`room_id`)");
+        verify(jdbcTemplate).execute("CREATE TRIGGER IF NOT EXISTS messages_partition_del AFTER DELETE ON messages FOR EACH ROW "
+                + "DELETE FROM messages_partitioned WHERE id = OLD.id AND sent_at = OLD.sent_at");
+    }
+
+    @Test
+    void migrate_ResumesWithExistingShadowTable() {
+        when(jdbcTemplate.queryForObject(contains("information_schema.TABLES"), eq(Integer.class), eq("messages_partitioned")))
+                .thenReturn(1);
+
+        migration.migrate();
+
+        verify(jdbcTemplate, never()).execute("CREATE TABLE messages_partitioned LIKE messages");
+        verify(jdbcTemplate).execute("RENAME TABLE messages TO messages_unpartitioned, messages_partitioned TO messages");
+    }
+
+    @Test
+    void migrateExclusively_WithLockMigratesAndReleasesIt() throws Exception {
+        Connection connection = lockConnection(1);
+
+        assertThat(migration.migrateExclusively()).isTrue();
+
+        InOrder order = inOrder(connection, jdbcTemplate);
+        order.verify(connection).prepareStatement("SELECT GET_LOCK(?, 0)");
+        order.verify(jdbcTemplate).execute("RENAME TABLE messages TO messages_unpartitioned, messages_partitioned TO messages");
+        order.verify(connection).prepareStatement("SELECT RELEASE_LOCK(?)");
+    }
+
+    @Test
+    void migrateExclusively_LockHeldByAnotherNodeSkips() throws Exception {
+        Connection connection = lockConnection(0);
+
+        assertThat(migration.migrateExclusively()).isFalse();
+
+        verify(jdbcTemplate, never()).execute(anyString());
+        verify(connection, never()).prepareStatement("SELECT RELEASE_LOCK(?)");
+    }
+
+    @Test
+    void migrate_AlreadyPartitionedDoesNothing() {
+        when(jdbcTemplate.queryForList(contains("information_schema.PARTITIONS"), eq(String.class), eq("messages")))
+                .thenReturn(List.of("p202611", "pmax"));
+
+        migration.migrate();
+
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Connection lockConnection(int getLockResult) throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet result = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(result);
+        when(result.next()).thenReturn(true);
+        when(result.getInt(1)).thenReturn(getLockResult);
+        when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0, ConnectionCallback.class).doInConnection(connection));
+        return connection;
+    }
+}
@@ -0,0 +1,163 @@
+package ec.edu.espe.chat_real_time.Service.message;
+
+import ec.edu.espe.chat_real_time.utils.SnowflakeIdGenerator;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.LongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Generador de datos y benchmark contra MySQL real: misma carga en la tabla plana y en la particionada.
+// mvn test -Dtest=MessagePartitioningBenchmarkTest -Dbench.mysql.url=jdbc:mysql://localhost:3306/chat_bench?rewriteBatchedStatements=true
+//     -Dbench.mysql.user=... -Dbench.mysql.password=... [-Dbench.rows=50000000]
+@EnabledIfSystemProperty(named = "bench.mysql.url", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class MessagePartitioningBenchmarkTest {
+
+    private static final long ROWS = Long.getLong("bench.rows", 50_000_000L);
+    private static final int ROOMS = 2_000;
+    private static final int MONTHS = 24;
+    private static final int INSERT_BATCH = 5_000;
+    private static final int QUERIES = 500;
+    private static final YearMonth LAST_MONTH = YearMonth.of(2026, 12);
+
+    private static final String COLUMNS = "id BIGINT NOT NULL, content TEXT NOT NULL, message_type VARCHAR(20) NOT NULL, "
+            + "sent_at DATETIME(6) NOT NULL, is_edited BIT, is_deleted BIT, user_id BIGINT NOT NULL, "
+            + "room_id BIGINT NOT NULL, session_id BIGINT NOT NULL, "
+            + "KEY idx_message_user (user_id), KEY idx_message_sent_at (sent_at), "
+            + "KEY idx_message_room_deleted_id (room_id, is_deleted, id)";
+
+    private JdbcTemplate jdbcTemplate;
+    private LocalDateTime firstSentAt;
+
+    @BeforeAll
+    void generate() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(System.getProperty("bench.mysql.url"),
+                System.getProperty("bench.mysql.user", "root"), System.getProperty("bench.mysql.password", ""));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        firstSentAt = LAST_MONTH.minusMonths(MONTHS - 1).atDay(1).atStartOfDay();
+
+        Long existing = count("bench_messages_flat");
+        if (existing != null && existing == ROWS) return;
+
+        jdbcTemplate.execute("DROP TABLE IF EXISTS bench_messages_flat, bench_messages_part");
+        // esquema de messages antes y después de MessagePartitionMigration
+        jdbcTemplate.execute("CREATE TABLE bench_messages_flat (" + COLUMNS + ", PRIMARY KEY (id), "
+                + "KEY idx_message_room (room_id))");
+        jdbcTemplate.execute("CREATE TABLE bench_messages_part (" + COLUMNS + ", PRIMARY KEY (room_id, sent_at, id), "
+                + "UNIQUE KEY uk_message_id_sent (id, sent_at)) "
+                + MessagePartitionMaintenance.partitionByClause(LAST_MONTH.minusMonths(MONTHS - 1), LAST_MONTH));
+
+        insertMessages("bench_messages_flat");
+        for (long from = 0; ; ) {
+            Long to = jdbcTemplate.queryForObject(
+                    "SELECT MAX(id) FROM (SELECT id FROM bench_messages_flat WHERE id > ? ORDER BY id LIMIT 100000) b",
+                    Long.class, from);
+            if (to == null) break;
+            jdbcTemplate.update("INSERT INTO bench_messages_part SELECT * FROM bench_messages_flat WHERE id > ? AND id <= ?", from, to);
+            from = to;
+        }
+        jdbcTemplate.execute("ANALYZE TABLE bench_messages_flat, bench_messages_part");
+    }
+
+    @Test
+    void recentMessages_PrunesToRecentPartitions() {
+        String sql = "SELECT id, content, sent_at FROM %s WHERE room_id = ? AND is_deleted = 0 AND sent_at >= ? ORDER BY sent_at DESC";
+        LocalDateTime since = LAST_MONTH.atEndOfMonth().atStartOfDay().minusDays(1);
+
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + sql.formatted("bench_messages_part"), 7L, since);
+        assertThat(String.valueOf(plan.get(0).get("partitions")).split(",")).hasSizeLessThanOrEqualTo(2);
+
+        assertNotSlowerThanFlat("findRecentMessages", sql, room -> new Object[]{room, since});
+    }
+
+    @Test
+    void historyPage_WithSentAtBoundSkipsNewerPartitions() {
+        String sql = "SELECT id, content, sent_at FROM %s WHERE room_id = ? AND is_deleted = 0 AND id < ? AND sent_at < ? "
+                + "ORDER BY id DESC LIMIT 51";
+        // cursor a mitad del historial: la cota descarta los meses posteriores
+        LocalDateTime cursorAt = firstSentAt.plusMonths(MONTHS / 2);
+        long cursorId = idAt(cursorAt, 0);
+        LocalDateTime sentBefore = cursorAt.plusDays(1);
+
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList(
+                "EXPLAIN " + sql.formatted("bench_messages_part"), 7L, cursorId, sentBefore);
+        assertThat(String.valueOf(plan.get(0).get("partitions")).split(",")).hasSizeLessThanOrEqualTo(MONTHS / 2 + 1);
+
+        assertNotSlowerThanFlat("history page", sql, room -> new Object[]{room, cursorId, sentBefore});
+    }
+
+    // La tabla particionada no debe empeorar la consulta: su p50 se compara con el de la tabla plana (25% de margen por ruido).
+    // Las latencias medidas van en la descripción de la aserción
+    private void assertNotSlowerThanFlat(String name, String sql, LongFunction<Object[]> args) {
+        long[] flat = time(sql.formatted("bench_messages_flat"), args);
+        long[] partitioned = time(sql.formatted("bench_messages_part"), args);
+        assertThat(partitioned[QUERIES / 2])
+                .as("%s (%,d rows): flat p50=%dus p99=%dus | partitioned p50=%dus p99=%dus", name, ROWS,
+                        flat[QUERIES / 2], flat[QUERIES * 99 / 100], partitioned[QUERIES / 2], partitioned[QUERIES * 99 / 100])
+                .isLessThanOrEqualTo(flat[QUERIES / 2] * 5 / 4);
+    }
+
+    private long[] time(String sql, LongFunction<Object[]> args) {
+        SplittableRandom random = new SplittableRandom(42);
+        long[] micros = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            Object[] params = args.apply(1 + random.nextInt(ROOMS));
+            long start = System.nanoTime();
+            jdbcTemplate.queryForList(sql, params);
+            micros[i] = (System.nanoTime() - start) / 1_000;
+        }
+        Arrays.sort(micros);
+        return micros;
+    }
+
+    // Mensajes repartidos uniformemente en el tiempo, con ids Snowflake coherentes con sent_at
+    private void insertMessages(String table) {
+        long spanSeconds = Duration.between(firstSentAt, LAST_MONTH.plusMonths(1).atDay(1).atStartOfDay()).toSeconds();
+        SplittableRandom random = new SplittableRandom(7);
+        String insert = "INSERT INTO " + table
+                + " (id, content, message_type, sent_at, is_edited, is_deleted, user_id, room_id, session_id) "
+                + "VALUES (?, ?, 'TEXT', ?, 0, ?, ?, ?, ?)";
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH);
+        for (long i = 0; i < ROWS; i++) {
+            LocalDateTime sentAt = firstSentAt.plusSeconds(spanSeconds * i / ROWS);
+            long room = 1 + random.nextInt(ROOMS);
+            long user = room * 50 + random.nextInt(50);
+            batch.add(new Object[]{idAt(sentAt, i), "mensaje de prueba " + i, Timestamp.valueOf(sentAt),
+                    random.nextInt(100) == 0, user, room, user});
+            if (batch.size() == INSERT_BATCH) {
+                jdbcTemplate.batchUpdate(insert, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) jdbcTemplate.batchUpdate(insert, batch);
+    }
+
+    private static long idAt(LocalDateTime sentAt, long sequence) {
+        long millis = sentAt.toInstant(ZoneOffset.UTC).toEpochMilli() - SnowflakeIdGenerator.EPOCH_MS;
+        return (millis << 12) | (sequence & 0xFFF);
+    }
+
+    private Long count(String table) {
+        try {
+            return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
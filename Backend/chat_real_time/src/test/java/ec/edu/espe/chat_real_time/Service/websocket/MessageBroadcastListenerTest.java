@@ -0,0 +1,159 @@
+package ec.edu.espe.chat_real_time.Service.websocket;
+
+import ec.edu.espe.chat_real_time.Service.message.MessageArchive;
+import ec.edu.espe.chat_real_time.Service.message.MessagePurger;
+import ec.edu.espe.chat_real_time.Service.message.RecentMessageBuffer;
+import ec.edu.espe.chat_real_time.Service.message.MessageServiceImpl;
+import ec.edu.espe.chat_real_time.Service.storage.AttachmentStaging;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ec.edu.espe.chat_real_time.dto.request.SendMessageRequest;
+import ec.edu.espe.chat_real_time.model.message.Message;
+import ec.edu.espe.chat_real_time.model.room.Room;
+import ec.edu.espe.chat_real_time.model.user.GuestProfile;
+import ec.edu.espe.chat_real_time.model.user.User;
+import ec.edu.espe.chat_real_time.model.user.UserSession;
+import ec.edu.espe.chat_real_time.repository.AttachmentRepository;
+import ec.edu.espe.chat_real_time.repository.MessageRepository;
+import ec.edu.espe.chat_real_time.repository.RoomRepository;
+import ec.edu.espe.chat_real_time.repository.StoredObjectRepository;
+import ec.edu.espe.chat_real_time.repository.UserSessionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MessageBroadcastListenerTest {
+
+    private final Map<String, AtomicInteger> framesPerSession = new ConcurrentHashMap<>();
+    private final List<Object> payloads = new CopyOnWriteArrayList<>();
+    private final List<String> sequences = new CopyOnWriteArrayList<>();
+
+    private SimpleBrokerMessageHandler broker;
+    private WebSocketServiceImpl webSocketService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+
+        clientOutbound.subscribe(message -> {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+            if (SimpMessageType.MESSAGE.equals(accessor.getMessageType())) {
+                framesPerSession.computeIfAbsent(accessor.getSessionId(), k -> new AtomicInteger()).incrementAndGet();
+                payloads.add(message.getPayload());
+                sequences.add(accessor.getFirstNativeHeader(RoomMessagePublisher.EPOCH_HEADER) + ":"
+                        + accessor.getFirstNativeHeader(RoomMessagePublisher.SEQ_HEADER));
+            }
+        });
+
+        broker = new SimpleBrokerMessageHandler(clientInbound, clientOutbound, brokerChannel, List.of("/topic"));
+        broker.start();
+
+        for (String sessionId : List.of("s1", "s2", "s3")) {
+            SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+            connect.setSessionId(sessionId);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+
+            SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            subscribe.setSessionId(sessionId);
+            subscribe.setSubscriptionId("sub-" + sessionId);
+            subscribe.setDestination("/topic/room/1");
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+        }
+
+        SimpMessagingTemplate template = new SimpMessagingTemplate(brokerChannel);
+        RoomReplayLog replayLog = new RoomReplayLog(true, 256, 30, 100);
+        MessageBroadcastListener listener = new MessageBroadcastListener(
+                new RoomMessagePublisher(template, Jackson2ObjectMapperBuilder.json().build(), replayLog));
+        ApplicationEventPublisher publisher = event -> listener.onMessageBroadcast((MessageBroadcastEvent) event);
+
+        user = User.builder().id(1L).username("guest").roles(new HashSet<>()).build();
+        user.setGuestProfile(GuestProfile.builder().nickname("gnick").user(user).build());
+        Room room = Room.builder().id(1L).build();
+
+        MessageRepository messageRepository = mock(MessageRepository.class);
+        RoomRepository roomRepository = mock(RoomRepository.class);
+        UserSessionRepository sessionRepository = mock(UserSessionRepository.class);
+        when(roomRepository.findByIdAndDeletedAtIsNull(1L)).thenReturn(Optional.of(room));
+        when(sessionRepository.findByUserAndRoomAndIsActiveTrue(user, room)).thenReturn(Optional.of(new UserSession()));
+        when(messageRepository.save(any(Message.class))).thenAnswer(inv -> {
+            Message m = inv.getArgument(0);
+            m.setId(100L);
+            return m;
+        });
+
+        MessageServiceImpl messageService = new MessageServiceImpl(
+                messageRepository, roomRepository, sessionRepository,
+                mock(AttachmentRepository.class), publisher, mock(AttachmentStaging.class),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), mock(StoredObjectRepository.class), Optional.empty(),
+                mock(MessageArchive.class), mock(RecentMessageBuffer.class), mock(MessagePurger.class)
+        );
+        webSocketService = new WebSocketServiceImpl(template, messageService, replayLog, mock(TypingAggregator.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        broker.stop();
+    }
+
+    @Test
+    void sendMessageToRoom_deliversExactlyOneFramePerSubscriber() {
+        SendMessageRequest request = new SendMessageRequest(1L, "hola");
+
+        webSocketService.sendMessageToRoom(request, user);
+
+        assertEquals(3, framesPerSession.size());
+        framesPerSession.forEach((session, frames) -> assertEquals(1, frames.get(), "frames for " + session));
+    }
+
+    @Test
+    void sendMessageToRoom_serializesOncePerRoom_andSharesPayloadAcrossSubscribers() {
+        webSocketService.sendMessageToRoom(new SendMessageRequest(1L, "hola"), user);
+
+        assertEquals(3, payloads.size());
+        byte[] first = assertInstanceOf(byte[].class, payloads.get(0));
+        payloads.forEach(payload -> assertSame(first, payload));
+
+        String json = new String(first, StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"content\":\"hola\""), json);
+        assertTrue(json.contains("\"senderNickname\":\"gnick\""), json);
+    }
+
+    @Test
+    void sendMessageToRoom_numbersFramesWithConsecutiveRoomSequence() {
+        webSocketService.sendMessageToRoom(new SendMessageRequest(1L, "uno"), user);
+        webSocketService.sendMessageToRoom(new SendMessageRequest(1L, "dos"), user);
+
+        assertEquals(6, sequences.size());
+        String epoch = sequences.get(0).split(":")[0];
+        assertEquals(3, sequences.stream().filter(s -> s.equals(epoch + ":1")).count());
+        assertEquals(3, sequences.stream().filter(s -> s.equals(epoch + ":2")).count());
+    }
+}
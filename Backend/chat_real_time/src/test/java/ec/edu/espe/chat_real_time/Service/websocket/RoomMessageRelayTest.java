@@ -0,0 +1,141 @@
+package ec.edu.espe.chat_real_time.Service.websocket;
+
+import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Dos "replicas" del backend conectadas al mismo broker STOMP embebido
+class RoomMessageRelayTest {
+
+    private static final String ROOM_TOPIC = "/topic/room/1";
+
+    private EmbeddedActiveMQ artemis;
+    private final List<StompBrokerRelayMessageHandler> relays = new ArrayList<>();
+    private int port;
+
+    @BeforeEach
+    void startBroker() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        artemis = new EmbeddedActiveMQ();
+        artemis.setConfiguration(new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .setJournalDirectory("target/artemis/journal")
+                .addAcceptorConfiguration("stomp", "tcp://localhost:" + port + "?protocols=STOMP"));
+        artemis.start();
+    }
+
+    @AfterEach
+    void stopBroker() throws Exception {
+        relays.forEach(StompBrokerRelayMessageHandler::stop);
+        artemis.stop();
+    }
+
+    @Test
+    void messagePublishedOnOneNode_reachesSubscriberOnAnotherNode() throws Exception {
+        Node nodeA = startNode();
+        Node nodeB = startNode();
+
+        nodeB.send(StompCommand.CONNECT, "b1", null);
+        assertEquals(StompCommand.CONNECTED, nodeB.nextCommand());
+        nodeB.send(StompCommand.SUBSCRIBE, "b1", ROOM_TOPIC);
+        assertEquals(StompCommand.RECEIPT, nodeB.nextCommand());
+
+        RoomMessagePublisher publisher = new RoomMessagePublisher(
+                new SimpMessagingTemplate(nodeA.brokerChannel),
+                Jackson2ObjectMapperBuilder.json().build(),
+                new RoomReplayLog(false, 256, 30, 100));
+        publisher.publish(1L, MessageResponse.builder()
+                .id(7L)
+                .roomId(1L)
+                .content("hola desde A")
+                .senderNickname("alice")
+                .sentAt(LocalDateTime.now())
+                .build());
+
+        Message<?> frame = nodeB.next();
+        assertNotNull(frame);
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(frame);
+        assertEquals(StompCommand.MESSAGE, accessor.getCommand());
+        assertEquals("b1", accessor.getSessionId());
+        assertTrue(new String((byte[]) frame.getPayload(), StandardCharsets.UTF_8).contains("hola desde A"));
+    }
+
+    private Node startNode() throws InterruptedException {
+        Node node = new Node();
+        StompBrokerRelayMessageHandler relay = new StompBrokerRelayMessageHandler(
+                node.clientInbound, node.clientOutbound, node.brokerChannel, List.of("/topic", "/queue"));
+        relay.setRelayHost("localhost");
+        relay.setRelayPort(port);
+        relay.start();
+        relays.add(relay);
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!relay.isBrokerAvailable() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(relay.isBrokerAvailable(), "El relay no se conecto al broker embebido");
+        return node;
+    }
+
+    private static class Node {
+        private final ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        private final ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        private final ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        private final BlockingQueue<Message<?>> received = new LinkedBlockingQueue<>();
+
+        Node() {
+            clientOutbound.subscribe(received::add);
+        }
+
+        void send(StompCommand command, String sessionId, String destination) {
+            StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+            accessor.setSessionId(sessionId);
+            if (command == StompCommand.CONNECT) {
+                accessor.setAcceptVersion("1.2");
+                accessor.setHeartbeat(0, 0);
+            } else {
+                accessor.setDestination(destination);
+                accessor.setSubscriptionId("sub-" + sessionId);
+                accessor.setReceipt("r-" + sessionId);
+            }
+            clientInbound.send(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+        }
+
+        Message<?> next() throws InterruptedException {
+            return received.poll(10, TimeUnit.SECONDS);
+        }
+
+        StompCommand nextCommand() throws InterruptedException {
+            Message<?> message = next();
+            assertNotNull(message);
+            return StompHeaderAccessor.wrap(message).getCommand();
+        }
+    }
+}
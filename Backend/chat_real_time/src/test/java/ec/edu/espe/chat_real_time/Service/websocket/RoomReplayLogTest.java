@@ -0,0 +1,163 @@
+package ec.edu.espe.chat_real_time.Service.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
+import ec.edu.espe.chat_real_time.dto.websocket.ReplayedMessage;
+import ec.edu.espe.chat_real_time.dto.websocket.ResumeResponse;
+import ec.edu.espe.chat_real_time.model.message.MessageType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RoomReplayLogTest {
+
+    private RoomReplayLog replayLog;
+    private final AtomicReference<String> epoch = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() {
+        replayLog = new RoomReplayLog(true, 4, 30, 100);
+    }
+
+    @Test
+    void replay_ReturnsOnlyFramesAfterLastSeenSequence() {
+        for (long id = 1; id <= 3; id++) {
+            append(1L, id);
+        }
+
+        ResumeResponse response = replayLog.replay(1L, epoch.get(), 1L);
+
+        assertThat(response.isComplete()).isTrue();
+        assertThat(response.getLastSeq()).isEqualTo(3);
+        assertThat(response.getMessages()).extracting(ReplayedMessage::getSeq).containsExactly(2L, 3L);
+        assertThat(response.getMessages()).extracting(m -> m.getMessage().getId()).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void replay_WhenClientIsCaughtUp_IsCompleteAndEmpty() {
+        append(1L, 1L);
+
+        ResumeResponse response = replayLog.replay(1L, epoch.get(), 1L);
+
+        assertThat(response.isComplete()).isTrue();
+        assertThat(response.getMessages()).isEmpty();
+    }
+
+    @Test
+    void replay_GapOlderThanLog_IsIncomplete() {
+        for (long id = 1; id <= 6; id++) {
+            append(1L, id);
+        }
+
+        // caben 4: quedan 3..6, al cliente que vio el 1 le falta el 2
+        assertThat(replayLog.replay(1L, epoch.get(), 1L).isComplete()).isFalse();
+        assertThat(replayLog.replay(1L, epoch.get(), 2L).getMessages())
+                .extracting(ReplayedMessage::getSeq).containsExactly(3L, 4L, 5L, 6L);
+    }
+
+    @Test
+    void replay_WithOtherOrUnknownEpoch_IsIncompleteButReportsCurrentPosition() {
+        append(1L, 1L);
+        append(1L, 2L);
+
+        ResumeResponse other = replayLog.replay(1L, "otra-epoca", 1L);
+        ResumeResponse unknown = replayLog.replay(1L, null, null);
+
+        assertThat(other.isComplete()).isFalse();
+        assertThat(other.getMessages()).isEmpty();
+        assertThat(unknown.isComplete()).isFalse();
+        assertThat(unknown.getEpoch()).isEqualTo(epoch.get());
+        assertThat(unknown.getLastSeq()).isEqualTo(2);
+    }
+
+    @Test
+    void sequences_AreIndependentPerRoom() {
+        append(1L, 1L);
+        String firstRoomEpoch = epoch.get();
+        append(2L, 2L);
+
+        assertThat(replayLog.replay(2L, epoch.get(), 0L).getMessages())
+                .extracting(ReplayedMessage::getSeq).containsExactly(1L);
+        assertThat(epoch.get()).isNotEqualTo(firstRoomEpoch);
+    }
+
+    @Test
+    void disabled_NeverCompletes() {
+        RoomReplayLog disabled = new RoomReplayLog(false, 4, 30, 100);
+
+        assertThat(disabled.isEnabled()).isFalse();
+        assertThat(disabled.replay(1L, "e", 0L).isComplete()).isFalse();
+    }
+
+    @Test
+    void enabled_DefaultsToOnWithSimpleBrokerAndOffWithRelay() {
+        assertThat(new RoomReplayLog(null, "simple", 4, 30, 100).isEnabled()).isTrue();
+        assertThat(new RoomReplayLog(null, "relay", 4, 30, 100).isEnabled()).isFalse();
+        // un valor explícito manda sobre el modo del broker
+        assertThat(new RoomReplayLog(true, "relay", 4, 30, 100).isEnabled()).isTrue();
+    }
+
+    @Test
+    void append_ConcurrentPublishersSendFramesInSequenceOrder() throws Exception {
+        List<Long> sent = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 2_000; i++) {
+            long id = i;
+            executor.submit(() -> replayLog.append(1L, message(id), (e, seq) -> sent.add(seq)));
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(sent).hasSize(2_000);
+        for (int i = 0; i < sent.size(); i++) {
+            assertThat(sent.get(i)).isEqualTo(i + 1L);
+        }
+    }
+
+    @Test
+    void shortDisconnect_CostsAFewHundredBytesInsteadOfAHistoryReload() throws Exception {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+        RoomReplayLog log = new RoomReplayLog(true, 256, 30, 100);
+        List<MessageResponse> history = new ArrayList<>();
+        for (long id = 1; id <= 50; id++) {
+            MessageResponse message = message(id);
+            history.add(message);
+            log.append(1L, message, (e, seq) -> epoch.set(e));
+        }
+
+        // el cliente perdió los dos últimos frames
+        ResumeResponse resume = log.replay(1L, epoch.get(), 48L);
+        int resumeBytes = mapper.writeValueAsBytes(resume).length;
+        int reloadBytes = mapper.writeValueAsBytes(history).length;
+
+        assertThat(resume.getMessages()).hasSize(2);
+        assertThat(resumeBytes).isLessThan(1024);
+        assertThat(resumeBytes * 10).isLessThan(reloadBytes);
+    }
+
+    private void append(Long roomId, Long messageId) {
+        replayLog.append(roomId, message(messageId), (e, seq) -> epoch.set(e));
+    }
+
+    private static MessageResponse message(Long id) {
+        return MessageResponse.builder()
+                .id(id)
+                .roomId(1L)
+                .content("mensaje " + id)
+                .senderNickname("alice")
+                .messageType(MessageType.TEXT)
+                .sentAt(LocalDateTime.of(2026, 1, 1, 12, 0))
+                .build();
+    }
+}
@@ -0,0 +1,108 @@
+package ec.edu.espe.chat_real_time.Service.websocket;
+
+import ec.edu.espe.chat_real_time.dto.websocket.TypingIndicator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Sala de 300 suscriptores con 20 personas escribiendo durante 30 s simulados:
+// frames salientes reenviando cada pulsación (comportamiento anterior) frente a las instantáneas del agregador.
+// Mueve medio millón de frames por el broker: solo con -Dbench.load=true
+@EnabledIfSystemProperty(named = "bench.load", matches = "true")
+class TypingAggregatorLoadTest {
+
+    private static final String TYPING_TOPIC = "/topic/room/1/typing";
+    private static final int SUBSCRIBERS = 300;
+    private static final int TYPISTS = 20;
+    private static final long DURATION_MS = 30_000;
+    private static final long TICK_MS = 50;
+    private static final long KEYSTROKE_MS = 150;
+    private static final long FLUSH_MS = 500;
+
+    private final AtomicLong outboundFrames = new AtomicLong();
+    private final AtomicLong now = new AtomicLong();
+    private SimpleBrokerMessageHandler broker;
+    private SimpMessagingTemplate template;
+
+    @BeforeEach
+    void setUp() {
+        ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        clientOutbound.subscribe(message -> {
+            if (SimpMessageType.MESSAGE.equals(SimpMessageHeaderAccessor.getMessageType(message.getHeaders()))) {
+                outboundFrames.incrementAndGet();
+            }
+        });
+
+        broker = new SimpleBrokerMessageHandler(clientInbound, clientOutbound, brokerChannel, List.of("/topic"));
+        broker.start();
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+            connect.setSessionId("s" + i);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+
+            SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            subscribe.setSessionId("s" + i);
+            subscribe.setSubscriptionId("sub-" + i);
+            subscribe.setDestination(TYPING_TOPIC);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+        }
+        template = new SimpMessagingTemplate(brokerChannel);
+    }
+
+    @AfterEach
+    void tearDown() {
+        broker.stop();
+    }
+
+    @Test
+    void aggregator_CutsOutboundTypingFramesByOverNinetyFivePercent() {
+        long perKeystroke = simulate((typist, typing) -> template.convertAndSend(TYPING_TOPIC,
+                TypingIndicator.builder().userId(typist).username("user" + typist).roomId(1L).isTyping(typing).build()), null);
+
+        TypingAggregator aggregator = new TypingAggregator(template, 6_000, 3, now::get);
+        long aggregated = simulate((typist, typing) -> aggregator.update(1L, typist, "user" + typist, typing), aggregator);
+
+        assertThat(perKeystroke).isGreaterThan(400_000);
+        assertThat(aggregated).isPositive();
+        assertThat(aggregated * 20).isLessThan(perKeystroke);
+    }
+
+    // Cada persona escribe 4 s (una pulsación cada 150 ms), avisa que paró y descansa 6 s, con inicios escalonados
+    private long simulate(TypingEvent event, TypingAggregator aggregator) {
+        outboundFrames.set(0);
+        for (long t = 0; t < DURATION_MS; t += TICK_MS) {
+            now.set(t);
+            for (long typist = 1; typist <= TYPISTS; typist++) {
+                long phase = (t + typist * 500) % 10_000;
+                if (phase < 4_000 && phase % KEYSTROKE_MS < TICK_MS) {
+                    event.send(typist, true);
+                } else if (phase >= 4_000 && phase < 4_000 + TICK_MS) {
+                    event.send(typist, false);
+                }
+            }
+            if (aggregator != null && t % FLUSH_MS == 0) {
+                aggregator.flush();
+            }
+        }
+        return outboundFrames.get();
+    }
+
+    @FunctionalInterface
+    private interface TypingEvent {
+        void send(long typist, boolean typing);
+    }
+}
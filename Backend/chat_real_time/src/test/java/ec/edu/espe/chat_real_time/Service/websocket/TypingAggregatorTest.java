@@ -0,0 +1,126 @@
+package ec.edu.espe.chat_real_time.Service.websocket;
+
+import ec.edu.espe.chat_real_time.dto.websocket.TypingSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class TypingAggregatorTest {
+
+    private SimpMessagingTemplate messagingTemplate;
+    private AtomicLong now;
+    private TypingAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        now = new AtomicLong(1_000);
+        aggregator = new TypingAggregator(messagingTemplate, 6_000, 2, now::get);
+    }
+
+    @Test
+    void flush_EmitsOneSnapshotPerRoomForManyKeystrokes() {
+        for (int i = 0; i < 20; i++) {
+            aggregator.update(1L, 10L, "ana", true);
+            aggregator.update(1L, 11L, "beto", true);
+        }
+
+        aggregator.flush();
+
+        verify(messagingTemplate, times(1)).convertAndSend(anyString(), any(Object.class));
+        TypingSnapshot snapshot = lastSnapshot(1L);
+        assertThat(snapshot.getUsernames()).containsExactly("ana", "beto");
+        assertThat(snapshot.getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void flush_WithoutChanges_SendsNothing() {
+        aggregator.update(1L, 10L, "ana", true);
+        aggregator.flush();
+        clearInvocations(messagingTemplate);
+
+        // seguir escribiendo solo renueva la caducidad
+        now.addAndGet(500);
+        aggregator.update(1L, 10L, "ana", true);
+        aggregator.flush();
+
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void flush_StartAndStopWithinInterval_IsCoalescedAway() {
+        aggregator.update(1L, 10L, "ana", true);
+        aggregator.update(1L, 10L, "ana", false);
+
+        aggregator.flush();
+
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void flush_StoppedOrExpiredTypistsAreAnnounced() {
+        aggregator.update(1L, 10L, "ana", true);
+        aggregator.update(1L, 11L, "beto", true);
+        aggregator.flush();
+
+        aggregator.update(1L, 10L, "ana", false);
+        aggregator.flush();
+        assertThat(lastSnapshot(1L).getUsernames()).containsExactly("beto");
+
+        now.addAndGet(6_000);
+        aggregator.flush();
+        assertThat(lastSnapshot(1L).getUsernames()).isEmpty();
+        assertThat(lastSnapshot(1L).getCount()).isZero();
+
+        // la sala vacía ya anunciada se descarta y no vuelve a emitir
+        clearInvocations(messagingTemplate);
+        aggregator.flush();
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void flush_LimitsNamesButReportsTotal() {
+        aggregator.update(1L, 10L, "ana", true);
+        aggregator.update(1L, 11L, "beto", true);
+        aggregator.update(1L, 12L, "carla", true);
+
+        aggregator.flush();
+
+        TypingSnapshot snapshot = lastSnapshot(1L);
+        assertThat(snapshot.getUsernames()).containsExactly("ana", "beto");
+        assertThat(snapshot.getCount()).isEqualTo(3);
+    }
+
+    @Test
+    void flush_RoomsAreIndependent() {
+        aggregator.update(1L, 10L, "ana", true);
+        aggregator.update(2L, 11L, "beto", true);
+
+        aggregator.flush();
+
+        assertThat(lastSnapshot(1L).getUsernames()).containsExactly("ana");
+        assertThat(lastSnapshot(2L).getUsernames()).containsExactly("beto");
+    }
+
+    private TypingSnapshot lastSnapshot(Long roomId) {
+        ArgumentCaptor<TypingSnapshot> captor = ArgumentCaptor.forClass(TypingSnapshot.class);
+        verify(messagingTemplate, atLeastOnce()).convertAndSend(eq("/topic/room/" + roomId + "/typing"), captor.capture());
+        List<TypingSnapshot> all = captor.getAllValues();
+        return all.get(all.size() - 1);
+    }
+}
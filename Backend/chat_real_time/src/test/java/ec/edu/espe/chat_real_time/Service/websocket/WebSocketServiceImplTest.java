@@ -5,6 +5,8 @@ import ec.edu.espe.chat_real_time.dto.request.SendMessageRequest;
 import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
 import ec.edu.espe.chat_real_time.dto.websocket.ErrorMessage;
 import ec.edu.espe.chat_real_time.dto.websocket.MessageDeletedNotification;
+import ec.edu.espe.chat_real_time.dto.websocket.ResumeRequest;
+import ec.edu.espe.chat_real_time.dto.websocket.ResumeResponse;
 import ec.edu.espe.chat_real_time.dto.websocket.TypingIndicator;
 import ec.edu.espe.chat_real_time.dto.websocket.UserJoinedMessage;
 import ec.edu.espe.chat_real_time.model.Role;
@@ -20,10 +22,13 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -38,6 +43,12 @@ class WebSocketServiceImplTest {
     @Mock
     private MessageService messageService;
 
+    @Mock
+    private RoomReplayLog replayLog;
+
+    @Mock
+    private TypingAggregator typingAggregator;
+
     @InjectMocks
     private WebSocketServiceImpl service;
 
@@ -55,7 +66,7 @@ class WebSocketServiceImplTest {
     }
 
     @Test
-    void sendMessageToRoom_success_sendsViaMessagingTemplate_and_returnsMessage() {
+    void sendMessageToRoom_success_delegatesBroadcast_and_returnsMessage() {
         SendMessageRequest req = new SendMessageRequest();
         req.setRoomId(10L);
         req.setContent("hola");
@@ -69,7 +80,8 @@ class WebSocketServiceImplTest {
         MessageResponse res = service.sendMessageToRoom(req, user);
 
         assertEquals(msg, res);
-        verify(messagingTemplate).convertAndSend(eq("/topic/room/10"), eq(msg));
+        // la difusion la hace MessageBroadcastListener tras el commit, no este servicio
+        verify(messagingTemplate, never()).convertAndSend(eq("/topic/room/10"), any(Object.class));
         verify(messageService).sendTextMessage(req, user);
     }
 
@@ -88,7 +100,7 @@ class WebSocketServiceImplTest {
     }
 
     @Test
-    void sendTypingIndicator_setsUserFields_and_sends() {
+    void sendTypingIndicator_setsUserFields_and_delegatesToAggregator() {
         TypingIndicator indicator = TypingIndicator.builder().isTyping(true).build();
         User user = User.builder().id(3L).username("chico").build();
 
@@ -98,7 +110,8 @@ class WebSocketServiceImplTest {
         assertEquals(user.getUsername(), indicator.getUsername());
         assertEquals(20L, indicator.getRoomId());
 
-        verify(messagingTemplate).convertAndSend(eq("/topic/room/20/typing"), eq(indicator));
+        verify(typingAggregator).update(20L, 3L, "chico", true);
+        verifyNoInteractions(messagingTemplate);
     }
 
     @Test
@@ -149,4 +162,19 @@ class WebSocketServiceImplTest {
         service.notifyRoomUpdate(3L, roomObj);
         verify(messagingTemplate).convertAndSend(eq("/topic/room/3/update"), eq(roomObj));
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void resumeRoom_sendsReplayOnlyToReconnectingSession() {
+        User user = User.builder().id(5L).username("guser").roles(new HashSet<>()).build();
+        ResumeResponse replay = ResumeResponse.builder()
+                .roomId(4L).epoch("e1").lastSeq(12L).complete(true).messages(List.of()).build();
+        when(replayLog.replay(4L, "e1", 10L)).thenReturn(replay);
+
+        service.resumeRoom(4L, new ResumeRequest("e1", 10L), user, "session-1");
+
+        ArgumentCaptor<Map<String, Object>> headers = ArgumentCaptor.forClass(Map.class);
+        verify(messagingTemplate).convertAndSendToUser(eq("guser"), eq("/queue/resume"), eq(replay), headers.capture());
+        assertEquals("session-1", headers.getValue().get(SimpMessageHeaderAccessor.SESSION_ID_HEADER));
+    }
 }
@@ -1,15 +1,20 @@
 package ec.edu.espe.chat_real_time.controller;
 
+import ec.edu.espe.chat_real_time.Service.storage.AttachmentStorage;
+import ec.edu.espe.chat_real_time.Service.storage.LocalAttachmentStorage;
+import ec.edu.espe.chat_real_time.Service.storage.RemoteAttachmentCache;
 import ec.edu.espe.chat_real_time.exception.ResourceNotFoundException;
 import ec.edu.espe.chat_real_time.model.Attachment;
+import ec.edu.espe.chat_real_time.model.AttachmentStatus;
 import ec.edu.espe.chat_real_time.repository.AttachmentRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -30,6 +35,8 @@ import com.sun.net.httpserver.HttpExchange;
 class FileControllerTest {
 
     private AttachmentRepository attachmentRepository;
+    private AttachmentStorage attachmentStorage;
+    private RemoteAttachmentCache remoteAttachmentCache;
     private FileController controller;
     private Path tempDir;
     private HttpServer httpServer;
@@ -37,8 +44,11 @@ class FileControllerTest {
     @BeforeEach
     void setUp() throws IOException {
         attachmentRepository = mock(AttachmentRepository.class);
-        controller = new FileController(attachmentRepository);
+        attachmentStorage = mock(AttachmentStorage.class);
         tempDir = Files.createTempDirectory("test-uploads");
+        remoteAttachmentCache = new RemoteAttachmentCache(tempDir.resolve("cache").toString(),
+                DataSize.ofMegabytes(1), 1000, 5000, 0);
+        controller = new FileController(attachmentRepository, attachmentStorage, remoteAttachmentCache);
         ReflectionTestUtils.setField(controller, "uploadDir", tempDir.toString());
     }
 
@@ -69,25 +79,25 @@ class FileControllerTest {
 
         Attachment att = new Attachment();
         att.setOriginalFileName("original-name.txt");
-        when(attachmentRepository.findByFileName(storedName)).thenReturn(Optional.of(att));
+        when(attachmentRepository.findFirstByFileNameOrderByIdAsc(storedName)).thenReturn(Optional.of(att));
 
-        ResponseEntity<?> response = controller.downloadFile(storedName);
+        ResponseEntity<?> response = controller.downloadFile(storedName, new MockHttpServletRequest());
 
         assertEquals(200, response.getStatusCodeValue());
         assertTrue(response.getHeaders().getFirst("Content-Disposition").contains("original-name.txt"));
         assertNotNull(response.getBody());
         assertTrue(response.getBody() instanceof FileSystemResource);
 
-        verify(attachmentRepository).findByFileName(storedName);
+        verify(attachmentRepository).findFirstByFileNameOrderByIdAsc(storedName);
     }
 
     @Test
     void testDownloadFileNotFoundThrows() {
         String missing = "no-existe.bin";
-        when(attachmentRepository.findByFileName(missing)).thenReturn(Optional.empty());
+        when(attachmentRepository.findFirstByFileNameOrderByIdAsc(missing)).thenReturn(Optional.empty());
 
         ResourceNotFoundException ex = assertThrows(ResourceNotFoundException.class, () ->
-                controller.downloadFile(missing)
+                controller.downloadFile(missing, new MockHttpServletRequest())
         );
         assertTrue(ex.getMessage().contains("Archivo no encontrado"));
     }
@@ -99,9 +109,9 @@ class FileControllerTest {
         Files.writeString(file, "x");
 
         // Force probeContentType to likely return null by using unusual content; still we assert fallback
-        when(attachmentRepository.findByFileName(name)).thenReturn(Optional.empty());
+        when(attachmentRepository.findFirstByFileNameOrderByIdAsc(name)).thenReturn(Optional.empty());
 
-        ResponseEntity<?> response = controller.downloadFile(name);
+        ResponseEntity<?> response = controller.downloadFile(name, new MockHttpServletRequest());
 
         assertEquals(200, response.getStatusCodeValue());
         // Accept any content type since probeContentType behavior may vary by system
@@ -136,13 +146,14 @@ class FileControllerTest {
 
         when(attachmentRepository.findById(1L)).thenReturn(Optional.of(att));
 
-        ResponseEntity<?> response = controller.downloadAttachment(1L);
+        ResponseEntity<?> response = controller.downloadAttachment(1L, new MockHttpServletRequest());
 
         assertEquals(200, response.getStatusCodeValue());
         assertTrue(response.getHeaders().getFirst("Content-Disposition").contains("downloaded.txt"));
         assertEquals("text/plain;charset=UTF-8", response.getHeaders().getContentType().toString());
-        assertEquals(Long.valueOf(payload.length), response.getHeaders().getContentLength());
-        assertTrue(response.getBody() instanceof InputStreamResource);
+        assertTrue(response.getBody() instanceof FileSystemResource);
+        assertEquals(payload.length, ((FileSystemResource) response.getBody()).contentLength());
+        assertNotNull(response.getHeaders().getETag());
 
         verify(attachmentRepository).findById(1L);
     }
@@ -155,7 +166,7 @@ class FileControllerTest {
         when(attachmentRepository.findById(2L)).thenReturn(Optional.of(att));
 
         ResourceNotFoundException ex = assertThrows(ResourceNotFoundException.class, () ->
-                controller.downloadAttachment(2L)
+                controller.downloadAttachment(2L, new MockHttpServletRequest())
         );
         assertTrue(ex.getMessage().contains("URL de archivo no disponible"));
     }
@@ -179,17 +190,161 @@ class FileControllerTest {
         when(attachmentRepository.findById(3L)).thenReturn(Optional.of(att));
 
         ResourceNotFoundException ex = assertThrows(ResourceNotFoundException.class, () ->
-                controller.downloadAttachment(3L)
+                controller.downloadAttachment(3L, new MockHttpServletRequest())
         );
         assertTrue(ex.getMessage().contains("Archivo no disponible"));
     }
 
+    private Attachment storedLocally(LocalAttachmentStorage storage, String content) throws IOException {
+        Path source = tempDir.resolve("source.txt");
+        Files.writeString(source, content);
+        var stored = storage.store(source, "notas.txt", "text/plain");
+
+        Attachment att = new Attachment();
+        att.setId(10L);
+        att.setOriginalFileName("notas.txt");
+        att.setFileName(stored.getFileName());
+        att.setFilePath(stored.getFilePath());
+        att.setFileUrl(stored.getFileUrl());
+        att.setFileType("text/plain");
+        att.setStatus(AttachmentStatus.READY);
+        return att;
+    }
+
+    @Test
+    void testDownloadAttachmentLocalWithoutSendfileServesFileResource() throws Exception {
+        LocalAttachmentStorage storage = new LocalAttachmentStorage(tempDir.resolve("store").toString(), "/api/files/");
+        controller = new FileController(attachmentRepository, storage, remoteAttachmentCache);
+        Attachment att = storedLocally(storage, "0123456789");
+        when(attachmentRepository.findById(10L)).thenReturn(Optional.of(att));
+
+        ResponseEntity<?> response = controller.downloadAttachment(10L, new MockHttpServletRequest());
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals("bytes", response.getHeaders().getFirst("Accept-Ranges"));
+        assertTrue(response.getBody() instanceof FileSystemResource);
+        assertEquals(10L, ((FileSystemResource) response.getBody()).contentLength());
+    }
+
+    @Test
+    void testDownloadAttachmentLocalRangeUsesSendfile() throws Exception {
+        LocalAttachmentStorage storage = new LocalAttachmentStorage(tempDir.resolve("store").toString(), "/api/files/");
+        controller = new FileController(attachmentRepository, storage, remoteAttachmentCache);
+        Attachment att = storedLocally(storage, "0123456789");
+        when(attachmentRepository.findById(10L)).thenReturn(Optional.of(att));
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader("Range", "bytes=2-5");
+
+        ResponseEntity<?> response = controller.downloadAttachment(10L, request);
+
+        assertEquals(206, response.getStatusCodeValue());
+        assertEquals("bytes 2-5/10", response.getHeaders().getFirst("Content-Range"));
+        assertEquals(4L, response.getHeaders().getContentLength());
+        assertNull(response.getBody());
+        assertEquals(storage.localFile(att.getFilePath()).orElseThrow().toString(),
+                request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(2L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(6L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    @Test
+    void testDownloadAttachmentLocalUnsatisfiableRangeReturns416() throws Exception {
+        LocalAttachmentStorage storage = new LocalAttachmentStorage(tempDir.resolve("store").toString(), "/api/files/");
+        controller = new FileController(attachmentRepository, storage, remoteAttachmentCache);
+        Attachment att = storedLocally(storage, "0123456789");
+        when(attachmentRepository.findById(10L)).thenReturn(Optional.of(att));
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader("Range", "bytes=50-60");
+
+        ResponseEntity<?> response = controller.downloadAttachment(10L, request);
+
+        assertEquals(416, response.getStatusCodeValue());
+        assertEquals("bytes */10", response.getHeaders().getFirst("Content-Range"));
+        assertNull(request.getAttribute("org.apache.tomcat.sendfile.filename"));
+    }
+
+    @Test
+    void testDownloadFileServesLocalAttachmentByStoredName() throws Exception {
+        LocalAttachmentStorage storage = new LocalAttachmentStorage(tempDir.resolve("store").toString(), "/api/files/");
+        controller = new FileController(attachmentRepository, storage, remoteAttachmentCache);
+        Attachment att = storedLocally(storage, "hola");
+        when(attachmentRepository.findFirstByFileNameOrderByIdAsc(att.getFileName())).thenReturn(Optional.of(att));
+
+        ResponseEntity<?> response = controller.downloadFile(att.getFileName(), new MockHttpServletRequest());
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertTrue(response.getHeaders().getFirst("Content-Disposition").contains("notas.txt"));
+        assertTrue(response.getBody() instanceof FileSystemResource);
+    }
+
+    @Test
+    void testDownloadFileRejectsPathTraversal() {
+        when(attachmentRepository.findFirstByFileNameOrderByIdAsc("../secret.txt")).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () ->
+                controller.downloadFile("../secret.txt", new MockHttpServletRequest())
+        );
+    }
+
+    @Test
+    void testDownloadAttachmentPendingThrows() {
+        Attachment att = new Attachment();
+        att.setId(4L);
+        att.setStatus(AttachmentStatus.PENDING);
+        when(attachmentRepository.findById(4L)).thenReturn(Optional.of(att));
+
+        assertThrows(ResourceNotFoundException.class, () ->
+                controller.downloadAttachment(4L, new MockHttpServletRequest())
+        );
+    }
+
+    @Test
+    void testDownloadAttachmentRemoteIsFetchedOnceAndRevalidatedWithEtag() throws Exception {
+        java.util.concurrent.atomic.AtomicInteger originHits = new java.util.concurrent.atomic.AtomicInteger();
+        byte[] payload = "cached-payload".getBytes();
+        httpServer = HttpServer.create(new InetSocketAddress(0), 0);
+        httpServer.createContext("/file", exchange -> {
+            originHits.incrementAndGet();
+            exchange.sendResponseHeaders(200, payload.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(payload);
+            }
+        });
+        httpServer.start();
+
+        Attachment att = new Attachment();
+        att.setId(7L);
+        att.setOriginalFileName("remote.txt");
+        att.setFileType("text/plain");
+        att.setFileUrl("http://localhost:" + httpServer.getAddress().getPort() + "/file");
+        when(attachmentRepository.findById(7L)).thenReturn(Optional.of(att));
+
+        ResponseEntity<?> first = controller.downloadAttachment(7L, new MockHttpServletRequest());
+        ResponseEntity<?> second = controller.downloadAttachment(7L, new MockHttpServletRequest());
+
+        assertEquals(200, second.getStatusCodeValue());
+        assertEquals(1, originHits.get());
+        assertEquals(first.getHeaders().getETag(), second.getHeaders().getETag());
+
+        MockHttpServletRequest conditional = new MockHttpServletRequest();
+        conditional.addHeader("If-None-Match", first.getHeaders().getETag());
+        ResponseEntity<?> notModified = controller.downloadAttachment(7L, conditional);
+
+        assertEquals(304, notModified.getStatusCodeValue());
+        assertNull(notModified.getBody());
+        assertEquals(1, originHits.get());
+    }
+
     @Test
     void testDownloadAttachmentNotFoundThrows() {
         when(attachmentRepository.findById(999L)).thenReturn(Optional.empty());
 
         ResourceNotFoundException ex = assertThrows(ResourceNotFoundException.class, () ->
-                controller.downloadAttachment(999L)
+                controller.downloadAttachment(999L, new MockHttpServletRequest())
         );
         assertTrue(ex.getMessage().contains("Archivo no encontrado"));
     }
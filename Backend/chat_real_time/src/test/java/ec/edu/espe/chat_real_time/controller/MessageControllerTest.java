@@ -3,9 +3,11 @@ package ec.edu.espe.chat_real_time.controller;
 import ec.edu.espe.chat_real_time.Service.message.MessageService;
 import ec.edu.espe.chat_real_time.dto.request.SendMessageRequest;
 import ec.edu.espe.chat_real_time.dto.response.ApiResponse;
+import ec.edu.espe.chat_real_time.dto.response.MessagePageResponse;
 import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
 import ec.edu.espe.chat_real_time.model.user.User;
 import ec.edu.espe.chat_real_time.repository.UserRepository;
+import ec.edu.espe.chat_real_time.security.jwt.JwtPrincipal;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
@@ -66,6 +68,39 @@ class MessageControllerTest {
         verify(messageService, times(1)).sendTextMessage(request, mockUser);
     }
 
+    @Test
+    void testSendTextMessage_StatelessPrincipalUsesReferenceWithoutLookup() {
+        SendMessageRequest request = new SendMessageRequest();
+        request.setRoomId(10L);
+        request.setContent("Hola mundo");
+        when(authentication.getPrincipal()).thenReturn(new JwtPrincipal(1L, "user@test.com"));
+        when(userRepository.getReferenceById(1L)).thenReturn(mockUser);
+        when(messageService.sendTextMessage(request, mockUser)).thenReturn(new MessageResponse());
+
+        controller.sendTextMessage(request, authentication);
+
+        verify(messageService).sendTextMessage(request, mockUser);
+        verify(userRepository, never()).findByUsernameAndDeletedAtIsNull(anyString());
+    }
+
+    @Test
+    void testSendFileStream() throws Exception {
+        org.springframework.mock.web.MockHttpServletRequest request = new org.springframework.mock.web.MockHttpServletRequest();
+        request.setContentType("application/pdf");
+        request.setContent(new byte[]{1, 2, 3});
+        MessageResponse expectedResponse = new MessageResponse();
+
+        when(messageService.sendFileStream(eq(5L), eq("archivo"), eq("doc.pdf"), eq("application/pdf"), eq(3L),
+                any(java.io.InputStream.class), eq(mockUser)))
+                .thenReturn(expectedResponse);
+
+        ResponseEntity<ApiResponse<MessageResponse>> response =
+                controller.sendFileStream(5L, "doc.pdf", "archivo", request, authentication);
+
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertSame(expectedResponse, response.getBody().getData());
+    }
+
     @Test
     void testSendFileMessage() {
         MultipartFile file = mock(MultipartFile.class);
@@ -101,6 +136,26 @@ class MessageControllerTest {
         verify(messageService).getRoomMessages(20L, mockUser);
     }
 
+    @Test
+    void testGetRoomMessagesPage() {
+        MessagePageResponse page = MessagePageResponse.builder()
+                .messages(List.of(new MessageResponse()))
+                .nextCursor("abc")
+                .hasMore(true)
+                .build();
+
+        when(messageService.getRoomMessagesPage(20L, "cur", 25, mockUser)).thenReturn(page);
+
+        ResponseEntity<ApiResponse<MessagePageResponse>> response =
+                controller.getRoomMessagesPage(20L, "cur", 25, authentication);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("abc", response.getBody().getData().getNextCursor());
+        assertTrue(response.getBody().getData().isHasMore());
+
+        verify(messageService).getRoomMessagesPage(20L, "cur", 25, mockUser);
+    }
+
     @Test
     void testGetMessageById() {
         MessageResponse message = new MessageResponse();
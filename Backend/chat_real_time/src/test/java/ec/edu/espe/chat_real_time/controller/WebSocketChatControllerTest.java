@@ -5,6 +5,7 @@ import ec.edu.espe.chat_real_time.dto.request.SendMessageRequest;
 import ec.edu.espe.chat_real_time.dto.websocket.TypingIndicator;
 import ec.edu.espe.chat_real_time.model.user.User;
 import ec.edu.espe.chat_real_time.repository.UserRepository;
+import ec.edu.espe.chat_real_time.websocket.StompSessionUserCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
@@ -25,7 +26,6 @@ class WebSocketChatControllerTest {
     @Mock
     private Authentication authentication;
 
-    @InjectMocks
     private WebSocketChatController controller;
 
     private User mockUser;
@@ -33,6 +33,7 @@ class WebSocketChatControllerTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        controller = new WebSocketChatController(webSocketService, new StompSessionUserCache(userRepository));
 
         mockUser = new User();
         mockUser.setId(1L);
@@ -49,7 +50,7 @@ class WebSocketChatControllerTest {
         SendMessageRequest request = new SendMessageRequest();
         request.setContent("Hola mundo");
 
-        controller.sendMessage(roomId, request, authentication);
+        controller.sendMessage(roomId, request, authentication, "s1");
 
         verify(webSocketService, times(1))
                 .sendMessageToRoom(request, mockUser);
@@ -61,7 +62,7 @@ class WebSocketChatControllerTest {
         TypingIndicator indicator = new TypingIndicator();
         indicator.setTyping(true);
 
-        controller.handleTypingIndicator(roomId, indicator, authentication);
+        controller.handleTypingIndicator(roomId, indicator, authentication, "s1");
 
         verify(webSocketService, times(1))
                 .sendTypingIndicator(roomId, indicator, mockUser);
@@ -71,7 +72,7 @@ class WebSocketChatControllerTest {
     void testJoinRoom() {
         Long roomId = 5L;
 
-        controller.handleJoinRoom(roomId, authentication);
+        controller.handleJoinRoom(roomId, authentication, "s1");
 
         verify(webSocketService, times(1))
                 .notifyUserJoinedRoom(roomId, mockUser);
@@ -81,7 +82,7 @@ class WebSocketChatControllerTest {
     void testLeaveRoom() {
         Long roomId = 7L;
 
-        controller.handleLeaveRoom(roomId, authentication);
+        controller.handleLeaveRoom(roomId, authentication, "s1");
 
         verify(webSocketService, times(1))
                 .notifyUserLeftRoom(roomId, mockUser);
@@ -96,9 +97,24 @@ class WebSocketChatControllerTest {
         SendMessageRequest request = new SendMessageRequest();
 
         try {
-            controller.sendMessage(roomId, request, authentication);
+            controller.sendMessage(roomId, request, authentication, "s1");
         } catch (RuntimeException ex) {
             assert(ex.getMessage().equals("Usuario no encontrado"));
         }
     }
+
+    @Test
+    void testFramesOfSameSessionHitRepositoryOnce() {
+        Long roomId = 20L;
+        TypingIndicator indicator = new TypingIndicator();
+        indicator.setTyping(true);
+
+        for (int i = 0; i < 10; i++) {
+            controller.handleTypingIndicator(roomId, indicator, authentication, "s1");
+        }
+        controller.sendMessage(roomId, new SendMessageRequest(), authentication, "s1");
+
+        verify(userRepository, times(1)).findByUsernameAndDeletedAtIsNull("testuser");
+        verify(webSocketService, times(10)).sendTypingIndicator(roomId, indicator, mockUser);
+    }
 }
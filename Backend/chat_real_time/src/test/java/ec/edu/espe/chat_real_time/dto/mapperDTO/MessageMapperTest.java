@@ -1,5 +1,6 @@
 package ec.edu.espe.chat_real_time.dto.mapperDTO;
 
+import ec.edu.espe.chat_real_time.dto.projection.RecentMessageView;
 import ec.edu.espe.chat_real_time.dto.response.AttachmentResponse;
 import ec.edu.espe.chat_real_time.dto.response.MessageResponse;
 import ec.edu.espe.chat_real_time.model.Attachment;
@@ -105,4 +106,20 @@ class MessageMapperTest {
         assertEquals("gNick", res.getSenderNickname());
         assertEquals(0, res.getAttachments().size());
     }
+
+    @Test
+    void toMessageResponse_fromRecentMessageView_copiesResolvedSender() {
+        LocalDateTime now = LocalDateTime.now();
+        RecentMessageView view = new RecentMessageView(5L, "hola", MessageType.TEXT, now, false, null, 9L, 3L, "gnick");
+
+        MessageResponse res = MessageMapper.toMessageResponse(view);
+
+        assertEquals(5L, res.getId());
+        assertEquals("hola", res.getContent());
+        assertEquals(now, res.getSentAt());
+        assertEquals("gnick", res.getSenderNickname());
+        assertEquals(9L, res.getSenderId());
+        assertEquals(3L, res.getRoomId());
+        assertFalse(res.isDeleted());
+    }
 }
@@ -105,6 +105,13 @@ class GlobalExceptionHandlerTest {
         assertThat(r.getStatusCodeValue()).isEqualTo(413);
     }
 
+    @Test
+    void handleFileTooLarge() {
+        FileTooLargeException ex = new FileTooLargeException("El archivo excede el tamaño máximo permitido de 10MB");
+        ResponseEntity<?> r = handler.handleFileTooLargeException(ex, webRequest);
+        assertThat(r.getStatusCodeValue()).isEqualTo(413);
+    }
+
     @Test
     void handleGlobalException() {
         Exception ex = new Exception("oops");
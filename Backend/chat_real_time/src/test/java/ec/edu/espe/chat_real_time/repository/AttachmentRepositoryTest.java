@@ -6,12 +6,14 @@ import ec.edu.espe.chat_real_time.model.message.Message;
 import ec.edu.espe.chat_real_time.model.room.Room;
 import ec.edu.espe.chat_real_time.model.user.User;
 import ec.edu.espe.chat_real_time.model.user.UserSession;
+import ec.edu.espe.chat_real_time.utils.SnowflakeIdGenerator;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
 
 import java.util.List;
 import java.util.Optional;
@@ -20,6 +22,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 @DataJpaTest
 @AutoConfigureTestDatabase(replace = Replace.NONE)
+@Import(SnowflakeIdGenerator.class)
 class AttachmentRepositoryTest {
 
     @Autowired
@@ -67,7 +70,7 @@ class AttachmentRepositoryTest {
         assertTrue(listByMessageId.stream().anyMatch(a -> "file1".equals(a.getFileName())));
 
         // comprobar findByFileName
-        Optional<Attachment> opt = attachmentRepository.findByFileName("file1");
+        Optional<Attachment> opt = attachmentRepository.findFirstByFileNameOrderByIdAsc("file1");
         assertTrue(opt.isPresent());
         assertEquals("/u", opt.get().getFileUrl());
     }
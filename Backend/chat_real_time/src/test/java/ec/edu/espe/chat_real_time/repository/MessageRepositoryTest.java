@@ -1,10 +1,19 @@
 package ec.edu.espe.chat_real_time.repository;
 
+import ec.edu.espe.chat_real_time.dto.projection.RecentMessageView;
+import ec.edu.espe.chat_real_time.dto.mapperDTO.MessageMapper;
+import ec.edu.espe.chat_real_time.model.Attachment;
+import ec.edu.espe.chat_real_time.model.Role;
 import ec.edu.espe.chat_real_time.model.message.Message;
 import ec.edu.espe.chat_real_time.model.message.MessageType;
 import ec.edu.espe.chat_real_time.model.room.Room;
+import ec.edu.espe.chat_real_time.model.user.AdminProfile;
+import ec.edu.espe.chat_real_time.model.user.GuestProfile;
 import ec.edu.espe.chat_real_time.model.user.User;
 import ec.edu.espe.chat_real_time.model.user.UserSession;
+import ec.edu.espe.chat_real_time.utils.SnowflakeIdGenerator;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
@@ -12,14 +21,19 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.context.annotation.Import;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @DataJpaTest
 @AutoConfigureTestDatabase(replace = Replace.NONE)
+@Import(SnowflakeIdGenerator.class)
 class MessageRepositoryTest {
 
     @Autowired
@@ -69,4 +83,110 @@ class MessageRepositoryTest {
         var page = messageRepository.findByRoomAndIsDeletedFalseOrderBySentAtDesc(room, PageRequest.of(0, 10));
         assertTrue(page.getTotalElements() >= 2);
     }
+
+    @Test
+    void keysetPagination_returnsOlderMessagesBeforeCursor() {
+        User u = createUser("kuser");
+        Room room = createRoom(u, "RMSG2");
+
+        UserSession session = UserSession.builder().deviceId("d2").user(u).room(room).build();
+        em.persistAndFlush(session);
+
+        for (int i = 0; i < 5; i++) {
+            em.persist(Message.builder().content("m" + i).user(u).room(room).session(session).messageType(MessageType.TEXT).build());
+        }
+        em.flush();
+
+        List<Message> first = messageRepository.findByRoomAndIsDeletedFalseOrderByIdDesc(room, PageRequest.of(0, 3));
+        assertEquals(3, first.size());
+        assertTrue(first.get(0).getId() > first.get(2).getId());
+
+        List<Message> next = messageRepository.findByRoomAndIsDeletedFalseAndIdLessThanOrderByIdDesc(
+                room, first.get(2).getId(), PageRequest.of(0, 3));
+        assertEquals(2, next.size());
+        assertTrue(next.get(0).getId() < first.get(2).getId());
+    }
+
+    @Test
+    void findRecentMessageViews_limitsRows_and_resolvesSenderName() {
+        User u = createUser("vuser");
+        GuestProfile gp = GuestProfile.builder().nickname("vnick").user(u).build();
+        u.setGuestProfile(gp);
+        em.persist(gp);
+        Room room = createRoom(u, "RMSG3");
+
+        UserSession session = UserSession.builder().deviceId("d3").user(u).room(room).build();
+        em.persistAndFlush(session);
+
+        for (int i = 0; i < 5; i++) {
+            em.persist(Message.builder().content("v" + i).user(u).room(room).session(session).messageType(MessageType.TEXT).build());
+        }
+        em.flush();
+        em.clear();
+
+        List<RecentMessageView> views = messageRepository.findRecentMessageViews(room, PageRequest.of(0, 3));
+        assertEquals(3, views.size());
+        assertEquals("v4", views.get(0).getContent());
+        assertEquals("vnick", views.get(0).getSenderNickname());
+    }
+
+    private Role findOrCreateRole(String name) {
+        return em.getEntityManager().createQuery("SELECT r FROM Role r WHERE r.name = :name", Role.class)
+                .setParameter("name", name)
+                .getResultStream()
+                .findFirst()
+                .orElseGet(() -> em.persist(Role.builder().name(name).build()));
+    }
+
+    @Test
+    void messagePage_staysWithinQueryBudget() {
+        Role guestRole = findOrCreateRole("ROLE_GUEST");
+        Role adminRole = findOrCreateRole("ROLE_ADMIN");
+
+        User admin = User.builder().username("qbadmin").password("pwd").roles(new HashSet<>(Set.of(adminRole))).build();
+        em.persist(admin);
+        AdminProfile adminProfile = AdminProfile.builder().firstName("Q").lastName("B").email("qb@test.com").user(admin).build();
+        admin.setAdminProfile(adminProfile);
+        em.persist(adminProfile);
+
+        List<User> senders = new ArrayList<>();
+        senders.add(admin);
+        for (int i = 0; i < 20; i++) {
+            User guest = User.builder().username("qbguest" + i).password("pwd").roles(new HashSet<>(Set.of(guestRole))).build();
+            em.persist(guest);
+            GuestProfile gp = GuestProfile.builder().nickname("qb" + i).user(guest).build();
+            guest.setGuestProfile(gp);
+            em.persist(gp);
+            senders.add(guest);
+        }
+
+        Room room = createRoom(admin, "RMSGQB");
+        UserSession session = UserSession.builder().deviceId("dqb").user(admin).room(room).build();
+        em.persist(session);
+
+        for (int i = 0; i < 120; i++) {
+            Message m = Message.builder().content("q" + i).user(senders.get(i % senders.size())).room(room)
+                    .session(session).messageType(MessageType.TEXT).build();
+            em.persist(m);
+            if (i % 3 == 0) {
+                em.persist(Attachment.builder().fileName("f" + i).originalFileName("f" + i)
+                        .filePath("p").fileUrl("u").message(m).build());
+            }
+        }
+        em.flush();
+        em.clear();
+
+        Statistics statistics = em.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        List<Message> page = messageRepository.findByRoomAndIsDeletedFalseOrderByIdDesc(room, PageRequest.of(0, 51));
+        page.forEach(MessageMapper::toMessageResponse);
+
+        // pagina + roles por lote + adjuntos por lote, sin importar cuantos remitentes distintos haya
+        assertEquals(51, page.size());
+        assertTrue(statistics.getPrepareStatementCount() <= 4,
+                "statements: " + statistics.getPrepareStatementCount());
+    }
 }
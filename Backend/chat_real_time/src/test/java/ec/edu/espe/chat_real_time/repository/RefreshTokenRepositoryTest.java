@@ -2,12 +2,14 @@ package ec.edu.espe.chat_real_time.repository;
 
 import ec.edu.espe.chat_real_time.model.RefreshToken;
 import ec.edu.espe.chat_real_time.model.user.User;
+import ec.edu.espe.chat_real_time.utils.SnowflakeIdGenerator;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -17,6 +19,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 @DataJpaTest
 @AutoConfigureTestDatabase(replace = Replace.NONE)
+@Import(SnowflakeIdGenerator.class)
 class RefreshTokenRepositoryTest {
 
     @Autowired
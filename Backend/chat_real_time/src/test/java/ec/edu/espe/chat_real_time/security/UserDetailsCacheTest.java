@@ -0,0 +1,68 @@
+package ec.edu.espe.chat_real_time.security;
+
+import ec.edu.espe.chat_real_time.Service.UserDetailsServiceImpl;
+import ec.edu.espe.chat_real_time.Service.user.UserChangedEvent;
+import ec.edu.espe.chat_real_time.model.user.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class UserDetailsCacheTest {
+
+    private UserDetailsServiceImpl userDetailsService;
+    private UserDetailsCache cache;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        userDetailsService = mock(UserDetailsServiceImpl.class);
+        cache = new UserDetailsCache(userDetailsService, 300, 100);
+
+        user = User.builder().id(7L).username("alice").password("p").build();
+        when(userDetailsService.loadUserById(7L)).thenReturn(user);
+    }
+
+    @Test
+    void getById_LoadsOnceAndRecordsHitsAndMisses() {
+        assertThat(cache.getById(7L)).isSameAs(user);
+        assertThat(cache.getById(7L)).isSameAs(user);
+        assertThat(cache.getById(7L)).isSameAs(user);
+
+        verify(userDetailsService, times(1)).loadUserById(7L);
+        assertThat(cache.stats().missCount()).isEqualTo(1);
+        assertThat(cache.stats().hitCount()).isEqualTo(2);
+    }
+
+    @Test
+    void userChanged_InvalidatesThatUser() {
+        cache.getById(7L);
+
+        cache.onUserChanged(UserChangedEvent.of(user));
+        cache.getById(7L);
+
+        verify(userDetailsService, times(2)).loadUserById(7L);
+    }
+
+    @Test
+    void guestCleanup_InvalidatesEverything() {
+        cache.getById(7L);
+
+        cache.onUserChanged(UserChangedEvent.all());
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void getById_MissingUserIsNotCached() {
+        when(userDetailsService.loadUserById(99L)).thenThrow(new UsernameNotFoundException("User not found with ID: 99"));
+
+        assertThatThrownBy(() -> cache.getById(99L)).isInstanceOf(UsernameNotFoundException.class);
+        assertThatThrownBy(() -> cache.getById(99L)).isInstanceOf(UsernameNotFoundException.class);
+
+        verify(userDetailsService, times(2)).loadUserById(99L);
+    }
+}
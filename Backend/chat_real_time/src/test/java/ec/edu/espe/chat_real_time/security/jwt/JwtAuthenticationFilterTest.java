@@ -2,14 +2,21 @@ package ec.edu.espe.chat_real_time.security.jwt;
 
 import ec.edu.espe.chat_real_time.Service.UserDetailsServiceImpl;
 import ec.edu.espe.chat_real_time.model.user.User;
+import ec.edu.espe.chat_real_time.security.UserDetailsCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.mock.web.MockFilterChain;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.time.Instant;
+import java.util.List;
+
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -17,13 +24,15 @@ class JwtAuthenticationFilterTest {
 
     private JwtService jwtService;
     private UserDetailsServiceImpl userDetailsService;
+    private TokenRevocationList tokenRevocationList;
     private JwtAuthenticationFilter filter;
 
     @BeforeEach
     void setUp() {
         jwtService = mock(JwtService.class);
         userDetailsService = mock(UserDetailsServiceImpl.class);
-        filter = new JwtAuthenticationFilter(jwtService, userDetailsService);
+        tokenRevocationList = new TokenRevocationList(1000L * 60 * 15);
+        filter = new JwtAuthenticationFilter(jwtService, new UserDetailsCache(userDetailsService, 300, 100), tokenRevocationList);
     }
 
     @Test
@@ -45,16 +54,78 @@ class JwtAuthenticationFilterTest {
         String token = "token123";
         req.addHeader("Authorization", "Bearer " + token);
 
-        when(jwtService.extractUserIdSub(token)).thenReturn(7L);
+        VerifiedToken verified = new VerifiedToken(7L, "u", "access", null, null, List.of());
+        when(jwtService.verify(token)).thenReturn(verified);
         User user = User.builder().id(7L).username("u").password("p").build();
         when(userDetailsService.loadUserById(7L)).thenReturn((UserDetails) user);
-        when(jwtService.isTokenValid(token, user)).thenReturn(true);
+        when(jwtService.isTokenValid(verified, user)).thenReturn(true);
 
         filter.doFilterInternal(req, res, chain);
 
         // after chain, status still 200
         assertEquals(200, res.getStatus());
+        // el token se parsea y verifica una sola vez por petición
+        verify(jwtService, times(1)).verify(token);
         // security context should be set (we cannot inspect it easily here without extra setup), but no exceptions
     }
-}
 
+    @Test
+    void doFilter_reuses_cached_user_across_requests() throws Exception {
+        String token = "token123";
+        VerifiedToken verified = new VerifiedToken(7L, "u", "access", null, null, List.of());
+        when(jwtService.verify(token)).thenReturn(verified);
+        User user = User.builder().id(7L).username("u").password("p").build();
+        when(userDetailsService.loadUserById(7L)).thenReturn((UserDetails) user);
+        when(jwtService.isTokenValid(verified, user)).thenReturn(true);
+
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest req = new MockHttpServletRequest();
+            req.addHeader("Authorization", "Bearer " + token);
+            SecurityContextHolder.clearContext();
+            filter.doFilterInternal(req, new MockHttpServletResponse(), new MockFilterChain());
+        }
+        SecurityContextHolder.clearContext();
+
+        verify(userDetailsService, times(1)).loadUserById(7L);
+    }
+
+    @Test
+    void statelessMode_builds_principal_from_claims_without_loading_user() throws Exception {
+        ReflectionTestUtils.setField(filter, "statelessPrincipal", true);
+        String token = "token123";
+        VerifiedToken verified = new VerifiedToken(7L, "u", "access",
+                Instant.now(), Instant.now().plusSeconds(600), List.of("ROLE_GUEST"));
+        when(jwtService.verify(token)).thenReturn(verified);
+
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.addHeader("Authorization", "Bearer " + token);
+        SecurityContextHolder.clearContext();
+        filter.doFilterInternal(req, new MockHttpServletResponse(), new MockFilterChain());
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        assertNotNull(authentication);
+        assertEquals("u", authentication.getName());
+        assertInstanceOf(JwtPrincipal.class, authentication.getPrincipal());
+        assertEquals(List.of("ROLE_GUEST"), authentication.getAuthorities().stream().map(Object::toString).toList());
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void statelessMode_rejects_token_issued_before_revocation() throws Exception {
+        ReflectionTestUtils.setField(filter, "statelessPrincipal", true);
+        String token = "token123";
+        VerifiedToken verified = new VerifiedToken(7L, "u", "access",
+                Instant.now().minusSeconds(60), Instant.now().plusSeconds(600), List.of("ROLE_GUEST"));
+        when(jwtService.verify(token)).thenReturn(verified);
+        tokenRevocationList.revokeAll(7L);
+
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.addHeader("Authorization", "Bearer " + token);
+        SecurityContextHolder.clearContext();
+        filter.doFilterInternal(req, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verifyNoInteractions(userDetailsService);
+    }
+}
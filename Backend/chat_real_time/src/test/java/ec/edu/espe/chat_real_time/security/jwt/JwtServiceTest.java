@@ -3,11 +3,16 @@ package ec.edu.espe.chat_real_time.security.jwt;
 import ec.edu.espe.chat_real_time.model.user.User;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -18,11 +23,9 @@ class JwtServiceTest {
 
     @BeforeEach
     void setup() {
-        jwtService = new JwtService();
-        // set a deterministic secret and expirations
-        ReflectionTestUtils.setField(jwtService, "jwtSecret", "0123456701234567012345670123456701234567012345670123456701234567");
-        ReflectionTestUtils.setField(jwtService, "accessTokenExpiration", 1000L * 60 * 60); // 1h
-        ReflectionTestUtils.setField(jwtService, "refreshTokenExpiration", 1000L * 60 * 60 * 24);
+        // deterministic secret and expirations: 1h access, 1 day refresh
+        jwtService = new JwtService("0123456701234567012345670123456701234567012345670123456701234567",
+                1000L * 60 * 60, 1000L * 60 * 60 * 24);
     }
 
     private User makeUser(long id, String username) {
@@ -71,4 +74,77 @@ class JwtServiceTest {
         String bad = "not.a.token";
         assertThatThrownBy(() -> jwtService.extractUsername(bad)).isInstanceOf(io.jsonwebtoken.MalformedJwtException.class);
     }
+
+    @Test
+    void verify_returnsClaimsFromSingleParse() {
+        User u = makeUser(42L, "alice");
+        String token = jwtService.generateAccessToken(u);
+
+        VerifiedToken verified = jwtService.verify(token);
+
+        assertThat(verified.getUserId()).isEqualTo(42L);
+        assertThat(verified.getUsername()).isEqualTo("alice");
+        assertThat(verified.getType()).isEqualTo("access");
+        assertThat(verified.getIssuedAt()).isNotNull();
+        assertThat(verified.isExpired()).isFalse();
+        assertThat(verified.getAuthorities()).containsExactly("ROLE_USER");
+        assertThat(jwtService.isTokenValid(verified, u)).isTrue();
+        assertThat(jwtService.isTokenValid(verified, makeUser(7L, "mallory"))).isFalse();
+    }
+
+    @Test
+    void verify_issuedAtHasMillisecondPrecision() {
+        long before = System.currentTimeMillis();
+        String token = jwtService.generateAccessToken(makeUser(42L, "alice"));
+        long after = System.currentTimeMillis();
+
+        Instant issuedAt = jwtService.verify(token).getIssuedAt();
+
+        assertThat(issuedAt.toEpochMilli()).isBetween(before, after);
+        // the standard "iat" claim is kept, truncated to seconds
+        long iat = jwtService.extractClaim(token, claims -> claims.getIssuedAt().getTime());
+        assertThat(iat).isEqualTo(issuedAt.toEpochMilli() / 1000 * 1000);
+    }
+
+    @Test
+    void revokedAfterLogout_NewTokenInSameSecondStaysValid() throws InterruptedException {
+        TokenRevocationList revocationList = new TokenRevocationList(1000L * 60 * 60);
+        User u = makeUser(42L, "alice");
+        String old = jwtService.generateAccessToken(u);
+        Thread.sleep(2);
+
+        revocationList.revokeAll(42L);
+        Thread.sleep(2);
+        String renewed = jwtService.generateAccessToken(u);
+
+        assertThat(revocationList.isRevoked(jwtService.verify(old))).isTrue();
+        assertThat(revocationList.isRevoked(jwtService.verify(renewed))).isFalse();
+    }
+
+    @Test
+    void verify_rejectsTokenSignedWithAnotherKey() {
+        JwtService other = new JwtService("abcdefghabcdefghabcdefghabcdefghabcdefghabcdefghabcdefghabcdefgh",
+                1000L * 60 * 60, 1000L * 60 * 60 * 24);
+        String forged = other.buildAccessToken(new HashMap<>(), makeUser(42L, "alice"), 1000L * 60);
+
+        assertThatThrownBy(() -> jwtService.verify(forged))
+                .isInstanceOf(io.jsonwebtoken.security.SignatureException.class);
+    }
+
+    @Test
+    void verify_isThreadSafeWithSharedParser() throws Exception {
+        String token = jwtService.generateAccessToken(makeUser(42L, "alice"));
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                results.add(pool.submit(() -> jwtService.verify(token).getUserId()));
+            }
+            for (Future<Long> result : results) {
+                assertThat(result.get()).isEqualTo(42L);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
 }
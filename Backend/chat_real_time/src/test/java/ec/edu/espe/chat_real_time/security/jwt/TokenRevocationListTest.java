@@ -0,0 +1,64 @@
+package ec.edu.espe.chat_real_time.security.jwt;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenRevocationListTest {
+
+    private TokenRevocationList revocationList;
+
+    @BeforeEach
+    void setUp() {
+        revocationList = new TokenRevocationList(1000L * 60 * 15);
+    }
+
+    private VerifiedToken issuedAt(long userId, Instant issuedAt) {
+        return new VerifiedToken(userId, "u" + userId, "access", issuedAt, issuedAt.plusSeconds(900), List.of());
+    }
+
+    @Test
+    void revokeAll_RejectsOlderTokensOfThatUserOnly() {
+        Instant earlier = Instant.now().minusSeconds(30);
+
+        revocationList.revokeAll(1L);
+
+        assertThat(revocationList.isRevoked(issuedAt(1L, earlier))).isTrue();
+        assertThat(revocationList.isRevoked(issuedAt(2L, earlier))).isFalse();
+    }
+
+    @Test
+    void revokeAll_RejectsTokensIssuedJustBefore() {
+        Instant justBefore = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+        revocationList.revokeAll(1L);
+
+        assertThat(revocationList.isRevoked(issuedAt(1L, justBefore))).isTrue();
+    }
+
+    @Test
+    void revokeAll_KeepsTokensIssuedAfterwardsInTheSameSecond() throws InterruptedException {
+        // re-login tras un logout: el token nuevo cae en el mismo segundo pero en un milisegundo posterior
+        revocationList.revokeAll(1L);
+        Thread.sleep(2);
+
+        Instant issued = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        assertThat(revocationList.isRevoked(issuedAt(1L, issued))).isFalse();
+        assertThat(revocationList.isRevoked(issuedAt(1L, Instant.now().plusSeconds(5)))).isFalse();
+    }
+
+    @Test
+    void purgeExpired_DropsEntriesOlderThanAccessTokenLifetime() {
+        TokenRevocationList shortLived = new TokenRevocationList(-1000L);
+        shortLived.revokeAll(1L);
+
+        shortLived.purgeExpired();
+
+        assertThat(shortLived.size()).isZero();
+    }
+}
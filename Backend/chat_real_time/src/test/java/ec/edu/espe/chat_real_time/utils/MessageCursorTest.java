@@ -0,0 +1,32 @@
+package ec.edu.espe.chat_real_time.utils;
+
+import ec.edu.espe.chat_real_time.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MessageCursorTest {
+
+    @Test
+    void encodeAndDecode_roundTrip() {
+        String cursor = MessageCursor.encode(12345L);
+        assertThat(cursor).doesNotContain("12345");
+        assertThat(MessageCursor.decode(cursor)).isEqualTo(12345L);
+    }
+
+    @Test
+    void decode_nullOrBlank_returnsNull() {
+        assertThat(MessageCursor.decode(null)).isNull();
+        assertThat(MessageCursor.decode(" ")).isNull();
+        assertThat(MessageCursor.encode(null)).isNull();
+    }
+
+    @Test
+    void decode_invalidCursor_throwsBadRequest() {
+        assertThatThrownBy(() -> MessageCursor.decode("%%%"))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> MessageCursor.decode("eDox"))
+                .isInstanceOf(BadRequestException.class);
+    }
+}
@@ -0,0 +1,136 @@
+package ec.edu.espe.chat_real_time.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnowflakeIdGeneratorTest {
+
+    private static final long NOW = Instant.parse("2026-03-01T12:00:00Z").toEpochMilli();
+
+    @Test
+    void nextId_EncodesTimestampAndNode() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7, () -> NOW);
+
+        long id = generator.nextId();
+
+        assertThat(SnowflakeIdGenerator.timestampOf(id)).isEqualTo(Instant.ofEpochMilli(NOW));
+        assertThat(SnowflakeIdGenerator.nodeOf(id)).isEqualTo(7);
+    }
+
+    @Test
+    void nextId_FitsInJavaScriptSafeInteger() {
+        // límite del layout: el último milisegundo representable con 41 bits
+        long lastMs = SnowflakeIdGenerator.EPOCH_MS + (1L << 41) - 1;
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID, () -> lastMs);
+
+        assertThat(generator.nextId()).isLessThanOrEqualTo(9007199254740991L);
+    }
+
+    @Test
+    void nextId_SequenceOverflowBorrowsNextMillisecond() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0, () -> NOW);
+
+        long previous = generator.nextId();
+        for (int i = 0; i < 1_000; i++) {
+            long id = generator.nextId();
+            assertThat(id).isGreaterThan(previous);
+            previous = id;
+        }
+        assertThat(SnowflakeIdGenerator.timestampOf(previous)).isAfter(Instant.ofEpochMilli(NOW));
+    }
+
+    @Test
+    void nextId_ClockGoingBackwardsNeverRepeats() {
+        AtomicLong clock = new AtomicLong(NOW);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0, clock::get);
+
+        long before = generator.nextId();
+        clock.set(NOW - 5_000);
+        long after = generator.nextId();
+
+        assertThat(after).isGreaterThan(before);
+    }
+
+    @Test
+    void nextId_NewerTimeSortsAfterAnyNode() {
+        AtomicLong clock = new AtomicLong(NOW);
+        SnowflakeIdGenerator nodeA = new SnowflakeIdGenerator(31, clock::get);
+        SnowflakeIdGenerator nodeB = new SnowflakeIdGenerator(0, clock::get);
+
+        long first = nodeA.nextId();
+        clock.incrementAndGet();
+        long second = nodeB.nextId();
+
+        assertThat(second).isGreaterThan(first);
+    }
+
+    @Test
+    void constructor_RejectsNodeOutOfRange() {
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(32)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void nextId_UniqueAndMonotonicPerThreadUnderContention() throws Exception {
+        int threads = 8;
+        int perThread = 25_000;
+        ConcurrentHashMap<Long, Boolean> seen = new ConcurrentHashMap<>(threads * perThread * 2);
+
+        generateConcurrently(new SnowflakeIdGenerator(3), threads, perThread, seen);
+
+        assertThat(seen).hasSize(threads * perThread);
+    }
+
+    // 2M ids repartidos en 8 hilos: muy por encima del millón de ids/s. Solo con -Dbench.load=true
+    @Test
+    @EnabledIfSystemProperty(named = "bench.load", matches = "true")
+    void nextId_ThroughputUnderContention() throws Exception {
+        int threads = 8;
+        int perThread = 250_000;
+        ConcurrentHashMap<Long, Boolean> seen = new ConcurrentHashMap<>(threads * perThread * 2);
+
+        double seconds = generateConcurrently(new SnowflakeIdGenerator(3), threads, perThread, seen);
+
+        assertThat(seen).hasSize(threads * perThread);
+        assertThat(threads * perThread / seconds).isGreaterThan(1_000_000);
+    }
+
+    // Cada hilo comprueba que sus ids crecen; devuelve los segundos transcurridos
+    private static double generateConcurrently(SnowflakeIdGenerator generator, int threads, int perThread,
+                                               ConcurrentHashMap<Long, Boolean> seen) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(pool.submit(() -> {
+                boolean monotonic = true;
+                long previous = 0;
+                for (int i = 0; i < perThread; i++) {
+                    long id = generator.nextId();
+                    monotonic &= id > previous;
+                    previous = id;
+                    seen.put(id, Boolean.TRUE);
+                }
+                return monotonic;
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            assertThat(result.get(60, TimeUnit.SECONDS)).isTrue();
+        }
+        pool.shutdown();
+        return (System.nanoTime() - start) / 1e9;
+    }
+}
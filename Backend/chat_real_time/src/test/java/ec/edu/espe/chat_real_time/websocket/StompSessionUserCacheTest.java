@@ -0,0 +1,108 @@
+package ec.edu.espe.chat_real_time.websocket;
+
+import ec.edu.espe.chat_real_time.Service.user.UserChangedEvent;
+import ec.edu.espe.chat_real_time.model.user.User;
+import ec.edu.espe.chat_real_time.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class StompSessionUserCacheTest {
+
+    private UserRepository userRepository;
+    private StompSessionUserCache cache;
+    private User alice;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        cache = new StompSessionUserCache(userRepository);
+
+        alice = User.builder().id(1L).username("alice").build();
+        when(userRepository.findByUsernameAndDeletedAtIsNull("alice")).thenReturn(Optional.of(alice));
+    }
+
+    @Test
+    void resolve_LoadsOncePerSession() {
+        assertThat(cache.resolve("s1", "alice")).isSameAs(alice);
+        assertThat(cache.resolve("s1", "alice")).isSameAs(alice);
+        cache.resolve("s2", "alice");
+
+        verify(userRepository, times(2)).findByUsernameAndDeletedAtIsNull("alice");
+    }
+
+    @Test
+    void sessionConnected_SeedsCacheFromPrincipal() {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECTED);
+        accessor.setSessionId("s1");
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        UsernamePasswordAuthenticationToken principal =
+                new UsernamePasswordAuthenticationToken(alice, null, List.of());
+
+        cache.onSessionConnected(new SessionConnectedEvent(this, message, principal));
+
+        assertThat(cache.resolve("s1", "alice")).isSameAs(alice);
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void sessionDisconnect_EvictsSession() {
+        cache.resolve("s1", "alice");
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0],
+                StompHeaderAccessor.create(StompCommand.DISCONNECT).getMessageHeaders());
+
+        cache.onSessionDisconnect(new SessionDisconnectEvent(this, message, "s1", CloseStatus.NORMAL));
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void userChanged_EvictsOnlyThatUser() {
+        User bob = User.builder().id(2L).username("bob").build();
+        when(userRepository.findByUsernameAndDeletedAtIsNull("bob")).thenReturn(Optional.of(bob));
+        cache.resolve("s1", "alice");
+        cache.resolve("s2", "bob");
+
+        cache.onUserChanged(UserChangedEvent.of(alice));
+        cache.resolve("s1", "alice");
+        cache.resolve("s2", "bob");
+
+        verify(userRepository, times(2)).findByUsernameAndDeletedAtIsNull("alice");
+        verify(userRepository, times(1)).findByUsernameAndDeletedAtIsNull("bob");
+    }
+
+    @Test
+    void userChangedForAll_ClearsCache() {
+        cache.resolve("s1", "alice");
+
+        cache.onUserChanged(UserChangedEvent.all());
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void resolve_DeletedUserThrows() {
+        cache.resolve("s1", "alice");
+        when(userRepository.findByUsernameAndDeletedAtIsNull("alice")).thenReturn(Optional.empty());
+
+        cache.onUserChanged(UserChangedEvent.of(alice));
+
+        assertThatThrownBy(() -> cache.resolve("s1", "alice"))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("Usuario no encontrado");
+    }
+}
@@ -1,6 +1,7 @@
 package ec.edu.espe.chat_real_time.websocket;
 
 import ec.edu.espe.chat_real_time.security.jwt.JwtService;
+import ec.edu.espe.chat_real_time.security.jwt.VerifiedToken;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -94,10 +95,11 @@ class WebSocketAuthInterceptorTest {
 
         Message<?> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
 
-        when(jwtService.extractUsername(token)).thenReturn("u1");
+        VerifiedToken verified = new VerifiedToken(1L, "u1", "access", null, null, java.util.Collections.emptyList());
+        when(jwtService.verify(token)).thenReturn(verified);
         UserDetails ud = mock(UserDetails.class);
         when(userDetailsService.loadUserByUsername("u1")).thenReturn(ud);
-        when(jwtService.isTokenValid(token, ud)).thenReturn(true);
+        when(jwtService.isTokenValid(verified, ud)).thenReturn(true);
         when(ud.getAuthorities()).thenReturn(java.util.Collections.emptyList());
 
         Message<?> returned = interceptor.preSend(message, mock(MessageChannel.class));
@@ -116,10 +118,11 @@ class WebSocketAuthInterceptorTest {
         accessor.addNativeHeader("Authorization", "Bearer " + token);
         Message<?> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
 
-        when(jwtService.extractUsername(token)).thenReturn("u2");
+        VerifiedToken verified = new VerifiedToken(2L, "u2", "access", null, null, java.util.Collections.emptyList());
+        when(jwtService.verify(token)).thenReturn(verified);
         UserDetails ud = mock(UserDetails.class);
         when(userDetailsService.loadUserByUsername("u2")).thenReturn(ud);
-        when(jwtService.isTokenValid(token, ud)).thenReturn(false);
+        when(jwtService.isTokenValid(verified, ud)).thenReturn(false);
 
         Message<?> returned = interceptor.preSend(message, mock(MessageChannel.class));
         assertThat(returned).isNotNull();
@@ -138,7 +141,7 @@ class WebSocketAuthInterceptorTest {
         accessor.addNativeHeader("Authorization", "Bearer " + token);
         Message<?> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
 
-        when(jwtService.extractUsername(token)).thenThrow(new RuntimeException("boom"));
+        when(jwtService.verify(token)).thenThrow(new RuntimeException("boom"));
 
         Message<?> returned = interceptor.preSend(message, mock(MessageChannel.class));
         assertThat(returned).isNotNull();
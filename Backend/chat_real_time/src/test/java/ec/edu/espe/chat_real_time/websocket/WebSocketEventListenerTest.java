@@ -1,5 +1,6 @@
 package ec.edu.espe.chat_real_time.websocket;
 
+import ec.edu.espe.chat_real_time.Service.room.RoomPresenceRegistry;
 import ec.edu.espe.chat_real_time.Service.websocket.WebSocketService;
 import ec.edu.espe.chat_real_time.model.room.Room;
 import ec.edu.espe.chat_real_time.model.user.User;
@@ -40,6 +41,9 @@ class WebSocketEventListenerTest {
     @Mock
     private ec.edu.espe.chat_real_time.repository.RoomRepository roomRepository;
 
+    @Mock
+    private RoomPresenceRegistry presenceRegistry;
+
     @InjectMocks
     private WebSocketEventListener listener;
 
@@ -181,7 +185,7 @@ class WebSocketEventListenerTest {
         accessor.setSessionId("sess-frank");
         Message<byte[]> msg = org.springframework.messaging.support.MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
 
-        User user = new User(); user.setUsername("frank");
+        User user = new User(); user.setUsername("frank"); user.setId(6L);
         Room room = Room.builder().id(30L).currentUsers(3).build();
         UserSession session = UserSession.builder().isActive(true).user(user).room(room).build();
 
@@ -201,9 +205,9 @@ class WebSocketEventListenerTest {
         assertFalse(saved.getIsActive());
         assertNotNull(saved.getLeftAt());
 
-        // room decremented and saved
-        assertEquals(2, room.getCurrentUsers());
-        verify(roomRepository).save(room);
+        // plaza liberada en memoria, sin escribir la sala
+        verify(presenceRegistry).leave(30L, 6L);
+        verify(roomRepository, never()).save(any());
 
         verify(webSocketService).notifyUserLeftRoom(room.getId(), user);
         verify(subscriptionTracker).unmap("sess-frank");
@@ -1,18 +1,20 @@
 interface TypingIndicatorProps {
   users: string[];
+  // total de personas escribiendo; el servidor solo envía algunos nombres
+  total?: number;
 }
 
-const TypingIndicator = ({ users }: TypingIndicatorProps) => {
+const TypingIndicator = ({ users, total = users.length }: TypingIndicatorProps) => {
   if (users.length === 0) return null;
 
   const getText = () => {
-    if (users.length === 1) {
+    if (total === 1) {
       return `${users[0]} está escribiendo...`;
     }
-    if (users.length === 2) {
+    if (total === 2 && users.length === 2) {
       return `${users[0]} y ${users[1]} están escribiendo...`;
     }
-    return `${users[0]} y ${users.length - 1} más están escribiendo...`;
+    return `${users[0]} y ${total - 1} más están escribiendo...`;
   };
 
   return (
@@ -2,12 +2,16 @@ import { useEffect, useState, useCallback, useRef } from 'react';
 import SockJS from 'sockjs-client';
 import { Client } from '@stomp/stompjs';
 import { WS_BASE_URL } from '@/config/api';
-import { MessageResponse, MessageType, TypingIndicator, UserEvent } from '@/types/api';
+import { MessageResponse, MessageType, ResumeResponse, TypingSnapshot, UserEvent } from '@/types/api';
 import { messageService } from '@/services/messageService';
 
+// Mientras se sigue escribiendo se renueva el aviso cada 2 s (el servidor lo caduca a los 6 s)
+const TYPING_REFRESH_MS = 2000;
+
 interface UseWebSocketReturn {
   messages: MessageResponse[];
   typingUsers: Set<string>;
+  typingCount: number;
   sendMessage: (content: string) => void;
   sendTypingIndicator: (isTyping: boolean) => void;
   connected: boolean;
@@ -25,10 +29,15 @@ export const useWebSocket = (
 ): UseWebSocketReturn => {
   const [messages, setMessages] = useState<MessageResponse[]>([]);
   const [typingUsers, setTypingUsers] = useState<Set<string>>(new Set());
+  const [typingCount, setTypingCount] = useState(0);
   const [connected, setConnected] = useState(false);
   const clientRef = useRef<Client | null>(null);
   const deletedIdsRef = useRef<Set<number>>(new Set());
   const optionsRef = useRef<UseWsOptions | undefined>(options);
+  // Último frame de la sala recibido (cabeceras seq-epoch/seq) para pedir solo lo perdido al reconectar
+  const cursorRef = useRef<{ epoch: string; seq: number } | null>(null);
+  // Último aviso de "escribiendo" enviado: el servidor lo mantiene unos segundos, basta con renovarlo
+  const lastTypingRef = useRef<{ isTyping: boolean; at: number }>({ isTyping: false, at: 0 });
 
   useEffect(() => {
     optionsRef.current = options;
@@ -54,51 +63,79 @@ export const useWebSocket = (
       heartbeatOutgoing: 4000,
     });
 
+    const mergeIncoming = async (incoming: MessageResponse) => {
+      // Primer update inmediato para mostrar el mensaje sin lag
+      setMessages((prev) => {
+        const exists = prev.find((m) => m.id === incoming.id);
+        if (exists) return prev.map((m) => (m.id === incoming.id ? { ...exists, ...incoming } : m));
+        return [...prev, incoming];
+      });
+
+      // Si es un archivo y no trae attachments aún, hidratar desde REST
+      if (
+        incoming.messageType === MessageType.FILE &&
+        (!incoming.attachments || incoming.attachments.length === 0)
+      ) {
+        try {
+          const full = await messageService.getMessage(incoming.id);
+          const hydrated = full.data;
+          if (hydrated) {
+            setMessages((prev) => prev.map((m) => (m.id === hydrated.id ? { ...m, ...hydrated } : m)));
+          }
+        } catch (e) {
+          // Silenciar errores de hidratación; el mensaje seguirá visible con el contenido
+          console.warn('No se pudo hidratar attachments del mensaje', incoming.id, e);
+        }
+      }
+    };
+
     stompClient.onConnect = () => {
       console.log('WebSocket connected');
       setConnected(true);
 
       // Subscribe to room messages
-      stompClient.subscribe(`/topic/room/${roomId}`, async (message) => {
-        const incoming: MessageResponse = JSON.parse(message.body);
-
-        // Primer update inmediato para mostrar el mensaje sin lag
-        setMessages((prev) => {
-          const exists = prev.find((m) => m.id === incoming.id);
-          if (exists) return prev.map((m) => (m.id === incoming.id ? { ...exists, ...incoming } : m));
-          return [...prev, incoming];
-        });
+      stompClient.subscribe(`/topic/room/${roomId}`, (message) => {
+        const epoch = message.headers['seq-epoch'];
+        const seq = Number(message.headers['seq']);
+        if (epoch && !Number.isNaN(seq)) {
+          cursorRef.current = { epoch, seq };
+        }
+        mergeIncoming(JSON.parse(message.body));
+      });
 
-        // Si es un archivo y no trae attachments aún, hidratar desde REST
-        if (
-          incoming.messageType === MessageType.FILE &&
-          (!incoming.attachments || incoming.attachments.length === 0)
-        ) {
+      // Respuesta a chat.resume: los frames perdidos o, si no se puede garantizar la continuidad, recargar por REST
+      stompClient.subscribe('/user/queue/resume', async (message) => {
+        const resume: ResumeResponse = JSON.parse(message.body);
+        const hadCursor = cursorRef.current !== null;
+        if (resume.complete) {
+          resume.messages.forEach((replayed) => mergeIncoming(replayed.message));
+        } else if (hadCursor) {
           try {
-            const full = await messageService.getMessage(incoming.id);
-            const hydrated = full.data;
-            if (hydrated) {
-              setMessages((prev) => prev.map((m) => (m.id === hydrated.id ? { ...m, ...hydrated } : m)));
-            }
+            const history = await messageService.getRoomMessages(roomId);
+            (history.data ?? []).forEach(mergeIncoming);
           } catch (e) {
-            // Silenciar errores de hidratación; el mensaje seguirá visible con el contenido
-            console.warn('No se pudo hidratar attachments del mensaje', incoming.id, e);
+            console.warn('No se pudo recargar el historial de la sala', roomId, e);
+          }
+        }
+        if (resume.epoch) {
+          const current = cursorRef.current;
+          if (!current || current.epoch !== resume.epoch || current.seq < resume.lastSeq) {
+            cursorRef.current = { epoch: resume.epoch, seq: resume.lastSeq };
           }
         }
       });
 
+      // Tras suscribirse: lo que llegue desde ahora viene por el topic, lo anterior por la respuesta
+      stompClient.publish({
+        destination: `/app/chat.resume/${roomId}`,
+        body: JSON.stringify(cursorRef.current ? { epoch: cursorRef.current.epoch, lastSeq: cursorRef.current.seq } : {}),
+      });
+
       // Subscribe to typing indicators
       stompClient.subscribe(`/topic/room/${roomId}/typing`, (message) => {
-        const typingData: TypingIndicator = JSON.parse(message.body);
-        setTypingUsers((prev) => {
-          const newSet = new Set(prev);
-          if (typingData.isTyping) {
-            newSet.add(typingData.username);
-          } else {
-            newSet.delete(typingData.username);
-          }
-          return newSet;
-        });
+        const snapshot: TypingSnapshot = JSON.parse(message.body);
+        setTypingUsers(new Set(snapshot.usernames));
+        setTypingCount(snapshot.count);
       });
 
       // Subscribe to user events
@@ -161,7 +198,10 @@ export const useWebSocket = (
       // reset state for next room
       setMessages([]);
       setTypingUsers(new Set());
+      setTypingCount(0);
+      lastTypingRef.current = { isTyping: false, at: 0 };
       deletedIdsRef.current = new Set();
+      cursorRef.current = null;
     };
   }, [roomId]);
 
@@ -183,6 +223,10 @@ export const useWebSocket = (
   const sendTypingIndicator = useCallback(
     (isTyping: boolean) => {
       if (clientRef.current && clientRef.current.connected && roomId) {
+        const now = Date.now();
+        const last = lastTypingRef.current;
+        if (last.isTyping === isTyping && (!isTyping || now - last.at < TYPING_REFRESH_MS)) return;
+        lastTypingRef.current = { isTyping, at: now };
         clientRef.current.publish({
           destination: `/app/chat.typing/${roomId}`,
           body: JSON.stringify({ isTyping }),
@@ -195,6 +239,7 @@ export const useWebSocket = (
   return {
     messages,
     typingUsers,
+    typingCount,
     sendMessage,
     sendTypingIndicator,
     connected,
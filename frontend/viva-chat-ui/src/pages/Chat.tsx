@@ -32,7 +32,7 @@ const Chat = () => {
   const [activeUsersById, setActiveUsersById] = useState<Map<number, string>>(new Map());
   const [activeUserNames, setActiveUserNames] = useState<Set<string>>(new Set());
 
-  const { messages: wsMessages, typingUsers, sendMessage, sendTypingIndicator, connected, deletedMessageIds } =
+  const { messages: wsMessages, typingUsers, typingCount, sendMessage, sendTypingIndicator, connected, deletedMessageIds } =
     useWebSocket(roomId ? parseInt(roomId) : null, {
       onUserEvent: (evt) => {
         const displayName = evt.username;
@@ -332,7 +332,7 @@ const Chat = () => {
                 onDelete={message.senderId === currentUserId ? handleDeleteMessage : undefined}
               />
             ))}
-            {typingUsers.size > 0 && <TypingIndicator users={Array.from(typingUsers)} />}
+            {typingUsers.size > 0 && <TypingIndicator users={Array.from(typingUsers)} total={typingCount} />}
             <div ref={messagesEndRef} />
           </div>
         </div>
@@ -129,6 +129,26 @@ export interface TypingIndicator {
   isTyping: boolean;
 }
 
+// Instantánea periódica de la sala: algunos nombres y el total de personas escribiendo
+export interface TypingSnapshot {
+  roomId: number;
+  usernames: string[];
+  count: number;
+}
+
+export interface ReplayedMessage {
+  seq: number;
+  message: MessageResponse;
+}
+
+export interface ResumeResponse {
+  roomId: number;
+  epoch: string | null;
+  lastSeq: number;
+  complete: boolean;
+  messages: ReplayedMessage[];
+}
+
 export interface UserEvent {
   userId?: number;
   username: string;